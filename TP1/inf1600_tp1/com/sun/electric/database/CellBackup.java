@@ -492,6 +492,33 @@ public class CellBackup {
         return true;
     }
     
+    /**
+     * Checks if this CellBackup differs from other CellBackup only by geometry and text descriptors
+     * of its nodes, arcs and exports. Netlists of such cells and of their parents are the same.
+     * @param thatBackup other CellBackup.
+     * @return true if netlist of the cell doesn't depend on the difference between backups.
+     */
+    public boolean sameConnectivity(CellBackup thatBackup) {
+        if (thatBackup == this) return true;
+        if (d != thatBackup.d) return false;
+        if (nodes.size() != thatBackup.nodes.size() || arcs.size() != thatBackup.arcs.size() ||
+                exports.size() != thatBackup.exports.size())
+            return false;
+        for (int i = 0; i < nodes.size(); i++) {
+            if (!nodes.get(i).sameConnectivity(thatBackup.nodes.get(i)))
+                return false;
+        }
+        for (int i = 0; i < arcs.size(); i++) {
+            if (!arcs.get(i).sameConnectivity(thatBackup.arcs.get(i)))
+                return false;
+        }
+        for (int i = 0; i < exports.size(); i++) {
+            if (!exports.get(i).sameConnectivity(thatBackup.exports.get(i)))
+                return false;
+        }
+        return true;
+    }
+    
     static class CellUsageInfo {
         final int instCount;
         final BitSet usedExports;
@@ -902,6 +902,20 @@ public class ImmutableArcInst extends ImmutableElectricObject {
                 this.gridExtendOverMin == that.gridExtendOverMin && this.angle == that.angle && this.flags == that.flags;
     }
     
+    /**
+     * Indicates whether this ImmutableArcInst connects the same way as other ImmutableArcInst.
+     * Objects may differ only by geometry and by text descriptors.
+     * @param that other ImmutableArcInst.
+     * @return true if netlists which use this ImmutableArcInst remain valid with the other.
+     */
+    boolean sameConnectivity(ImmutableArcInst that) {
+        if (this == that) return true;
+        return this.arcId == that.arcId && this.protoType == that.protoType && this.name == that.name &&
+                this.tailNodeId == that.tailNodeId && this.tailPortId == that.tailPortId &&
+                this.headNodeId == that.headNodeId && this.headPortId == that.headPortId &&
+                (this.flags & DATABASE_FLAGS) == (that.flags & DATABASE_FLAGS) && this.getVars() == that.getVars();
+    }
+    
     /**
      * Generate bounds of this ImmutableArcInst in easy case.
      * @param shrinkage data to determine shrinkage.
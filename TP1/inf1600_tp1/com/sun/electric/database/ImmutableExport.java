@@ -324,6 +324,20 @@ public class ImmutableExport extends ImmutableElectricObject {
                 this.characteristic == that.characteristic;
     }
     
+    /**
+     * Indicates whether this ImmutableExport connects the same way as other ImmutableExport.
+     * Objects may differ only by text descriptors.
+     * @param that other ImmutableExport.
+     * @return true if netlists which use this ImmutableExport remain valid with the other.
+     */
+    boolean sameConnectivity(ImmutableExport that) {
+        if (this == that) return true;
+        return this.exportId == that.exportId && this.name == that.name &&
+                this.originalNodeId == that.originalNodeId && this.originalPortId == that.originalPortId &&
+                this.alwaysDrawn == that.alwaysDrawn && this.bodyOnly == that.bodyOnly &&
+                this.characteristic == that.characteristic && this.getVars() == that.getVars();
+    }
+    
     /**
      * Returns name key of string if string is a valid Export name, null if not.
      * @param name string to test.
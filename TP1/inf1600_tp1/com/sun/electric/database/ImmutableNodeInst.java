@@ -677,6 +677,19 @@ public class ImmutableNodeInst extends ImmutableElectricObject {
                 this.protoDescriptor == that.protoDescriptor;
     }
     
+    /**
+     * Indicates whether this ImmutableNodeInst connects the same way as other ImmutableNodeInst.
+     * Objects may differ only by geometry and by text descriptors.
+     * @param that other ImmutableNodeInst.
+     * @return true if netlists which use this ImmutableNodeInst remain valid with the other.
+     */
+    boolean sameConnectivity(ImmutableNodeInst that) {
+        if (this == that) return true;
+        return this.nodeId == that.nodeId && this.protoId == that.protoId && this.name == that.name &&
+                this.flags == that.flags && this.techBits == that.techBits &&
+                this.getVars() == that.getVars() && this.ports == that.ports;
+    }
+    
     /**
 	 * Checks invariant of this ImmutableNodeInst.
 	 * @throws AssertionError if invariant is broken.
@@ -161,6 +161,12 @@ public abstract class Constraints
 	 * @param lib the Library that will be saved.
 	 */
 	public void writeLibrary(Library lib) {}
+	/**
+	 * Method to announce that the deferred contents of a Cell were instantiated.
+	 * The new contents are not a change of the Cell.
+	 * @param cell the Cell that was filled.
+	 */
+	public void loadCellContents(Cell cell) {}
     /**
      * Method to announce than Ids were renamed.
      * @param idMapper mapper from old Ids to new Ids.
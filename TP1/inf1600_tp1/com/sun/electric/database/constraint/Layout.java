@@ -238,6 +238,17 @@ public class Layout extends Constraints
 	 * @param lib the Library that will be saved.
 	 */
 	public void writeLibrary(Library lib) { librariesWritten.add(lib.getId()); }
+
+	/**
+	 * Method to announce that the deferred contents of a Cell were instantiated.
+	 * The new contents are not a change of the Cell.
+	 * @param cell the Cell that was filled.
+	 */
+	public void loadCellContents(Cell cell) {
+        if (doChangesQuietly) return;
+        cellInfos.set(cell.getCellIndex(), null);
+        newCellInfo(cell, cell.backup());
+    }
     
     /**
      * Method to announce than Ids were renamed.
@@ -384,6 +384,44 @@ public class GenMath
         return false;
     }
 
+    /** The starting value of a content hash (FNV-1a offset basis). */
+    public static final long HASH_SEED = 0xcbf29ce484222325L;
+    /** FNV-1a prime. */
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    /**
+     * Method to add a value to a 64-bit content hash. DRC and NCC store such hashes
+     * to recognize cells that have not changed since they were last checked,
+     * so changing this method makes every stored hash stale.
+     * @param h the hash so far.
+     * @param value the value to add.
+     * @return the new hash.
+     */
+    public static long mixHash(long h, long value)
+    {
+        h = (h ^ value) * HASH_PRIME;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Method to add a String to a 64-bit content hash.
+     * The chars are hashed with 64-bit FNV-1a rather than through the 32-bit
+     * String.hashCode(), so that different names are unlikely to collide.
+     * @param h the hash so far.
+     * @param s the String to add.
+     * @return the new hash.
+     */
+    public static long mixHash(long h, String s)
+    {
+        long f = HASH_SEED;
+        for (int i = 0; i < s.length(); i++)
+        {
+            f ^= s.charAt(i);
+            f *= HASH_PRIME;
+        }
+        return mixHash(mixHash(h, s.length()), f);
+    }
+
     /** A transformation matrix that does nothing (identity). */
     public static final AffineTransform MATID = new AffineTransform();
 
@@ -31,6 +31,11 @@ import java.awt.geom.Area;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * To handle merge operation. Two different classes have been proposed
@@ -39,6 +44,7 @@ import java.util.List;
  */
 public abstract class GeometryHandler {
     HashMap<Layer,Object> layers;
+    /** number of threads used to merge layers in postProcess */ int numThreads = 1;
     public enum GHMode // GH GeometryHandler mode
     {
 	    ALGO_MERGE,   // using merge structure
@@ -104,6 +110,64 @@ public abstract class GeometryHandler {
         System.out.println("Error: subtractAll not implemented for GeometryHandler subclass " + this.getClass().getName());
     }
 
+    /**
+     * Method to set the number of threads used by postProcess.
+     * Layers are independent, so they are merged in parallel; the results are
+     * identical to the results with one thread.
+     * @param numThreads the number of threads (1 to merge serially).
+     */
+    public void setNumThreads(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Method to run a list of tasks on the threads of this handler.
+     * @param tasks the tasks to run.
+     * @return the results of the tasks, in the order of the tasks.
+     */
+    <T> List<T> runTasks(List<Callable<T>> tasks)
+    {
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (numThreads <= 1 || tasks.size() <= 1)
+        {
+            try
+            {
+                for (Callable<T> task : tasks)
+                    results.add(task.call());
+            } catch (RuntimeException e)
+            {
+                throw e;
+            } catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+            return results;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads, tasks.size()));
+        try
+        {
+            List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+            for (Callable<T> task : tasks)
+                futures.add(pool.submit(task));
+            for (Future<T> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new RuntimeException(cause);
+        } finally
+        {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
 	/**
 	 * Access to keySet to create a collection for example.
 	 */
@@ -0,0 +1,614 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ManhattanRegion.java
+ *
+ * Copyright (c) 2004 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry;
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A region of Manhattan geometry in scanline form.
+ * The region is cut into horizontal bands, and each band holds the sorted,
+ * disjoint X intervals that are inside the region.
+ * Boolean operations walk the bands of both regions together, so they take time
+ * proportional to the size of the regions instead of the quadratic behavior of
+ * repeatedly adding to a java.awt.geom.Area.
+ * <P>
+ * Manhattan boolean operations never compute new coordinates, so coordinates
+ * are kept as the original doubles and compared exactly.
+ * Geometry that is not Manhattan cannot be represented, and must be handled with Area.
+ */
+class ManhattanRegion
+{
+	private static final double [] NO_INTERVALS = new double[0];
+
+	/** the empty region */									static final ManhattanRegion EMPTY = new ManhattanRegion(new double[0], new double[0][]);
+
+	private static final int UNION = 0;
+	private static final int INTERSECT = 1;
+	private static final int SUBTRACT = 2;
+
+	/** band boundaries, band i is from bandY[i] to bandY[i+1] */	private final double [] bandY;
+	/** intervals of each band, as pairs of low and high X */		private final double [][] bandX;
+
+	private ManhattanRegion(double [] bandY, double [][] bandX)
+	{
+		this.bandY = bandY;
+		this.bandX = bandX;
+	}
+
+	/**
+	 * Method to create a region from a Shape.
+	 * @param shape the Shape to convert, with its own winding rule.
+	 * @return the region, or null if the Shape is not Manhattan.
+	 */
+	static ManhattanRegion fromShape(Shape shape)
+	{
+		Edges edges = new Edges();
+		PathIterator pIt = shape.getPathIterator(null);
+		if (!edges.addPath(pIt)) return null;
+		return edges.toRegion(pIt.getWindingRule() == PathIterator.WIND_EVEN_ODD);
+	}
+
+	/**
+	 * Method to tell whether this region is empty.
+	 * @return true if nothing is inside of this region.
+	 */
+	boolean isEmpty() { return bandX.length == 0; }
+
+	/**
+	 * Method to return the area of this region.
+	 * @return the area of this region.
+	 */
+	double getArea()
+	{
+		double area = 0;
+		for(int i=0; i<bandX.length; i++)
+		{
+			double [] xs = bandX[i];
+			double width = 0;
+			for(int j=0; j<xs.length; j += 2) width += xs[j+1] - xs[j];
+			area += width * (bandY[i+1] - bandY[i]);
+		}
+		return area;
+	}
+
+	/**
+	 * Method to return the union of this region and another.
+	 * @param other the other region.
+	 * @return the union of the two regions.
+	 */
+	ManhattanRegion union(ManhattanRegion other) { return combine(other, UNION); }
+
+	/**
+	 * Method to return the intersection of this region and another.
+	 * @param other the other region.
+	 * @return the intersection of the two regions.
+	 */
+	ManhattanRegion intersect(ManhattanRegion other) { return combine(other, INTERSECT); }
+
+	/**
+	 * Method to return this region minus another.
+	 * @param other the region to subtract.
+	 * @return the part of this region that is not in the other region.
+	 */
+	ManhattanRegion subtract(ManhattanRegion other) { return combine(other, SUBTRACT); }
+
+	/**
+	 * Method to inset this region.
+	 * A strip of the given width is removed from the inside of every edge of the outline,
+	 * including the edges of holes.
+	 * @param amount the width of the strips.
+	 * @return the inset region.
+	 */
+	ManhattanRegion inset(double amount)
+	{
+		if (amount <= 0 || isEmpty()) return this;
+		Edges strips = new Edges();
+		for(int i=0; i<bandX.length; i++)
+		{
+			double y0 = bandY[i], y1 = bandY[i+1];
+			double [] xs = bandX[i];
+			for(int j=0; j<xs.length; j += 2)
+			{
+				strips.addRect(xs[j], y0, xs[j] + amount, y1);
+				strips.addRect(xs[j+1] - amount, y0, xs[j+1], y1);
+			}
+		}
+		for(int k=0; k<bandY.length; k++)
+		{
+			double y = bandY[k];
+			double [] below = (k > 0) ? bandX[k-1] : NO_INTERVALS;
+			double [] above = (k < bandX.length) ? bandX[k] : NO_INTERVALS;
+			double [] bottoms = combineIntervals(above, below, SUBTRACT);
+			for(int j=0; j<bottoms.length; j += 2) strips.addRect(bottoms[j], y, bottoms[j+1], y + amount);
+			double [] tops = combineIntervals(below, above, SUBTRACT);
+			for(int j=0; j<tops.length; j += 2) strips.addRect(tops[j], y - amount, tops[j+1], y);
+		}
+		return subtract(strips.toRegion(false));
+	}
+
+	/**
+	 * Method to convert this region to an Area.
+	 * The Area is built from the outline of the region in one pass.
+	 * @return an Area with the same geometry as this region.
+	 */
+	Area toArea()
+	{
+		if (isEmpty()) return new Area();
+		return new Area(getOutline());
+	}
+
+	/**
+	 * Method to return the outline of this region.
+	 * Outer loops run counterclockwise and holes run clockwise, and collinear points are removed.
+	 * @return a path with the outline of this region.
+	 */
+	Path2D.Double getOutline()
+	{
+		// collect the edges, directed so that the inside is on the left
+		Edges segs = new Edges();
+		for(int i=0; i<bandX.length; i++)
+		{
+			double y0 = bandY[i], y1 = bandY[i+1];
+			double [] xs = bandX[i];
+			for(int j=0; j<xs.length; j += 2)
+			{
+				segs.addSegment(xs[j], y1, xs[j], y0);
+				segs.addSegment(xs[j+1], y0, xs[j+1], y1);
+			}
+		}
+		for(int k=0; k<bandY.length; k++)
+		{
+			double y = bandY[k];
+			double [] below = (k > 0) ? bandX[k-1] : NO_INTERVALS;
+			double [] above = (k < bandX.length) ? bandX[k] : NO_INTERVALS;
+			double [] bottoms = combineIntervals(above, below, SUBTRACT);
+			for(int j=0; j<bottoms.length; j += 2) segs.addSegment(bottoms[j], y, bottoms[j+1], y);
+			double [] tops = combineIntervals(below, above, SUBTRACT);
+			for(int j=0; j<tops.length; j += 2) segs.addSegment(tops[j+1], y, tops[j], y);
+		}
+
+		// sort the edges by their starting point so that the next one in a loop can be found
+		final Edges s = segs;
+		Integer [] order = new Integer[s.n];
+		for(int i=0; i<s.n; i++) order[i] = new Integer(i);
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer i1, Integer i2)
+			{
+				int c = Double.compare(s.x0[i1.intValue()], s.x0[i2.intValue()]);
+				if (c != 0) return c;
+				return Double.compare(s.y0[i1.intValue()], s.y0[i2.intValue()]);
+			}
+		});
+		int [] sorted = new int[s.n];
+		for(int i=0; i<s.n; i++) sorted[i] = order[i].intValue();
+
+		// chain the edges into loops
+		Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+		boolean [] used = new boolean[s.n];
+		double [] loop = new double[16];
+		for(int first=0; first<s.n; first++)
+		{
+			if (used[sorted[first]]) continue;
+			int numPoints = 0;
+			int seg = sorted[first];
+			for(;;)
+			{
+				used[seg] = true;
+				if (numPoints*2+2 > loop.length) loop = Arrays.copyOf(loop, loop.length*2);
+				loop[numPoints*2] = s.x0[seg];
+				loop[numPoints*2+1] = s.y0[seg];
+				numPoints++;
+				int next = findNext(s, sorted, used, seg);
+				if (next < 0) break;
+				seg = next;
+			}
+			addLoop(path, loop, numPoints);
+		}
+		return path;
+	}
+
+	/**
+	 * Method to find the unused edge that starts where an edge ends.
+	 * Where two edges start at the same point, the one turning left is taken.
+	 */
+	private static int findNext(Edges s, int [] sorted, boolean [] used, int seg)
+	{
+		double x = s.x1[seg], y = s.y1[seg];
+		int lo = 0, hi = sorted.length;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			int m = sorted[mid];
+			if (s.x0[m] < x || (s.x0[m] == x && s.y0[m] < y)) lo = mid + 1; else hi = mid;
+		}
+		int found = -1;
+		for(int i=lo; i<sorted.length; i++)
+		{
+			int cand = sorted[i];
+			if (s.x0[cand] != x || s.y0[cand] != y) break;
+			if (used[cand]) continue;
+			if (found < 0) { found = cand;   continue; }
+			double dx = s.x1[seg] - s.x0[seg], dy = s.y1[seg] - s.y0[seg];
+			double cx = s.x1[cand] - s.x0[cand], cy = s.y1[cand] - s.y0[cand];
+			if (dx*cy - dy*cx > 0) found = cand;
+		}
+		return found;
+	}
+
+	/**
+	 * Method to add a closed loop to a path, leaving out collinear points.
+	 */
+	private static void addLoop(Path2D.Double path, double [] loop, int numPoints)
+	{
+		boolean started = false;
+		for(int i=0; i<numPoints; i++)
+		{
+			int prev = (i + numPoints - 1) % numPoints;
+			int next = (i + 1) % numPoints;
+			double x = loop[i*2], y = loop[i*2+1];
+			boolean vertical = loop[prev*2] == x && loop[next*2] == x;
+			boolean horizontal = loop[prev*2+1] == y && loop[next*2+1] == y;
+			if (vertical || horizontal) continue;
+			if (started) path.lineTo(x, y); else
+			{
+				path.moveTo(x, y);
+				started = true;
+			}
+		}
+		if (started) path.closePath();
+	}
+
+	/**
+	 * Method to combine this region with another, band by band.
+	 */
+	private ManhattanRegion combine(ManhattanRegion other, int op)
+	{
+		double [] ya = bandY, yb = other.bandY;
+		double [] ys = new double[ya.length + yb.length];
+		int numY = 0;
+		for(int i=0, j=0; i < ya.length || j < yb.length; )
+		{
+			double y;
+			if (j >= yb.length || (i < ya.length && ya[i] <= yb[j])) y = ya[i]; else y = yb[j];
+			if (i < ya.length && ya[i] == y) i++;
+			if (j < yb.length && yb[j] == y) j++;
+			ys[numY++] = y;
+		}
+		Bands bands = new Bands();
+		int ia = 0, ib = 0;
+		for(int k=0; k+1<numY; k++)
+		{
+			double y0 = ys[k], y1 = ys[k+1];
+			while (ia < bandX.length && bandY[ia+1] <= y0) ia++;
+			while (ib < other.bandX.length && other.bandY[ib+1] <= y0) ib++;
+			double [] xa = (ia < bandX.length && bandY[ia] <= y0) ? bandX[ia] : NO_INTERVALS;
+			double [] xb = (ib < other.bandX.length && other.bandY[ib] <= y0) ? other.bandX[ib] : NO_INTERVALS;
+			bands.add(y0, y1, combineIntervals(xa, xb, op));
+		}
+		return bands.toRegion();
+	}
+
+	/**
+	 * Method to combine two sorted lists of disjoint intervals.
+	 */
+	private static double [] combineIntervals(double [] a, double [] b, int op)
+	{
+		if (a.length == 0)
+			return (op == UNION) ? b : NO_INTERVALS;
+		if (b.length == 0)
+			return (op == INTERSECT) ? NO_INTERVALS : a;
+		double [] result = new double[a.length + b.length];
+		int num = 0;
+		boolean inA = false, inB = false, in = false;
+		for(int i=0, j=0; i < a.length || j < b.length; )
+		{
+			double x;
+			if (j >= b.length || (i < a.length && a[i] <= b[j])) x = a[i]; else x = b[j];
+			if (i < a.length && a[i] == x) { inA = !inA;   i++; }
+			if (j < b.length && b[j] == x) { inB = !inB;   j++; }
+			boolean now;
+			switch (op)
+			{
+				case UNION:     now = inA || inB;    break;
+				case INTERSECT: now = inA && inB;    break;
+				default:        now = inA && !inB;   break;
+			}
+			if (now != in)
+			{
+				result[num++] = x;
+				in = now;
+			}
+		}
+		if (num == 0) return NO_INTERVALS;
+		return (num == result.length) ? result : Arrays.copyOf(result, num);
+	}
+
+	/**
+	 * Class to build a region band by band, from bottom to top.
+	 * Neighboring bands with the same intervals are joined, so that every region has one form.
+	 */
+	private static class Bands
+	{
+		private double [] y = new double[16];
+		private double [][] x = new double[16][];
+		private int n;
+
+		void add(double y0, double y1, double [] xs)
+		{
+			if (y1 <= y0) return;
+			if (n == 0)
+			{
+				if (xs.length == 0) return;
+				y[0] = y0;
+			} else if (y0 > y[n])
+			{
+				// a gap below this band
+				if (xs.length == 0) return;
+				if (x[n-1].length == 0) y[n] = y0; else append(y0, NO_INTERVALS);
+			}
+			if (n > 0 && Arrays.equals(x[n-1], xs)) { y[n] = y1;   return; }
+			append(y1, xs);
+		}
+
+		private void append(double top, double [] xs)
+		{
+			if (n + 2 > y.length)
+			{
+				y = Arrays.copyOf(y, y.length*2);
+				x = Arrays.copyOf(x, x.length*2);
+			}
+			x[n] = xs;
+			y[n+1] = top;
+			n++;
+		}
+
+		ManhattanRegion toRegion()
+		{
+			while (n > 0 && x[n-1].length == 0) n--;
+			if (n == 0) return EMPTY;
+			return new ManhattanRegion(Arrays.copyOf(y, n+1), Arrays.copyOf(x, n));
+		}
+	}
+
+	/**
+	 * Class to collect edges of Manhattan geometry and sweep them into a region.
+	 * Only vertical edges matter to the sweep: each has a direction that is
+	 * added to the winding number when crossing it from left to right.
+	 * Edges are kept in parallel arrays so that millions of them do not make millions of objects.
+	 */
+	static class Edges
+	{
+		private double [] x0 = new double[64], y0 = new double[64], x1 = new double[64], y1 = new double[64];
+		private int n;
+
+		/**
+		 * Method to tell whether any edges have been added.
+		 * @return true if there are no edges.
+		 */
+		boolean isEmpty() { return n == 0; }
+
+		/**
+		 * Method to add a rectangle.
+		 * Rectangles are always counterclockwise, so any number of them can be swept together.
+		 * @param rect the rectangle to add.
+		 */
+		void addRect(Rectangle2D rect)
+		{
+			addRect(rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+		}
+
+		void addRect(double lX, double lY, double hX, double hY)
+		{
+			if (!(lX < hX && lY < hY)) return;
+			addSegment(lX, hY, lX, lY);
+			addSegment(hX, lY, hX, hY);
+		}
+
+		/**
+		 * Method to add a Shape.
+		 * The Shape is converted to a region with its own winding rule first,
+		 * so that it adds to the union whatever direction it runs in.
+		 * @param shape the Shape to add.
+		 * @return false if the Shape is not Manhattan, in which case nothing is added.
+		 */
+		boolean addShape(Shape shape)
+		{
+			ManhattanRegion region = fromShape(shape);
+			if (region == null) return false;
+			for(int i=0; i<region.bandX.length; i++)
+			{
+				double [] xs = region.bandX[i];
+				for(int j=0; j<xs.length; j += 2)
+					addRect(xs[j], region.bandY[i], xs[j+1], region.bandY[i+1]);
+			}
+			return true;
+		}
+
+		/**
+		 * Method to add the edges of a path.
+		 * Open subpaths are closed, as Area does.
+		 * @return false if the path has curves or edges that are not Manhattan,
+		 * in which case nothing is added.
+		 */
+		private boolean addPath(PathIterator pIt)
+		{
+			int saved = n;
+			double [] coords = new double[6];
+			double startX = 0, startY = 0, curX = 0, curY = 0;
+			boolean open = false;
+			for( ; !pIt.isDone(); pIt.next())
+			{
+				int type = pIt.currentSegment(coords);
+				switch (type)
+				{
+					case PathIterator.SEG_MOVETO:
+						if (open && !addLine(curX, curY, startX, startY)) { n = saved;   return false; }
+						startX = curX = coords[0];
+						startY = curY = coords[1];
+						open = true;
+						break;
+					case PathIterator.SEG_LINETO:
+						if (!addLine(curX, curY, coords[0], coords[1])) { n = saved;   return false; }
+						curX = coords[0];
+						curY = coords[1];
+						break;
+					case PathIterator.SEG_CLOSE:
+						if (open && !addLine(curX, curY, startX, startY)) { n = saved;   return false; }
+						curX = startX;
+						curY = startY;
+						open = false;
+						break;
+					default:
+						n = saved;
+						return false;
+				}
+			}
+			if (open && !addLine(curX, curY, startX, startY)) { n = saved;   return false; }
+			return true;
+		}
+
+		private boolean addLine(double fX, double fY, double tX, double tY)
+		{
+			if (fX == tX)
+			{
+				if (fY != tY) addSegment(fX, fY, tX, tY);
+				return true;
+			}
+			return fY == tY;
+		}
+
+		private void addSegment(double fX, double fY, double tX, double tY)
+		{
+			if (n == x0.length)
+			{
+				int newSize = n * 2;
+				x0 = Arrays.copyOf(x0, newSize);
+				y0 = Arrays.copyOf(y0, newSize);
+				x1 = Arrays.copyOf(x1, newSize);
+				y1 = Arrays.copyOf(y1, newSize);
+			}
+			// adding zero turns -0.0 into 0.0, so that sorting and comparing agree
+			x0[n] = fX + 0.0;
+			y0[n] = fY + 0.0;
+			x1[n] = tX + 0.0;
+			y1[n] = tY + 0.0;
+			n++;
+		}
+
+		/**
+		 * Method to sweep the edges into a region.
+		 * @param evenOdd true to use the even-odd winding rule, false for non-zero.
+		 * @return the region inside of the edges.
+		 */
+		ManhattanRegion toRegion(boolean evenOdd)
+		{
+			// gather the vertical edges as bottom, top, X and direction
+			int numEdges = 0;
+			for(int i=0; i<n; i++) if (x0[i] == x1[i]) numEdges++;
+			if (numEdges == 0) return EMPTY;
+			final double [] lowY = new double[numEdges];
+			double [] highY = new double[numEdges], edgeX = new double[numEdges];
+			int [] dir = new int[numEdges];
+			double [] ys = new double[numEdges*2];
+			for(int i=0, e=0; i<n; i++)
+			{
+				if (x0[i] != x1[i]) continue;
+				boolean down = y1[i] < y0[i];
+				lowY[e] = down ? y1[i] : y0[i];
+				highY[e] = down ? y0[i] : y1[i];
+				edgeX[e] = x0[i];
+				dir[e] = down ? 1 : -1;
+				ys[e*2] = lowY[e];
+				ys[e*2+1] = highY[e];
+				e++;
+			}
+			Arrays.sort(ys);
+			int numY = 0;
+			for(int i=0; i<ys.length; i++)
+				if (numY == 0 || ys[i] != ys[numY-1]) ys[numY++] = ys[i];
+
+			Integer [] order = new Integer[numEdges];
+			for(int i=0; i<numEdges; i++) order[i] = new Integer(i);
+			Arrays.sort(order, new Comparator<Integer>()
+			{
+				public int compare(Integer i1, Integer i2)
+				{
+					return Double.compare(lowY[i1.intValue()], lowY[i2.intValue()]);
+				}
+			});
+
+			// sweep upward, keeping the edges that cross the current band sorted by X
+			Bands bands = new Bands();
+			int [] active = new int[16];
+			int numActive = 0;
+			double [] intervals = new double[16];
+			int nextEdge = 0;
+			for(int k=0; k+1<numY; k++)
+			{
+				double bandLow = ys[k], bandHigh = ys[k+1];
+				int keep = 0;
+				for(int i=0; i<numActive; i++)
+					if (highY[active[i]] > bandLow) active[keep++] = active[i];
+				numActive = keep;
+				while (nextEdge < numEdges && lowY[order[nextEdge].intValue()] <= bandLow)
+				{
+					int e = order[nextEdge++].intValue();
+					if (numActive == active.length) active = Arrays.copyOf(active, numActive*2);
+					int lo = 0, hi = numActive;
+					while (lo < hi)
+					{
+						int mid = (lo + hi) >>> 1;
+						if (edgeX[active[mid]] <= edgeX[e]) lo = mid + 1; else hi = mid;
+					}
+					System.arraycopy(active, lo, active, lo+1, numActive-lo);
+					active[lo] = e;
+					numActive++;
+				}
+
+				int numIntervals = 0;
+				int winding = 0;
+				boolean in = false;
+				for(int i=0; i<numActive; )
+				{
+					double x = edgeX[active[i]];
+					while (i < numActive && edgeX[active[i]] == x) winding += dir[active[i++]];
+					boolean now = evenOdd ? (winding & 1) != 0 : winding != 0;
+					if (now == in) continue;
+					if (numIntervals == intervals.length) intervals = Arrays.copyOf(intervals, numIntervals*2);
+					intervals[numIntervals++] = x;
+					in = now;
+				}
+				bands.add(bandLow, bandHigh, numIntervals == 0 ? NO_INTERVALS : Arrays.copyOf(intervals, numIntervals));
+			}
+			return bands.toRegion();
+		}
+	}
+}
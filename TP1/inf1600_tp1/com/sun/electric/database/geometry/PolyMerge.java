@@ -31,8 +31,12 @@ import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * This is the Polygon Merging facility.
@@ -55,15 +59,88 @@ import java.util.List;
  * At end of merging, call:<BR>
  *    merge.getMergedPoints(layer)<BR>
  * for each layer, and it returns an array of PolyBases on that layer.
+ * <P>
+ * Manhattan geometry that is added is collected and merged in one scanline pass
+ * (see ManhattanRegion) the next time the layer is examined, instead of being
+ * added to the layer's Area one piece at a time.
  */
 public class PolyMerge
         extends GeometryHandler
 {
+	/** Manhattan geometry not yet merged into each layer */	private HashMap<Layer,ManhattanRegion.Edges> pending;
+	/** true to merge Manhattan geometry by scanline */			private final boolean scanline;
+
 	/**
 	 * Method to create a new "merge" object.
 	 */
 	public PolyMerge()
 	{
+		this(true);
+	}
+
+	/**
+	 * Method to create a new "merge" object.
+	 * @param scanline true to merge Manhattan geometry by scanline,
+	 * false to add everything to the Areas directly.
+	 */
+	PolyMerge(boolean scanline)
+	{
+		this.scanline = scanline;
+		pending = new HashMap<Layer,ManhattanRegion.Edges>();
+	}
+
+	/**
+	 * Method to return the Area of a layer, with all pending geometry merged into it.
+	 * @param layer the layer.
+	 * @return the Area of the layer, or null if there is no geometry on it.
+	 */
+	private Area getArea(Layer layer)
+	{
+		Area area = (Area)layers.get(layer);
+		ManhattanRegion.Edges edges = pending.remove(layer);
+		if (edges != null && area != null)
+		{
+			Area merged = edges.toRegion(false).toArea();
+			if (area.isEmpty())
+			{
+				area = merged;
+				layers.put(layer, area);
+			} else
+			{
+				area.add(merged);
+			}
+		}
+		return area;
+	}
+
+	/**
+	 * Method to return the Area of a layer, creating it if necessary.
+	 * Pending geometry is not merged, so this is only for adding to the Area.
+	 */
+	private Area getAreaToAdd(Layer layer)
+	{
+		Area area = (Area)layers.get(layer);
+		if (area == null)
+		{
+			area = new Area();
+			layers.put(layer, area);
+		}
+		return area;
+	}
+
+	/**
+	 * Method to return the pending Manhattan geometry of a layer, creating it if necessary.
+	 */
+	private ManhattanRegion.Edges getPending(Layer layer)
+	{
+		getAreaToAdd(layer);
+		ManhattanRegion.Edges edges = pending.get(layer);
+		if (edges == null)
+		{
+			edges = new ManhattanRegion.Edges();
+			pending.put(layer, edges);
+		}
+		return edges;
 	}
 
 	/**
@@ -92,12 +169,12 @@ public class PolyMerge
 	 */
 	public void addRectangle(Layer layer, Rectangle2D rect)
 	{
-		Area area = (Area)layers.get(layer);
-		if (area == null)
+		if (scanline)
 		{
-			area = new Area();
-			layers.put(layer, area);
+			getPending(layer).addRect(rect);
+			return;
 		}
+		Area area = getAreaToAdd(layer);
 
 		// add "rect" to "area"
 		Area additionalArea = new Area(rect);
@@ -111,12 +188,8 @@ public class PolyMerge
 	 */
 	public void addPolygon(Layer layer, PolyBase poly)
 	{
-		Area area = (Area)layers.get(layer);
-		if (area == null)
-		{
-			area = new Area();
-			layers.put(layer, area);
-		}
+		if (scanline && getPending(layer).addShape(poly)) return;
+		Area area = getAreaToAdd(layer);
 
 		// add "poly" to "area"
 		// It can't add only rectangles otherwise it doesn't cover
@@ -132,7 +205,7 @@ public class PolyMerge
 	 */
 	public void subtract(Object layer, Object poly)
 	{
-		Area area = (Area)layers.get(layer);
+		Area area = getArea((Layer)layer);
 		if (area == null) return;
 		Area subtractArea = new Area((PolyBase)poly);
 		area.subtract(subtractArea);
@@ -158,14 +231,9 @@ public class PolyMerge
 	{
 		for(Layer subLayer : other.layers.keySet())
 		{
-			Area subArea = (Area)other.layers.get(subLayer);
+			Area subArea = other.getArea(subLayer);
 
-			Area area = (Area)layers.get(subLayer);
-			if (area == null)
-			{
-				area = new Area();
-				layers.put(subLayer, area);
-			}
+			Area area = getAreaToAdd(subLayer);
 			Area newArea = subArea.createTransformedArea(trans);
 			area.add(newArea);
 		}
@@ -178,7 +246,7 @@ public class PolyMerge
 	 */
 	public void addLayer(Layer fromLayer, Layer toLayer)
 	{
-		Area fromArea = (Area)layers.get(fromLayer);
+		Area fromArea = getArea(fromLayer);
 		if (fromArea == null) return;
 
 		Area toArea = (Area)layers.get(toLayer);
@@ -200,7 +268,7 @@ public class PolyMerge
 	 */
 	public boolean intersects(Layer layer, PolyBase poly)
 	{
-		Area layerArea = (Area)layers.get(layer);
+		Area layerArea = getArea(layer);
 		if (layerArea == null) return false;
 
 		// simple calculation for manhattan polygon
@@ -226,10 +294,10 @@ public class PolyMerge
 	public void intersectLayers(Layer sourceA, Layer sourceB, Layer dest)
 	{
 		Area destArea = null;
-		Area sourceAreaA = (Area)layers.get(sourceA);
+		Area sourceAreaA = getArea(sourceA);
 		if (sourceAreaA != null)
 		{
-			Area sourceAreaB = (Area)layers.get(sourceB);
+			Area sourceAreaB = getArea(sourceB);
 			if (sourceAreaB != null)
 			{
 				destArea = new Area(sourceAreaA);
@@ -237,6 +305,7 @@ public class PolyMerge
 				if (destArea.isEmpty()) destArea = null;
 			}
 		}
+		pending.remove(dest);
 		if (destArea == null) layers.remove(dest); else
 			layers.put(dest, destArea);
 	}
@@ -251,10 +320,10 @@ public class PolyMerge
 	public void subtractLayers(Layer sourceA, Layer sourceB, Layer dest)
 	{
 		Area destArea = null;
-		Area sourceAreaA = (Area)layers.get(sourceA);
+		Area sourceAreaA = getArea(sourceA);
 		if (sourceAreaA != null)
 		{
-			Area sourceAreaB = (Area)layers.get(sourceB);
+			Area sourceAreaB = getArea(sourceB);
 			if (sourceAreaB != null)
 			{
 				destArea = new Area(sourceAreaA);
@@ -262,6 +331,7 @@ public class PolyMerge
 				if (destArea.isEmpty()) destArea = null;
 			}
 		}
+		pending.remove(dest);
 		if (destArea == null) layers.remove(dest); else
 			layers.put(dest, destArea);
 	}
@@ -274,10 +344,10 @@ public class PolyMerge
 	{
 		for(Layer subLayer : other.layers.keySet())
 		{
-			Area area = (Area)layers.get(subLayer);
+			Area area = getArea(subLayer);
 			if (area == null) continue;
 
-			Area subArea = (Area)other.layers.get(subLayer);
+			Area subArea = other.getArea(subLayer);
 			area.subtract(subArea);
 		}
 	}
@@ -290,9 +360,20 @@ public class PolyMerge
 	 */
 	public void insetLayer(Layer source, Layer dest, double amount)
 	{
-		Area sourceArea = (Area)layers.get(source);
+		Area sourceArea = getArea(source);
+		pending.remove(dest);
 		if (sourceArea == null) layers.remove(dest); else
 		{
+			if (scanline && amount > 0)
+			{
+				// Manhattan geometry is inset in one pass
+				ManhattanRegion region = ManhattanRegion.fromShape(sourceArea);
+				if (region != null)
+				{
+					layers.put(dest, region.inset(amount).toArea());
+					return;
+				}
+			}
 			layers.put(dest, sourceArea.clone());
 			if (amount == 0) return;
 			List<PolyBase> orig = getAreaPoints(sourceArea, source, true);
@@ -330,6 +411,7 @@ public class PolyMerge
 	 */
 	public void deleteLayer(Layer layer)
 	{
+		pending.remove(layer);
 		layers.remove(layer);
 	}
 
@@ -340,7 +422,7 @@ public class PolyMerge
 	 */
 	public boolean isEmpty(Layer layer)
 	{
-		Area area = (Area)layers.get(layer);
+		Area area = getArea(layer);
 		if (area == null) return true;
 		return area.isEmpty();
 	}
@@ -353,7 +435,7 @@ public class PolyMerge
 	 */
 	public boolean contains(Layer layer, Rectangle2D rect)
 	{
-		Area area = (Area)layers.get(layer);
+		Area area = getArea(layer);
 		if (area == null) return false;
 		if (area.contains(rect)) return true;
 
@@ -377,7 +459,7 @@ public class PolyMerge
 	public boolean contains(Layer layer, PolyBase poly)
 	{
 		// find the area for the given layer
-		Area area = (Area)layers.get(layer);
+		Area area = getArea(layer);
 		if (area == null) return false;
 
 		// create an area that is the new polygon minus the original area
@@ -449,7 +531,7 @@ public class PolyMerge
 	 */
 	public double getAreaOfLayer(Layer layer)
 	{
-		Area area = (Area)layers.get(layer);
+		Area area = getArea(layer);
 		if (area == null) return 0;
 		return getAreaOfArea(area);
 	}
@@ -473,11 +555,47 @@ public class PolyMerge
 	 */
 	public boolean contains(Layer layer, Point2D pt)
 	{
-		Area area = (Area)layers.get(layer);
+		Area area = getArea(layer);
 		if (area == null) return false;
 		return area.contains(pt);
 	}
 
+	/**
+	 * Method to merge the pending geometry of every layer.
+	 * Layers are independent, so they are merged in parallel when several threads are allowed.
+	 * Otherwise the merge happens the first time a layer is examined.
+	 * @param merge must be true; PolyMerge only generates merged polygons.
+	 */
+	public void postProcess(boolean merge)
+	{
+		List<Layer> layerList = new ArrayList<Layer>();
+		List<Callable<Area>> tasks = new ArrayList<Callable<Area>>();
+		for(Map.Entry<Layer,ManhattanRegion.Edges> e : pending.entrySet())
+		{
+			final Area area = (Area)layers.get(e.getKey());
+			final ManhattanRegion.Edges edges = e.getValue();
+			if (area == null) continue;
+			layerList.add(e.getKey());
+			tasks.add(new Callable<Area>()
+			{
+				public Area call()
+				{
+					Area merged = edges.toRegion(false).toArea();
+					if (area.isEmpty()) return merged;
+					area.add(merged);
+					return area;
+				}
+			});
+		}
+		List<Area> results = runTasks(tasks);
+		for(int i=0; i<layerList.size(); i++)
+		{
+			pending.remove(layerList.get(i));
+			layers.put(layerList.get(i), results.get(i));
+		}
+		super.postProcess(merge);
+	}
+
 	public Collection<PolyBase> getObjects(Object layer, boolean modified, boolean simple)
 	{
 		// Since simple is used, correct detection of loops must be guaranteed
@@ -493,7 +611,7 @@ public class PolyMerge
 	 */
     public List<PolyBase> getMergedPoints(Layer layer, boolean simple)
 	{
-		Area area = (Area)layers.get(layer);
+		Area area = getArea(layer);
 		if (area == null) return null;
 		return getAreaPoints(area, layer, simple);
 	}
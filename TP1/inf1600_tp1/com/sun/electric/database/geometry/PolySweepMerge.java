@@ -31,6 +31,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.geom.Area;
 import java.awt.Shape;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Class to implement geometric sweep algorithm in 2D for areas.
@@ -42,6 +43,8 @@ public class PolySweepMerge extends GeometryHandler
 
     //private int mode = ONE_FRONTIER_MODE;
 
+    /** Clusters are grouped into tiles of about this many areas in postProcess */ private static final int TILE_SIZE = 256;
+
     /**
 	 * Method to create a new "merge" object.
 	 */
@@ -207,107 +210,104 @@ public class PolySweepMerge extends GeometryHandler
         }
     }
 
-    public void postProcess(boolean merge)
-    {
-        if (merge) mergeProcess();
-        else disjointProcess();
-    }
-
     /**
-     * Method to generate a set of disjoint polygons from original set
+     * Method to merge the areas of every layer.
+     * Areas are sorted along X and split into clusters that do not overlap in X.
+     * Clusters are independent of each other, so runs of clusters (tiles) from
+     * every layer are processed in parallel when several threads are allowed.
+     * @param merge true if polygons must be merged otherwise non-overlapping polygons will be generated.
      */
-    private void disjointProcess()
+    public void postProcess(final boolean merge)
     {
+        List<PolySweepContainer> containers = new ArrayList<PolySweepContainer>();
+        List<Integer> numTiles = new ArrayList<Integer>();
+        List<Callable<List<Area>>> tasks = new ArrayList<Callable<List<Area>>>();
+
         for (Object obj : layers.values())
         {
             PolySweepContainer container = (PolySweepContainer)obj;
             if (container == null) continue;
 
             Collections.sort(container.areas, areaSort);
-            double maxXSweep = -Double.MAX_VALUE;
-            Area areaXTmp = null;
-            List<Area> twoFrontierAreas = new ArrayList<Area>();
-            List<Area> tmp = new ArrayList<Area>();
-
-            for (Area geomArea : container.areas)
+            List<List<Area>> clusters = getClusters(container.areas);
+            int tiles = 0;
+            for (int start = 0; start < clusters.size(); )
             {
-                Rectangle2D rectX = geomArea.getBounds2D();
-                double minX = rectX.getX();
-                double maxX = rectX.getMaxX();
-
-                if (minX > maxXSweep)
+                int end = start, size = 0;
+                while (end < clusters.size() && size < TILE_SIZE)
+                    size += clusters.get(end++).size();
+                final List<List<Area>> tile = clusters.subList(start, end);
+                tasks.add(new Callable<List<Area>>()
                 {
-                    // Previous area is 100% disconnected
-                    if (areaXTmp != null)
+                    public List<Area> call()
                     {
-                       sweepYFrontier(twoFrontierAreas, tmp, false);
-                       areaXTmp = null;
+                        List<Area> areas = new ArrayList<Area>();
+                        for (List<Area> cluster : tile)
+                        {
+                            if (merge) areas.add(mergeCluster(cluster));
+                            else sweepYFrontier(areas, cluster, false);
+                        }
+                        return areas;
                     }
-                    tmp.clear();
-                }
-                tmp.add(geomArea);
-                if (areaXTmp == null)
-                {
-                    // First one!
-                    areaXTmp = geomArea;
-                }
-                if (maxX > maxXSweep)
-                    maxXSweep = maxX;
+                });
+                tiles++;
+                start = end;
             }
-            sweepYFrontier(twoFrontierAreas, tmp, false);
-            container.areas = twoFrontierAreas;
-            //container.polyList = null;
+            containers.add(container);
+            numTiles.add(new Integer(tiles));
         }
-    }
 
-    private void mergeProcess()
-    {
-        for (Object obj : layers.values())
+        List<List<Area>> results = runTasks(tasks);
+        int t = 0;
+        for (int i = 0; i < containers.size(); i++)
         {
-            PolySweepContainer container = (PolySweepContainer)obj;
-            if (container == null) continue;
-
-            Collections.sort(container.areas, areaSort);
-            double maxXSweep = -Double.MAX_VALUE;
-            Area areaXTmp = null;
             List<Area> areas = new ArrayList<Area>();
+            for (int j = 0; j < numTiles.get(i).intValue(); j++)
+                areas.addAll(results.get(t++));
+            containers.get(i).areas = areas;
+        }
+    }
 
-            for (Area geom : container.areas)
+    /**
+     * Method to split areas sorted along X into clusters that do not overlap in X.
+     * @param areas the areas, sorted along X.
+     * @return the list of clusters, in X order.
+     */
+    private static List<List<Area>> getClusters(List<Area> areas)
+    {
+        List<List<Area>> clusters = new ArrayList<List<Area>>();
+        double maxXSweep = -Double.MAX_VALUE;
+        List<Area> tmp = null;
+
+        for (Area geom : areas)
+        {
+            Rectangle2D rectX = geom.getBounds2D();
+            double minX = rectX.getX();
+            double maxX = rectX.getMaxX();
+            if (tmp == null || minX > maxXSweep)
             {
-                Rectangle2D rectX = geom.getBounds2D();
-                double minX = rectX.getX();
-                double maxX = rectX.getMaxX();
-                if (minX > maxXSweep)
-                {
-                    // Previous area is 100% disconnected
-                    if (areaXTmp != null)
-                    {
-                       // Note: this comparison is not meant to call Area.equals!
-                       if (!areas.contains(areaXTmp))
-                           areas.add(areaXTmp);
-                       //sweepYFrontier(twoFrontierAreas, tmp, true);
-                       areaXTmp = null;
-                    }
-                }
-                if (areaXTmp == null)
-                {
-                    // First one!
-                    areaXTmp = geom;
-                    areas.add(areaXTmp);
-                }
-                else
-                {
-                    areaXTmp.add(geom);
-                }
-                if (maxX > maxXSweep)
-                    maxXSweep = maxX;
+                // Previous area is 100% disconnected
+                tmp = new ArrayList<Area>();
+                clusters.add(tmp);
             }
-            // Can't use HashSet due to Comparator
-            if (areaXTmp != null && !areas.contains(areaXTmp))
-                areas.add(areaXTmp);
-            container.areas = areas;
-            //sweepYFrontier(twoFrontierAreas, tmp, true);
+            tmp.add(geom);
+            if (maxX > maxXSweep)
+                maxXSweep = maxX;
         }
+        return clusters;
+    }
+
+    /**
+     * Method to merge a cluster of areas into its first area.
+     * @param cluster the areas, sorted along X.
+     * @return the first area, with the others added to it.
+     */
+    private static Area mergeCluster(List<Area> cluster)
+    {
+        Area areaXTmp = cluster.get(0);
+        for (int i = 1; i < cluster.size(); i++)
+            areaXTmp.add(cluster.get(i));
+        return areaXTmp;
     }
 
     private static void sweepYFrontier(List<Area> twoFrontierAreas, List<Area> tmp, boolean merge)
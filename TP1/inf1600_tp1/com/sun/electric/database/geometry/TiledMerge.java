@@ -0,0 +1,418 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: TiledMerge.java
+ *
+ * Copyright (c) 2005 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.technology.Layer;
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to merge the geometry of a whole chip with bounded memory.
+ * <P>
+ * The chip is covered by a grid of tiles. Every shape that is added is written
+ * to the tiles that it overlaps, and the tile buffers are spilled to a temporary
+ * file when they grow too large. Then merge() reads back one tile at a time,
+ * crops its shapes to the tile, merges them in a GeometryHandler, and hands the
+ * result to a TileVisitor. Only one tile is merged in memory at a time.
+ * <P>
+ * Tiles may overlap (e.g. coverage windows that step by less than their size),
+ * in which case shapes are written to every tile that they overlap.
+ */
+public class TiledMerge extends GeometryHandler
+{
+	/** Tile buffers are spilled to disk when they hold this many bytes */	private static final int DEFAULT_SPILL_LIMIT = 8*1024*1024;
+
+	/**
+	 * Interface for the consumers of the merged tiles.
+	 */
+	public interface TileVisitor
+	{
+		/**
+		 * Method called with the merged geometry of each tile, row by row.
+		 * The shapes of the tile are cropped to it, so getObjects() on the handler
+		 * returns polygons that are cut at the tile boundary.
+		 * @param tile the bounds of the tile.
+		 * @param merged the merged geometry of the tile.
+		 * @return false to stop merging.
+		 */
+		public boolean visitTile(Rectangle2D tile, GeometryHandler merged);
+	}
+
+	private final GHMode mode;
+	private final double width, height;
+	/** lower-left corners of the tile columns and rows */	private final double [] tileX, tileY;
+	/** layers, by the index written to the spill records */	private final List<Layer> layerList = new ArrayList<Layer>();
+	/** unspilled records of every tile */						private final ByteArrayOutputStream [] buffers;
+	/** spilled chunks of every tile: offset and length */		private final List<List<long[]>> chunks;
+	private int spillLimit = DEFAULT_SPILL_LIMIT;
+	private int bufferedBytes;
+	private File spillFile;
+	private RandomAccessFile spill;
+	/** first error while spilling, reported by merge() */		private IOException spillError;
+
+	/**
+	 * Method to create a tiled merge that partitions an area into a grid of tiles.
+	 * @param bounds the area to cover (typically the bounds of the chip).
+	 * @param tileSize the width and height of the tiles.
+	 * @param mode the GeometryHandler used to merge each tile.
+	 */
+	public TiledMerge(Rectangle2D bounds, double tileSize, GHMode mode)
+	{
+		this(bounds, tileSize, tileSize, tileSize, tileSize, mode);
+	}
+
+	/**
+	 * Method to create a tiled merge with tiles that start every deltaX and deltaY
+	 * from the lower-left corner of an area, like the windows of an area coverage check.
+	 * @param bounds the area to cover.
+	 * @param width the width of the tiles.
+	 * @param height the height of the tiles.
+	 * @param deltaX the horizontal distance between tiles.
+	 * @param deltaY the vertical distance between tiles.
+	 * @param mode the GeometryHandler used to merge each tile.
+	 */
+	public TiledMerge(Rectangle2D bounds, double width, double height, double deltaX, double deltaY, GHMode mode)
+	{
+		this.mode = mode;
+		this.width = width;
+		this.height = height;
+		tileX = getTileStarts(bounds.getMinX(), bounds.getMaxX(), deltaX);
+		tileY = getTileStarts(bounds.getMinY(), bounds.getMaxY(), deltaY);
+		int numTiles = tileX.length * tileY.length;
+		buffers = new ByteArrayOutputStream[numTiles];
+		chunks = new ArrayList<List<long[]>>(numTiles);
+		for (int i = 0; i < numTiles; i++) chunks.add(null);
+	}
+
+	private static double [] getTileStarts(double min, double max, double delta)
+	{
+		// same accumulation as a loop that steps through the area
+		int count = 0;
+		for (double pos = min; pos < max; pos += delta) count++;
+		double [] starts = new double[Math.max(count, 1)];
+		starts[0] = min;
+		count = 0;
+		for (double pos = min; pos < max; pos += delta) starts[count++] = pos;
+		return starts;
+	}
+
+	/**
+	 * Method to set the number of bytes that tile buffers may hold before they are spilled to disk.
+	 * @param spillLimit the number of bytes.
+	 */
+	public void setSpillLimit(int spillLimit) { this.spillLimit = spillLimit; }
+
+	/**
+	 * Method to return the number of tiles.
+	 * @return the number of tiles.
+	 */
+	public int getNumTiles() { return buffers.length; }
+
+	/**
+	 * Method to add a shape to the tiles that it overlaps.
+	 * @param key the layer of the shape.
+	 * @param value the Shape to add.
+	 */
+	public void add(Layer key, Object value)
+	{
+		if (!(value instanceof Shape))
+		{
+			System.out.println("Error: invalid class for addition in TiledMerge");
+			return;
+		}
+		if (spillError != null) return;
+		Shape shape = (Shape)value;
+		Rectangle2D bounds = shape.getBounds2D();
+		int firstX = getFirstTile(tileX, width, bounds.getMinX());
+		int firstY = getFirstTile(tileY, height, bounds.getMinY());
+		if (firstX >= tileX.length || firstY >= tileY.length) return;
+
+		byte [] record = null;
+		for (int y = firstY; y < tileY.length && tileY[y] < bounds.getMaxY(); y++)
+		{
+			for (int x = firstX; x < tileX.length && tileX[x] < bounds.getMaxX(); x++)
+			{
+				if (record == null) record = makeRecord(getLayerIndex(key), shape);
+				int tile = y * tileX.length + x;
+				if (buffers[tile] == null) buffers[tile] = new ByteArrayOutputStream();
+				buffers[tile].write(record, 0, record.length);
+				bufferedBytes += record.length;
+			}
+		}
+		if (bufferedBytes > spillLimit)
+		{
+			try
+			{
+				spillBuffers();
+			} catch (IOException e)
+			{
+				spillError = e;
+			}
+		}
+	}
+
+	/**
+	 * Method to find the first tile that extends beyond a coordinate.
+	 * @param starts the starting coordinates of the tiles, in increasing order.
+	 * @param size the size of the tiles.
+	 * @param min the coordinate.
+	 * @return the index of the first tile that ends after min.
+	 */
+	private static int getFirstTile(double [] starts, double size, double min)
+	{
+		int lo = 0, hi = starts.length;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (starts[mid] + size > min) hi = mid; else
+				lo = mid + 1;
+		}
+		return lo;
+	}
+
+	private int getLayerIndex(Layer layer)
+	{
+		Integer index = (Integer)layers.get(layer);
+		if (index == null)
+		{
+			index = new Integer(layerList.size());
+			layerList.add(layer);
+			layers.put(layer, index);
+		}
+		return index.intValue();
+	}
+
+	/**
+	 * Method to encode a shape as a record: the layer index, the winding rule,
+	 * the number of path segments, and the type and coordinates of each segment.
+	 */
+	private static byte [] makeRecord(int layerIndex, Shape shape)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		List<double[]> segments = new ArrayList<double[]>();
+		List<Integer> types = new ArrayList<Integer>();
+		PathIterator pi = shape.getPathIterator(null);
+		int windingRule = pi.getWindingRule();
+		for ( ; !pi.isDone(); pi.next())
+		{
+			double [] coords = new double[6];
+			types.add(new Integer(pi.currentSegment(coords)));
+			segments.add(coords);
+		}
+		try
+		{
+			out.writeInt(layerIndex);
+			out.writeByte(windingRule);
+			out.writeInt(segments.size());
+			for (int i = 0; i < segments.size(); i++)
+			{
+				int type = types.get(i).intValue();
+				double [] coords = segments.get(i);
+				out.writeByte(type);
+				for (int j = 0; j < getNumCoords(type); j++)
+					out.writeDouble(coords[j]);
+			}
+			out.flush();
+		} catch (IOException e)
+		{
+			// cannot happen when writing to memory
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static int getNumCoords(int segmentType)
+	{
+		switch (segmentType)
+		{
+			case PathIterator.SEG_MOVETO:
+			case PathIterator.SEG_LINETO:
+				return 2;
+			case PathIterator.SEG_QUADTO:
+				return 4;
+			case PathIterator.SEG_CUBICTO:
+				return 6;
+		}
+		return 0;
+	}
+
+	/**
+	 * Method to append every tile buffer to the spill file.
+	 */
+	private void spillBuffers()
+		throws IOException
+	{
+		if (spill == null)
+		{
+			spillFile = File.createTempFile("elec", ".tiles");
+			spillFile.deleteOnExit();
+			spill = new RandomAccessFile(spillFile, "rw");
+		}
+		for (int tile = 0; tile < buffers.length; tile++)
+		{
+			ByteArrayOutputStream buffer = buffers[tile];
+			if (buffer == null || buffer.size() == 0) continue;
+			List<long[]> tileChunks = chunks.get(tile);
+			if (tileChunks == null)
+			{
+				tileChunks = new ArrayList<long[]>();
+				chunks.set(tile, tileChunks);
+			}
+			long offset = spill.length();
+			spill.seek(offset);
+			spill.write(buffer.toByteArray());
+			tileChunks.add(new long[] {offset, buffer.size()});
+			buffers[tile] = null;
+		}
+		bufferedBytes = 0;
+	}
+
+	/**
+	 * Method to merge the tiles one at a time, in rows from the bottom.
+	 * The temporary file is deleted when done, so this can only be called once.
+	 * @param visitor the consumer of the merged tiles.
+	 * @return false if the visitor stopped the merge.
+	 * @throws IOException if the shapes could not be spilled or read back.
+	 */
+	public boolean merge(TileVisitor visitor)
+		throws IOException
+	{
+		try
+		{
+			if (spillError != null) throw spillError;
+			for (int y = 0; y < tileY.length; y++)
+			{
+				for (int x = 0; x < tileX.length; x++)
+				{
+					Rectangle2D tile = new Rectangle2D.Double(tileX[x], tileY[y], width, height);
+					GeometryHandler merged = mergeTile(y * tileX.length + x, tile);
+					if (!visitor.visitTile(tile, merged)) return false;
+				}
+			}
+			return true;
+		} finally
+		{
+			dispose();
+		}
+	}
+
+	/**
+	 * Method to read the shapes of a tile, crop them to the tile and merge them.
+	 */
+	private GeometryHandler mergeTile(int index, Rectangle2D tile)
+		throws IOException
+	{
+		GeometryHandler merged = GeometryHandler.createGeometryHandler(mode, layerList.size());
+		merged.setNumThreads(numThreads);
+		Area tileArea = new Area(tile);
+		List<long[]> tileChunks = chunks.get(index);
+		if (tileChunks != null)
+		{
+			for (long [] chunk : tileChunks)
+			{
+				byte [] bytes = new byte[(int)chunk[1]];
+				spill.seek(chunk[0]);
+				spill.readFully(bytes);
+				addRecords(bytes, tileArea, merged);
+			}
+			chunks.set(index, null);
+		}
+		if (buffers[index] != null)
+		{
+			addRecords(buffers[index].toByteArray(), tileArea, merged);
+			buffers[index] = null;
+		}
+		merged.postProcess(true);
+		return merged;
+	}
+
+	private void addRecords(byte [] bytes, Area tileArea, GeometryHandler merged)
+		throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		while (in.available() > 0)
+		{
+			Layer layer = layerList.get(in.readInt());
+			Path2D.Double path = new Path2D.Double(in.readByte());
+			int numSegments = in.readInt();
+			double [] coords = new double[6];
+			for (int i = 0; i < numSegments; i++)
+			{
+				int type = in.readByte();
+				for (int j = 0; j < getNumCoords(type); j++)
+					coords[j] = in.readDouble();
+				switch (type)
+				{
+					case PathIterator.SEG_MOVETO:  path.moveTo(coords[0], coords[1]);   break;
+					case PathIterator.SEG_LINETO:  path.lineTo(coords[0], coords[1]);   break;
+					case PathIterator.SEG_QUADTO:  path.quadTo(coords[0], coords[1], coords[2], coords[3]);   break;
+					case PathIterator.SEG_CUBICTO: path.curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);   break;
+					case PathIterator.SEG_CLOSE:   path.closePath();   break;
+				}
+			}
+
+			// crop to the tile
+			Area area = new Area(path);
+			area.intersect(tileArea);
+			if (area.isEmpty()) continue;
+			merged.add(layer, area);
+		}
+	}
+
+	/**
+	 * Method to release the temporary file and the tile buffers.
+	 */
+	public void dispose()
+	{
+		for (int i = 0; i < buffers.length; i++)
+		{
+			buffers[i] = null;
+			chunks.set(i, null);
+		}
+		bufferedBytes = 0;
+		if (spill != null)
+		{
+			try
+			{
+				spill.close();
+			} catch (IOException e) {}
+			spill = null;
+			spillFile.delete();
+		}
+	}
+}
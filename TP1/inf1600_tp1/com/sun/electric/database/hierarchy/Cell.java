@@ -52,6 +52,7 @@ import com.sun.electric.database.topology.Geometric;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.database.topology.RTBounds;
+import com.sun.electric.database.topology.RTNode;
 import com.sun.electric.database.topology.Topology;
 import com.sun.electric.database.variable.EditWindow0;
 import com.sun.electric.database.variable.ElectricObject;
@@ -94,6 +95,8 @@ import java.util.TreeSet;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
+import javax.swing.SwingUtilities;
+
 /**
  * A Cell is a non-primitive NodeProto.
  * Besides the information that it inherits from NodeProto, the Cell holds a
@@ -369,6 +372,10 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
     /** Last backup of this Cell */                                 CellBackup backup;
     /** True if cell together with contents matches cell backup. */ boolean cellBackupFresh;
     /** True if cell contents matches cell backup. */               private boolean cellContentsFresh;
+    /** Loader of contents deferred at library read, or null. */    private ContentsLoader contentsLoader;
+    /** True if deferred contents are not instantiated yet. */      private boolean contentsDeferred;
+    /** Backup of this Cell before deferred contents were loaded. */private CellBackup deferredBackup;
+    /** Backup of this Cell after deferred contents were loaded. */ private CellBackup loadedBackup;
 
 
 	// ------------------ protected and private methods -----------------------
@@ -387,6 +394,19 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
     private Object writeReplace() throws ObjectStreamException { return new CellKey(this); }
     private Object readResolve() throws ObjectStreamException { throw new InvalidObjectException("Cell"); }
 
+    /**
+     * Interface for instantiating the contents of a Cell whose contents were deferred
+     * when its library was read.
+     */
+    public interface ContentsLoader {
+        /**
+         * Method to instantiate the contents of a Cell.
+         * It is called in a thread that is allowed to change the database.
+         * @param cell the Cell to fill.
+         */
+        public void loadContents(Cell cell);
+    }
+
     private static class CellKey extends EObjectInputStream.Key {
         CellId cellId;
 
@@ -1063,6 +1083,8 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
 
     private void update(boolean full, CellBackup newBackup, BitSet exportsModified) {
         checkUndoing();
+        if (deferredBackup != null)
+            contentsDeferred = newBackup == deferredBackup;
         boundsDirty = BOUNDS_RECOMPUTE;
         unfreshRTree();
      	this.d = newBackup.d;
@@ -1300,6 +1322,21 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
         return topology.searchIterator(bounds, includeEdges);
     }
 
+    /**
+	 * Method to pass all RTBounds objects in a given area of this Cell to a visitor.
+     * This is an allocation-free alternative to searchIterator for tight search loops.
+	 * @param lX the low X coordinate of the area to search.
+	 * @param lY the low Y coordinate of the area to search.
+	 * @param hX the high X coordinate of the area to search.
+	 * @param hY the high Y coordinate of the area to search.
+     * @param includeEdges true if RTBounds objects along edges are considered in.
+     * @param visitor the visitor that receives the RTBounds objects in that area.
+	 * @return false if the visitor stopped the search.
+	 */
+    public boolean search(double lX, double lY, double hX, double hY, boolean includeEdges, RTNode.SearchVisitor visitor) {
+        return topology.search(lX, lY, hX, hY, includeEdges, visitor);
+    }
+
 	/**
 	 * Method to return the bounds of this Cell.
 	 * @return an ERectangle with the bounds of this cell's contents
@@ -1864,6 +1901,7 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
 	 */
 	public synchronized Iterator<NodeInst> getNodes()
 	{
+        loadDeferredContents();
         ArrayList<NodeInst> nodesCopy = new ArrayList<NodeInst>(nodes);
 		return nodesCopy.iterator();
 	}
@@ -1874,6 +1912,7 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
 	 */
 	public synchronized Iterator<Nodable> getNodables()
 	{
+        loadDeferredContents();
         ArrayList<Nodable> nodesCopy = new ArrayList<Nodable>(nodes);
 		return nodesCopy.iterator();
 	}
@@ -1883,6 +1922,17 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
 	 * @return the number of NodeInst objects in this Cell.
 	 */
 	public int getNumNodes()
+	{
+        loadDeferredContents();
+		return nodes.size();
+	}
+
+	/**
+	 * Method to return the number of NodeInst objects that are instantiated in this Cell.
+	 * Unlike getNumNodes, it doesn't load contents that were deferred when the library was read.
+	 * @return the number of NodeInst objects that are instantiated in this Cell.
+	 */
+	public int getNumInstantiatedNodes()
 	{
 		return nodes.size();
 	}
@@ -2002,6 +2052,7 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
 	 */
 	public NodeInst findNode(String name)
 	{
+        loadDeferredContents();
 		int nodeIndex = searchNode(name);
 		return nodeIndex >= 0 ? nodes.get(nodeIndex) : null;
 	}
@@ -2273,13 +2324,13 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
 	 * Method to return an Iterator over all ArcInst objects in this Cell.
 	 * @return an Iterator over all ArcInst objects in this Cell.
 	 */
-	public synchronized Iterator<ArcInst> getArcs() { return getTopology().getArcs(); }
+	public synchronized Iterator<ArcInst> getArcs() { loadDeferredContents(); return getTopology().getArcs(); }
 
 	/**
 	 * Method to return the number of ArcInst objects in this Cell.
 	 * @return the number of ArcInst objects in this Cell.
 	 */
-	public int getNumArcs() { return topology.getNumArcs(); }
+	public int getNumArcs() { loadDeferredContents(); return topology.getNumArcs(); }
 
 	/**
 	 * Method to return the ArcInst at specified position.
@@ -3983,6 +4034,94 @@ public class Cell extends ElectricObject implements NodeProto, Comparable<Cell>
     
     private void unfreshRTree() { topology.unfreshRTree(); }
     
+    /**
+     * Method to defer instantiation of the contents of this Cell.
+     * The contents are instantiated by the loader when they are first needed
+     * in a thread that is allowed to change the database.
+     * The exports of this Cell must already be instantiated, so its ports are known while its contents are deferred.
+     * This method is used by library readers.
+     * @param loader the loader of contents of this Cell.
+     */
+    public void lowLevelDeferContents(ContentsLoader loader) {
+        contentsLoader = loader;
+        contentsDeferred = true;
+        deferredBackup = null;
+    }
+
+    /**
+     * Method to tell whether the contents of this Cell are not instantiated yet.
+     * @return true if the contents of this Cell were deferred and are not instantiated yet.
+     */
+    public boolean isContentsDeferred() { return contentsDeferred; }
+
+    /**
+     * Method to instantiate the contents of this Cell if they were deferred when its library was read.
+     * An EXAMINE job gets the hierarchy of its "downCell" loaded by a CHANGE job started before it.
+     * In the GUI thread the contents read so far are left as they are; the EditWindow loads the cell it shows.
+     * The loader is dropped once the contents are loaded. If the loading is undone, the contents become
+     * deferred again and are instantiated from the backup that was made after the first loading.
+     * @throws IllegalStateException if the contents are deferred and can't be loaded in this thread.
+     */
+    public void loadDeferredContents() {
+        if (!contentsDeferred) return;
+        if (!database.canComputeBounds()) {
+            if (SwingUtilities.isEventDispatchThread()) return;
+            throw new IllegalStateException("Contents of " + this + " are not loaded");
+        }
+        contentsDeferred = false;
+        deferredBackup = backup();
+        if (loadedBackup == null) {
+            contentsLoader.loadContents(this);
+            contentsLoader = null;
+            loadedBackup = backup();
+        } else {
+            for (ImmutableNodeInst nd : loadedBackup.nodes) {
+                if (getNodeById(nd.nodeId) == null)
+                    NodeInst.newInstance(this, nd);
+            }
+            for (ImmutableArcInst ad : loadedBackup.arcs)
+                ArcInst.newInstance(this, ad);
+        }
+        Constraints.getCurrent().loadCellContents(this);
+    }
+
+    /**
+     * Method to instantiate the deferred contents of this Cell and of all Cells below it in the hierarchy.
+     * The contents views of icons are loaded too.
+     */
+    public void loadDeferredHierarchy() { loadDeferredHierarchy(new HashSet<Cell>()); }
+
+    private void loadDeferredHierarchy(HashSet<Cell> visited) {
+        if (!visited.add(this)) return;
+        loadDeferredContents();
+        Cell contents = contentsView();
+        if (contents != null) contents.loadDeferredHierarchy(visited);
+        for (int i = 0; i < nodes.size(); i++) {
+            NodeInst ni = nodes.get(i);
+            if (ni.isCellInstance())
+                ((Cell)ni.getProto()).loadDeferredHierarchy(visited);
+        }
+    }
+
+    /**
+     * Method to tell whether this Cell or some Cell below it in the hierarchy has deferred contents.
+     * The contents views of icons are examined too.
+     * @return true if loadDeferredHierarchy would instantiate some contents.
+     */
+    public boolean hasDeferredHierarchy() { return hasDeferredHierarchy(new HashSet<Cell>()); }
+
+    private boolean hasDeferredHierarchy(HashSet<Cell> visited) {
+        if (!visited.add(this)) return false;
+        if (contentsDeferred) return true;
+        Cell contents = contentsView();
+        if (contents != null && contents.hasDeferredHierarchy(visited)) return true;
+        for (int i = 0; i < nodes.size(); i++) {
+            NodeInst ni = nodes.get(i);
+            if (ni.isCellInstance() && ((Cell)ni.getProto()).hasDeferredHierarchy(visited)) return true;
+        }
+        return false;
+    }
+
     /**
      * Method to load isExpanded status of subcell instances from Preferences.
      */    
@@ -0,0 +1,291 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: FlatNetlist.java
+ *
+ * Copyright (c) 2003 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.hierarchy;
+
+import com.sun.electric.database.hierarchy.HierarchyEnumerator.CellShorts;
+import com.sun.electric.database.hierarchy.HierarchyEnumerator.NetNameProxy;
+import com.sun.electric.database.hierarchy.HierarchyEnumerator.NodableNameProxy;
+import com.sun.electric.database.network.Global;
+import com.sun.electric.database.network.Netlist;
+import com.sun.electric.database.network.Network;
+import com.sun.electric.database.variable.VarContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * A FlatNetlist is the completely expanded hierarchy of a Cell stored in primitive arrays.
+ * It numbers nets and cell instances the same way as HierarchyEnumerator does
+ * when its Visitor descends into every cell instance.
+ *
+ * <p>Each Cell of the hierarchy is described once by a template: its shortened nets and
+ * the connections of its subcell instances. A cell instance costs only a few ints:
+ * its template, its parent, its position among the subcell instances of the parent,
+ * the first of its own net ids and the net ids of its exports.
+ * No CellInfo, VarContext or name is created during flattening; NameProxies are made
+ * on request.
+ *
+ * <p>Instance 0 is the root Cell.
+ */
+public final class FlatNetlist {
+	/**
+	 * Shared description of all instances of a Cell.
+	 */
+	private static class CellTemplate {
+		/** The Cell */													final Cell cell;
+		/** The Netlist of the Cell */									final Netlist netlist;
+		/** Map from net index to local id of shortened net */			final int[] net2id;
+		/** Number of local ids. */										final int numIds;
+		/** Local ids below this are connected to exports or globals */	final int numExternals;
+		/** Net index of network which names a local id */				final int[] idToNet;
+		/** Expanded subcell instances */								Nodable[] subInsts;
+		/** Templates of expanded subcell instances */					CellTemplate[] subTemplates;
+		/** External ids of subcell instance to local ids */			int[][] subExternals;
+
+		CellTemplate(Cell cell, Netlist netlist, CellShorts shorts) {
+			this.cell = cell;
+			this.netlist = netlist;
+			net2id = shorts.net2id;
+			numIds = shorts.totalIds;
+			numExternals = shorts.externalIds.length;
+			idToNet = new int[numIds];
+			Arrays.fill(idToNet, -1);
+			for (int i = 0; i < net2id.length; i++) {
+				int id = net2id[i];
+				if (idToNet[id] < 0 ||
+					HierarchyEnumerator.compareNetNames(netlist.getNetwork(i), netlist.getNetwork(idToNet[id])) < 0)
+					idToNet[id] = i;
+			}
+		}
+	}
+
+	/** Root Cell */														private final Cell root;
+	/** VarContext of root Cell */											private final VarContext rootContext;
+	/** Enumerator which shortens nets */									private final HierarchyEnumerator enumerator;
+	/** Templates by Cell */												private final HashMap<Cell,CellTemplate> templates = new HashMap<Cell,CellTemplate>();
+
+	/** Number of instances */												private int numInsts;
+	/** Template of an instance */											private CellTemplate[] instTemplate = new CellTemplate[16];
+	/** Parent of an instance, -1 for root */								private int[] instParent = new int[16];
+	/** Index of an instance in subInsts of parent template */				private int[] instNodable = new int[16];
+	/** Net id of first local net of an instance */							private int[] instNetBase = new int[16];
+	/** Offset of external net ids of an instance in extIds */				private int[] instExtBase = new int[16];
+	/** External net ids of all instances */								private int[] extIds = new int[64];
+	/** Used length of extIds */											private int numExtIds;
+	/** Number of nets */													private int numNets;
+
+	FlatNetlist(HierarchyEnumerator enumerator, Cell root, VarContext rootContext, Netlist netlist) {
+		this.enumerator = enumerator;
+		this.root = root;
+		this.rootContext = rootContext;
+		CellTemplate rootTemplate = getTemplate(root, netlist);
+		addInstance(rootTemplate, -1, -1);
+		trim();
+	}
+
+	private CellTemplate getTemplate(Cell cell, Netlist netlist) {
+		CellTemplate t = templates.get(cell);
+		if (t != null) return t;
+		t = new CellTemplate(cell, netlist, enumerator.getShortened(cell, netlist));
+		ArrayList<Nodable> subInsts = new ArrayList<Nodable>();
+		ArrayList<CellTemplate> subTemplates = new ArrayList<CellTemplate>();
+		ArrayList<int[]> subExternals = new ArrayList<int[]>();
+		for (Iterator<Nodable> it = netlist.getNodables(); it.hasNext(); ) {
+			Nodable no = it.next();
+			if (!no.isCellInstance()) continue;
+			Cell subCell = (Cell)no.getProto();
+			if (subCell.isIcon()) continue;
+			Netlist subNetlist = netlist.getNetlist(no);
+			CellTemplate st = getTemplate(subCell, subNetlist);
+			int[] ext = new int[st.numExternals];
+			Global.Set gs = subNetlist.getGlobals();
+			for (int i = 0; i < gs.size(); i++) {
+				Global g = gs.get(i);
+				int subId = st.net2id[subNetlist.getNetwork(g).getNetIndex()];
+				ext[subId] = t.net2id[netlist.getNetwork(no, g).getNetIndex()];
+			}
+			for (int i = 0, numPorts = subCell.getNumPorts(); i < numPorts; i++) {
+				Export export = subCell.getPort(i);
+				for (int j = 0, busWidth = subNetlist.getBusWidth(export); j < busWidth; j++) {
+					int subId = st.net2id[subNetlist.getNetwork(export, j).getNetIndex()];
+					ext[subId] = t.net2id[netlist.getNetwork(no, export, j).getNetIndex()];
+				}
+			}
+			subInsts.add(no);
+			subTemplates.add(st);
+			subExternals.add(ext);
+		}
+		t.subInsts = subInsts.toArray(new Nodable[subInsts.size()]);
+		t.subTemplates = subTemplates.toArray(new CellTemplate[subTemplates.size()]);
+		t.subExternals = subExternals.toArray(new int[subExternals.size()][]);
+		templates.put(cell, t);
+		return t;
+	}
+
+	private void addInstance(CellTemplate t, int parent, int nodableIndex) {
+		int inst = numInsts++;
+		if (inst == instParent.length) {
+			int newLength = inst*2;
+			instTemplate = Arrays.copyOf(instTemplate, newLength);
+			instParent = Arrays.copyOf(instParent, newLength);
+			instNodable = Arrays.copyOf(instNodable, newLength);
+			instNetBase = Arrays.copyOf(instNetBase, newLength);
+			instExtBase = Arrays.copyOf(instExtBase, newLength);
+		}
+		instTemplate[inst] = t;
+		instParent[inst] = parent;
+		instNodable[inst] = nodableIndex;
+		instExtBase[inst] = numExtIds;
+		if (parent >= 0) {
+			int[] ext = instTemplate[parent].subExternals[nodableIndex];
+			if (numExtIds + ext.length > extIds.length)
+				extIds = Arrays.copyOf(extIds, Math.max(extIds.length*2, numExtIds + ext.length));
+			for (int i = 0; i < ext.length; i++)
+				extIds[numExtIds + i] = getNetID(parent, ext[i]);
+			numExtIds += ext.length;
+			instNetBase[inst] = numNets;
+			numNets += t.numIds - t.numExternals;
+		} else {
+			instNetBase[inst] = numNets;
+			numNets += t.numIds;
+		}
+		for (int i = 0; i < t.subInsts.length; i++)
+			addInstance(t.subTemplates[i], inst, i);
+	}
+
+	private void trim() {
+		instTemplate = Arrays.copyOf(instTemplate, numInsts);
+		instParent = Arrays.copyOf(instParent, numInsts);
+		instNodable = Arrays.copyOf(instNodable, numInsts);
+		instNetBase = Arrays.copyOf(instNetBase, numInsts);
+		instExtBase = Arrays.copyOf(instExtBase, numInsts);
+		extIds = Arrays.copyOf(extIds, numExtIds);
+	}
+
+	private int getNetID(int inst, int localId) {
+		if (instParent[inst] < 0) return localId;
+		int numExternals = instTemplate[inst].numExternals;
+		if (localId < numExternals) return extIds[instExtBase[inst] + localId];
+		return instNetBase[inst] + localId - numExternals;
+	}
+
+	// ------------------------ public methods --------------------------
+
+	/** Get the root Cell of this FlatNetlist. */
+	public Cell getRoot() { return root; }
+
+	/** Get the number of cell instances, including the root. */
+	public int getNumInstances() { return numInsts; }
+
+	/** Get the number of nets in the flattened hierarchy. */
+	public int getNumNets() { return numNets; }
+
+	/** Get the number of different Cells in the flattened hierarchy. */
+	public int getNumCells() { return templates.size(); }
+
+	/** Get the Cell of an instance. */
+	public Cell getCell(int inst) { return instTemplate[inst].cell; }
+
+	/** Get the Netlist of the Cell of an instance. */
+	public Netlist getNetlist(int inst) { return instTemplate[inst].netlist; }
+
+	/** Get the parent instance of an instance, or -1 for the root. */
+	public int getParent(int inst) { return instParent[inst]; }
+
+	/** Get the Nodable in the parent Cell which makes an instance, or null for the root. */
+	public Nodable getNodable(int inst) {
+		int parent = instParent[inst];
+		return parent >= 0 ? instTemplate[parent].subInsts[instNodable[inst]] : null;
+	}
+
+	/**
+	 * Get the net id of a Network in the Cell of an instance.
+	 * It is the same as CellInfo.getNetID of HierarchyEnumerator.
+	 * @param inst the instance.
+	 * @param net Network in the Netlist of the instance.
+	 * @return the net id.
+	 */
+	public int getNetID(int inst, Network net) {
+		return getNetID(inst, instTemplate[inst].net2id[net.getNetIndex()]);
+	}
+
+	/**
+	 * Get the instance which is closest to the root among instances which contain a net.
+	 * @param netID the net id.
+	 * @return the instance.
+	 */
+	public int getNetInstance(int netID) {
+		// instNetBase is nondecreasing, the owner is the last instance with base <= netID
+		int lo = 0, hi = numInsts - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (instNetBase[mid] <= netID)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Get the Network which names a net. It is in the instance returned by getNetInstance.
+	 * @param netID the net id.
+	 * @return the Network.
+	 */
+	public Network getNetwork(int netID) {
+		int inst = getNetInstance(netID);
+		CellTemplate t = instTemplate[inst];
+		int localId = netID - instNetBase[inst] + (instParent[inst] >= 0 ? t.numExternals : 0);
+		return t.netlist.getNetwork(t.idToNet[localId]);
+	}
+
+	/**
+	 * Get the VarContext of an instance. The VarContext is built on each call.
+	 * @param inst the instance.
+	 * @return the VarContext.
+	 */
+	public VarContext getContext(int inst) {
+		int parent = instParent[inst];
+		if (parent < 0) return rootContext;
+		return getContext(parent).push(instTemplate[parent].subInsts[instNodable[inst]]);
+	}
+
+	/** Get a unique, flat net name for a net. */
+	public String getUniqueNetName(int netID, String sep) {
+		return getUniqueNetNameProxy(netID, sep).toString();
+	}
+
+	/** Same as getUniqueNetName except it returns a NameProxy instead of a String name. */
+	public NetNameProxy getUniqueNetNameProxy(int netID, String sep) {
+		int inst = getNetInstance(netID);
+		return new NetNameProxy(getContext(inst), sep, getNetwork(netID));
+	}
+
+	/** Get a NameProxy of a Nodable in the Cell of an instance. */
+	public NodableNameProxy getUniqueNodableNameProxy(int inst, Nodable no, String sep) {
+		return new NodableNameProxy(getContext(inst), sep, no);
+	}
+}
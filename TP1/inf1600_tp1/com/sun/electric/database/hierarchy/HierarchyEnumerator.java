@@ -30,6 +30,11 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.sun.electric.database.CellUsage;
 import com.sun.electric.database.network.Global;
@@ -130,7 +135,7 @@ public final class HierarchyEnumerator {
      * "externalIds" are connected to exports or globals, "localIds" are not.
      * "ne
      */
-    private static class CellShorts {
+    static class CellShorts {
         /** The netlist of the Cell */
 //        private Netlist netlist;
         /** Number of new nets connected to exports and globals. */
@@ -179,7 +184,29 @@ public final class HierarchyEnumerator {
 	private int instCnt = 0; // For statistics
 
 	private List<NetDescription> netIdToNetDesc = new ArrayList<NetDescription>();
+	private int netIDCount = 0;
     private HashMap<Cell,CellShorts>cellShortsMap = new HashMap<Cell,CellShorts>();
+	/** Thread pool of parallel enumeration, null in subtree enumerators */
+	private ExecutorService pool;
+	/** Subtrees with no more net ids than this are enumerated by pool */
+	private int maxSubtreeIds;
+	/** Number of net ids in each subtree */
+	private HashMap<Cell,Integer> subtreeIdsMap;
+	/** Summaries of Cells computed by MemoizingVisitor, shared by all enumerators of one enumeration */
+	private HashMap<Cell,Object> summaries = new HashMap<Cell,Object>();
+
+	/**
+	 * A subtree which is enumerated by another HierarchyEnumerator on the thread pool.
+	 */
+	private static class Subtree {
+		private final HierarchyEnumerator enumerator;
+		private final Future<Object> future;
+
+		private Subtree(HierarchyEnumerator enumerator, Future<Object> future) {
+			this.enumerator = enumerator;
+			this.future = future;
+		}
+	}
 
 	private static void error(boolean pred, String msg) {
 		LayoutLib.error(pred, msg);
@@ -188,7 +215,7 @@ public final class HierarchyEnumerator {
 	// Prevent anyone from instantiating HierarchyEnumerator.
 	private HierarchyEnumerator() {	}
 
-    private CellShorts getShortened(Cell cell, Netlist netlist) {
+    CellShorts getShortened(Cell cell, Netlist netlist) {
         CellShorts shorts = cellShortsMap.get(cell);
         if (shorts != null) return shorts;
 
@@ -251,7 +278,35 @@ public final class HierarchyEnumerator {
 		return shorts;
 	}
 
-    private int nextNetID() { return netIdToNetDesc.size(); }
+    private int nextNetID() { return netIDCount; }
+
+	private void addNetDescription(NetDescription nd) {
+		// In parallel enumeration netIdToNetDesc is preallocated
+		if (netIDCount < netIdToNetDesc.size())
+			netIdToNetDesc.set(netIDCount, nd);
+		else
+			netIdToNetDesc.add(nd);
+		netIDCount++;
+	}
+
+	/**
+	 * Returns the number of net ids which are numbered in an instance of the Cell
+	 * and in instances below it, excluding ids of exports and globals.
+	 */
+	private int getSubtreeIds(Cell cell, Netlist netlist) {
+		Integer ids = subtreeIdsMap.get(cell);
+		if (ids != null) return ids.intValue();
+		CellShorts shorts = cellShortsMap.get(cell);
+		int numIds = shorts.totalIds - shorts.externalIds.length;
+		for (Iterator<Nodable> it = netlist.getNodables(); it.hasNext();) {
+			Nodable ni = it.next();
+			NodeProto np = ni.getProto();
+			if (ni.isCellInstance() && !((Cell)np).isIcon())
+				numIds += getSubtreeIds((Cell)np, netlist.getNetlist(ni));
+		}
+		subtreeIdsMap.put(cell, Integer.valueOf(numIds));
+		return numIds;
+	}
 
 	private int[] numberNets(Cell cell, Netlist netlist, 
 							 int[][] portNdxToNetIDs, CellInfo info) {
@@ -259,7 +314,9 @@ public final class HierarchyEnumerator {
         CellShorts shorts = cellShortsMap.get(cell);
 		int[] netNdxToNetID = new int[numNets];
         int baseId = nextNetID();
-        Arrays.fill(shorts.externalIds, -1);
+        // a private copy because subtrees may be numbered on several threads
+        int[] externalIds = new int[shorts.externalIds.length];
+        Arrays.fill(externalIds, -1);
 		if (portNdxToNetIDs != null) {
 			assert portNdxToNetIDs.length == cell.getNumPorts() + 1;
 			Global.Set globals = netlist.getGlobals();
@@ -267,7 +324,7 @@ public final class HierarchyEnumerator {
 			for (int i = 0; i < globals.size(); i++) {
 				Global global = globals.get(i);
 				int netIndex = netlist.getNetwork(global).getNetIndex();
-                shorts.externalIds[shorts.net2id[netIndex]] = portNdxToNetIDs[0][i];
+                externalIds[shorts.net2id[netIndex]] = portNdxToNetIDs[0][i];
 			}
 			for (int i = 0, numPorts = cell.getNumPorts(); i < numPorts; i++) {
 				Export export = cell.getPort(i);
@@ -275,38 +332,47 @@ public final class HierarchyEnumerator {
 				assert ids.length == export.getNameKey().busWidth();
 				for (int j=0; j<ids.length; j++) {
 					int netIndex = netlist.getNetwork(export, j).getNetIndex();
-                    shorts.externalIds[shorts.net2id[netIndex]] = ids[j];
+                    externalIds[shorts.net2id[netIndex]] = ids[j];
 				}
 			}
-            for (int i = 0; i < shorts.externalIds.length; i++)
-                assert shorts.externalIds[i] >= 0;
-            baseId -= shorts.externalIds.length;
+            for (int i = 0; i < externalIds.length; i++)
+                assert externalIds[i] >= 0;
+            baseId -= externalIds.length;
         }
 		for (int i = 0; i < numNets; i++) {
 			Network net = netlist.getNetwork(i);
             int localId = shorts.net2id[i];
             assert baseId + localId <= nextNetID();
             if (baseId + localId == nextNetID()) {
-                if (portNdxToNetIDs == null && localId < shorts.externalIds.length)
-                    shorts.externalIds[localId] = localId;
+                if (portNdxToNetIDs == null && localId < externalIds.length)
+                    externalIds[localId] = localId;
                 assert nextNetID() == baseId + localId;
-                netIdToNetDesc.add(new NetDescription(net, info));
-            } else if (localId >= shorts.externalIds.length || portNdxToNetIDs == null) {
+                addNetDescription(new NetDescription(net, info));
+            } else if (localId >= externalIds.length || portNdxToNetIDs == null) {
                 NetDescription nd = netIdToNetDesc.get(baseId + localId);
-                int cmp = !net.isUsernamed() ? 1 : nd.net.isUsernamed() ? 0 : -1; 
-                if (cmp == 0 && net.isExported() != nd.net.isExported())
-                    cmp = net.isExported() ? -1 : 1;
-                if (cmp == 0)
-                    cmp = TextUtils.STRING_NUMBER_ORDER.compare(net.getName(), nd.net.getName());
-                if (cmp < 0)
+                if (compareNetNames(net, nd.net) < 0)
                     nd.net = net;
             }
-            int id = localId < shorts.externalIds.length ? shorts.externalIds[localId] : baseId + localId;
+            int id = localId < externalIds.length ? externalIds[localId] : baseId + localId;
             netNdxToNetID[i] = id;
 		}
 		return netNdxToNetID;
 	}
 	
+	/**
+	 * Compares networks which are shortened to the same net.
+	 * Network with a better name (usernamed, then exported, then smaller) names the net.
+	 * @return negative if net has a better name than oldNet.
+	 */
+	static int compareNetNames(Network net, Network oldNet) {
+		int cmp = !net.isUsernamed() ? 1 : oldNet.isUsernamed() ? 0 : -1;
+		if (cmp == 0 && net.isExported() != oldNet.isExported())
+			cmp = net.isExported() ? -1 : 1;
+		if (cmp == 0)
+			cmp = TextUtils.STRING_NUMBER_ORDER.compare(net.getName(), oldNet.getName());
+		return cmp;
+	}
+
 	private static int[] getGlobalNetIDs(Nodable no, Netlist netlist, int[] netNdxToNetID) {
 		Global.Set gs = netlist.getNetlist(no).getGlobals();
 		int[] netIDs = new int[gs.size()];
@@ -362,6 +428,7 @@ public final class HierarchyEnumerator {
 		boolean enumInsts = visitor.enterCell(info);
 		if (!enumInsts) return;
 
+		List<Subtree> subtrees = null;
 		for (Iterator<Nodable> it = netlist.getNodables(); it.hasNext();) {
 			Nodable ni = it.next();
 
@@ -377,12 +444,21 @@ public final class HierarchyEnumerator {
 					xformToRoot2.concatenate(((NodeInst)ni).rotateOut());
 					xformToRoot2.concatenate(((NodeInst)ni).translateOut());
 				}
-				enumerateCell(ni, (Cell)np, 
-							  caching ? context.pushCaching(ni): context.push(ni), 
-							  netlist.getNetlist(ni), 
-							  portNmToNetIDs2, xformToRoot2, info);
+				VarContext context2 = caching ? context.pushCaching(ni): context.push(ni);
+				Netlist netlist2 = netlist.getNetlist(ni);
+				if (visitor instanceof MemoizingVisitor && ((MemoizingVisitor<?>)visitor).isMemoizable((Cell)np)) {
+					applySummary((MemoizingVisitor<?>)visitor, ni, (Cell)np, netlist2, xformToRoot2, info);
+				} else if (pool != null && getSubtreeIds((Cell)np, netlist2) <= maxSubtreeIds) {
+					if (subtrees == null) subtrees = new ArrayList<Subtree>();
+					subtrees.add(submitSubtree(ni, (Cell)np, context2, netlist2,
+											   portNmToNetIDs2, xformToRoot2, info));
+				} else {
+					enumerateCell(ni, (Cell)np, context2, netlist2,
+								  portNmToNetIDs2, xformToRoot2, info);
+				}
 			}
 		}
+		if (subtrees != null) joinSubtrees(subtrees);
 
 		visitor.exitCell(info);
 		
@@ -395,12 +471,95 @@ public final class HierarchyEnumerator {
 		}
 	}
 
+	/**
+	 * Applies the summary of a Cell to its instance. The summary is computed by
+	 * enumeration of the Cell with a summary Visitor when the Cell is met first time.
+	 */
+	private <S> void applySummary(MemoizingVisitor<S> mv, Nodable ni, Cell cell, Netlist netlist,
+								  AffineTransform xformToRoot, CellInfo parent) {
+		S summary;
+		synchronized (summaries) {
+			// all summaries of one enumeration come from the summary Visitors of one MemoizingVisitor<S>
+			@SuppressWarnings("unchecked") S cached = (S)summaries.get(cell);
+			summary = cached;
+		}
+		if (summary == null) {
+			HierarchyEnumerator sub = new HierarchyEnumerator();
+			sub.cellShortsMap = cellShortsMap;
+			sub.summaries = summaries;
+			MemoizingVisitor<S> sv = mv.newSummaryVisitor();
+			sub.doIt(cell, VarContext.globalContext, netlist, sv, shortResistors,
+					 shortPolyResistors, shortSpiceAmmeters, caching, 1);
+			cellCnt += sub.cellCnt;
+			instCnt += sub.instCnt;
+			summary = sv.getSummary();
+			synchronized (summaries) {
+				summaries.put(cell, summary);
+			}
+		}
+		mv.applySummary(summary, ni, parent, xformToRoot);
+	}
+
+	/**
+	 * Enumerates the subtree of a cell instance on the thread pool with a new subtree Visitor.
+	 * The subtree gets the next range of net ids.
+	 */
+	private Subtree submitSubtree(final Nodable parentInst, final Cell cell, final VarContext context,
+								  final Netlist netlist, final int[][] portNdxToNetIDs,
+								  final AffineTransform xformToRoot, final CellInfo parent) {
+		final HierarchyEnumerator sub = new HierarchyEnumerator();
+		sub.visitor = ((MergeableVisitor)visitor).newSubtreeVisitor();
+		sub.shortResistors = shortResistors;
+		sub.shortPolyResistors = shortPolyResistors;
+		sub.shortSpiceAmmeters = shortSpiceAmmeters;
+		sub.caching = caching;
+		sub.cellShortsMap = cellShortsMap;
+		sub.summaries = summaries;
+		sub.netIdToNetDesc = netIdToNetDesc;
+		sub.netIDCount = netIDCount;
+		netIDCount += getSubtreeIds(cell, netlist);
+		Future<Object> future = pool.submit(new Callable<Object>() {
+			public Object call() {
+				sub.enumerateCell(parentInst, cell, context, netlist, portNdxToNetIDs, xformToRoot, parent);
+				return null;
+			}
+		});
+		return new Subtree(sub, future);
+	}
+
+	/**
+	 * Waits for subtrees and merges their Visitors into the Visitor of this HierarchyEnumerator
+	 * in the order of submission.
+	 */
+	private void joinSubtrees(List<Subtree> subtrees) {
+		try {
+			for (Subtree subtree: subtrees) {
+				try {
+					subtree.future.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+					if (cause instanceof Error) throw (Error)cause;
+					throw new RuntimeException(cause);
+				}
+				cellCnt += subtree.enumerator.cellCnt;
+				instCnt += subtree.enumerator.instCnt;
+				((MergeableVisitor)visitor).merge((MergeableVisitor)subtree.enumerator.visitor);
+			}
+		} catch (InterruptedException e) {
+			for (Subtree subtree: subtrees)
+				subtree.future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Hierarchy enumeration was interrupted");
+		}
+	}
+
 	//  Set up everything for the root cell and then initiate the
 	//  hierarchical traversal.
 	private void doIt(Cell root, VarContext context, Netlist netlist, 
 	                  Visitor visitor, boolean shortResistors, 
 					  boolean shortPolyResistors, 
-					  boolean shortSpiceAmmeters, boolean cache) {
+					  boolean shortSpiceAmmeters, boolean cache, int numThreads) {
 		this.visitor = visitor;
         this.shortResistors = shortResistors;
         this.shortPolyResistors = shortPolyResistors;
@@ -409,8 +568,20 @@ public final class HierarchyEnumerator {
 		if (context == null) context = VarContext.globalContext;
 		int[][] exportNdxToNetIDs = null;
         getShortened(root, netlist);
-		enumerateCell(null,	root, context, netlist, exportNdxToNetIDs,
-		              new AffineTransform(), null);
+		if (visitor instanceof MergeableVisitor && numThreads > 1) {
+			subtreeIdsMap = new HashMap<Cell,Integer>();
+			CellShorts rootShorts = cellShortsMap.get(root);
+			int totalIds = getSubtreeIds(root, netlist) + rootShorts.externalIds.length;
+			maxSubtreeIds = Math.max(1, totalIds / (numThreads * 8));
+			netIdToNetDesc = Arrays.asList(new NetDescription[totalIds]);
+			pool = Executors.newFixedThreadPool(numThreads);
+		}
+		try {
+			enumerateCell(null,	root, context, netlist, exportNdxToNetIDs,
+			              new AffineTransform(), null);
+		} finally {
+			if (pool != null) pool.shutdownNow();
+		}
 
 //		System.out.println("A total of: " + nextNetID() + " nets were numbered");
 //		System.out.println("A total of: " + cellCnt + " Cells were visited");
@@ -484,6 +655,68 @@ public final class HierarchyEnumerator {
         //public abstract void visitNodeInstBottomUp(Nodable ni, CellInfo info);
 	}
 
+	/** A Visitor which can be used by parallel enumeration.
+	 *
+	 * <p>The subtree of a cell instance may be enumerated on another thread by a
+	 * Visitor made by newSubtreeVisitor. Visitor methods of one Visitor are called
+	 * on one thread, but different Visitors run at the same time, so state shared
+	 * between them must be thread-safe. After the subtree is done its Visitor is
+	 * merged into the Visitor of the parent instance. CellInfos are made by the
+	 * Visitor which enumerates them, but a subtree CellInfo may have a parent
+	 * CellInfo of another Visitor.
+	 *
+	 * <p>Evaluation of parameters in VarContext runs Java code which is not
+	 * thread-safe, so a Visitor which evaluates parameters should not use
+	 * parallel enumeration.
+	 */
+	public static abstract class MergeableVisitor extends Visitor {
+		/** Make a new Visitor to enumerate a subtree.
+		 * The method is called on the thread of this Visitor.
+		 * @return new Visitor with empty results. */
+		public abstract MergeableVisitor newSubtreeVisitor();
+
+		/** Merge results of a subtree Visitor into this Visitor.
+		 * The method is called on the thread of this Visitor
+		 * after the subtree Visitor has finished.
+		 * @param subtreeVisitor Visitor made by newSubtreeVisitor. */
+		public abstract void merge(MergeableVisitor subtreeVisitor);
+	}
+
+	/** A Visitor whose results for instances of some Cells depend only on the Cell.
+	 *
+	 * <p>When visitNodeInst asks to descend into an instance of a Cell for which
+	 * isMemoizable returns true, the HierarchyEnumerator doesn't enumerate the instance.
+	 * The first time it meets such Cell it enumerates the Cell as a root Cell,
+	 * with VarContext.globalContext and identity transformation, by a Visitor made by
+	 * newSummaryVisitor, and keeps its getSummary. Then applySummary is called for this
+	 * and every other instance of the Cell with the transformation of the instance.
+	 *
+	 * <p>Net ids in a summary are numbered from zero in the Cell and are not
+	 * net ids of the enumeration. A summary Visitor may itself memoize subcells.
+	 */
+	public static abstract class MemoizingVisitor<S> extends Visitor {
+		/** Tell if the results of a subtree of an instance of the Cell depend only on the Cell,
+		 * and not on VarContext, transformation or the nets connected to the instance.
+		 * @param cell the Cell of the instance.
+		 * @return true to use the summary of the Cell. */
+		public abstract boolean isMemoizable(Cell cell);
+
+		/** Make a new Visitor which computes the summary of a Cell.
+		 * @return new Visitor with empty results. */
+		public abstract MemoizingVisitor<S> newSummaryVisitor();
+
+		/** Get the summary computed by this summary Visitor after enumeration of a Cell.
+		 * @return the summary, not null. */
+		public abstract S getSummary();
+
+		/** Use the summary of a Cell for its instance.
+		 * @param summary the summary of the Cell of the instance.
+		 * @param ni the instance.
+		 * @param parentInfo information about the Cell which contains the instance.
+		 * @param xformToRoot transformation from the Cell of the instance to the root. */
+		public abstract void applySummary(S summary, Nodable ni, CellInfo parentInfo, AffineTransform xformToRoot);
+	}
+
 	/** The NetDescription object provides a Network and the level of
 	 * hierarchy in which the Network occurs. The visitor can use
 	 * NetDescription to formulate, for example, the name of
@@ -917,8 +1150,49 @@ public final class HierarchyEnumerator {
 		Netlist netlist = NetworkTool.getNetlist(root, shortResistors & shortPolyResistors);
 		(new HierarchyEnumerator()).doIt(root, context, netlist, visitor, 
 				                         shortResistors, shortPolyResistors, 
-										 shortSpiceAmmeters, caching);
+										 shortSpiceAmmeters, caching, 1);
 	}
+	/**
+	 * Begin parallel enumeration of the contents of the Cell root.
+	 * Instance subtrees are enumerated on a pool of threads by subtree Visitors
+	 * which are made by visitor.newSubtreeVisitor(). Subtree Visitors are merged into
+	 * visitor before exitCell of the parent instance.
+	 * Net ids are unique, but they may differ from the ids of sequential enumeration.
+	 * @param root the starting point of the enumeration.
+	 * @param context the VarContext for evaluating parameters in Cell
+	 * root. If context is null then VarContext.globalContext is used.
+	 * @param visitor the object responsible for doing something useful
+	 * during the enumertion of the design hierarchy.
+	 * @param shorten true to short resistors and Spice ammeters.
+	 * @param numThreads number of threads, sequential enumeration if 1 or less.
+	 */
+	public static void enumerateCellParallel(Cell root, VarContext context, MergeableVisitor visitor,
+											 boolean shorten, int numThreads) {
+		Netlist netlist = NetworkTool.getNetlist(root, shorten);
+		(new HierarchyEnumerator()).doIt(root, context, netlist, visitor,
+				                         shorten, shorten, shorten, false, numThreads);
+	}
+	/**
+	 * Method to flatten the completely expanded hierarchy of the Cell root into a FlatNetlist.
+	 * Unlike enumerateCell, no Visitor is called and no CellInfo is created.
+	 * @param root the top of the hierarchy.
+	 * @param context the VarContext of root. If context is null then VarContext.globalContext is used.
+	 * @param shortResistors true to short resistors.
+	 * @param shortPolyResistors true to short poly resistors.
+	 * @param shortSpiceAmmeters true to short Spice ammeters.
+	 * @return flat netlist of the hierarchy.
+	 */
+	public static FlatNetlist flattenCell(Cell root, VarContext context, boolean shortResistors,
+										  boolean shortPolyResistors, boolean shortSpiceAmmeters) {
+		Netlist netlist = NetworkTool.getNetlist(root, shortResistors & shortPolyResistors);
+		HierarchyEnumerator enumerator = new HierarchyEnumerator();
+		enumerator.shortResistors = shortResistors;
+		enumerator.shortPolyResistors = shortPolyResistors;
+		enumerator.shortSpiceAmmeters = shortSpiceAmmeters;
+		if (context == null) context = VarContext.globalContext;
+		return new FlatNetlist(enumerator, root, context, netlist);
+	}
+
     /**
      * Method to count number of unique cells in hierarchy.  Useful
      * for progress tracking of hierarchical netlisters and writers.
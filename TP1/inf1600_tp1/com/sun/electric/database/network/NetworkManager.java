@@ -253,6 +253,8 @@ public class NetworkManager {
             CellBackup newBackup = newSnapshot.getCell(i);
             if (newBackup == null || oldBackup == null) continue;
             if (oldBackup == newBackup) continue;
+            // Moved nodes and arcs don't change the netlist
+            if (newBackup.sameConnectivity(oldBackup)) continue;
             CellId cellId = newBackup.d.cellId;
             Cell cell = database.getCell(cellId);
             boolean exportsChanged = !newBackup.sameExports(oldBackup);
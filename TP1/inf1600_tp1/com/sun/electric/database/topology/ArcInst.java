@@ -414,6 +414,39 @@ public class ArcInst extends Geometric implements Comparable<ArcInst>
 		return ai;
 	}
 
+	/**
+	 * Method to create an ArcInst by ImmutableArcInst.
+	 * The nodes at both ends must already be in the parent Cell.
+	 * @param parent the Cell in which this ArcInst will reside.
+	 * @param d ImmutableArcInst of new ArcInst
+	 * @return the newly created ArcInst, or null on error.
+	 */
+	public static ArcInst newInstance(Cell parent, ImmutableArcInst d)
+	{
+        parent.checkChanging();
+        Topology topology = parent.getTopology();
+		if (topology.getArcById(d.arcId) != null)
+		{
+            System.out.println(parent + " already has ArcInst with id " + d.arcId);
+            return null;
+		}
+        if (parent.getNodeById(d.headNodeId) == null || parent.getNodeById(d.tailNodeId) == null) return null;
+        PortInst headPort = parent.getPortInst(d.headNodeId, d.headPortId);
+        PortInst tailPort = parent.getPortInst(d.tailNodeId, d.tailPortId);
+        ArcInst ai = new ArcInst(topology, d, headPort, tailPort);
+
+		// attach this arc to the two nodes it connects
+		headPort.getNodeInst().redoGeometric();
+		tailPort.getNodeInst().redoGeometric();
+
+		// add this arc to the cell
+		topology.addArc(ai);
+
+		// handle change control, constraint, and broadcast
+		Constraints.getCurrent().newObject(ai);
+		return ai;
+	}
+
     /**
 	 * Method to delete this ArcInst.
 	 */
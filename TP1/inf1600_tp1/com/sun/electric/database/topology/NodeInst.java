@@ -375,6 +375,7 @@ public class NodeInst extends Geometric implements Nodable, Comparable<NodeInst>
 	 */
     public static NodeInst newInstance(Cell parent, ImmutableNodeInst d)
 	{
+        parent.loadDeferredContents();
 		if (d.protoId instanceof CellId)
 		{
             Cell subCell = parent.getDatabase().getCell((CellId)d.protoId);
@@ -384,6 +385,7 @@ public class NodeInst extends Geometric implements Nodable, Comparable<NodeInst>
 					" because it is recursive");
 				return null;
 			}
+            subCell.loadDeferredContents();
             subCell.getTechnology();
 		}
 
@@ -27,6 +27,9 @@ import com.sun.electric.database.geometry.DBMath;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 
 /**
@@ -41,6 +44,11 @@ import java.util.Iterator;
  * A search for a point or an area is a simple recursive walk through the tree to collect appropriate leaf nodes.
  * Insertion and deletion, however, are more complex operations.  The figure below illustrates how R-Trees work:
  * <P>
+ * When all of the objects are known in advance (for example, when a Cell is built from a CellBackup),
+ * the R-Tree can instead be bulk-loaded with the Sort-Tile-Recursive (STR) algorithm from:
+ * Leutenegger, Scott T., Edgington, Jeffrey M., Lopez, Mario A., "STR: A Simple and Efficient Algorithm for R-Tree Packing",
+ * ICDE, 497-506, April 1997.
+ * <P>
  * <CENTER><IMG SRC="doc-files/Geometric-1.gif"></CENTER>
  */
 public class RTNode
@@ -100,6 +108,106 @@ public class RTNode
 		return top;
 	}
 
+	/**
+	 * Method to build an R-Tree from a collection of RTBounds in one pass.
+	 * The objects are packed with the Sort-Tile-Recursive algorithm: they are sorted by X center,
+	 * cut into vertical slices, and each slice is sorted by Y center and cut into full leaf nodes.
+	 * The same packing is then applied to the leaf nodes until a single root remains.
+	 * Every node except the root holds from M to 2M entries, so the resulting tree may be
+	 * modified afterwards with linkGeom and unLinkGeom.
+	 * @param env the environment of this operation (for messages).
+	 * @param geoms the RTBounds to place in the tree.
+	 * @return root of the new RTree.
+	 */
+	public static RTNode bulkLoad(Object env, Collection<? extends RTBounds> geoms)
+	{
+		Object [] level = geoms.toArray();
+		boolean leaf = true;
+		while (level.length > MAXRTNODESIZE)
+		{
+			level = packLevel(level, leaf);
+			leaf = false;
+		}
+
+		// the remaining entries fit in the root
+		RTNode root = makeTopLevel();
+		root.setFlag(leaf);
+		for(int i=0; i<level.length; i++)
+		{
+			root.setChild(i, level[i]);
+			if (!leaf) ((RTNode)level[i]).setParent(root);
+		}
+		root.setTotal(level.length);
+		root.figBounds();
+		return root;
+	}
+
+	/**
+	 * Method to pack one level of the R-Tree for bulkLoad.
+	 * @param entries the RTBounds (if "leaf" is true) or RTNodes to pack.
+	 * @param leaf true if the entries are RTBounds.
+	 * @return the RTNodes that hold the entries.
+	 */
+	private static RTNode [] packLevel(Object [] entries, boolean leaf)
+	{
+		int numEntries = entries.length;
+		int numNodes = (numEntries + MAXRTNODESIZE - 1) / MAXRTNODESIZE;
+		int numSlices = (int)Math.ceil(Math.sqrt(numNodes));
+
+		// spread entries evenly over the nodes so that none has fewer than MINRTNODESIZE
+		Arrays.sort(entries, new CenterOrder(leaf, true));
+		CenterOrder yOrder = new CenterOrder(leaf, false);
+		RTNode [] nodes = new RTNode[numNodes];
+		for(int s=0; s<numSlices; s++)
+		{
+			int firstNode = (int)((long)s * numNodes / numSlices);
+			int lastNode = (int)((long)(s+1) * numNodes / numSlices);
+			int sliceStart = (int)((long)firstNode * numEntries / numNodes);
+			int sliceEnd = (int)((long)lastNode * numEntries / numNodes);
+			Arrays.sort(entries, sliceStart, sliceEnd, yOrder);
+			for(int n=firstNode; n<lastNode; n++)
+			{
+				int start = (int)((long)n * numEntries / numNodes);
+				int end = (int)((long)(n+1) * numEntries / numNodes);
+				RTNode rtn = new RTNode();
+				rtn.setFlag(leaf);
+				for(int i=start; i<end; i++)
+				{
+					rtn.setChild(i - start, entries[i]);
+					if (!leaf) ((RTNode)entries[i]).setParent(rtn);
+				}
+				rtn.setTotal(end - start);
+				rtn.figBounds();
+				nodes[n] = rtn;
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * Comparator class for sorting R-Tree entries by the center of their bounds.
+	 */
+	private static class CenterOrder implements Comparator<Object>
+	{
+		private final boolean leaf;
+		private final boolean xAxis;
+
+		CenterOrder(boolean leaf, boolean xAxis)
+		{
+			this.leaf = leaf;
+			this.xAxis = xAxis;
+		}
+
+		public int compare(Object o1, Object o2)
+		{
+			Rectangle2D b1 = leaf ? ((RTBounds)o1).getBounds() : ((RTNode)o1).getBounds();
+			Rectangle2D b2 = leaf ? ((RTBounds)o2).getBounds() : ((RTNode)o2).getBounds();
+			double c1 = xAxis ? b1.getCenterX() : b1.getCenterY();
+			double c2 = xAxis ? b2.getCenterX() : b2.getCenterY();
+			return Double.compare(c1, c2);
+		}
+	}
+
 	/**
 	 * Method to link this RTBounds into the R-tree of its parent Cell.
 	 * This is static, because it may modify the root node, and so it must
@@ -698,6 +806,105 @@ public class RTNode
 		return null;
 	}
 
+	/**
+	 * Interface to receive the RTBounds objects found by RTNode.search.
+	 */
+	public interface SearchVisitor
+	{
+		/**
+		 * Method called for each RTBounds object found in the search area.
+		 * @param geom the RTBounds object found.
+		 * @return true to continue the search, false to stop it.
+		 */
+		public boolean visit(RTBounds geom);
+	}
+
+	/**
+	 * Class to collect the results of RTNode.search into a reusable array.
+	 * Clearing and refilling the same buffer does not allocate once it has grown to the largest result.
+	 */
+	public static class SearchBuffer implements SearchVisitor
+	{
+		/** objects found */						private RTBounds [] found = new RTBounds[MAXRTNODESIZE];
+		/** number of objects found */				private int size;
+
+		/** Method to forget the objects found by previous searches. */
+		public void clear()
+		{
+			for(int i=0; i<size; i++) found[i] = null;
+			size = 0;
+		}
+
+		/** Method to get the number of objects found. */
+		public int size() { return size; }
+
+		/** Method to get an object found. */
+		public RTBounds get(int index) { return found[index]; }
+
+		public boolean visit(RTBounds geom)
+		{
+			if (size >= found.length)
+			{
+				RTBounds [] newFound = new RTBounds[found.length*2];
+				System.arraycopy(found, 0, newFound, 0, size);
+				found = newFound;
+			}
+			found[size++] = geom;
+			return true;
+		}
+	}
+
+	/**
+	 * Method to search a given area of an R-Tree without allocating an iterator.
+	 * Every RTBounds object in the area is passed to the visitor.
+	 * @param root root of the RTree.
+	 * @param lX the low X coordinate of the search area.
+	 * @param lY the low Y coordinate of the search area.
+	 * @param hX the high X coordinate of the search area.
+	 * @param hY the high Y coordinate of the search area.
+	 * @param includeEdges true if RTBounds objects along edges are considered in.
+	 * @param visitor the SearchVisitor that receives the RTBounds objects found.
+	 * @return false if the visitor stopped the search.
+	 */
+	public static boolean search(RTNode root, double lX, double lY, double hX, double hY, boolean includeEdges,
+		SearchVisitor visitor)
+	{
+		if (root == null) return true;
+		return root.searchNode(lX, lY, hX, hY, includeEdges, visitor);
+	}
+
+	/**
+	 * Method to search this R-tree node for RTBounds objects in an area.
+	 */
+	private boolean searchNode(double lX, double lY, double hX, double hY, boolean includeEdges, SearchVisitor visitor)
+	{
+		for(int i=0; i<total; i++)
+		{
+			Rectangle2D nodeBounds = getBBox(i);
+			if (includeEdges)
+			{
+				if (nodeBounds.getMaxX() < lX) continue;
+				if (nodeBounds.getMinX() > hX) continue;
+				if (nodeBounds.getMaxY() < lY) continue;
+				if (nodeBounds.getMinY() > hY) continue;
+			} else
+			{
+				if (nodeBounds.getMaxX() <= lX) continue;
+				if (nodeBounds.getMinX() >= hX) continue;
+				if (nodeBounds.getMaxY() <= lY) continue;
+				if (nodeBounds.getMinY() >= hY) continue;
+			}
+			if (flag)
+			{
+				if (!visitor.visit((RTBounds)pointers[i])) return false;
+			} else
+			{
+				if (!((RTNode)pointers[i]).searchNode(lX, lY, hX, hY, includeEdges, visitor)) return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Class to search a given area of a Cell.
 	 * This class acts like an Iterator, returning RTBounds objects that are inside the selected area.
@@ -322,6 +322,21 @@ public class Topology {
         return new RTNode.Search(bounds, getRTree(), includeEdges);
     }
 
+    /**
+     * Method to pass all RTBounds objects in a given area of this Cell to a visitor.
+     * Unlike searchIterator, this method does not allocate.
+     * @param lX the low X coordinate of the area to search.
+     * @param lY the low Y coordinate of the area to search.
+     * @param hX the high X coordinate of the area to search.
+     * @param hY the high Y coordinate of the area to search.
+     * @param includeEdges true if RTBounds objects along edges are considered in.
+     * @param visitor the visitor that receives the RTBounds objects in that area.
+     * @return false if the visitor stopped the search.
+     */
+    public boolean search(double lX, double lY, double hX, double hY, boolean includeEdges, RTNode.SearchVisitor visitor) {
+        return RTNode.search(getRTree(), lX, lY, hX, hY, includeEdges, visitor);
+    }
+
     public void unfreshRTree() {
         rTreeFresh = false;
     }
@@ -350,15 +365,13 @@ public class Topology {
         if (!validArcBounds)
             computeArcBounds();
         CellId cellId = cell.getId();
-        RTNode root = RTNode.makeTopLevel();
-        for (Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); ) {
-            NodeInst ni = it.next();
-            root = RTNode.linkGeom(cellId, root, ni);
-        }
-        for (Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); ) {
-            ArcInst ai = it.next();
-            root = RTNode.linkGeom(cellId, root, ai);
-        }
+        // deferred contents are not loaded here, because the R-Tree is rebuilt when the Snapshot is made
+        int numNodes = cell.getNumInstantiatedNodes();
+        ArrayList<Geometric> geoms = new ArrayList<Geometric>(numNodes + arcs.size());
+        for (int i = 0; i < numNodes; i++)
+            geoms.add(cell.getNode(i));
+        geoms.addAll(arcs);
+        RTNode root = RTNode.bulkLoad(cellId, geoms);
         root.checkRTree(0, cellId);
         rTree = root;
         rTreeFresh = true;
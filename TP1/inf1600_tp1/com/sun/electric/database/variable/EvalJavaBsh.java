@@ -30,8 +30,9 @@ import com.sun.electric.tool.user.User;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -62,7 +63,7 @@ public class EvalJavaBsh
 
     /** For replacing @variable */					private static final Pattern atPat = Pattern.compile("@(\\w+)");
     /** For replacing @variable */					private static final Pattern pPat = Pattern.compile("(P|PAR)\\(\"(\\w+)\"\\)");
-    /** Results of replacing */                     private static HashMap<String,String> replaceHash = new HashMap<String,String>();
+    /** Results of replacing */                     private static Map<String,String> replaceHash = new ConcurrentHashMap<String,String>();
 
     /** The bean shell interpreter object */        private Object envObject;
     /** Context stack for recursive eval calls */   private Stack<VarContext> contextStack = new Stack<VarContext>();
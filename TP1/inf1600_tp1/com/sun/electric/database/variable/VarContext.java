@@ -30,18 +30,17 @@ import com.sun.electric.database.text.Name;
 import com.sun.electric.database.text.TextUtils;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.topology.PortInst;
-import com.sun.electric.tool.generator.layout.LayoutLib;
 import java.io.ObjectStreamException;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Stack;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * VarContext represents a hierarchical path of NodeInsts.  Its
@@ -94,39 +93,125 @@ import java.util.regex.Matcher;
  */
 public class VarContext implements Serializable
 {
+    /**
+     * Cache of evaluated Variables of one VarContext.
+     * The table has at most 64 entries, which bounds the memory of each caching
+     * VarContext only: every level of a caching hierarchy has its own table,
+     * so the total grows with the number of caching VarContexts kept alive.
+     * Entries are immutable and kept in an open-addressing table, so lookups
+     * take no lock and allocate nothing. When the probe window of a key is full,
+     * an entry which was not used since the last sweep of the clock is replaced.
+     * The table is allocated at the first put, so a caching VarContext that never
+     * misses costs no more than a non-caching one.
+     * Concurrent puts may lose an entry, that only costs another evaluation.
+     */
     private static class ValueCache {
+        /** Number of slots in the table, a power of two */ private static final int SLOTS = 64;
+        /** Number of slots to probe for a key */           private static final int PROBE = 8;
 
-        private static class EvalPair {
+        private static class Entry {
             private final Variable var;
             private final Object info;
-            public EvalPair(Variable v, Object i) {var=v;  info=i;}
-            public int hashCode() {return var.hashCode() * info.hashCode();}
-            public boolean equals(Object o) {
-                if (!(o instanceof EvalPair)) return false;
-                EvalPair ep = (EvalPair) o;
-                return var==ep.var && info==ep.info;
+            private final Object value;
+            private volatile boolean used;
+            private Entry(Variable var, Object info, Object value) {
+                this.var = var;
+                this.info = info;
+                this.value = value;
+            }
+        }
+
+        private volatile AtomicReferenceArray<Entry> table;
+
+        private static int slot(Variable var, Object info) {
+            int h = System.identityHashCode(var)*31 + System.identityHashCode(info);
+            return (h ^ (h >>> 16)) & (SLOTS - 1);
+        }
+
+        /**
+         * Returns the cached value, or CACHE_MISS if there is no entry.
+         */
+        private Object get(Variable var, Object info) {
+            AtomicReferenceArray<Entry> table = this.table;
+            if (table != null) {
+                int s = slot(var, info);
+                for (int i = 0; i < PROBE; i++) {
+                    Entry e = table.get((s + i) & (SLOTS - 1));
+                    if (e == null) break;
+                    if (e.var == var && e.info == info) {
+                        if (!e.used) e.used = true;
+                        cacheHits.increment();
+                        return e.value;
+                    }
+                }
+            }
+            cacheMisses.increment();
+            return CACHE_MISS;
+        }
+
+        private void put(Variable var, Object info, Object value) {
+            AtomicReferenceArray<Entry> table = this.table;
+            if (table == null) this.table = table = new AtomicReferenceArray<Entry>(SLOTS);
+            Entry newEntry = new Entry(var, info, value);
+            int s = slot(var, info);
+            for (int i = 0; i < PROBE; i++) {
+                int k = (s + i) & (SLOTS - 1);
+                Entry e = table.get(k);
+                if (e == null) {
+                    if (table.compareAndSet(k, null, newEntry)) return;
+                    e = table.get(k);
+                }
+                if (e.var == var && e.info == info) return;
+            }
+            // clock sweep over the probe window
+            for (int i = 0; ; i++) {
+                int k = (s + (i % PROBE)) & (SLOTS - 1);
+                Entry e = table.get(k);
+                if (e == null || !e.used || i >= PROBE) {
+                    table.set(k, newEntry);
+                    cacheEvictions.increment();
+                    return;
+                }
+                e.used = false;
             }
         }
+    }
 
-        private final Map<EvalPair,Object> cache = new HashMap<EvalPair,Object>();
+    /**
+     * Counter of cache statistics that many threads increment.
+     * Each thread increments one of several stripes, padded to different cache lines,
+     * so the counts are exact and the increments don't contend.
+     */
+    private static class StripedCounter {
+        /** Number of stripes, a power of two */        private static final int STRIPES = 16;
+        /** Distance between stripes, in longs */      private static final int PAD = 8;
 
-        public synchronized boolean containsKey(Variable var, Object info) {
-            return cache.containsKey(new EvalPair(var, info));
+        private final AtomicLongArray stripes = new AtomicLongArray(STRIPES * PAD);
+
+        private void increment() {
+            int stripe = (int)Thread.currentThread().getId() & (STRIPES - 1);
+            stripes.getAndIncrement(stripe * PAD);
         }
-        public synchronized Object get(Variable var, Object info) {
-            return cache.get(new EvalPair(var, info));
+
+        private long get() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) sum += stripes.get(i * PAD);
+            return sum;
         }
-        public synchronized void put(Variable var, Object info, Object value) {
-            EvalPair key = new EvalPair(var, info);
-            LayoutLib.error(cache.containsKey(key), "duplicate keys in ValueCache?");
-            cache.put(key, value);
+
+        private void reset() {
+            for (int i = 0; i < STRIPES; i++) stripes.set(i * PAD, 0);
         }
     }
+    private static final Object CACHE_MISS = new Object();
+    private static final StripedCounter cacheHits = new StripedCounter();
+    private static final StripedCounter cacheMisses = new StripedCounter();
+    private static final StripedCounter cacheEvictions = new StripedCounter();
     private static final Object FAST_EVAL_FAILED = new Object();
 
     private final VarContext prev;
     private final Nodable ni;
-    private transient ValueCache cache;
+    private transient volatile ValueCache cache;
 
     // ------------------------ private methods -------------------------------
     // For the global context.
@@ -192,11 +277,10 @@ public class VarContext implements Serializable
 
     private Object fastJavaVarEval(Variable var, Object info) throws EvalException {
         // Avoid re-computing the value if it is already in the cache.
-        // Use "contains" because the value might be null.
-        synchronized(this) {
-            if (cache!=null && cache.containsKey(var, info)) {
-                return cache.get(var, info);
-            }
+        ValueCache c = cache;
+        if (c != null) {
+            Object value = c.get(var, info);
+            if (value != CACHE_MISS) return value;
         }
         // Avoid calling bean shell if value is just a reference to another
         // variable.
@@ -372,7 +456,30 @@ public class VarContext implements Serializable
     }
 
     /** Get rid of the variable cache thereby release its storage */
-    public synchronized void deleteVariableCache() { cache=null; }
+    public void deleteVariableCache() {
+        cache = null;
+    }
+
+    /**
+     * Get statistics of variable caches of caching VarContexts since the last reset.
+     * @return a description of the numbers of hits, misses and evictions.
+     */
+    public static String getVariableCacheStatistics() {
+        long hits = cacheHits.get();
+        long misses = cacheMisses.get();
+        long lookups = hits + misses;
+        return "Variable cache: " + hits + " hits, " + misses + " misses" +
+            (lookups != 0 ? " (" + (hits*100/lookups) + "% hits)" : "") + ", " + cacheEvictions.get() + " evictions";
+    }
+
+    /**
+     * Reset statistics of variable caches.
+     */
+    public static void resetVariableCacheStatistics() {
+        cacheHits.reset();
+        cacheMisses.reset();
+        cacheEvictions.reset();
+    }
 
 
     // ------------------------------ Variable Evaluation -----------------------
@@ -457,9 +564,8 @@ public class VarContext implements Serializable
                 // OK, I give up.  Call the darn bean shell.
                 value = EvalJavaBsh.evalJavaBsh.evalVarObject(var.getObject(),
                                                               this, info);
-                synchronized(this) {
-                    if (cache!=null) cache.put(var, info, value);
-                }
+                ValueCache c = cache;
+                if (c != null) c.put(var, info, value);
             }
         }
         // TODO: if(code == Variable.Code.TCL) { }
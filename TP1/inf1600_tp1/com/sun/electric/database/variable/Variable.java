@@ -476,6 +476,16 @@ public class Variable implements Serializable
     public static Variable read(SnapshotReader reader) throws IOException {
         Variable.Key varKey = reader.readVariableKey();
         TextDescriptor td = reader.readTextDescriptor();
+        Object value = readValue(reader);
+        return Variable.newInstance(varKey, value, td);
+    }
+
+    /**
+     * Read value of Variable from SnapshotReader, after its key and text descriptor.
+     * @param reader from to read.
+     * @return the value, or null if the reader doesn't find the object which is the value.
+     */
+    public static Object readValue(SnapshotReader reader) throws IOException {
         int type = reader.readByte();
         Object value;
         if ((type & ARRAY) != 0) {
@@ -511,7 +521,7 @@ public class Variable implements Serializable
         } else {
             value = readObj(reader, type);
         }
-        return Variable.newInstance(varKey, value, td);
+        return value;
     }
     
     private static Object readObj(SnapshotReader reader, int type) throws IOException {
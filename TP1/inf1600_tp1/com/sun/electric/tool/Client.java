@@ -23,6 +23,7 @@
  */
 package com.sun.electric.tool;
 
+import com.sun.electric.database.Snapshot;
 import com.sun.electric.database.change.Undo;
 import com.sun.electric.tool.user.ActivityLogger;
 import com.sun.electric.tool.user.User;
@@ -97,11 +98,18 @@ public abstract class Client {
 
     public static class ServerEvent implements Runnable {
         ServerEvent next;
+        /** Time when this event was fired. */  final long createTime = System.currentTimeMillis();
                 
         ServerEvent() {}
         
         public void run() {}
         void dispatchOnStreamClient(StreamClient client) throws IOException {}
+        
+        /**
+         * Returns the database snapshot which this event brings to clients.
+         * @return the snapshot of this event or null.
+         */
+        Snapshot getSnapshot() { return null; }
     }
     
     static void fireEJobEvent(EJob ejob) {
@@ -183,6 +191,8 @@ public abstract class Client {
         void dispatchOnStreamClient(StreamClient client) throws IOException {
             client.writeEJobEvent(ejob, newState, timeStamp);
         }
+        
+        Snapshot getSnapshot() { return ejob.newSnapshot; }
     }
     
     static class PrintEvent extends ServerEvent {
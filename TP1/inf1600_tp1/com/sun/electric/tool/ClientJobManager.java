@@ -83,7 +83,7 @@ class ClientJobManager extends JobManager {
         try {
             System.out.println("Attempting to connect to port " + port + " ...");
             Socket socket = new Socket(serverMachineName, port);
-            reader = new SnapshotReader(new DataInputStream(new BufferedInputStream(socket.getInputStream())), EDatabase.clientDatabase().getIdManager());
+            reader = new SnapshotReader(new DataInputStream(new FrameStream.Input(new BufferedInputStream(socket.getInputStream()))), EDatabase.clientDatabase().getIdManager());
             clientOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
             int protocolVersion = reader.readInt();
             if (protocolVersion != Job.PROTOCOL_VERSION) {
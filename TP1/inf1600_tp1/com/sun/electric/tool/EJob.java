@@ -95,6 +95,25 @@ class EJob {
         return jobType == Job.Type.EXAMINE || jobType == Job.Type.REMOTE_EXAMINE;
     }   
     
+    /**
+     * Tells if this is an EXAMINE job which reads only its pinned snapshot.
+     * @return true if this job reads only its pinned snapshot.
+     */
+    boolean isSnapshotExamine() {
+        return jobType == Job.Type.EXAMINE && clientJob != null && clientJob.isSnapshotExamine();
+    }
+    
+    /**
+     * Returns the priority of this job.
+     * Jobs of remote clients are not deserialized yet, they are treated as jobs from the user.
+     * @return the priority of this job.
+     */
+    Job.Priority getPriority() {
+        Job job = getJob();
+        Job.Priority priority = job != null ? job.getPriority() : null;
+        return priority != null ? priority : Job.Priority.USER;
+    }
+    
     Throwable serialize(EDatabase database) {
         try {
             ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
@@ -68,8 +68,13 @@ class EThread extends Thread {
             database = ejob.jobType != Job.Type.EXAMINE ? EDatabase.serverDatabase() : EDatabase.clientDatabase();
             ejob.changedFields = new ArrayList<Field>();
 //            Throwable jobException = null;
-            database.lock(!ejob.isExamine());
-            ejob.oldSnapshot = database.backup();
+            
+            // a snapshot examine runs on the snapshot pinned by the job manager and doesn't lock the database
+            boolean snapshotExamine = ejob.isSnapshotExamine();
+            if (!snapshotExamine) {
+                database.lock(!ejob.isExamine());
+                ejob.oldSnapshot = database.backup();
+            }
             try {
                 if (ejob.jobType != Job.Type.EXAMINE && !ejob.startedByServer) {
                     Throwable e = ejob.deserializeToServer();
@@ -114,7 +119,8 @@ class EThread extends Thread {
                         break;
                 }
                 ejob.serializeResult(database);
-                ejob.newSnapshot = database.backup();
+                if (!snapshotExamine)
+                    ejob.newSnapshot = database.backup();
 //                database.checkFresh(ejob.newSnapshot);
 //                ejob.state = EJob.State.SERVER_DONE;
             } catch (Throwable e) {
@@ -128,9 +134,11 @@ class EThread extends Thread {
                 ejob.serializeExceptionResult(e, database);
 //                ejob.state = EJob.State.SERVER_FAIL;
             } finally {
-                database.unlock();
+                if (!snapshotExamine)
+                    database.unlock();
             }
-            putInCache(ejob.oldSnapshot, ejob.newSnapshot);
+            if (!snapshotExamine)
+                putInCache(ejob.oldSnapshot, ejob.newSnapshot);
             
             finishedEJob = ejob;
             ejob = null;
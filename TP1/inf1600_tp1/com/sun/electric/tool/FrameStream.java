@@ -0,0 +1,204 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: FrameStream.java
+ *
+ * Copyright (c) 2003 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Streams which carry the server-to-client protocol in frames.
+ * Everything written between two flushes of the Output becomes one frame.
+ * Large frames are deflated.
+ * A frame is an int with the length of its data, an int with the length of the deflated data
+ * (0 if the frame is not deflated), and the data.
+ */
+class FrameStream {
+    /** Frames shorter than this are not deflated. */   private static final int COMPRESS_THRESHOLD = 512;
+
+    private FrameStream() {}
+
+    /**
+     * Server side of the frame stream.
+     */
+    static class Output extends OutputStream {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final byte[] packBuf = new byte[8192];
+        /** Number of bytes written to this stream. */          private long rawBytes;
+        /** Number of bytes written to underlying stream. */    private long wireBytes;
+
+        Output(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        public void write(int b) {
+            frame.write(b);
+        }
+
+        public void write(byte[] b, int off, int len) {
+            frame.write(b, off, len);
+        }
+
+        /**
+         * Writes the data written since the last flush as one frame and flushes the underlying stream.
+         */
+        public void flush() throws IOException {
+            int rawLength = frame.size();
+            if (rawLength != 0) {
+                byte[] raw = frame.toByteArray();
+                frame.reset();
+                boolean deflated = false;
+                if (rawLength >= COMPRESS_THRESHOLD) {
+                    deflater.reset();
+                    deflater.setInput(raw);
+                    deflater.finish();
+                    packed.reset();
+                    while (!deflater.finished() && packed.size() < rawLength) {
+                        int n = deflater.deflate(packBuf);
+                        packed.write(packBuf, 0, n);
+                    }
+                    deflated = deflater.finished() && packed.size() < rawLength;
+                }
+                out.writeInt(rawLength);
+                if (deflated) {
+                    out.writeInt(packed.size());
+                    packed.writeTo(out);
+                    wireBytes += 8 + packed.size();
+                } else {
+                    out.writeInt(0);
+                    out.write(raw);
+                    wireBytes += 8 + rawLength;
+                }
+                rawBytes += rawLength;
+            }
+            out.flush();
+        }
+
+        public void close() throws IOException {
+            flush();
+            deflater.end();
+            out.close();
+        }
+
+        /**
+         * Returns the number of bytes written to this stream.
+         * @return the number of bytes written to this stream.
+         */
+        long getRawBytes() { return rawBytes; }
+
+        /**
+         * Returns the number of bytes written to the underlying stream.
+         * @return the number of bytes written to the underlying stream.
+         */
+        long getWireBytes() { return wireBytes; }
+    }
+
+    /**
+     * Client side of the frame stream.
+     */
+    static class Input extends InputStream {
+        private final DataInputStream in;
+        private final Inflater inflater = new Inflater();
+        private byte[] buf = new byte[0];
+        private int pos;
+        private int count;
+
+        Input(InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        public int read() throws IOException {
+            while (pos == count)
+                if (!readFrame()) return -1;
+            return buf[pos++] & 0xFF;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (pos == count)
+                if (!readFrame()) return -1;
+            int n = Math.min(len, count - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        public int available() {
+            return count - pos;
+        }
+
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+
+        /**
+         * Reads the next frame.
+         * @return false at the end of the stream.
+         */
+        private boolean readFrame() throws IOException {
+            int rawLength;
+            try {
+                rawLength = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            int packedLength = in.readInt();
+            if (buf.length < rawLength)
+                buf = new byte[rawLength];
+            if (packedLength == 0) {
+                in.readFully(buf, 0, rawLength);
+            } else {
+                byte[] packedBytes = new byte[packedLength];
+                in.readFully(packedBytes);
+                inflater.reset();
+                inflater.setInput(packedBytes);
+                try {
+                    int n = 0;
+                    while (n < rawLength) {
+                        int k = inflater.inflate(buf, n, rawLength - n);
+                        if (k == 0 && (inflater.finished() || inflater.needsInput()))
+                            throw new IOException("Truncated frame");
+                        n += k;
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("Bad frame: " + e.getMessage());
+                }
+            }
+            pos = 0;
+            count = rawLength;
+            return true;
+        }
+    }
+}
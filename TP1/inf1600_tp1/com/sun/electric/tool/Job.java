@@ -23,6 +23,7 @@
  */
 package com.sun.electric.tool;
 
+import com.sun.electric.database.Snapshot;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.EDatabase;
 import com.sun.electric.database.text.TextUtils;
@@ -87,7 +88,7 @@ public abstract class Job implements Serializable {
     private static boolean GLOBALDEBUG = false;
     /*private*/ static Mode threadMode;
     private static int socketPort = 35742; // socket port for client/server
-    static final int PROTOCOL_VERSION = 15; // Oct 24
+    static final int PROTOCOL_VERSION = 16; // framed and deflated server stream
     public static boolean BATCHMODE = false; // to run it in batch mode
     public static boolean LOCALDEBUGFLAG; // Gilda's case
 //    private static final String CLASS_NAME = Job.class.getName();
@@ -152,9 +153,9 @@ public abstract class Job implements Serializable {
 	/** report execution time regardless MIN_NUM_SECONDS */
 												/*private*/ boolean reportExecution = false;
     /** tool running the job */                 /*private*/ Tool tool;
-//    /** priority of job */                      private Priority priority;
+    /** priority of job */                      private Priority priority;
 //    /** bottom of "up-tree" of cells affected */private Cell upCell;
-//    /** top of "down-tree" of cells affected */ private Cell downCell;
+    /** top of "down-tree" of cells affected */ private transient Cell downCell;
 //    /** status */                               private String status = null;
     
     transient EJob ejob;
@@ -203,14 +204,15 @@ public abstract class Job implements Serializable {
 	 * If this and "downCell" are null, the entire database is presumed.
 	 * @param downCell the Cell at the top of a hierarchical "down tree" of changes/examinations.
 	 * If this and "upCell" are null, the entire database is presumed.
+	 * Contents in the down tree of an EXAMINE job that were deferred when their libraries were read are loaded before it runs.
 	 * @param priority the priority of this Job.
 	 */
     public Job(String jobName, Tool tool, Type jobType, Cell upCell, Cell downCell, Priority priority) {
         ejob = new EJob(this, jobType, jobName);
 		this.tool = tool;
-//		this.priority = priority;
+		this.priority = priority;
 //		this.upCell = upCell;
-//		this.downCell = downCell;
+		this.downCell = downCell;
         this.display = true;
         this.deleteWhenDone = true;
         startTime = endTime = 0;
@@ -275,9 +277,40 @@ public abstract class Job implements Serializable {
             if (ejob.jobType != Job.Type.EXAMINE)
                 ejob.serialize(EDatabase.clientDatabase());
          }
+        if (ejob.isExamine() && downCell != null) loadDeferredHierarchy(downCell);
         jobManager.addJob(ejob, onMySnapshot);
     }
 
+    /**
+     * Method to make sure that an EXAMINE job doesn't see cells of its down-tree whose contents
+     * were deferred when their libraries were read.
+     * The contents are loaded now in a changing thread, or else by a CHANGE job queued before the EXAMINE job.
+     */
+    private static void loadDeferredHierarchy(Cell cell) {
+        if (!cell.hasDeferredHierarchy()) return;
+        if (cell.getDatabase().canComputeBounds())
+            cell.loadDeferredHierarchy();
+        else
+            new LoadDeferredHierarchyJob(cell).startJob(false, true);
+    }
+
+    /**
+     * Class to instantiate the deferred cell contents in the down-tree of an EXAMINE job before it reads them.
+     */
+    private static class LoadDeferredHierarchyJob extends Job {
+        private Cell cell;
+
+        private LoadDeferredHierarchyJob(Cell cell) {
+            super("Load contents of " + cell, User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
+            this.cell = cell;
+        }
+
+        public boolean doIt() throws JobException {
+            cell.loadDeferredHierarchy();
+            return true;
+        }
+    }
+
     /**
      * Method to remember that a field variable of the Job has been changed by the doIt() method.
      * @param variableName the name of the variable that changed.
@@ -310,6 +343,21 @@ public abstract class Job implements Serializable {
      */
     public void terminateOK() {}
     
+    /**
+     * Method to tell whether this EXAMINE Job reads only the Snapshot pinned at its start.
+     * Such a Job never reads Libraries, Cells or other objects of the database, only
+     * the immutable Snapshot returned by getPinnedSnapshot(). So it may run concurrently
+     * with CHANGE Jobs.
+     * @return true if this Job reads only its pinned Snapshot.
+     */
+    public boolean isSnapshotExamine() { return false; }
+    
+    /**
+     * Returns the Snapshot of the database at the start of this Job.
+     * @return the Snapshot of the database at the start of this Job.
+     */
+    public Snapshot getPinnedSnapshot() { return ejob.oldSnapshot; }
+    
     /**
      * This method executes in the Client side after exceptional termination of doIt method.
      * @param jobException null exception thrown by doIt.
@@ -383,6 +431,8 @@ public abstract class Job implements Serializable {
     private synchronized boolean getAborted() { return aborted; }
     /** get display status */
     public boolean getDisplay() { return display; }
+    /** get priority */
+    public Priority getPriority() { return priority; }
     /** get deleteWhenDone status */
     public boolean getDeleteWhenDone() { return deleteWhenDone; }
 
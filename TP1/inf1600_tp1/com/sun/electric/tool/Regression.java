@@ -68,7 +68,7 @@ public class Regression {
                 System.out.println("Can't connect");
                 return;
             }
-            reader = new SnapshotReader(new DataInputStream(new BufferedInputStream(socket.getInputStream())), database.getIdManager());
+            reader = new SnapshotReader(new DataInputStream(new FrameStream.Input(new BufferedInputStream(socket.getInputStream()))), database.getIdManager());
             DataOutputStream clientOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
             int protocolVersion = reader.readInt();
             if (protocolVersion != Job.PROTOCOL_VERSION) {
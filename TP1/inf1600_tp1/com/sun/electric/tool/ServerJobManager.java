@@ -94,7 +94,7 @@ public class ServerJobManager extends JobManager implements Observer, Runnable {
     }
     
     private int initThreads(int recommendedNumThreads) {
-        int maxNumThreads = DEFAULT_NUM_THREADS;
+        int maxNumThreads = Math.max(DEFAULT_NUM_THREADS, Runtime.getRuntime().availableProcessors());
         if (recommendedNumThreads > 0)
             maxNumThreads = recommendedNumThreads;
         Job.logger.logp(Level.FINE, CLASS_NAME, "initThreads", "maxNumThreads=" + maxNumThreads);
@@ -259,9 +259,37 @@ public class ServerJobManager extends JobManager implements Observer, Runnable {
     }
     
     private boolean canDoIt() {
-        if (waitingJobs.isEmpty()) return false;
-        EJob ejob = waitingJobs.get(0);
-        return startedJobs.isEmpty() || !runningChangeJob && ejob.isExamine();
+        return selectWaitingJob() >= 0;
+    }
+    
+    /**
+     * Selects a waiting job which can be started now.
+     * A job never passes a waiting CHANGE job, so the jobs see the changes queued before them.
+     * Among the EXAMINE jobs queued before the first CHANGE job, the one with the highest priority is selected,
+     * so short interactive examines are not delayed by long analysis.
+     * A CHANGE job runs only with snapshot examines, which read their pinned snapshots.
+     * An ordinary EXAMINE job doesn't run with a CHANGE job.
+     * @return index of selected job in waitingJobs or -1.
+     */
+    private int selectWaitingJob() {
+        boolean runningExamine = false;
+        for (EJob ejob: startedJobs) {
+            if (ejob.isExamine() && !ejob.isSnapshotExamine())
+                runningExamine = true;
+        }
+        int selected = -1;
+        for (int i = 0; i < waitingJobs.size(); i++) {
+            EJob ejob = waitingJobs.get(i);
+            if (!ejob.isExamine()) {
+                if (i == 0 && !runningChangeJob && !runningExamine)
+                    selected = 0;
+                break;
+            }
+            if (runningChangeJob && !ejob.isSnapshotExamine()) continue;
+            if (selected < 0 || ejob.getPriority().compareTo(waitingJobs.get(selected).getPriority()) < 0)
+                selected = i;
+        }
+        return selected;
     }
     
     private void setEJobState(EJob ejob, EJob.State newState, String info) {
@@ -279,14 +307,15 @@ public class ServerJobManager extends JobManager implements Observer, Runnable {
                 }
                break;
             case SERVER_DONE:
-                currentSnapshot = ejob.newSnapshot;
+                if (ejob.newSnapshot != null)
+                    currentSnapshot = ejob.newSnapshot;
                 boolean removed;
                 if (oldState == EJob.State.WAITING) {
                     removed = waitingJobs.remove(ejob);
                 } else {
                     assert oldState == EJob.State.RUNNING;
                     removed = startedJobs.remove(ejob);
-                    if (startedJobs.isEmpty())
+                    if (!ejob.isExamine())
                         runningChangeJob = false;
                 }
                 assert removed;
@@ -394,16 +423,20 @@ public class ServerJobManager extends JobManager implements Observer, Runnable {
             for (;;) {
                 signalledEThread = false;
                 // Search for examine
-                if (canDoIt()) {
-                    EJob ejob = waitingJobs.remove(0);
+                int index = selectWaitingJob();
+                if (index >= 0) {
+                    EJob ejob = waitingJobs.remove(index);
                     startedJobs.add(ejob);
                     if (ejob.isExamine()) {
-                        assert !runningChangeJob;
+                        assert !runningChangeJob || ejob.isSnapshotExamine();
+                        // pin the snapshot of the last finished job
+                        if (ejob.isSnapshotExamine())
+                            ejob.oldSnapshot = currentSnapshot;
                         invokeEThread();
                     } else {
-                        assert startedJobs.size() == 1;
                         assert !runningChangeJob;
                         runningChangeJob = true;
+                        invokeEThread();
                     }
                     setEJobState(ejob, EJob.State.RUNNING, "running");
                     selectedEJob = ejob;
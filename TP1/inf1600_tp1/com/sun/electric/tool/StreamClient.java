@@ -29,22 +29,30 @@ import com.sun.electric.database.hierarchy.EDatabase;
 import com.sun.electric.tool.Client.ServerEvent;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 
 /**
  * Class for maintaining Connection on Server side.
  */
 public class StreamClient extends Client {
+    private static final String CLASS_NAME = StreamClient.class.getName();
+    /** Time to wait for more snapshots after a job has finished. */    private static final long SNAPSHOT_BATCH_MILLIS = 20;
     private static final ReentrantLock lock = new ReentrantLock();
     private static final Condition queueChanged = lock.newCondition();
     private static ServerEvent queueTail = new ServerEvent();
     
+    private final FrameStream.Output frameStream;
     private final SnapshotWriter writer;
     private Snapshot currentSnapshot = EDatabase.serverDatabase().getInitialSnapshot();
     private Snapshot initialSnapshot;
@@ -53,10 +61,18 @@ public class StreamClient extends Client {
     private static final long STACK_SIZE_EVENT = isOSMac()?0:20*(1 << 10);
     private final static int STACK_SIZE_READER = isOSMac()?0:1024;
     
+    /** Time when this connection was started. */               private long startTime;
+    /** Number of snapshots written to the stream. */           private int numSnapshotsWritten;
+    /** Number of snapshots not written because of a later one. */ private int numSnapshotsCoalesced;
+    /** Number of events written to the stream. */              private int numEvents;
+    /** Sum of delays between firing and sending of events. */  private long totalLatency;
+    /** Maximal delay between firing and sending of an event. */private long maxLatency;
+    
     StreamClient(int connectionId, InputStream inputStream, OutputStream outputStream, Snapshot initialSnapshot) {
         super(connectionId);
 //        writer = new ClientWriter(outputStream, initialSnapshot);
-        writer = new SnapshotWriter(new DataOutputStream(outputStream));
+        frameStream = new FrameStream.Output(new BufferedOutputStream(outputStream));
+        writer = new SnapshotWriter(new DataOutputStream(frameStream));
         this.initialSnapshot = initialSnapshot;
         dispatcher = new ServerEventDispatcher();
         reader = inputStream != null ? new ClientReader(inputStream) : null;
@@ -77,31 +93,97 @@ public class StreamClient extends Client {
         
         public void run() {
             try {
+                startTime = System.currentTimeMillis();
                 if (reader != null)
                     reader.start();
                 writer.writeInt(Job.PROTOCOL_VERSION);
                 writeSnapshot(initialSnapshot, false);
                 initialSnapshot = null;
+                writer.flush();
+                List<ServerEvent> batch = new ArrayList<ServerEvent>();
                 for (;;) {
                     lock.lock();
                     try {
                         while (lastEvent.next == null)
                             queueChanged.await();
-                        lastEvent = lastEvent.next;
+                        
+                        // let the snapshots of jobs which finish soon after this one go together
+                        if (lastEvent.next.getSnapshot() != null) {
+                            long nanos = TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_BATCH_MILLIS);
+                            while (nanos > 0)
+                                nanos = queueChanged.awaitNanos(nanos);
+                        }
+                        while (lastEvent.next != null) {
+                            lastEvent = lastEvent.next;
+                            batch.add(lastEvent);
+                        }
                     } finally {
                         lock.unlock();
                     }
-                    lastEvent.dispatchOnStreamClient(StreamClient.this);
-                    writer.flush();
+                    dispatchBatch(batch);
+                    batch.clear();
                 }
             } catch (InterruptedException e) {
                 e.printStackTrace(System.out);
             } catch (Exception e) {
                 e.printStackTrace(System.out);
+            } finally {
+                Job.logger.logp(Level.INFO, CLASS_NAME, "run", getStatistics());
             }
         }
     }
     
+    /**
+     * Writes a batch of events to the stream as one frame.
+     * Only the newest snapshot of the batch is written. It is written before the first event
+     * which brings a snapshot, so that event is received with the changes of the whole batch.
+     * @param batch the events in order of firing.
+     */
+    private void dispatchBatch(List<ServerEvent> batch) throws IOException {
+        Snapshot newSnapshot = null;
+        Snapshot lastSeen = currentSnapshot;
+        for (ServerEvent event: batch) {
+            Snapshot snapshot = event.getSnapshot();
+            if (snapshot == null || snapshot == lastSeen) continue;
+            if (newSnapshot != null)
+                numSnapshotsCoalesced++;
+            newSnapshot = lastSeen = snapshot;
+        }
+        for (ServerEvent event: batch) {
+            if (newSnapshot != null && event.getSnapshot() != null) {
+                if (newSnapshot != currentSnapshot)
+                    writeSnapshot(newSnapshot, false);
+                newSnapshot = null;
+            }
+            event.dispatchOnStreamClient(this);
+        }
+        writer.flush();
+        
+        long now = System.currentTimeMillis();
+        for (ServerEvent event: batch) {
+            long latency = now - event.createTime;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+        }
+        numEvents += batch.size();
+        if (Job.logger.isLoggable(Level.FINE))
+            Job.logger.logp(Level.FINE, CLASS_NAME, "dispatchBatch", getStatistics());
+    }
+    
+    /**
+     * Returns the throughput and latency of this connection.
+     * @return a description of the traffic of this connection.
+     */
+    String getStatistics() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        long rawBytes = frameStream.getRawBytes();
+        long wireBytes = frameStream.getWireBytes();
+        return "Connection " + connectionId + ": " + numSnapshotsWritten + " snapshots (" + numSnapshotsCoalesced + " coalesced), " +
+                numEvents + " events, " + rawBytes + " bytes packed to " + wireBytes + " bytes, " +
+                (wireBytes * 1000 / elapsed) + " bytes/sec, latency avg " + (numEvents != 0 ? totalLatency / numEvents : 0) +
+                " ms max " + maxLatency + " ms";
+    }
+
     static void addEvent(ServerEvent newEvent) {
         lock.lock();
         try {
@@ -126,12 +208,10 @@ public class StreamClient extends Client {
         writer.writeByte((byte)1);
         newSnapshot.writeDiffs(writer, currentSnapshot);
         currentSnapshot = newSnapshot;
+        numSnapshotsWritten++;
     }
     
     void writeEJobEvent(EJob ejob, EJob.State newState, long timeStamp) throws IOException {
-        if (ejob.newSnapshot != null && ejob.newSnapshot != currentSnapshot) {
-            writeSnapshot(ejob.newSnapshot, ejob.jobType == Job.Type.UNDO);
-        }
         switch (newState) {
             case WAITING:
             case RUNNING:
@@ -25,20 +25,26 @@ package com.sun.electric.tool.drc;
 
 import com.sun.electric.database.CellBackup;
 import com.sun.electric.database.CellId;
+import com.sun.electric.database.ExportId;
 import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableElectricObject;
+import com.sun.electric.database.ImmutableExport;
 import com.sun.electric.database.ImmutableNodeInst;
 import com.sun.electric.database.Snapshot;
 import com.sun.electric.database.constraint.Layout;
+import com.sun.electric.database.geometry.GenMath;
 import com.sun.electric.database.geometry.GeometryHandler;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.Library;
 import com.sun.electric.database.prototype.NodeProto;
+import com.sun.electric.database.prototype.PortProtoId;
 import com.sun.electric.database.text.Pref;
 import com.sun.electric.database.text.TextUtils;
 import com.sun.electric.database.text.Version;
 import com.sun.electric.database.topology.ArcInst;
 import com.sun.electric.database.topology.Geometric;
 import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.TextDescriptor;
 import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.*;
 import com.sun.electric.technology.technologies.Artwork;
@@ -68,6 +74,7 @@ public class DRC extends Listener
     {
         long date;
         int bits;
+        long hash; // 0 if no content hash is available
         StoreDRCInfo(long d, int b)
         {
             date = d;
@@ -80,6 +87,8 @@ public class DRC extends Listener
     public static final Variable.Key DRC_LAST_GOOD_DATE = Variable.newKey("DRC_last_good_drc_date");
     /** key of Variable for last valid DRC bit on a Cell. */
     public static final Variable.Key DRC_LAST_GOOD_BIT = Variable.newKey("DRC_last_good_drc_bit");
+    /** key of Variable for the content hash of a Cell at its last valid DRC. */
+    public static final Variable.Key DRC_LAST_GOOD_HASH = Variable.newKey("DRC_last_good_drc_hash");
     private static final int DRC_BIT_AREA = 01; /* Min area condition */
     private static final int DRC_BIT_COVERAGE = 02;   /* Coverage DRC condition */
     private static final int DRC_BIT_ST_FOUNDRY = 04; /* For ST foundry selection */
@@ -313,7 +322,7 @@ public class DRC extends Listener
         private static String getJobName(Cell cell) { return "Design-Rule Check " + cell; }
 		protected CheckDRCJob(Cell cell, Listener tool, Priority priority, boolean layout)
 		{
-			super(getJobName(cell), tool, Job.Type.EXAMINE, null, null, priority);
+			super(getJobName(cell), tool, Job.Type.EXAMINE, null, cell, priority);
 			this.cell = cell;
             this.isLayout = layout;
 
@@ -737,8 +746,10 @@ public class DRC extends Listener
             }
             else
                 thisByte = ((Integer)varBits.getObject()).intValue();
+            Variable varHash = cell.getVar(DRC_LAST_GOOD_HASH, Long.class);
             data.bits = thisByte;
             data.date = lastDRCDateInMilliseconds;
+            data.hash = (varHash != null) ? ((Long)varHash.getObject()).longValue() : 0;
         }
         else
         {
@@ -803,6 +814,123 @@ public class DRC extends Listener
     {
         cell.delVar(DRC_LAST_GOOD_DATE);
         cell.delVar(DRC_LAST_GOOD_BIT);
+        cell.delVar(DRC_LAST_GOOD_HASH);
+    }
+
+    /**
+     * Method to check if a cell was DRC clean the last time it had exactly the given contents.
+     * Unlike the DRC date, the content hash survives edits that are undone and changes that
+     * don't touch the cell or its subcells.
+     * @param cell the cell to query.
+     * @param hash the content hash of the cell, from getCellDRCHash.
+     * @param fromDisk
+     * @return true if the stored hash of the last good DRC matches.
+     */
+    public static boolean isCellDRCHashGood(Cell cell, long hash, boolean fromDisk)
+    {
+        StoreDRCInfo data = getCellGoodDRCDateAndBits(cell, fromDisk);
+        return data != null && data.hash != 0 && data.hash == hash;
+    }
+
+    /**
+     * Method to compute the content hash of a cell for the DRC result cache.
+     * The hash covers the nodes, arcs, exports and variables of the CellBackup, the hashes
+     * of all subcells and the design rules (technology, foundry, overrides and active bits)
+     * under which the cell is checked. It only depends on names and coordinates, so it stays
+     * valid when the library is read again.
+     * @param cell the cell to hash.
+     * @param activeBits the DRC bits of the current run.
+     * @param cellHashes the hashes computed so far in this run.
+     * @return the content hash of the cell (never 0).
+     */
+    public static long getCellDRCHash(Cell cell, int activeBits, Map<Cell,Long> cellHashes)
+    {
+        Long cached = cellHashes.get(cell);
+        if (cached != null) return cached.longValue();
+
+        CellBackup cellBackup = cell.backupUnsafe();
+        Technology tech = cell.getTechnology();
+        long h = GenMath.mixHash(GenMath.HASH_SEED, activeBits);
+        if (tech != null)
+        {
+            h = GenMath.mixHash(h, tech.getTechName());
+            Foundry foundry = tech.getSelectedFoundry();
+            if (foundry != null) h = GenMath.mixHash(h, foundry.toString());
+            h = GenMath.mixHash(h, getDRCOverrides(tech).toString());
+        }
+        h = GenMath.mixHash(h, isIgnoreCenterCuts() ? 1 : 0);
+        h = mixVariables(h, cellBackup.d);
+
+        for (ImmutableNodeInst d : cellBackup.nodes)
+        {
+            if (d.protoId instanceof CellId)
+            {
+                Cell subCell = cell.getDatabase().getCell((CellId)d.protoId);
+                h = GenMath.mixHash(h, subCell != null ? getCellDRCHash(subCell, activeBits, cellHashes) : 0);
+            } else
+                h = GenMath.mixHash(h, ((PrimitiveNode)d.protoId).getFullName());
+            h = GenMath.mixHash(h, d.name.toString());
+            h = GenMath.mixHash(h, d.anchor.getGridX());
+            h = GenMath.mixHash(h, d.anchor.getGridY());
+            h = GenMath.mixHash(h, d.size.getGridX());
+            h = GenMath.mixHash(h, d.size.getGridY());
+            h = GenMath.mixHash(h, d.orient.getAngle());
+            h = GenMath.mixHash(h, (d.orient.isXMirrored() ? 2 : 0) | (d.orient.isYMirrored() ? 1 : 0));
+            h = GenMath.mixHash(h, d.techBits);
+            h = GenMath.mixHash(h, d.flags);
+            h = mixVariables(h, d);
+        }
+        for (ImmutableArcInst d : cellBackup.arcs)
+        {
+            h = GenMath.mixHash(h, d.protoType.getFullName());
+            h = GenMath.mixHash(h, d.name.toString());
+            h = GenMath.mixHash(h, d.tailNodeId);
+            h = GenMath.mixHash(h, getPortHash(d.tailPortId));
+            h = GenMath.mixHash(h, d.tailLocation.getGridX());
+            h = GenMath.mixHash(h, d.tailLocation.getGridY());
+            h = GenMath.mixHash(h, d.headNodeId);
+            h = GenMath.mixHash(h, getPortHash(d.headPortId));
+            h = GenMath.mixHash(h, d.headLocation.getGridX());
+            h = GenMath.mixHash(h, d.headLocation.getGridY());
+            h = GenMath.mixHash(h, d.getGridFullWidth());
+            h = GenMath.mixHash(h, d.getAngle());
+            h = GenMath.mixHash(h, d.flags);
+            h = mixVariables(h, d);
+        }
+        for (ImmutableExport d : cellBackup.exports)
+        {
+            h = GenMath.mixHash(h, d.name.toString());
+            h = GenMath.mixHash(h, d.originalNodeId);
+            h = GenMath.mixHash(h, getPortHash(d.originalPortId));
+            h = GenMath.mixHash(h, d.characteristic.getBits());
+        }
+        if (h == 0) h = 1;
+        cellHashes.put(cell, new Long(h));
+        return h;
+    }
+
+    private static long getPortHash(PortProtoId portId)
+    {
+        if (portId instanceof ExportId) return ((ExportId)portId).externalId.hashCode();
+        return portId.getChronIndex();
+    }
+
+    /**
+     * Method to add the Variables of an object to a content hash.
+     * The DRC Variables themselves are skipped, otherwise storing a good hash would change it.
+     */
+    private static long mixVariables(long h, ImmutableElectricObject d)
+    {
+        for (Iterator<Variable> it = d.getVariables(); it.hasNext(); )
+        {
+            Variable var = it.next();
+            Variable.Key key = var.getKey();
+            if (key == DRC_LAST_GOOD_DATE || key == DRC_LAST_GOOD_BIT || key == DRC_LAST_GOOD_HASH) continue;
+            Object obj = var.getObject();
+            h = GenMath.mixHash(h, key.getName());
+            h = GenMath.mixHash(h, (obj instanceof Object[]) ? Arrays.deepHashCode((Object[])obj) : obj.hashCode());
+        }
+        return h;
     }
 
     public static String explainBits(int bits)
@@ -1066,12 +1194,19 @@ public class DRC extends Listener
 
     public static void addDRCUpdate(int bits, HashMap<Cell, Date> goodDRCDate, HashMap<Cell, Cell> cleanDRCDate,
                                     HashMap<Geometric, List<Variable>> newVariables)
+    {
+        addDRCUpdate(bits, goodDRCDate, null, cleanDRCDate, newVariables);
+    }
+
+    public static void addDRCUpdate(int bits, HashMap<Cell, Date> goodDRCDate, HashMap<Cell, Long> goodDRCHash,
+                                    HashMap<Cell, Cell> cleanDRCDate, HashMap<Geometric, List<Variable>> newVariables)
     {
         boolean good = (goodDRCDate != null && goodDRCDate.size() > 0);
+        boolean hash = (goodDRCHash != null && goodDRCHash.size() > 0);
         boolean clean = (cleanDRCDate != null && cleanDRCDate.size() > 0);
         boolean vars = (newVariables != null && newVariables.size() > 0);
-        if (!good && !clean && !vars) return; // nothing to do
-        new DRCUpdate(bits, goodDRCDate, cleanDRCDate, newVariables);
+        if (!good && !hash && !clean && !vars) return; // nothing to do
+        new DRCUpdate(bits, goodDRCDate, goodDRCHash, cleanDRCDate, newVariables);
     }
 
 	/**
@@ -1123,14 +1258,17 @@ public class DRC extends Listener
 	private static class DRCUpdate extends Job
 	{
 		HashMap<Cell,Date> goodDRCDate;
+		HashMap<Cell,Long> goodDRCHash;
 		HashMap<Cell,Cell> cleanDRCDate;
         HashMap<Geometric,List<Variable>> newVariables;
         int activeBits;
 
-		public DRCUpdate(int bits, HashMap<Cell, Date> goodDRCDate, HashMap<Cell, Cell> cleanDRCDate, HashMap<Geometric, List<Variable>> newVariables)
+		public DRCUpdate(int bits, HashMap<Cell, Date> goodDRCDate, HashMap<Cell, Long> goodDRCHash,
+                         HashMap<Cell, Cell> cleanDRCDate, HashMap<Geometric, List<Variable>> newVariables)
 		{
 			super("Update DRC data", tool, Type.CHANGE, null, null, Priority.USER);
             this.goodDRCDate = goodDRCDate;
+            this.goodDRCHash = goodDRCHash;
 			this.cleanDRCDate = cleanDRCDate;
             this.newVariables = newVariables;
             this.activeBits = bits;
@@ -1165,6 +1303,33 @@ public class DRC extends Listener
                     }
                 }
             }
+            if (goodDRCHash != null)
+            {
+                TextDescriptor td = TextDescriptor.getCellTextDescriptor().withDisplay(false);
+                for (Map.Entry<Cell,Long> e : goodDRCHash.entrySet())
+                {
+                    Cell cell = e.getKey();
+
+                    if (!cell.isLinked())
+                        throw new JobException("Cell '" + cell + "' is invalid to update DRC hash");
+                    if (inMemory)
+                    {
+                        StoreDRCInfo data = storedDRCDate.get(cell);
+                        if (data == null)
+                        {
+                            data = new StoreDRCInfo(-1, activeBits);
+                            storedDRCDate.put(cell, data);
+                        }
+                        data.hash = e.getValue().longValue();
+                    }
+                    else
+                    {
+                        // the new hash changes the cell, so its DRC date must be refreshed too
+                        cell.addVar(Variable.newInstance(DRC_LAST_GOOD_HASH, e.getValue(), td));
+                        goodDRCCells.add(cell);
+                    }
+                }
+            }
             if (!goodDRCCells.isEmpty())
                 Layout.setGoodDRCCells(goodDRCCells, activeBits, inMemory);
 
@@ -1180,6 +1345,7 @@ public class DRC extends Listener
                         assert(data != null);
                         data.date = -1;
                         data.bits = -1; // I can't put null because of the version
+                        data.hash = 0;
                         if (!inMemory)
                             cleanDRCDateAndBits(cell);
                     }
@@ -57,6 +57,10 @@ import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the "quick" DRC which does full hierarchical examination of the circuit.
@@ -158,6 +162,40 @@ public class Quick
         this.mergeMode = mode;
 	}
 
+	/**
+	 * Constructor for a worker of a multi-threaded DRC.
+	 * The worker shares the hierarchical network numbering, the exclusion areas and the rule caches of its parent,
+	 * but has its own ErrorLogger and its own caches of checked nodes and instance interactions.
+	 * @param parent the Quick object that set up the DRC.
+	 */
+	private Quick(Quick parent)
+	{
+		job = parent.job;
+		mergeMode = parent.mergeMode;
+		activeBits = parent.activeBits;
+		inMemory = parent.inMemory;
+		minAllowedResolution = parent.minAllowedResolution;
+		errorTypeSearch = parent.errorTypeSearch;
+		ignoreCenterCuts = parent.ignoreCenterCuts;
+		numberOfThreads = 1;
+		topCell = parent.topCell;
+		worstInteractionDistance = parent.worstInteractionDistance;
+		minAreaLayerMap = parent.minAreaLayerMap;
+		enclosedAreaLayerMap = parent.enclosedAreaLayerMap;
+		slotSizeLayerMap = parent.slotSizeLayerMap;
+		checkProtos = parent.checkProtos;
+		checkInsts = parent.checkInsts;
+		networkLists = parent.networkLists;
+		exclusionMap = parent.exclusionMap;
+		od2Layers = parent.od2Layers;
+		layersValidTech = parent.layersValidTech;
+		layersValid = parent.layersValid;
+		layerInterTech = parent.layerInterTech;
+		layersInterNodes = parent.layersInterNodes;
+		layersInterArcs = parent.layersInterArcs;
+		errorLogger = ErrorLogger.newInstance("DRC worker");
+	}
+
 	/**
 	 * The InstanceInter object records interactions between two cell instances and prevents checking
 	 * them multiple times.
@@ -192,8 +230,13 @@ public class Quick
 	/** the other Geometric in "tiny" errors. */				private Geometric tinyGeometric;
 	/** for tracking the time of good DRC. */					private HashMap<Cell,Date> goodDRCDate = new HashMap<Cell,Date>();
 	/** for tracking cells that need to clean good DRC vars */	private HashMap<Cell,Cell> cleanDRCDate = new HashMap<Cell,Cell>();
+	/** for tracking the content hash of good DRC. */			private HashMap<Cell,Long> goodDRCHash = new HashMap<Cell,Long>();
+	/** content hashes of the cells in this check. */			private HashMap<Cell,Long> cellHashes = new HashMap<Cell,Long>();
+	/** cells with errors in them or in their subcells. */		private HashSet<Cell> dirtyCells = new HashSet<Cell>();
 	/** for logging errors */                                   private ErrorLogger errorLogger;
     /** for interactive error logging */                        private boolean interactiveLogger = false;
+	/** chunk of each object in the cell of a DRC worker */		private Map<Geometric,Integer> chunkOf;
+	/** chunk checked by a DRC worker */							private int chunkIndex;
 	/** Top cell for DRC */                                     private Cell topCell;
 
 	/* for figuring out which layers are valid for DRC */
@@ -254,7 +297,7 @@ public class Quick
 		// get the current DRC options
 		errorTypeSearch = DRC.getErrorType();
 		ignoreCenterCuts = DRC.isIgnoreCenterCuts();
-		numberOfThreads = DRC.getNumberOfThreads();
+		numberOfThreads = DRC.isUseMultipleThreads() ? DRC.getNumberOfThreads() : 1;
 	    topCell = cell; /* Especially important for minArea checking */
 
 		// if checking specific instances, adjust options and processor count
@@ -407,20 +450,28 @@ public class Quick
 		if (count == 0)
 		{
 			// just do full DRC here
-			totalErrors = checkThisCell(cell, 0, bounds);
+			if (numberOfThreads > 1 && bounds == null)
+				totalErrors = checkCellsInParallel(cell);
+			else
+				totalErrors = checkThisCell(cell, 0, bounds);
 			// sort the errors by layer
 			errorLogger.sortLogs();
 		} else
 		{
 			// check only these "count" instances (either an incremental DRC or a quiet one...from Array command)
+			boolean knownGood = false;
 			if (validity == null)
 			{
 				// not a quiet DRC, so it must be incremental
                 logsFound = errorLogger.getNumLogs();
+
+				// nothing to do if the cell is back to contents that were DRC clean (e.g. after an undo)
+				knownGood = DRC.isCellDRCHashGood(cell, DRC.getCellDRCHash(cell, activeBits, cellHashes), !inMemory);
 			}
 
             // @TODO missing counting this number of errors.
-			checkTheseGeometrics(cell, count, geomsToCheck, validity);
+			if (!knownGood)
+				checkTheseGeometrics(cell, count, geomsToCheck, validity);
 		}
 
 		if (errorLogger != null) {
@@ -438,7 +489,7 @@ public class Quick
         // This is only going to happen if job was not aborted.
 	    if ((job == null || !job.checkAbort()))
 	    {
-            DRC.addDRCUpdate(activeBits, goodDRCDate, cleanDRCDate, null);
+            DRC.addDRCUpdate(activeBits, goodDRCDate, goodDRCHash, cleanDRCDate, null);
 	    }
 
         return errorLogger;
@@ -483,6 +534,14 @@ public class Quick
             return totalMsgFound;
         }
 
+		// if the cell and all of its subcells are the same as in the last good check, skip the whole subtree
+		long cellHash = DRC.getCellDRCHash(cell, activeBits, cellHashes);
+		if (DRC.isCellDRCHashGood(cell, cellHash, !inMemory))
+		{
+			getCheckProto(cell).cellChecked = true;
+			return 0;
+		}
+
 		// first check all subcells
 		boolean allSubCellsStillOK = true;
         Area area = exclusionMap.get(cell);
@@ -514,7 +573,11 @@ public class Quick
 			}
 
 			CheckProto cp = getCheckProto((Cell)np);
-			if (cp.cellChecked && !cp.cellParameterized) continue;
+			if (cp.cellChecked && !cp.cellParameterized)
+			{
+				if (dirtyCells.contains(np)) dirtyCells.add(cell);
+				continue;
+			}
 
 			// recursively check the subcell
 			CheckInst ci = checkInsts.get(ni);
@@ -522,6 +585,7 @@ public class Quick
 			int retval = checkThisCell((Cell)np, localIndex, subBounds);
 			if (retval < 0)
 				return retval;
+			if (dirtyCells.contains(np)) dirtyCells.add(cell);
             // if cell is in goodDRCDate it means it changes its date for some reason.
             // This happen when a subcell was reloaded and DRC again. The cell containing
             // the subcell instance must be re-DRC to make sure changes in subCell don't affect
@@ -608,6 +672,7 @@ public class Quick
 		if (totalMsgFound > 0) //  || !allSubCellsStillOK)
 		{
 			cleanDRCDate.put(cell, cell);
+			dirtyCells.add(cell);
 		}
 		else
 		{
@@ -616,6 +681,10 @@ public class Quick
             // If lastGoodDate == null, wrong bits stored or no date available.
             if (lastGoodDate == null)
 			    goodDRCDate.put(cell, new Date());
+            // The hash covers the subcells too, so it is only valid if the whole cell was examined
+            // and none of its subcells has errors
+            if (bounds == null && !dirtyCells.contains(cell))
+                goodDRCHash.put(cell, new Long(cellHash));
 		}
 
 		// if there were no errors, remember that
@@ -641,6 +710,396 @@ public class Quick
 		return totalMsgFound;
 	}
 
+    /*************************** MULTI-THREADED CELL EXAMINATION ***************************/
+
+	/** weight of a cell instance when splitting a cell into chunks */	private static final int CELLINSTWEIGHT = 64;
+	/** total weight of the objects in one chunk */						private static final int CHUNKWEIGHT = 1024;
+
+	/**
+	 * The CellCheck object schedules the check of one cell in a multi-threaded DRC.
+	 * A cell is checked once all of its subcells have been checked.
+	 * Its contents are split into chunks that are checked independently, each by its own worker.
+	 */
+	private static class CellCheck
+	{
+		/** the cell to check */										Cell cell;
+		/** global network index of the first instance of the cell */	int globalIndex;
+		/** true if the cell is annotated to be skipped */				boolean blackBox;
+		/** the last good DRC date of the cell */						Date lastGoodDate;
+		/** the content hash of the cell and its subcells */			long hash;
+		/** true if the hash matches the last good check */				boolean hashGood;
+		/** the subcells of the cell */									List<CellCheck> children = new ArrayList<CellCheck>();
+		/** the cells that contain instances of the cell */				List<CellCheck> parents = new ArrayList<CellCheck>();
+		/** number of subcells that are not checked yet */				AtomicInteger pendingChildren = new AtomicInteger();
+		/** number of chunks that are not checked yet */				AtomicInteger pendingChunks = new AtomicInteger();
+		/** the objects of each chunk */								List<List<Geometric>> chunks;
+		/** the chunk of each object */									Map<Geometric,Integer> chunkOf;
+		/** the worker that checked each chunk */						Quick [] workers;
+		/** the number of errors found by each chunk */					int [] chunkErrors;
+		/** true if the contents of the cell were checked */			boolean checked;
+		/** errors found, or -1 if the job was aborted */				int result;
+		/** true if the cell is newly DRC clean */						boolean markedGood;
+		/** true if the cell or one of its subcells has errors */		boolean dirty;
+	}
+
+	/**
+	 * Method to check cell "cell" and all of its subcells on several threads.
+	 * Cells are scheduled bottom-up: each unique cell is checked with the global network index
+	 * of its first instance (in the order that checkThisCell would visit it) as soon as its subcells are done.
+	 * The errors of each worker are merged into the ErrorLogger in that same order, so the result does not
+	 * depend on thread timing.
+	 * @param cell the top cell to check.
+	 * @return positive number if errors are found, zero if no errors are found, -1 if the job was aborted.
+	 */
+	private int checkCellsInParallel(Cell cell)
+	{
+		// number the cells as checkThisCell would and prepare them for examination on other threads
+		Map<Cell,CellCheck> cellChecks = new HashMap<Cell,CellCheck>();
+		List<CellCheck> checkOrder = new ArrayList<CellCheck>();
+		gatherCellChecks(cell, 0, cellChecks, checkOrder);
+		CellCheck topCheck = cellChecks.get(cell);
+		if (Job.getDebug())
+			System.out.println("Checking " + checkOrder.size() + " cells with " + numberOfThreads + " threads");
+
+		final ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads);
+		final CountDownLatch allDone = new CountDownLatch(checkOrder.size());
+		final Throwable [] failure = new Throwable[1];
+		for(CellCheck cc : checkOrder)
+		{
+			cc.pendingChildren.set(cc.children.size());
+			if (cc.children.isEmpty()) scheduleCellCheck(pool, cc, allDone, failure);
+		}
+		try
+		{
+			allDone.await();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} finally
+		{
+			pool.shutdown();
+		}
+		if (failure[0] != null)
+		{
+			if (failure[0] instanceof RuntimeException) throw (RuntimeException)failure[0];
+			if (failure[0] instanceof Error) throw (Error)failure[0];
+			throw new RuntimeException(failure[0]);
+		}
+
+		// the area check of the top cell runs on this thread because it enumerates the hierarchy
+		Quick areaWorker = null;
+		int areaErrors = 0;
+		if (topCheck.checked && !DRC.isIgnoreAreaChecking() && errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_CELL)
+		{
+			areaWorker = new Quick(this);
+			areaErrors = areaWorker.checkMinArea(cell);
+		}
+
+		// merge the results in the order of a single-threaded check
+		for(CellCheck cc : checkOrder)
+		{
+			if (cc.result < 0) return -1;
+			if (!cc.checked) continue;
+			int prevErrors = errorLogger.getNumErrors();
+			int prevWarns = errorLogger.getNumWarnings();
+			System.out.println("Checking " + cc.cell);
+			if (cc == topCheck && areaWorker != null)
+				mergeWorkerLogs(areaWorker);
+			for(int i=0; i<cc.workers.length; i++)
+			{
+				mergeWorkerLogs(cc.workers[i]);
+				if (cc.chunkErrors[i] > 0 && errorTypeSearch == DRC.DRCCheckMode.ERROR_CHECK_CELL) break;
+			}
+			if (cc.result > 0 || (cc == topCheck && areaErrors > 0)) cleanDRCDate.put(cc.cell, cc.cell); else
+			{
+				if (cc.markedGood) goodDRCDate.put(cc.cell, new Date());
+				if (!cc.dirty) goodDRCHash.put(cc.cell, new Long(cc.hash));
+			}
+
+			int localErrors = errorLogger.getNumErrors() - prevErrors;
+			int localWarnings = errorLogger.getNumWarnings() - prevWarns;
+			if (localErrors == 0 && localWarnings == 0)
+			{
+				System.out.println("\tNo errors/warnings found");
+			} else
+			{
+				if (localErrors > 0)
+					System.out.println("\tFOUND " + localErrors + " ERRORS");
+				if (localWarnings > 0)
+					System.out.println("\tFOUND " + localWarnings + " WARNINGS");
+			}
+		}
+		return topCheck.result + areaErrors;
+	}
+
+	/**
+	 * Method to build the CellCheck objects of cell "cell" and its subcells.
+	 * The traversal is the same as in checkThisCell, so every cell gets the global index of the instance
+	 * through which checkThisCell would have checked it. This also makes sure that the bounds and the R-Tree of
+	 * every cell are fresh, because they cannot be computed on the worker threads.
+	 * @param cell the cell to examine.
+	 * @param globalIndex the global network index of this instance of the cell.
+	 * @param cellChecks a map from cells to their CellCheck objects.
+	 * @param checkOrder the CellCheck objects in bottom-up order.
+	 * @return the CellCheck object of the cell.
+	 */
+	private CellCheck gatherCellChecks(Cell cell, int globalIndex, Map<Cell,CellCheck> cellChecks, List<CellCheck> checkOrder)
+	{
+		CellCheck cc = cellChecks.get(cell);
+		if (cc != null) return cc;
+		cc = new CellCheck();
+		cc.cell = cell;
+		cc.globalIndex = globalIndex;
+		cellChecks.put(cell, cc);
+
+		Variable drcVar = cell.getVar(DRC_ANNOTATION_KEY);
+		if (drcVar != null && drcVar.getObject().toString().startsWith("black"))
+		{
+			cc.blackBox = true;
+			checkOrder.add(cc);
+			return cc;
+		}
+
+		// an unchanged subtree is not examined at all
+		cc.hash = DRC.getCellDRCHash(cell, activeBits, cellHashes);
+		if (DRC.isCellDRCHashGood(cell, cc.hash, !inMemory))
+		{
+			cc.hashGood = true;
+			checkOrder.add(cc);
+			return cc;
+		}
+
+		Area area = exclusionMap.get(cell);
+		for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+		{
+			NodeInst ni = it.next();
+			if (!ni.isCellInstance()) continue;
+
+			// ignore documentation icons
+			if (ni.isIconOfParent()) continue;
+
+			// Check DRC exclusion regions
+			if (area != null && area.contains(ni.getBounds()))
+				continue; // excluded
+
+			CheckInst ci = checkInsts.get(ni);
+			int localIndex = globalIndex * ci.multiplier + ci.localIndex + ci.offset;
+			CellCheck subCC = gatherCellChecks((Cell)ni.getProto(), localIndex, cellChecks, checkOrder);
+			if (!cc.children.contains(subCC))
+			{
+				cc.children.add(subCC);
+				subCC.parents.add(cc);
+			}
+		}
+
+		cell.getBounds();
+		cell.getTopology().getRTree();
+		cc.lastGoodDate = DRC.getLastDRCDateBasedOnBits(cell, activeBits, !inMemory);
+		checkOrder.add(cc);
+		return cc;
+	}
+
+	/**
+	 * Method to decide whether a cell whose subcells have all been checked must be checked itself,
+	 * and to split it into chunks of similar cost if so.
+	 * @param cc the cell to prepare.
+	 * @return true if the chunks of the cell must be checked.
+	 */
+	private boolean prepareCellCheck(CellCheck cc)
+	{
+		if (job != null && job.checkAbort())
+		{
+			cc.result = -1;
+			return false;
+		}
+		boolean allSubCellsStillOK = true;
+		for(CellCheck subCC : cc.children)
+		{
+			if (subCC.result < 0)
+			{
+				cc.result = -1;
+				return false;
+			}
+			if (subCC.result > 0 || subCC.markedGood) allSubCellsStillOK = false;
+			if (subCC.dirty) cc.dirty = true;
+		}
+
+		// if the cell hasn't changed since the last good check, stop now
+		if (cc.blackBox || cc.hashGood || (allSubCellsStillOK && DRC.isCellDRCDateGood(cc.cell, cc.lastGoodDate)))
+			return false;
+
+		// split the nodes and arcs of the cell into chunks of similar cost
+		cc.checked = true;
+		cc.chunks = new ArrayList<List<Geometric>>();
+		cc.chunkOf = new HashMap<Geometric,Integer>();
+		List<Geometric> chunk = new ArrayList<Geometric>();
+		int weight = 0;
+		Area area = exclusionMap.get(cc.cell);
+		for(Iterator<NodeInst> it = cc.cell.getNodes(); it.hasNext(); )
+		{
+			NodeInst ni = it.next();
+			if (area != null && area.contains(ni.getBounds())) continue;
+			cc.chunkOf.put(ni, new Integer(cc.chunks.size()));
+			chunk.add(ni);
+			weight += ni.isCellInstance() ? CELLINSTWEIGHT : 1;
+			if (weight >= CHUNKWEIGHT)
+			{
+				cc.chunks.add(chunk);
+				chunk = new ArrayList<Geometric>();
+				weight = 0;
+			}
+		}
+		for(Iterator<ArcInst> it = cc.cell.getArcs(); it.hasNext(); )
+		{
+			ArcInst ai = it.next();
+			cc.chunkOf.put(ai, new Integer(cc.chunks.size()));
+			chunk.add(ai);
+			if (++weight >= CHUNKWEIGHT)
+			{
+				cc.chunks.add(chunk);
+				chunk = new ArrayList<Geometric>();
+				weight = 0;
+			}
+		}
+		if (!chunk.isEmpty() || cc.chunks.isEmpty()) cc.chunks.add(chunk);
+
+		return true;
+	}
+
+	/**
+	 * Method to start the check of a cell whose subcells have all been checked.
+	 * The chunks of the cell are handed to the thread pool. A failure while preparing the cell is
+	 * recorded like a failure in a chunk, so that the cell still counts as finished.
+	 */
+	private void scheduleCellCheck(final ExecutorService pool, final CellCheck cc, final CountDownLatch allDone,
+		final Throwable [] failure)
+	{
+		boolean needsCheck;
+		try
+		{
+			needsCheck = prepareCellCheck(cc);
+		} catch (Throwable e)
+		{
+			synchronized (failure) { if (failure[0] == null) failure[0] = e; }
+			cc.result = -1;
+			needsCheck = false;
+		}
+		if (!needsCheck)
+		{
+			finishCellCheck(pool, cc, allDone, failure);
+			return;
+		}
+
+		int numChunks = cc.chunks.size();
+		cc.workers = new Quick[numChunks];
+		cc.chunkErrors = new int[numChunks];
+		cc.pendingChunks.set(numChunks);
+		for(int i=0; i<numChunks; i++)
+		{
+			final int chunkIndex = i;
+			pool.execute(new Runnable() {
+				public void run()
+				{
+					try
+					{
+						Quick worker = new Quick(Quick.this);
+						worker.chunkOf = cc.chunkOf;
+						worker.chunkIndex = chunkIndex;
+						cc.workers[chunkIndex] = worker;
+						cc.chunkErrors[chunkIndex] = worker.checkChunk(cc.cell, cc.chunks.get(chunkIndex), cc.globalIndex);
+					} catch (Throwable e)
+					{
+						synchronized (failure) { if (failure[0] == null) failure[0] = e; }
+						cc.chunkErrors[chunkIndex] = -1;
+					}
+					if (cc.pendingChunks.decrementAndGet() == 0)
+					{
+						for(int j=0; j<cc.chunkErrors.length; j++)
+						{
+							if (cc.chunkErrors[j] < 0) { cc.result = -1;   break; }
+							cc.result += cc.chunkErrors[j];
+						}
+						if (cc.result > 0) cc.dirty = true;
+						if (cc.result == 0 && cc.lastGoodDate == null) cc.markedGood = true;
+						finishCellCheck(pool, cc, allDone, failure);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Method to record that a cell has been checked and to start the check of parent cells that are now ready.
+	 */
+	private void finishCellCheck(final ExecutorService pool, CellCheck cc, final CountDownLatch allDone,
+		final Throwable [] failure)
+	{
+		cc.chunks = null;
+		cc.chunkOf = null;
+		for(final CellCheck parentCC : cc.parents)
+		{
+			if (parentCC.pendingChildren.decrementAndGet() != 0) continue;
+			pool.execute(new Runnable() {
+				public void run() { scheduleCellCheck(pool, parentCC, allDone, failure); }
+			});
+		}
+		allDone.countDown();
+	}
+
+	/**
+	 * Method to check one chunk of the nodes and arcs of a cell.
+	 * This is run on a worker Quick object.
+	 * @param cell the cell being checked.
+	 * @param geoms the nodes and arcs to check.
+	 * @param globalIndex the global network index of the cell.
+	 * @return the number of objects with errors, or -1 if the job was aborted.
+	 */
+	private int checkChunk(Cell cell, List<Geometric> geoms, int globalIndex)
+	{
+		if (job != null && job.checkAbort()) return -1;
+		CheckProto cp = getCheckProto(cell);
+		Technology cellTech = cell.getTechnology();
+		int errorsFound = 0;
+		for(Geometric geom : geoms)
+		{
+			boolean ret;
+			if (geom instanceof NodeInst)
+			{
+				NodeInst ni = (NodeInst)geom;
+				ret = (ni.isCellInstance()) ?
+					checkCellInst(ni, globalIndex) :
+					checkNodeInst(ni, globalIndex);
+			} else
+			{
+				ArcInst ai = (ArcInst)geom;
+				Technology tech = ai.getProto().getTechnology();
+				if (tech != cellTech)
+				{
+					reportError(DRCErrorType.TECHMIXWARN, " belongs to " + tech.getTechName(), cell, 0, 0, null, null, ai, null, null, null, null);
+					continue;
+				}
+				ret = checkArcInst(cp, ai, globalIndex);
+			}
+			if (ret)
+			{
+				errorsFound++;
+				if (errorTypeSearch == DRC.DRCCheckMode.ERROR_CHECK_CELL) break;
+			}
+		}
+		return errorsFound;
+	}
+
+	/**
+	 * Method to move the errors and warnings found by a worker into the ErrorLogger of this DRC.
+	 */
+	private void mergeWorkerLogs(Quick worker)
+	{
+		List<ErrorLogger.MessageLog> logs = new ArrayList<ErrorLogger.MessageLog>();
+		for(Iterator<ErrorLogger.MessageLog> it = worker.errorLogger.getLogs(); it.hasNext(); )
+			logs.add(it.next());
+		errorLogger.addMessages(logs);
+	}
+
     /**
      * Check Poly for CIF Resolution Errors
      * @param poly
@@ -867,24 +1326,28 @@ public class Quick
 
         if (layer.getFunction().isImplant() && (funExtras&Layer.Function.THICK) != 0)
         {
-            // Only stores first node found
-            od2Layers.put(layer, ni);
-
-            // More than one type used.
-            if (od2Layers.size() != 1)
+            // od2Layers is shared by all workers of a multi-threaded DRC
+            synchronized (od2Layers)
             {
-                for (Map.Entry<Layer,NodeInst> e : od2Layers.entrySet())
+                // Only stores first node found
+                od2Layers.put(layer, ni);
+
+                // More than one type used.
+                if (od2Layers.size() != 1)
                 {
-                    Layer lay1 = e.getKey();
-                    if (lay1 == layer) continue;
-                    if (DRC.isForbiddenNode(lay1.getIndex(), layer.getIndex(), DRCTemplate.DRCRuleType.FORBIDDEN, tech))
+                    for (Map.Entry<Layer,NodeInst> e : od2Layers.entrySet())
                     {
-                        NodeInst node = e.getValue(); // od2Layers.get(lay1);
-                        String message = "- combination of layers '" + layer.getName() + "' and '" + lay1.getName() + "' (in '" +
-                                node.getParent().getName() + ":" + node.getName() +"') not allowed by selected foundry";
-                        reportError(DRCErrorType.FORBIDDEN, message, ni.getParent(), -1, -1, null, null, ni, null, null, node, null);
+                        Layer lay1 = e.getKey();
+                        if (lay1 == layer) continue;
+                        if (DRC.isForbiddenNode(lay1.getIndex(), layer.getIndex(), DRCTemplate.DRCRuleType.FORBIDDEN, tech))
+                        {
+                            NodeInst node = e.getValue(); // od2Layers.get(lay1);
+                            String message = "- combination of layers '" + layer.getName() + "' and '" + lay1.getName() + "' (in '" +
+                                    node.getParent().getName() + ":" + node.getName() +"') not allowed by selected foundry";
+                            reportError(DRCErrorType.FORBIDDEN, message, ni.getParent(), -1, -1, null, null, ni, null, null, node, null);
 
-                        return true;
+                            return true;
+                        }
                     }
                 }
             }
@@ -4306,6 +4769,13 @@ public class Quick
 		if ( geom2 != null && errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_EXHAUSTIVE && errorLogger.findMessage(cell, geom1, geom2.getParent(), geom2, !onlyWarning))
             return;
 
+        // In a multi-threaded DRC, an error between two chunks belongs to the chunk that a single thread checks first
+        if (chunkOf != null && geom2 != null && errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_EXHAUSTIVE)
+        {
+            Integer otherChunk = chunkOf.get(geom2);
+            if (otherChunk != null && otherChunk.intValue() < chunkIndex) return;
+        }
+
 		StringBuffer errorMessage = new StringBuffer();
 		int sortLayer = cell.hashCode(); // 0;
 		if (errorType == DRCErrorType.SPACINGERROR || errorType == DRCErrorType.NOTCHERROR || errorType == DRCErrorType.SURROUNDERROR)
@@ -140,7 +140,7 @@ public class ERCAntenna
 
         private AntennaCheckJob(Cell cell)
 		{
-			super("ERC Antenna Check", ERC.tool, Job.Type.EXAMINE, null, null, Job.Priority.USER);
+			super("ERC Antenna Check", ERC.tool, Job.Type.EXAMINE, null, cell, Job.Priority.USER);
 			this.cell = cell;
 			startJob();
 		}
@@ -132,7 +132,7 @@ public class ERCWellCheck
 
         private WellCheckJob(Cell cell, GeometryHandler.GHMode newAlgorithm)
 		{
-			super("ERC Well Check on " + cell, ERC.tool, Job.Type.EXAMINE, null, null, Job.Priority.USER);
+			super("ERC Well Check on " + cell, ERC.tool, Job.Type.EXAMINE, null, cell, Job.Priority.USER);
 			this.cell = cell;
 			this.newAlgorithm = newAlgorithm;
 			startJob();
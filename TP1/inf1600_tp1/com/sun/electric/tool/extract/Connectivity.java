@@ -386,6 +386,10 @@ public class Connectivity
 		exportsToRestore = new ArrayList<Export>();
 		allCutLayers = new HashMap<Layer,List<PolyBase>>();
 		extractCell(oldCell, newCell, pat, expandedCells, merge, GenMath.MATID);
+
+		// merge the gathered geometry, one layer per thread
+		merge.setNumThreads(Runtime.getRuntime().availableProcessors());
+		merge.postProcess(true);
 		if (expandedCells.size() > 0)
 		{
 			System.out.print("These cells were expanded:");
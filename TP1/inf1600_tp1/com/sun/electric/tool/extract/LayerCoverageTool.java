@@ -28,6 +28,7 @@ import com.sun.electric.database.geometry.EPoint;
 import com.sun.electric.database.geometry.GeometryHandler;
 import com.sun.electric.database.geometry.Poly;
 import com.sun.electric.database.geometry.PolyBase;
+import com.sun.electric.database.geometry.TiledMerge;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.HierarchyEnumerator;
 import com.sun.electric.database.hierarchy.Nodable;
@@ -59,6 +60,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -353,6 +355,7 @@ public class LayerCoverageTool extends Tool
             LayerVisitor visitor = new LayerVisitor(parentJob, tree, nodesToDelete, function,
                     originalPolygons, netSet, bBox, onlyThisLayer, geoms);
             HierarchyEnumerator.enumerateCell(curCell, VarContext.globalContext, visitor);
+            tree.setNumThreads(Runtime.getRuntime().availableProcessors());
             tree.postProcess(true);
 
             switch (function)
@@ -463,65 +466,80 @@ public class LayerCoverageTool extends Tool
                     break;
                 case AREA:
                 case NETWORK:
-                    {
-                        double lambdaSqr = 1; // lambdaofcell(np);
-                        Rectangle2D bbox = curCell.getBounds();
-                        double totalArea =  (bbox.getHeight()*bbox.getWidth())/lambdaSqr;
-                        // Traversing tree with merged geometry and sorting layers per name first
-                        List<Layer> list = new ArrayList<Layer>(tree.getKeySet());
-                        Collections.sort(list, Layer.layerSortByName);
-
-                        for (Layer layer : list)
-                        {
-                            Collection<PolyBase> set = tree.getObjects(layer, false, true);
-
-                            if (geoms != null && geoms.onlyThisLayer != null)
-                            {
-                                if (layer != geoms.onlyThisLayer) continue; // ignore this layer
-                                // Add all elements
-                                if (overlapPoint == null)
-                                    nodesToExamine.addAll(set);
-                                else
-                                {
-                                    // they must be connected
-                                    for (PolyBase p : set)
-                                    {
-                                        if (p.contains(overlapPoint))
-                                            nodesToExamine.add(p);
-                                    }
-                                }
-                            }
-
-                            double layerArea = 0;
-                            double perimeter = 0;
-
-                            // Get all objects and sum the area
-                            for (PolyBase poly : set)
-                            {
-                                layerArea += poly.getArea();
-                                perimeter += poly.getPerimeter();
-                            }
-                            layerArea /= lambdaSqr;
-                            perimeter /= 2;
-
-                            if (geoms != null)
-                                geoms.addLayer(layer, layerArea, perimeter);
-                            else
-                                System.out.println("Layer " + layer.getName() + " covers " + TextUtils.formatDouble(layerArea)
-                                        + " square lambda (" + TextUtils.formatDouble((layerArea/totalArea)*100, 2) + "%)");
-                        }
-                        geoms.setTotalArea(totalArea);
-                        if (geoms != null)
-                            geoms.print();
-                        else
-                            System.out.println("Cell is " + TextUtils.formatDouble(totalArea, 2) + " square lambda");
-                    }
+                    addLayerAreas(curCell, tree, geoms, nodesToExamine, overlapPoint);
                     break;
                 default:
                     System.out.println("Error in LayerCoverage: function not implemented");
             }
             return true;
         }
+
+        /**
+         * Method to add the area and half-perimeter of every layer of merged geometry, sorted by layer name,
+         * and to print them with the area of the cell.
+         * @param cell the cell whose geometry was merged.
+         * @param tree the merged geometry.
+         * @param geoms the GeometryOnNetwork to fill and print, or null to print the layers directly.
+         * @param nodesToExamine the list to collect the polygons of geoms.onlyThisLayer into.
+         * @param overlapPoint if not null, only polygons containing this point are collected.
+         */
+        static void addLayerAreas(Cell cell, GeometryHandler tree, GeometryOnNetwork geoms,
+                                  List<Object> nodesToExamine, Point2D overlapPoint)
+        {
+            double lambdaSqr = 1; // lambdaofcell(np);
+            Rectangle2D bbox = cell.getBounds();
+            double totalArea =  (bbox.getHeight()*bbox.getWidth())/lambdaSqr;
+            // Traversing tree with merged geometry and sorting layers per name first
+            List<Layer> list = new ArrayList<Layer>(tree.getKeySet());
+            Collections.sort(list, Layer.layerSortByName);
+
+            for (Layer layer : list)
+            {
+                Collection<PolyBase> set = tree.getObjects(layer, false, true);
+
+                if (geoms != null && geoms.onlyThisLayer != null)
+                {
+                    if (layer != geoms.onlyThisLayer) continue; // ignore this layer
+                    // Add all elements
+                    if (overlapPoint == null)
+                        nodesToExamine.addAll(set);
+                    else
+                    {
+                        // they must be connected
+                        for (PolyBase p : set)
+                        {
+                            if (p.contains(overlapPoint))
+                                nodesToExamine.add(p);
+                        }
+                    }
+                }
+
+                double layerArea = 0;
+                double perimeter = 0;
+
+                // Get all objects and sum the area
+                for (PolyBase poly : set)
+                {
+                    layerArea += poly.getArea();
+                    perimeter += poly.getPerimeter();
+                }
+                layerArea /= lambdaSqr;
+                perimeter /= 2;
+
+                if (geoms != null)
+                    geoms.addLayer(layer, layerArea, perimeter);
+                else
+                    System.out.println("Layer " + layer.getName() + " covers " + TextUtils.formatDouble(layerArea)
+                            + " square lambda (" + TextUtils.formatDouble((layerArea/totalArea)*100, 2) + "%)");
+            }
+            if (geoms != null)
+            {
+                geoms.setTotalArea(totalArea);
+                geoms.print();
+            }
+            else
+                System.out.println("Cell is " + TextUtils.formatDouble(totalArea, 2) + " square lambda");
+        }
     }
 
     /************************************************************************
@@ -539,7 +557,7 @@ public class LayerCoverageTool extends Tool
         public LayerCoverageJob(Cell cell, Job.Type jobType, LCMode func, GeometryHandler.GHMode mode,
                                 GeometryOnNetwork geoms, Point2D overlapPoint)
         {
-            super("Layer Coverage on " + cell, User.getUserTool(), jobType, null, null, Priority.USER);
+            super("Layer Coverage on " + cell, User.getUserTool(), jobType, null, cell, Priority.USER);
             this.cell = cell;
             this.func = func;
             this.mode = mode;
@@ -607,8 +625,6 @@ public class LayerCoverageTool extends Tool
         {
             ErrorLogger errorLogger = ErrorLogger.newInstance("Area Coverage");
             Rectangle2D bBoxOrig = curCell.getBounds();
-            double maxY = bBoxOrig.getMaxY();
-            double maxX = bBoxOrig.getMaxX();
 
             // if negative or zero values -> only once
             if (deltaX <= 0) deltaX = bBoxOrig.getWidth();
@@ -619,21 +635,30 @@ public class LayerCoverageTool extends Tool
             internalMap = new HashMap<Layer,Double>();
 //            fieldVariableChanged("internalMap");
 
-            for (double posY = bBoxOrig.getMinY(); posY < maxY; posY += deltaY)
+            // Traverse the hierarchy once, spilling the geometry into the windows, and then merge one window at a time
+            TiledMerge tiles = new TiledMerge(bBoxOrig, width, height, deltaX, deltaY, mode);
+            tiles.setNumThreads(Runtime.getRuntime().availableProcessors());
+            LayerVisitor visitor = new LayerVisitor(this, tiles, new HashSet<NodeInst>(), LCMode.AREA,
+                    null, null, null, null, null);
+            HierarchyEnumerator.enumerateCell(curCell, VarContext.globalContext, visitor);
+            if (checkAbort())
+            {
+                tiles.dispose();
+                return false; // didn't finish
+            }
+
+            final ErrorLogger logger = errorLogger;
+            TiledMerge.TileVisitor tileVisitor = new TiledMerge.TileVisitor()
             {
-                for (double posX = bBoxOrig.getMinX(); posX < maxX; posX += deltaX)
+                public boolean visitTile(Rectangle2D box, GeometryHandler tree)
                 {
-                    Rectangle2D box = new Rectangle2D.Double(posX, posY, width, height);
+                    if (checkAbort()) return false; // aborted by user
                     GeometryOnNetwork geoms = new GeometryOnNetwork(curCell, null, 1, true, null);
                     System.out.println("Calculating Coverage on cell '" + curCell.getName() + "' for area (" +
-                            DBMath.round(posX) + "," + DBMath.round(posY) + ") (" +
+                            DBMath.round(box.getX()) + "," + DBMath.round(box.getY()) + ") (" +
                             DBMath.round(box.getMaxX()) + "," + DBMath.round(box.getMaxY()) + ")");
-                    LayerCoverageData data = new LayerCoverageData(this, curCell, LCMode.AREA, mode, geoms, box, null);
-                    if (!data.doIt())  // aborted by user
-                    {
-                        return false; // didn't finish
-                    }
-                    geoms.analyzeCoverage(box, errorLogger);
+                    LayerCoverageData.addLayerAreas(curCell, tree, geoms, null, null);
+                    geoms.analyzeCoverage(box, logger);
 
                     for (int i = 0; i < geoms.layers.size(); i++)
                     {
@@ -646,7 +671,16 @@ public class LayerCoverageTool extends Tool
                             newV += oldV;
                         internalMap.put(layer, newV);
                     }
+                    return true;
                 }
+            };
+            try
+            {
+                if (!tiles.merge(tileVisitor))
+                    return false; // didn't finish
+            } catch (IOException e)
+            {
+                throw new JobException("Area coverage could not spill geometry: " + e.getMessage());
             }
             errorLogger.termLogging(true);
             return true;
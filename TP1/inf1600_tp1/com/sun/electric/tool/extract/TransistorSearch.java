@@ -64,7 +64,7 @@ public class TransistorSearch
 
         public TransistorSearchJob(Cell cell)
         {
-            super("Searching Transistors in " + cell.getName(), null, Job.Type.EXAMINE, null, null, Job.Priority.USER);
+            super("Searching Transistors in " + cell.getName(), null, Job.Type.EXAMINE, null, cell, Job.Priority.USER);
             this.cell = cell;
             startJob();
         }
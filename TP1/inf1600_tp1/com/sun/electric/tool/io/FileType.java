@@ -74,6 +74,7 @@ public class FileType implements Serializable {
 	/** Describes ALS vector decks. */		public static final FileType ALSVECTOR    = makeFileType("ALS Vectors", new String[] {"vec"}, "ALS Vector Deck (vec)", BUILTINSIMGRP);
 	/** Describes ArchSim decks.*/			public static final FileType ARCHSIM      = makeFileType("ArchSim", new String[] {"xml"}, "ArchSim Deck (xml)", OTHERSIMGRP);
 	/** Describes ArchSim output.*/			public static final FileType ARCHSIMOUT   = makeFileType("ArchSim Output", new String[] {"asj"}, "ArchSim Journal (asj)", OTHERSIMGRP);
+	/** Describes BLIB files.*/				public static final FileType BLIB         = makeFileType("BLIB", new String[] {"blib"}, "Binary Library File (blib)", DATABASEGRP);
 	/** Describes CDL decks.*/				public static final FileType CDL          = makeFileType("CDL", new String[] {"cdl"}, "CDL Deck (cdl)", SPICESIMGRP);
 	/** Describes CIF files. */				public static final FileType CIF          = makeFileType("CIF", new String[] {"cif"}, "CIF File (cif)", EXPORTIMPORTGRP);
 	/** Describes COSMOS output. */			public static final FileType COSMOS       = makeFileType("COSMOS", new String[] {"sim"}, "COSMOS File (sim)", OTHERSIMGRP);
@@ -138,7 +139,7 @@ public class FileType implements Serializable {
 
 	/** Describes default file format.*/	public static final FileType DEFAULTLIB   = JELIB;
 
-	/** Valid Library formats */            public static final FileType libraryTypes[] = {JELIB, ELIB, DELIB};
+	/** Valid Library formats */            public static final FileType libraryTypes[] = {JELIB, ELIB, DELIB, BLIB};
 	private static String [] libraryTypesExt;
 	private static String libraryTypesExtReadable;
 	static {
@@ -214,6 +214,22 @@ public class IOTool extends Tool
 	 */
 	public static void setBackupRedundancy(int r) { cacheBackupRedundancy.setInt(r); }
 
+	private static Pref cacheLazyCellLoading = Pref.makeBooleanPref("LazyCellLoading", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether the contents of cells are instantiated only when needed.
+	 * When true, reading a library instantiates only the hierarchy of its current cell;
+	 * the contents of other cells are kept in their file form and instantiated
+	 * when they are first displayed or changed.
+	 * The default is "false".
+	 * @return true if the contents of cells are instantiated only when needed.
+	 */
+	public static boolean isLazyCellLoading() { return cacheLazyCellLoading.getBoolean(); }
+	/**
+	 * Method to set whether the contents of cells are instantiated only when needed.
+	 * @param on true if the contents of cells are instantiated only when needed.
+	 */
+	public static void setLazyCellLoading(boolean on) { cacheLazyCellLoading.setBoolean(on); }
+
 	/****************************** GENERAL OUTPUT PREFERENCES ******************************/
 
 	/**
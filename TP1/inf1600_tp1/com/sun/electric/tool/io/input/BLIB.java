@@ -0,0 +1,632 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: BLIB.java
+ * Input/output tool: binary columnar Library input
+ *
+ * Copyright (c) 2008 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.CellId;
+import com.sun.electric.database.ExportId;
+import com.sun.electric.database.IdManager;
+import com.sun.electric.database.LibId;
+import com.sun.electric.database.SnapshotReader;
+import com.sun.electric.database.geometry.EPoint;
+import com.sun.electric.database.geometry.Orientation;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.prototype.NodeProto;
+import com.sun.electric.database.prototype.NodeProtoId;
+import com.sun.electric.database.prototype.PortCharacteristic;
+import com.sun.electric.database.prototype.PortProto;
+import com.sun.electric.database.prototype.PortProtoId;
+import com.sun.electric.database.text.Name;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.topology.PortInst;
+import com.sun.electric.database.variable.TextDescriptor;
+import com.sun.electric.database.variable.Variable;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.io.FileType;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * This class reads files in binary library (.blib) format.
+ * The text part of the file (library header, cell headers and groups) is read by the JELIB reader.
+ * The contents of a cell are decoded from its binary chunk only when the cell is instantiated;
+ * chunks are read at random from the file through the cell index.
+ * @see com.sun.electric.tool.io.output.BLIB
+ */
+public class BLIB extends JELIB {
+
+	/** Location of the contents of one cell in the file. */
+	private static class CellChunk
+	{
+		long offset;
+		int length;
+		/** the chunk, when it could not be left on disk */	byte[] bytes;
+	}
+
+	/** the cell chunks by cell name */					private HashMap<String,CellChunk> cellChunks = new HashMap<String,CellChunk>();
+	/** the number of chunks not decoded yet */			private int chunksLeft;
+	/** the file to read chunks from */					private RandomAccessFile chunkFile;
+
+	BLIB() {}
+
+	/**
+	 * Method to read a Library in binary library (.blib) format.
+	 * @return true on error.
+	 */
+	@Override
+	protected boolean readLib()
+	{
+		if (readPrefix()) return true;
+		return super.readLib();
+	}
+
+	@Override
+	protected boolean readProjectSettings()
+	{
+		if (readPrefix()) return true;
+		return super.readProjectSettings();
+	}
+
+	/**
+	 * Method to read the start of the file: the text part and the cell index.
+	 * The text part becomes the line reader of the JELIB reader.
+	 * @return true on error.
+	 */
+	private boolean readPrefix()
+	{
+		try
+		{
+			int magic = dataInputStream.readInt();
+			if (magic != com.sun.electric.tool.io.output.BLIB.MAGIC)
+			{
+				Input.errorLogger.logError(filePath + " is not a binary library file", -1);
+				return true;
+			}
+			int formatVersion = dataInputStream.readInt();
+			if (formatVersion > com.sun.electric.tool.io.output.BLIB.FORMAT_VERSION)
+			{
+				Input.errorLogger.logError(filePath + " was written in a newer binary library format (" +
+					formatVersion + ")", -1);
+				return true;
+			}
+			byte[] headerBytes = new byte[dataInputStream.readInt()];
+			dataInputStream.readFully(headerBytes);
+
+			int numCells = dataInputStream.readInt();
+			CellChunk[] chunks = new CellChunk[numCells];
+			for (int i = 0; i < numCells; i++)
+			{
+				String cellName = dataInputStream.readUTF();
+				CellChunk chunk = new CellChunk();
+				chunk.offset = dataInputStream.readLong();
+				chunk.length = dataInputStream.readInt();
+				cellChunks.put(cellName, chunk);
+				chunks[i] = chunk;
+			}
+			chunksLeft = numCells;
+
+			// chunks of a file that is not on the local disk are kept in memory
+			if (!new File(filePath).isFile())
+			{
+				for (int i = 0; i < numCells; i++)
+				{
+					chunks[i].bytes = new byte[chunks[i].length];
+					dataInputStream.readFully(chunks[i].bytes);
+				}
+			}
+
+			lineReader = new LineNumberReader(new StringReader(new String(headerBytes, "UTF-8")));
+			return false;
+		} catch (IOException e)
+		{
+			Input.errorLogger.logError("Error reading " + filePath + ": " + e.getMessage(), -1);
+			return true;
+		}
+	}
+
+	/**
+	 * Method called after all libraries have been read to instantiate a single Cell.
+	 * Decodes the binary chunk of the cell.
+	 * @param cell the Cell to instantiate.
+	 * @param cc the contents of that cell (empty in this format).
+	 */
+	@Override
+	void instantiateCellContent(Cell cell, CellContents cc, HashSet<Cell> recursiveSetupFlag)
+	{
+		CellChunk chunk = cellChunks.get(cell.getCellName().toString());
+		if (chunk == null)
+		{
+			super.instantiateCellContent(cell, cc, recursiveSetupFlag);
+			return;
+		}
+		cc.filledIn = true;
+		try
+		{
+			instantiateChunk(cell, cc, readChunk(chunk), recursiveSetupFlag, false);
+		} catch (IOException e)
+		{
+			Input.errorLogger.logError(filePath + ", cannot read contents of " + cell + ": " + e.getMessage(), cell, -1);
+		} finally
+		{
+			if (--chunksLeft <= 0) closeChunkFile();
+		}
+	}
+
+	/**
+	 * Method to place the exports of a Cell whose other contents are deferred.
+	 * Decodes the binary chunk of the cell, but places only the exports and the nodes they are on.
+	 */
+	@Override
+	void instantiateExports(Cell cell, CellContents cc, HashSet<Cell> recursiveSetupFlag)
+	{
+		CellChunk chunk = cellChunks.get(cell.getCellName().toString());
+		if (chunk == null)
+		{
+			super.instantiateExports(cell, cc, recursiveSetupFlag);
+			return;
+		}
+		try
+		{
+			instantiateChunk(cell, cc, readChunk(chunk), recursiveSetupFlag, true);
+		} catch (IOException e)
+		{
+			Input.errorLogger.logError(filePath + ", cannot read exports of " + cell + ": " + e.getMessage(), cell, -1);
+		}
+	}
+
+	/**
+	 * Method to leave the contents of a Cell in its chunk until they are needed.
+	 * The file is not kept open for deferred chunks.
+	 */
+	@Override
+	boolean deferCellContents(Cell cell, HashSet<Cell> recursiveSetupFlag)
+	{
+		if (!super.deferCellContents(cell, recursiveSetupFlag)) return false;
+		closeChunkFile();
+		return true;
+	}
+
+	@Override
+	void instantiateDeferredCell(Cell cell, CellContents cc)
+	{
+		try
+		{
+			super.instantiateDeferredCell(cell, cc);
+		} finally
+		{
+			closeChunkFile();
+		}
+	}
+
+	private byte[] readChunk(CellChunk chunk)
+		throws IOException
+	{
+		if (chunk.bytes != null) return chunk.bytes;
+		if (chunkFile == null) chunkFile = new RandomAccessFile(filePath, "r");
+		byte[] bytes = new byte[chunk.length];
+		chunkFile.seek(chunk.offset);
+		chunkFile.readFully(bytes);
+		return bytes;
+	}
+
+	private void closeChunkFile()
+	{
+		if (chunkFile == null) return;
+		try
+		{
+			chunkFile.close();
+		} catch (IOException e) {}
+		chunkFile = null;
+	}
+
+	/**
+	 * Method to create the contents of a cell from its binary chunk.
+	 * The layout of the chunk is described in com.sun.electric.tool.io.output.BLIB.
+	 * The whole chunk is decoded before any object is placed, because the exports,
+	 * which come last, tell which nodes are placed when the rest of the cell is deferred.
+	 * Nodes and exports that were placed when the cell was deferred are not placed again.
+	 * @param exportsOnly true to place only the exports and the nodes they are on.
+	 */
+	private void instantiateChunk(Cell cell, CellContents cc, byte[] bytes, HashSet<Cell> recursiveSetupFlag, boolean exportsOnly)
+		throws IOException
+	{
+		EDatabase database = cell.getDatabase();
+		CellReader reader = new CellReader(new DataInputStream(new ByteArrayInputStream(bytes)), database);
+
+		// decode all nodes
+		int numNodes = reader.readCount();
+		NodeProtoId[] protos = new NodeProtoId[numNodes];
+		for (int i = 0; i < numNodes; i++) protos[i] = reader.readNodeProtoId();
+		Name[] names = new Name[numNodes];
+		for (int i = 0; i < numNodes; i++) names[i] = reader.readNameKey();
+		TextDescriptor[] nameDescriptors = new TextDescriptor[numNodes];
+		for (int i = 0; i < numNodes; i++) nameDescriptors[i] = reader.readTextDescriptor();
+		Orientation[] orients = new Orientation[numNodes];
+		for (int i = 0; i < numNodes; i++) orients[i] = reader.readOrientation();
+		long[] anchorX = reader.readCoordColumn(numNodes);
+		long[] anchorY = reader.readCoordColumn(numNodes);
+		long[] sizeX = reader.readCoordColumn(numNodes);
+		long[] sizeY = reader.readCoordColumn(numNodes);
+		int[] flags = new int[numNodes];
+		for (int i = 0; i < numNodes; i++) flags[i] = reader.readCount();
+		int[] techBits = new int[numNodes];
+		for (int i = 0; i < numNodes; i++) techBits[i] = reader.readCount();
+		TextDescriptor[] protoDescriptors = new TextDescriptor[numNodes];
+		for (int i = 0; i < numNodes; i++) protoDescriptors[i] = reader.readTextDescriptor();
+		Variable[][] nodeVars = new Variable[numNodes][];
+		PortProtoId[][] portIds = new PortProtoId[numNodes][];
+		Variable[][][] portVars = new Variable[numNodes][][];
+		for (int i = 0; i < numNodes; i++)
+		{
+			nodeVars[i] = reader.readVariables();
+			int numPorts = reader.readCount();
+			portIds[i] = new PortProtoId[numPorts];
+			portVars[i] = new Variable[numPorts][];
+			for (int j = 0; j < numPorts; j++)
+			{
+				portIds[i][j] = reader.readPortProtoId();
+				portVars[i][j] = reader.readVariables();
+			}
+		}
+
+		// decode all arcs
+		int numArcs = reader.readCount();
+		ArcProto[] arcProtos = new ArcProto[numArcs];
+		for (int i = 0; i < numArcs; i++) arcProtos[i] = reader.readArcProto();
+		Name[] arcNames = new Name[numArcs];
+		for (int i = 0; i < numArcs; i++) arcNames[i] = reader.readNameKey();
+		TextDescriptor[] arcNameDescriptors = new TextDescriptor[numArcs];
+		for (int i = 0; i < numArcs; i++) arcNameDescriptors[i] = reader.readTextDescriptor();
+		int[] tailNodes = new int[numArcs];
+		for (int i = 0; i < numArcs; i++) tailNodes[i] = reader.readCount();
+		PortProtoId[] tailPorts = new PortProtoId[numArcs];
+		for (int i = 0; i < numArcs; i++) tailPorts[i] = reader.readPortProtoId();
+		long[] tailX = reader.readCoordColumn(numArcs);
+		long[] tailY = reader.readCoordColumn(numArcs);
+		int[] headNodes = new int[numArcs];
+		for (int i = 0; i < numArcs; i++) headNodes[i] = reader.readCount();
+		PortProtoId[] headPorts = new PortProtoId[numArcs];
+		for (int i = 0; i < numArcs; i++) headPorts[i] = reader.readPortProtoId();
+		long[] headX = reader.readCoordColumn(numArcs);
+		long[] headY = reader.readCoordColumn(numArcs);
+		long[] extendOverMin = new long[numArcs];
+		for (int i = 0; i < numArcs; i++) extendOverMin[i] = reader.readVarLong();
+		int[] angles = new int[numArcs];
+		for (int i = 0; i < numArcs; i++) angles[i] = reader.readCount();
+		int[] arcFlags = new int[numArcs];
+		for (int i = 0; i < numArcs; i++) arcFlags[i] = reader.readCount();
+		Variable[][] arcVars = new Variable[numArcs][];
+		for (int i = 0; i < numArcs; i++) arcVars[i] = reader.readVariables();
+
+		// decode all exports
+		int numExports = reader.readCount();
+		String[] externalIds = new String[numExports];
+		Name[] exportNames = new Name[numExports];
+		TextDescriptor[] exportNameDescriptors = new TextDescriptor[numExports];
+		int[] originalNodes = new int[numExports];
+		PortProtoId[] originalPortIds = new PortProtoId[numExports];
+		PortCharacteristic[] characteristics = new PortCharacteristic[numExports];
+		boolean[] alwaysDrawn = new boolean[numExports];
+		boolean[] bodyOnly = new boolean[numExports];
+		Variable[][] exportVars = new Variable[numExports][];
+		for (int i = 0; i < numExports; i++)
+		{
+			externalIds[i] = reader.readString();
+			exportNames[i] = reader.readNameKey();
+			exportNameDescriptors[i] = reader.readTextDescriptor();
+			originalNodes[i] = reader.readCount();
+			originalPortIds[i] = reader.readPortProtoId();
+			characteristics[i] = PortCharacteristic.findCharacteristic(reader.readCount());
+			if (characteristics[i] == null) characteristics[i] = PortCharacteristic.UNKNOWN;
+			alwaysDrawn[i] = reader.readBoolean();
+			bodyOnly[i] = reader.readBoolean();
+			exportVars[i] = reader.readVariables();
+		}
+		boolean[] exportNodes = null;
+		if (exportsOnly)
+		{
+			exportNodes = new boolean[numNodes];
+			for (int i = 0; i < numExports; i++) exportNodes[originalNodes[i]] = true;
+		}
+
+		// place all nodes
+		NodeInst[] nodes = new NodeInst[numNodes];
+		for (int i = 0; i < numNodes; i++)
+		{
+			if (exportsOnly && !exportNodes[i]) continue;
+			if (!exportsOnly && cc.placedNodes != null)
+			{
+				Integer nodeId = cc.placedNodes.get(names[i].toString());
+				if (nodeId != null && (nodes[i] = cell.getNodeById(nodeId.intValue())) != null) continue;
+			}
+
+			NodeProto np = null;
+			if (protos[i] instanceof CellId) np = database.getCell((CellId)protos[i]); else
+				np = (PrimitiveNode)protos[i];
+			if (np == null)
+			{
+				Input.errorLogger.logError(filePath + " (" + cell + ") cannot find prototype of node " + names[i], cell, -1);
+				continue;
+			}
+
+			// make sure the subcell has been instantiated
+			if (np instanceof Cell && ((Cell)np).isContentsDeferred())
+				((Cell)np).loadDeferredContents();
+			else if (np instanceof Cell && !recursiveSetupFlag.contains(np))
+			{
+				Cell subCell = (Cell)np;
+				LibraryFiles subReader = this;
+				if (subCell.getLibrary() != cell.getLibrary())
+					subReader = getReaderForLib(subCell.getLibrary());
+				if (subReader != null)
+					subReader.realizeCellsRecursively(subCell, recursiveSetupFlag, null, 0);
+			}
+
+			NodeInst ni = NodeInst.newInstance(cell, np, names[i].toString(), nameDescriptors[i],
+				EPoint.fromGrid(anchorX[i], anchorY[i]), EPoint.fromGrid(sizeX[i], sizeY[i]), orients[i],
+				flags[i], techBits[i], protoDescriptors[i], Input.errorLogger);
+			if (ni == null)
+			{
+				Input.errorLogger.logError(filePath + " (" + cell + ") cannot create node " + names[i], cell, -1);
+				continue;
+			}
+			nodes[i] = ni;
+			if (exportsOnly)
+			{
+				if (cc.placedNodes == null) cc.placedNodes = new HashMap<String,Integer>();
+				cc.placedNodes.put(names[i].toString(), Integer.valueOf(ni.getD().nodeId));
+			}
+			realizeVariables(ni, nodeVars[i]);
+			for (int j = 0; j < portIds[i].length; j++)
+			{
+				PortInst pi = findPortInst(ni, portIds[i][j]);
+				if (pi != null) realizeVariables(pi, portVars[i][j]);
+			}
+		}
+
+		// next place all arcs
+		for (int i = 0; i < numArcs && !exportsOnly; i++)
+		{
+			PortInst headPI = findPortInst(nodes[headNodes[i]], headPorts[i]);
+			PortInst tailPI = findPortInst(nodes[tailNodes[i]], tailPorts[i]);
+			if (arcProtos[i] == null || headPI == null || tailPI == null)
+			{
+				Input.errorLogger.logError(filePath + " (" + cell + ") cannot find ends of arc " + arcNames[i], cell, -1);
+				continue;
+			}
+			ArcInst ai = ArcInst.newInstance(cell, arcProtos[i], arcNames[i].toString(), arcNameDescriptors[i],
+				headPI, tailPI, EPoint.fromGrid(headX[i], headY[i]), EPoint.fromGrid(tailX[i], tailY[i]),
+				extendOverMin[i], angles[i], arcFlags[i]);
+			if (ai == null)
+			{
+				Input.errorLogger.logError(filePath + " (" + cell + ") cannot create arc " + arcNames[i], cell, -1);
+				continue;
+			}
+			realizeVariables(ai, arcVars[i]);
+		}
+
+		// place all exports
+		CellId cellId = cell.getId();
+		for (int i = 0; i < numExports && !cc.exportsPlaced; i++)
+		{
+			ExportId exportId = cellId.newExportId(externalIds[i]);
+			PortInst pi = findPortInst(nodes[originalNodes[i]], originalPortIds[i]);
+			if (pi == null)
+			{
+				Input.errorLogger.logError(filePath + " (" + cell + ") cannot find port of export " + exportNames[i], cell, -1);
+				continue;
+			}
+			String exportUserName = exportNames[i].toString().equals(externalIds[i]) ? null : exportNames[i].toString();
+			Export pp = Export.newInstance(cell, exportId, exportUserName, exportNameDescriptors[i], pi,
+				alwaysDrawn[i], bodyOnly[i], characteristics[i], errorLogger);
+			if (pp == null)
+			{
+				Input.errorLogger.logError(filePath + " (" + cell + ") cannot create export " + exportNames[i], pi.getNodeInst(), cell, null, -1);
+				continue;
+			}
+			realizeVariables(pp, exportVars[i]);
+		}
+		if (exportsOnly) cc.exportsPlaced = true;
+	}
+
+	/**
+	 * Method to find the PortInst of a node by the id of its port.
+	 * @return the PortInst, or null if the node or the port doesn't exist.
+	 */
+	private static PortInst findPortInst(NodeInst ni, PortProtoId portId)
+	{
+		if (ni == null || portId == null) return null;
+		NodeProto np = ni.getProto();
+		if (portId.getParentId() != np.getId()) return null;
+		PortProto pp;
+		if (np instanceof Cell) pp = ((Cell)np).getExportChron(portId.getChronIndex()); else
+			pp = ((PrimitiveNode)np).getPort(portId);
+		if (pp == null) return null;
+		return ni.findPortInstFromProto(pp);
+	}
+
+	protected FileType getPreferredFileType() { return FileType.BLIB; }
+
+	/**
+	 * SnapshotReader for one cell chunk.
+	 * Libraries, cells and ports are resolved by name in the current database.
+	 * A cell which is not in the database is read as null.
+	 */
+	private static class CellReader extends SnapshotReader
+	{
+		private final IdManager idManager;
+		private final ArrayList<LibId> libIds = new ArrayList<LibId>();
+		private final ArrayList<CellId> cellIds = new ArrayList<CellId>();
+		private final ArrayList<PrimitiveNode> primNodes = new ArrayList<PrimitiveNode>();
+
+		CellReader(DataInputStream in, EDatabase database)
+		{
+			super(in, database.getIdManager());
+			idManager = database.getIdManager();
+		}
+
+		/**
+		 * Reads signed long written as zig-zag variable-length integer.
+		 * @return long.
+		 */
+		long readVarLong() throws IOException
+		{
+			long u = 0;
+			for (int shift = 0; ; shift += 7)
+			{
+				byte b = readByte();
+				u |= (long)(b & 0x7F) << shift;
+				if ((b & 0x80) == 0) break;
+			}
+			return (u >>> 1) ^ -(u & 1);
+		}
+
+		int readCount() throws IOException { return (int)readVarLong(); }
+
+		/**
+		 * Reads a column of grid coordinates written as differences from the previous value.
+		 * @param length the number of coordinates.
+		 * @return the coordinates.
+		 */
+		long[] readCoordColumn(int length) throws IOException
+		{
+			long[] coords = new long[length];
+			long prev = 0;
+			for (int i = 0; i < length; i++)
+			{
+				prev += readCoord();
+				coords[i] = prev;
+			}
+			return coords;
+		}
+
+		/**
+		 * Reads the variables of an object.
+		 * Variables whose value is a cell that is not in the database are dropped and reported.
+		 * @return an array of Variables.
+		 */
+		Variable[] readVariables() throws IOException
+		{
+			int numVars = readCount();
+			if (numVars == 0) return null;
+			Variable[] vars = new Variable[numVars];
+			int numFound = 0;
+			for (int i = 0; i < numVars; i++)
+			{
+				Variable.Key key = readVariableKey();
+				TextDescriptor td = readTextDescriptor();
+				Object value = Variable.readValue(this);
+				if (value == null)
+				{
+					Input.errorLogger.logError("Variable " + key.getName() + " dropped: its value cannot be found", -1);
+					continue;
+				}
+				vars[numFound++] = Variable.newInstance(key, value, td);
+			}
+			if (numFound == 0) return null;
+			if (numFound < numVars)
+			{
+				Variable[] found = new Variable[numFound];
+				System.arraycopy(vars, 0, found, 0, numFound);
+				vars = found;
+			}
+			return vars;
+		}
+
+		@Override
+		public LibId readLibId() throws IOException
+		{
+			int i = readInt();
+			if (i == libIds.size())
+				libIds.add(idManager.newLibId(readString()));
+			return libIds.get(i);
+		}
+
+		@Override
+		public NodeProtoId readNodeProtoId() throws IOException
+		{
+			int i = readInt();
+			if (i < 0)
+			{
+				i = ~i;
+				if (i == primNodes.size())
+				{
+					Technology tech = readTechnology();
+					String primName = readString();
+					primNodes.add(tech != null ? tech.findNodeProto(primName) : null);
+				}
+				return primNodes.get(i);
+			}
+			if (i == cellIds.size())
+			{
+				LibId libId = readLibId();
+				String cellName = readString();
+				CellId cellId = null;
+				Library lib = Library.findLibrary(libId.libName);
+				if (lib != null)
+				{
+					Cell cell = lib.findNodeProto(cellName);
+					if (cell != null) cellId = cell.getId();
+				}
+				if (cellId == null)
+					Input.errorLogger.logError("Cannot find cell " + libId.libName + ":" + cellName, -1);
+				cellIds.add(cellId);
+			}
+			return cellIds.get(i);
+		}
+
+		@Override
+		public PortProtoId readPortProtoId() throws IOException
+		{
+			NodeProtoId nodeProtoId = readNodeProtoId();
+			String portName = readString();
+			if (nodeProtoId == null) return null;
+			if (nodeProtoId instanceof CellId)
+				return ((CellId)nodeProtoId).newExportId(portName);
+			PortProto pp = ((PrimitiveNode)nodeProtoId).findPortProto(portName);
+			return pp != null ? pp.getId() : null;
+		}
+
+		@Override
+		public long readCoord() throws IOException
+		{
+			return readVarLong();
+		}
+	}
+}
@@ -62,15 +62,27 @@ import com.sun.electric.tool.io.IOTool;
 import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class reads files in GDS files.
@@ -98,6 +110,8 @@ public class GDS extends Input
 
 	// data declarations
 	private static final int MAXPOINTS     = 4096;
+	/** log2 of the size of each mapped segment of a file */	private static final int MAPPEDSEGMENTBITS = 30;
+	/** size of each mapped segment of a file */				private static final long MAPPEDSEGMENTSIZE = 1L << MAPPEDSEGMENTBITS;
 	private static final int MINFONTWIDTH  =  130;
 	private static final int MINFONTHEIGHT =  190;
 
@@ -137,31 +151,33 @@ public class GDS extends Input
 	private int              tokenValue32;
 	private double           tokenValueDouble;
 	private String           tokenString;
-	private Point2D []       theVertices;
+	private double []        theVerticesX;
+	private double []        theVerticesY;
 	private double           theScale;
-	private HashMap<Integer,Layer> layerNames;
+	private ConcurrentHashMap<Integer,Layer> layerNames;
 	private HashSet<Integer> pinLayers;
 	private PolyMerge        merge;
 	private boolean          mergeThisCell;
+	/** the file, when it is read through memory-mapped segments */	private MappedByteBuffer [] mappedSegments;
+	/** the length of the memory-mapped file */					private long             mappedLength;
+	/** the position of the next byte in the memory-mapped file */	private long             mappedPos;
+	/** the cell of every structure name, when reading in parallel */	private Map<String,Cell> preparedCells;
+	/** the CellBuilder of the structure read by a parallel reader */	private CellBuilder      preparedCell;
 
 	private static class GSymbol
 	{
 		private int value;
-		private static List<GSymbol> symbols = new ArrayList<GSymbol>();
+		private static GSymbol [] symbols = new GSymbol[256];
 
 		private GSymbol(int value)
 		{
 			this.value = value;
-			symbols.add(this);
+			symbols[value] = this;
 		}
 
 		private static GSymbol findSymbol(int value)
 		{
-			for(GSymbol gs : symbols)
-			{
-				if (gs.value == value) return gs;
-			}
-			return null;
+			return symbols[value & 0xFF];
 		}
 	}
 	private static final GSymbol GDS_HEADER       = new GSymbol(0);
@@ -249,18 +265,18 @@ public class GDS extends Input
             allBuilders.put(cell, this);
         }
 
-		private void makeInstance(NodeProto proto, Point2D loc, Orientation orient, double wid, double hei, EPoint[] points) {
-            MakeInstance mi = new MakeInstance(proto, loc, orient, wid, hei, points, null, null);
+		private void makeInstance(NodeProto proto, double x, double y, Orientation orient, double wid, double hei, double[] trace) {
+            MakeInstance mi = new MakeInstance(proto, x, y, orient, wid, hei, trace, null, null);
             insts.add(mi);
         }
 
-		private void makeExport(NodeProto proto, Point2D loc, Orientation orient, double wid, double hei, String exportName) {
-            MakeInstance mi = new MakeInstance(proto, loc, orient, wid, hei, null, exportName, null);
+		private void makeExport(NodeProto proto, double x, double y, Orientation orient, double wid, double hei, String exportName) {
+            MakeInstance mi = new MakeInstance(proto, x, y, orient, wid, hei, null, exportName, null);
             insts.add(mi);
         }
 
-		private void makeText(NodeProto proto, Point2D loc, String text, TextDescriptor textDescriptor) {
-            MakeInstance mi = new MakeInstance(proto, loc, Orientation.IDENT, 0, 0, null, null, Name.findName(text));
+		private void makeText(NodeProto proto, double x, double y, String text, MutableTextDescriptor textDescriptor) {
+            MakeInstance mi = new MakeInstance(proto, x, y, Orientation.IDENT, 0, 0, null, null, Name.findName(text));
             insts.add(mi);
         }
 
@@ -303,10 +319,10 @@ public class GDS extends Input
 						for(MakeInstance mi : insts)
 						{
 							if (ll == null) ll = ul = lr = ur = mi;
-							if (mi.loc.getX() <= ll.loc.getX() && mi.loc.getY() <= ll.loc.getY()) ll = mi;
-							if (mi.loc.getX() <= ul.loc.getX() && mi.loc.getY() >= ul.loc.getY()) ul = mi;
-							if (mi.loc.getX() >= lr.loc.getX() && mi.loc.getY() <= lr.loc.getY()) lr = mi;
-							if (mi.loc.getX() >= ur.loc.getX() && mi.loc.getY() >= ur.loc.getY()) ur = mi;
+							if (mi.x <= ll.x && mi.y <= ll.y) ll = mi;
+							if (mi.x <= ul.x && mi.y >= ul.y) ul = mi;
+							if (mi.x >= lr.x && mi.y <= lr.y) lr = mi;
+							if (mi.x >= ur.x && mi.y >= ur.y) ur = mi;
 						}
 						insts.clear();
 						insts.add(ll);
@@ -540,21 +556,22 @@ public class GDS extends Input
 	private static class MakeInstance implements Comparable<MakeInstance>
 	{
 		private NodeProto proto;
-		private Point2D loc;
+		private double x, y;
 		private Orientation orient;
         private double wid, hei;
-        private EPoint[] points; // trace
+        private double[] trace; // trace as x,y pairs
         private String exportName; // export
         private Name nodeName; // text
 
-		private MakeInstance(NodeProto proto, Point2D loc, Orientation orient, double wid, double hei, EPoint[] points, String exportName, Name nodeName)
+		private MakeInstance(NodeProto proto, double x, double y, Orientation orient, double wid, double hei, double[] trace, String exportName, Name nodeName)
 		{
 			this.proto = proto;
-			this.loc = loc;
+			this.x = x;
+			this.y = y;
             this.orient = orient;
             this.wid = DBMath.round(wid);
             this.hei = DBMath.round(hei);
-            this.points = points;
+            this.trace = trace;
             this.exportName = exportName;
             this.nodeName = nodeName;
 		}
@@ -570,7 +587,7 @@ public class GDS extends Input
          */
         private boolean instantiate(Cell parent) {
         	String name = nodeName.toString();
-            NodeInst ni = NodeInst.makeInstance(proto, loc, wid, hei, parent, orient, nodeName.toString(), 0);
+            NodeInst ni = NodeInst.makeInstance(proto, new Point2D.Double(x, y), wid, hei, parent, orient, nodeName.toString(), 0);
 
             if (ni == null) return false;
             if (ni.getNameKey() != nodeName) {
@@ -578,8 +595,13 @@ public class GDS extends Input
             }
             if (IOTool.isGDSInExpandsCells() && ni.isCellInstance())
                 ni.setExpanded();
-            if (points != null)
+            if (trace != null)
+            {
+                EPoint [] points = new EPoint[trace.length/2];
+                for(int i=0; i<points.length; i++)
+                    points[i] = new EPoint(trace[i*2], trace[i*2+1]);
                 ni.setTrace(points);
+            }
             boolean renamed = false;
             if (exportName != null)
             {
@@ -597,6 +619,11 @@ public class GDS extends Input
         }
 	}
 
+	/**
+	 * Creates a GDS reader.
+	 */
+	public GDS() {}
+
 	/**
 	 * Method to import a library from disk.
 	 * @param lib the library to fill
@@ -610,7 +637,9 @@ public class GDS extends Input
 
 		try
 		{
-			loadFile();
+			File file = new File(filePath);
+			if (file.isFile()) loadMappedFile(file); else
+				loadFile();
 		} catch (IOException e)
 		{
 			System.out.println("ERROR reading GDS file");
@@ -626,12 +655,12 @@ public class GDS extends Input
 	{
 		layerNodeProto = Generic.tech.drcNode;
 
-		theVertices = new Point2D[MAXPOINTS];
-		for(int i=0; i<MAXPOINTS; i++) theVertices[i] = new Point2D.Double();
+		theVerticesX = new double[MAXPOINTS+1];
+		theVerticesY = new double[MAXPOINTS+1];
 		recordCount = 0;
 
 		// get the array of GDS names
-		layerNames = new HashMap<Integer,Layer>();
+		layerNames = new ConcurrentHashMap<Integer,Layer>();
 		pinLayers = new HashSet<Integer>();
 		boolean valid = false;
 		curTech = Technology.getCurrent();
@@ -704,6 +733,177 @@ public class GDS extends Input
 		}
 	}
 
+	/**
+	 * Method to read a GDS file through memory-mapped segments.
+	 * The library header is read first. A quick pass over the record headers then finds the offset of
+	 * every structure and the names of all referenced structures, so that all cells can be created here.
+	 * The structures are then parsed in parallel, each into its own CellBuilder,
+	 * and CellBuilder.buildInstances makes the instances bottom-up afterwards.
+	 * @param file the GDS file.
+	 */
+	private void loadMappedFile(File file)
+		throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			mappedLength = channel.size();
+			mappedSegments = new MappedByteBuffer[(int)((mappedLength + MAPPEDSEGMENTSIZE - 1) >>> MAPPEDSEGMENTBITS)];
+			for(int i=0; i<mappedSegments.length; i++)
+			{
+				long start = (long)i << MAPPEDSEGMENTBITS;
+				mappedSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPPEDSEGMENTSIZE, mappedLength - start));
+			}
+		} finally
+		{
+			// the mapping stays valid after the file is closed
+			raf.close();
+		}
+		mappedPos = 0;
+		initialize();
+
+		getToken();
+		readHeader();
+		getToken();
+		readLibrary();
+		getToken();
+		while (isMember(theToken, optionSet))
+		{
+			if (theToken == GDS_REFLIBS) readRefLibs(); else
+				if (theToken == GDS_FONTS) readFonts(); else
+					if (theToken == GDS_ATTRTABLE) readAttrTable(); else
+						if (theToken == GDS_GENERATIONS) readGenerations();
+		}
+		while (theToken != GDS_UNITS)
+			getToken();
+		readUnits();
+
+		// find the structures without parsing their contents
+		List<Long> structOffsets = new ArrayList<Long>();
+		List<String> structNames = new ArrayList<String>();
+		Set<String> refNames = new LinkedHashSet<String>();
+		long pos = mappedPos;
+		for(;;)
+		{
+			mappedPos = pos;
+			int length = getWord();
+			int recordType = getByte() & 0xFF;
+			if (recordType == GDS_ENDLIB.value) break;
+			if (length < 4) handleError("Invalid record length");
+			if (recordType == GDS_BGNSTR.value) structOffsets.add(new Long(pos)); else
+				if (recordType == GDS_STRNAME.value || recordType == GDS_SNAME.value)
+			{
+				mappedPos = pos + 4;
+				recordCount = length - 4;
+				String name = getString();
+				if (recordType == GDS_STRNAME.value) structNames.add(name); else
+					refNames.add(name);
+			}
+			pos += length;
+		}
+		recordCount = 0;
+		if (structNames.size() != structOffsets.size()) handleError("Strname statement is missing");
+
+		// create the cells on this thread
+		int numStructs = structOffsets.size();
+		preparedCells = new HashMap<String,Cell>();
+		CellBuilder [] builders = new CellBuilder[numStructs];
+		for(int i=0; i<numStructs; i++)
+		{
+			String name = structNames.get(i);
+			Cell cell = findCell(name);
+			if (cell == null)
+			{
+				cell = Cell.newInstance(theLibrary, name+View.LAYOUT.getAbbreviationExtension());
+				if (cell == null) handleError("Failed to create structure");
+				System.out.println("Reading " + name);
+				if (Job.getUserInterface().getCurrentCell(theLibrary) == null)
+					Job.getUserInterface().setCurrentCell(theLibrary, cell);
+			}
+			preparedCells.put(name, cell);
+			builders[i] = new CellBuilder(cell);
+		}
+		for(String name : refNames)
+		{
+			if (preparedCells.containsKey(name)) continue;
+			Cell np = findCell(name);
+			if (np == null)
+			{
+				np = Cell.newInstance(theLibrary, name+View.LAYOUT.getAbbreviationExtension());
+				if (np == null) handleError("Failed to create SREF proto");
+			}
+			preparedCells.put(name, np);
+		}
+
+		// parse the structures in parallel
+		int numThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), numStructs));
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for(int i=0; i<numStructs; i++)
+		{
+			final GDS reader = new GDS(this, builders[i], structOffsets.get(i).longValue());
+			results.add(pool.submit(new Callable<Object>() {
+				public Object call() throws IOException
+				{
+					reader.getToken();
+					reader.readStructure();
+					return null;
+				}
+			}));
+		}
+		try
+		{
+			for(int i=0; i<numStructs; i++)
+			{
+				try
+				{
+					results.get(i).get();
+				} catch (ExecutionException e)
+				{
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) throw (IOException)cause;
+					if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+					if (cause instanceof Error) throw (Error)cause;
+					throw new IOException(cause.toString());
+				}
+				setProgressValue((int)((i + 1) * 100L / numStructs));
+			}
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("GDS reading was interrupted");
+		} finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Constructor for a reader of one structure of a memory-mapped file.
+	 * It shares the layer tables and the file with the main reader.
+	 * @param parent the main reader.
+	 * @param cellBuilder the CellBuilder of the structure.
+	 * @param offset the file offset of the BGNSTR record of the structure.
+	 */
+	private GDS(GDS parent, CellBuilder cellBuilder, long offset)
+	{
+		theLibrary = parent.theLibrary;
+		curTech = parent.curTech;
+		layerNodeProto = parent.layerNodeProto;
+		theScale = parent.theScale;
+		layerNames = parent.layerNames;
+		pinLayers = parent.pinLayers;
+		filePath = parent.filePath;
+		mappedSegments = parent.mappedSegments;
+		mappedLength = parent.mappedLength;
+		preparedCells = parent.preparedCells;
+		preparedCell = cellBuilder;
+		mappedPos = offset;
+		theVerticesX = new double[MAXPOINTS+1];
+		theVerticesY = new double[MAXPOINTS+1];
+	}
+
 	private void readHeader()
 		throws IOException
 	{
@@ -811,22 +1011,13 @@ public class GDS extends Input
     				if (box == null)
     				{
         				box = poly.getBounds2D();
-    					Point2D ctr = new EPoint(box.getCenterX(), box.getCenterY());
-
-    					// store the trace information
-    					Point2D [] pPoints = poly.getPoints();
-    					EPoint [] points = new EPoint[pPoints.length];
-    					for(int i=0; i<pPoints.length; i++)
-    					{
-    						points[i] = new EPoint(pPoints[i].getX(), pPoints[i].getY());
-    					}
 
     					// store the trace information
-                        theCell.makeInstance(pnp, ctr, Orientation.IDENT, box.getWidth(), box.getHeight(), points);
+                        theCell.makeInstance(pnp, box.getCenterX(), box.getCenterY(), Orientation.IDENT, box.getWidth(), box.getHeight(),
+                        	makeTrace(poly.getPoints()));
     				} else
     				{
-    					Point2D ctr = new EPoint(box.getCenterX(), box.getCenterY());
-                        theCell.makeInstance(pnp, ctr, Orientation.IDENT, box.getWidth(), box.getHeight(), null);
+                        theCell.makeInstance(pnp, box.getCenterX(), box.getCenterY(), Orientation.IDENT, box.getWidth(), box.getHeight(), null);
     				}
     			}
     		}
@@ -846,6 +1037,13 @@ public class GDS extends Input
 		getToken();
 		if (theToken != GDS_IDENT) handleError("Structure name is missing");
 
+		// the cell was already made when reading structures in parallel
+		if (preparedCell != null)
+		{
+			theCell = preparedCell;
+			return;
+		}
+
 		// look for this nodeproto
 		Cell cell = findCell(tokenString);
 		if (cell == null)
@@ -929,19 +1127,19 @@ public class GDS extends Input
 		Point2D colInterval = new Point2D.Double(0, 0);
 		if (nCols != 1)
 		{
-			colInterval.setLocation((theVertices[1].getX() - theVertices[0].getX()) / nCols,
-				(theVertices[1].getY() - theVertices[0].getY()) / nCols);
+			colInterval.setLocation((theVerticesX[1] - theVerticesX[0]) / nCols,
+				(theVerticesY[1] - theVerticesY[0]) / nCols);
 		}
 		Point2D rowInterval = new Point2D.Double(0, 0);
 		if (nRows != 1)
 		{
-			rowInterval.setLocation((theVertices[2].getX() - theVertices[0].getX()) / nRows,
-				(theVertices[2].getY() - theVertices[0].getY()) / nRows);
+			rowInterval.setLocation((theVerticesX[2] - theVerticesX[0]) / nRows,
+				(theVerticesY[2] - theVerticesY[0]) / nRows);
 		}
 
 		// now generate the array
-		double ptcX = theVertices[0].getX();
-		double ptcY = theVertices[0].getY();
+		double ptcX = theVerticesX[0];
+		double ptcY = theVerticesY[0];
 		for (int ic = 0; ic < nCols; ic++)
 		{
 			double ptX = ptcX;
@@ -953,8 +1151,7 @@ public class GDS extends Input
 					(ir == 0 && ic == 0) ||
 						(ir == (nRows-1) && ic == (nCols-1)))
 				{
-					Point2D loc = new Point2D.Double(ptX, ptY);
-					theCell.makeInstance(theNodeProto, loc, Orientation.fromJava(angle, mX, mY), 0, 0, null);
+					theCell.makeInstance(theNodeProto, ptX, ptY, Orientation.fromJava(angle, mX, mY), 0, 0, null);
 				}
 
 				// add the row displacement
@@ -1034,14 +1231,13 @@ public class GDS extends Input
 		getToken();
 		determinePoints(1, 1);
 
-		Point2D loc = new Point2D.Double(theVertices[0].getX(), theVertices[0].getY());
 		boolean mY = false;
 		if (trans)
 		{
 			mY = true;
 			angle = (angle + 900) % 3600;
 		}
-		theCell.makeInstance(theNodeProto, loc, Orientation.fromJava(angle, false, mY), 0, 0, null);
+		theCell.makeInstance(theNodeProto, theVerticesX[0], theVerticesY[0], Orientation.fromJava(angle, false, mY), 0, 0, null);
 	}
 
 	private void determineShape()
@@ -1064,8 +1260,8 @@ public class GDS extends Input
 		boolean is45 = true;
 		for (int i=0; i<npts-1 && i<MAXPOINTS-1; i++)
 		{
-			double dx = theVertices[i+1].getX() - theVertices[i].getX();
-			double dy = theVertices[i+1].getY() - theVertices[i].getY();
+			double dx = theVerticesX[i+1] - theVerticesX[i];
+			double dy = theVerticesY[i+1] - theVerticesY[i];
 			if (dx != 0 && dy != 0)
 			{
 				is90 = false;
@@ -1074,8 +1270,8 @@ public class GDS extends Input
 		}
 
 		ShapeType perimeter = SHAPELINE;
-		if (theVertices[0].getX() == theVertices[npts-1].getX() &&
-			theVertices[0].getY() == theVertices[npts-1].getY())
+		if (theVerticesX[0] == theVerticesX[npts-1] &&
+			theVerticesY[0] == theVerticesY[npts-1])
 				perimeter = SHAPECLOSED;
 		ShapeType oclass = SHAPEOBLIQUE;
 		if (perimeter == SHAPECLOSED && (is90 || is45))
@@ -1090,18 +1286,18 @@ public class GDS extends Input
 			// create the rectangle
 			if (layerUsed)
 			{
-				Point2D ctr = new Point2D.Double((theVertices[0].getX()+theVertices[1].getX())/2,
-					(theVertices[0].getY()+theVertices[1].getY())/2);
-				double sX = Math.abs(theVertices[1].getX() - theVertices[0].getX());
-				double sY = Math.abs(theVertices[1].getY() - theVertices[0].getY());
+				double cX = (theVerticesX[0]+theVerticesX[1])/2;
+				double cY = (theVerticesY[0]+theVerticesY[1])/2;
+				double sX = Math.abs(theVerticesX[1] - theVerticesX[0]);
+				double sY = Math.abs(theVerticesY[1] - theVerticesY[0]);
 				if (mergeThisCell)
 				{
 					PrimitiveNode plnp = layerNodeProto;
 					NodeLayer [] layers = plnp.getLayers();
-					merge.addPolygon(layers[0].getLayer(), new Poly(ctr.getX(), ctr.getY(), sX, sY));
+					merge.addPolygon(layers[0].getLayer(), new Poly(cX, cY, sX, sY));
 				} else
 				{
-                    theCell.makeInstance(layerNodeProto, ctr, Orientation.IDENT, sX, sY, null);
+                    theCell.makeInstance(layerNodeProto, cX, cY, Orientation.IDENT, sX, sY, null);
 				}
 			}
 			return;
@@ -1114,32 +1310,35 @@ public class GDS extends Input
 			{
 				PrimitiveNode plnp = layerNodeProto;
 				NodeLayer [] layers = plnp.getLayers();
-				merge.addPolygon(layers[0].getLayer(), new Poly(theVertices)); // ??? npts
+				Point2D [] points = new Point2D[npts];
+				for(int i=0; i<npts; i++) points[i] = new Point2D.Double(theVerticesX[i], theVerticesY[i]);
+				merge.addPolygon(layers[0].getLayer(), new Poly(points));
 			} else
 			{
 				// determine the bounds of the polygon
-				double lx = theVertices[0].getX();
-				double hx = theVertices[0].getX();
-				double ly = theVertices[0].getY();
-				double hy = theVertices[0].getY();
+				double lx = theVerticesX[0];
+				double hx = theVerticesX[0];
+				double ly = theVerticesY[0];
+				double hy = theVerticesY[0];
 				for (int i=1; i<npts;i++)
 				{
-					if (lx > theVertices[i].getX()) lx = theVertices[i].getX();
-					if (hx < theVertices[i].getX()) hx = theVertices[i].getX();
-					if (ly > theVertices[i].getY()) ly = theVertices[i].getY();
-					if (hy < theVertices[i].getY()) hy = theVertices[i].getY();
+					if (lx > theVerticesX[i]) lx = theVerticesX[i];
+					if (hx < theVerticesX[i]) hx = theVerticesX[i];
+					if (ly > theVerticesY[i]) ly = theVerticesY[i];
+					if (hy < theVerticesY[i]) hy = theVerticesY[i];
 				}
 
 				// store the trace information
-				EPoint [] points = new EPoint[npts];
+				double [] trace = new double[npts*2];
 				for(int i=0; i<npts; i++)
 				{
-					points[i] = new EPoint(theVertices[i].getX(), theVertices[i].getY());
+					trace[i*2] = theVerticesX[i];
+					trace[i*2+1] = theVerticesY[i];
 				}
 
 				// now create the node
-                theCell.makeInstance(layerNodeProto, new EPoint((lx+hx)/2, (ly+hy)/2),
-                	Orientation.IDENT, hx-lx, hy-ly, points);
+                theCell.makeInstance(layerNodeProto, (lx+hx)/2, (ly+hy)/2,
+                	Orientation.IDENT, hx-lx, hy-ly, trace);
 			}
 
 			return;
@@ -1148,19 +1347,19 @@ public class GDS extends Input
 
 	private void readBox()
 	{
-		double pxm = theVertices[4].getX();
-		double pxs = theVertices[4].getX();
-		double pym = theVertices[4].getY();
-		double pys = theVertices[4].getY();
+		double pxm = theVerticesX[4];
+		double pxs = theVerticesX[4];
+		double pym = theVerticesY[4];
+		double pys = theVerticesY[4];
 		for (int i = 0; i<4; i++)
 		{
-			if (theVertices[i].getX() > pxm) pxm = theVertices[i].getX();
-			if (theVertices[i].getX() < pxs) pxs = theVertices[i].getX();
-			if (theVertices[i].getY() > pym) pym = theVertices[i].getY();
-			if (theVertices[i].getY() < pys) pys = theVertices[i].getY();
+			if (theVerticesX[i] > pxm) pxm = theVerticesX[i];
+			if (theVerticesX[i] < pxs) pxs = theVerticesX[i];
+			if (theVerticesY[i] > pym) pym = theVerticesY[i];
+			if (theVerticesY[i] < pys) pys = theVerticesY[i];
 		}
-		theVertices[0].setLocation(pxs, pys);
-		theVertices[1].setLocation(pxm, pym);
+		theVerticesX[0] = pxs;   theVerticesY[0] = pys;
+		theVerticesX[1] = pxm;   theVerticesY[1] = pym;
 	}
 
 	private void determinePath()
@@ -1208,8 +1407,8 @@ public class GDS extends Input
 			// construct the path
 			for (int i=0; i < n-1; i++)
 			{
-				Point2D fromPt = theVertices[i];
-				Point2D toPt = theVertices[i+1];
+				Point2D fromPt = new Point2D.Double(theVerticesX[i], theVerticesY[i]);
+				Point2D toPt = new Point2D.Double(theVerticesX[i+1], theVerticesY[i+1]);
 
 				// determine whether either end needs to be shrunk
 				double fextend = width / 2;
@@ -1217,7 +1416,7 @@ public class GDS extends Input
 				int thisAngle = GenMath.figureAngle(fromPt, toPt);
 				if (i > 0)
 				{
-					Point2D prevPoint = theVertices[i-1];
+					Point2D prevPoint = new Point2D.Double(theVerticesX[i-1], theVerticesY[i-1]);
 					int lastAngle = GenMath.figureAngle(prevPoint, fromPt);
 					if (Math.abs(thisAngle-lastAngle) % 900 != 0)
 					{
@@ -1232,7 +1431,7 @@ public class GDS extends Input
 				}
 				if (i+1 < n-1)
 				{
-					Point2D nextPoint = theVertices[i+2];
+					Point2D nextPoint = new Point2D.Double(theVerticesX[i+2], theVerticesY[i+2]);
 					int nextAngle = GenMath.figureAngle(toPt, nextPoint);
 					if (Math.abs(thisAngle-nextAngle) % 900 != 0)
 					{
@@ -1265,8 +1464,8 @@ public class GDS extends Input
 						Rectangle2D polyBox = poly.getBox();
 						if (polyBox != null)
 						{
-                            theCell.makeInstance(layerNodeProto, new EPoint(polyBox.getCenterX(),
-                            	polyBox.getCenterY()), Orientation.IDENT, polyBox.getWidth(), polyBox.getHeight(), null);
+                            theCell.makeInstance(layerNodeProto, polyBox.getCenterX(),
+                            	polyBox.getCenterY(), Orientation.IDENT, polyBox.getWidth(), polyBox.getHeight(), null);
 						} else
 						{
 							polyBox = poly.getBounds2D();
@@ -1274,16 +1473,8 @@ public class GDS extends Input
 							double cy = polyBox.getCenterY();
 
 							// store the trace information
-							Point2D [] polyPoints = poly.getPoints();
-							EPoint [] points = new EPoint[polyPoints.length];
-							for(int j=0; j<polyPoints.length; j++)
-							{
-								points[j] = new EPoint(polyPoints[j].getX(), polyPoints[j].getY());
-							}
-
-							// store the trace information
-                            theCell.makeInstance(layerNodeProto, new EPoint(cx, cy), Orientation.IDENT,
-                            	polyBox.getWidth(), polyBox.getHeight(), points);
+                            theCell.makeInstance(layerNodeProto, cx, cy, Orientation.IDENT,
+                            	polyBox.getWidth(), polyBox.getHeight(), makeTrace(poly.getPoints()));
 						}
 					}
 				}
@@ -1327,7 +1518,7 @@ public class GDS extends Input
 		{
 		} else
 		{
-            theCell.makeInstance(layerNodeProto, new Point2D.Double(theVertices[0].getX(), theVertices[0].getY()),
+            theCell.makeInstance(layerNodeProto, theVerticesX[0], theVerticesY[0],
             	Orientation.IDENT, 0, 0, null);
 		}
 	}
@@ -1420,7 +1611,7 @@ public class GDS extends Input
 			NodeProto np = pinNodeProto;
             if (np.getNumPorts() > 0)
             {
-                theCell.makeExport(np, new Point2D.Double(theVertices[0].getX(), theVertices[0].getY()),
+                theCell.makeExport(np, theVerticesX[0], theVerticesY[0],
                 	Orientation.IDENT, np.getDefWidth(), np.getDefHeight(), charstring);
             }
 			return;
@@ -1428,9 +1619,9 @@ public class GDS extends Input
 
 		// stop if not handling text in GDS
 		if (!IOTool.isGDSInIncludesText()) return;
-		double x = theVertices[0].getX() + MINFONTWIDTH * charstring.length();
-		double y = theVertices[0].getY() + MINFONTHEIGHT;
-		theVertices[1].setLocation(x, y);
+		double x = theVerticesX[0] + MINFONTWIDTH * charstring.length();
+		double y = theVerticesY[0] + MINFONTHEIGHT;
+		theVerticesX[1] = x;   theVerticesY[1] = y;
 
 		// set the text size and orientation
 		MutableTextDescriptor td = MutableTextDescriptor.getNodeTextDescriptor();
@@ -1469,8 +1660,7 @@ public class GDS extends Input
 					default: td.setPos(TextDescriptor.Position.CENT);  break;
 				}
 		}
-        theCell.makeText(layerNodeProto, new Point2D.Double(theVertices[0].getX(), theVertices[0].getY()),
-        	charstring, TextDescriptor.newTextDescriptor(td));
+        theCell.makeText(layerNodeProto, theVerticesX[0], theVerticesY[0], charstring, td);
 	}
 
 	/**
@@ -1493,7 +1683,7 @@ public class GDS extends Input
 			{
 			} else
 			{
-                theCell.makeInstance(layerNodeProto, new Point2D.Double(theVertices[0].getX(), theVertices[0].getY()),
+                theCell.makeInstance(layerNodeProto, theVerticesX[0], theVerticesY[0],
                 	Orientation.IDENT, 0, 0, null);
 			}
 		}
@@ -1507,15 +1697,17 @@ public class GDS extends Input
 		Layer layer = layerNames.get(layerInt);
 		if (layer == null)
 		{
+			layerUsed = false;
+			layerNodeProto = null;
+
+			// another thread may be reporting the same layer
+			if (layerNames.putIfAbsent(layerInt, Generic.tech.drcLay) != null) return;
             String message = "GDS layer " + layerNum + ", type " + layerType +
         		" unknown in cell '" + theCell.cell.getName();
             if (IOTool.isGDSInIgnoresUnknownLayers()) message += "', ignoring it" ; else
             	message += "', using Generic:DRC";
             errorLogger.logWarning(message, theCell.cell, 0);
             System.out.println(message);
-			layerNames.put(layerInt, Generic.tech.drcLay);
-			layerUsed = false;
-			layerNodeProto = null;
 		} else
 		{
 			layerNodeProto = layer.getNonPseudoLayer().getPureLayerNode();
@@ -1599,9 +1791,11 @@ public class GDS extends Input
 		throws IOException
 	{
 		// scan for this proto
-		Cell np = findCell(name);
+		Cell np = (preparedCells != null) ? preparedCells.get(name) : findCell(name);
 		if (np == null)
 		{
+			if (preparedCells != null) handleError("Unknown structure " + name);
+
 			// FILO order, create this nodeproto
 			np = Cell.newInstance(theLibrary, tokenString+View.LAYOUT.getAbbreviationExtension());
 			if (np == null) handleError("Failed to create SREF proto");
@@ -1621,6 +1815,20 @@ public class GDS extends Input
 		getToken();
 	}
 
+	/**
+	 * Method to convert polygon points into a trace of x,y pairs.
+	 */
+	private static double [] makeTrace(Point2D [] points)
+	{
+		double [] trace = new double[points.length*2];
+		for(int i=0; i<points.length; i++)
+		{
+			trace[i*2] = points[i].getX();
+			trace[i*2+1] = points[i].getY();
+		}
+		return trace;
+	}
+
 	private boolean isMember(GSymbol tok, GSymbol [] set)
 	{
 		for(int i=0; i<set.length; i++)
@@ -1701,9 +1909,10 @@ public class GDS extends Input
 	private void handleError(String msg)
 		throws IOException
 	{
+        if (mappedSegments != null) byteCount = mappedPos;
         String message = "Error: " + msg + " at byte " + byteCount;
 		System.out.println(message);
-        errorLogger.logError(message, theCell.cell, 0);
+        errorLogger.logError(message, (theCell != null) ? theCell.cell : null, 0);
 		throw new IOException();
 	}
 
@@ -1728,7 +1937,7 @@ public class GDS extends Input
 			double x = tokenValue32 * theScale;
 			getToken();
 			double y = tokenValue32 * theScale;
-			theVertices[point_counter].setLocation(x, y);
+			theVerticesX[point_counter] = x;   theVerticesY[point_counter] = y;
 			point_counter++;
 			if (point_counter > max_points)
 			{
@@ -1900,8 +2109,17 @@ public class GDS extends Input
 	private byte getByte()
 		throws IOException
 	{
-		byte b = dataInputStream.readByte();
-		updateProgressDialog(1);
+		byte b;
+		if (mappedSegments != null)
+		{
+			if (mappedPos >= mappedLength) throw new EOFException();
+			b = mappedSegments[(int)(mappedPos >>> MAPPEDSEGMENTBITS)].get((int)(mappedPos & (MAPPEDSEGMENTSIZE - 1)));
+			mappedPos++;
+		} else
+		{
+			b = dataInputStream.readByte();
+			updateProgressDialog(1);
+		}
 		recordCount--;
 		return b;
 	}
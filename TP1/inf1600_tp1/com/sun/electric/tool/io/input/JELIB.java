@@ -56,6 +56,7 @@ import com.sun.electric.technology.Technology;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.Tool;
 import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.IOTool;
 import com.sun.electric.tool.ncc.basic.TransitiveRelation;
 
 import java.awt.geom.Point2D;
@@ -66,23 +67,37 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class reads files in new library file (.jelib) format.
  */
 public class JELIB extends LibraryFiles
 {
-	private class CellContents
+	class CellContents
 	{
         final int revision;
         private final Version version;
 		boolean filledIn;
 		int lineNumber;
         String groupName;
-		List<String> cellStrings = new ArrayList<String>();
+		/** the cell lines, or null once they are parsed */				List<String> cellStrings = new ArrayList<String>();
+		/** the cell lines broken into fields, or null if not parsed yet */	List<List<String>> cellPieces;
+		/** the first character of each parsed line */						char[] lineKinds;
+		/** ids of nodes placed with the exports, by disk name, or null */	HashMap<String,Integer> placedNodes;
+		/** true if the exports are placed while the rest is deferred */	boolean exportsPlaced;
+		/** fields of the instance lines by line index, or null */			HashMap<Integer,List<String>> instancePieces;
+		/** the parse of the cell on the thread pool, or null */			Future<List<List<String>>> parsing;
 		String fileName;
         private HashMap<Technology,Technology.SizeCorrector> sizeCorrectors = new HashMap<Technology,Technology.SizeCorrector>();
 
@@ -93,6 +108,50 @@ public class JELIB extends LibraryFiles
 			filledIn = false;
 		}
         
+        /**
+         * Method to return the fields of a line of this cell.
+         * Uses the fields parsed in advance when they are available.
+         * @param line the index of the line in the cell.
+         * @return a List of Strings.
+         */
+        List<String> getPieces(int line) {
+            if (cellPieces != null) return cellPieces.get(line);
+            List<String> pieces = instancePieces != null ? instancePieces.get(new Integer(line)) : null;
+            if (pieces != null) return pieces;
+            return parseLine(cellStrings.get(line));
+        }
+
+        /**
+         * Method to return the number of lines of this cell.
+         * @return the number of lines of this cell.
+         */
+        int getNumLines() { return cellPieces != null ? cellPieces.size() : cellStrings.size(); }
+
+        /**
+         * Method to return the kind of a line of this cell (its first character).
+         * @param line the index of the line in the cell.
+         * @return the first character of the line.
+         */
+        char getLineKind(int line) { return cellPieces != null ? lineKinds[line] : cellStrings.get(line).charAt(0); }
+
+        /**
+         * Method to return a line of this cell for error messages.
+         * The line is rebuilt from its fields when the raw line was dropped after parsing.
+         * @param line the index of the line in the cell.
+         * @return the text of the line.
+         */
+        String getLine(int line) {
+            if (cellPieces == null) return cellStrings.get(line);
+            StringBuffer sb = new StringBuffer();
+            sb.append(lineKinds[line]);
+            List<String> pieces = cellPieces.get(line);
+            for (int i = 0; i < pieces.size(); i++) {
+                if (i > 0) sb.append('|');
+                sb.append(pieces.get(i));
+            }
+            return sb.toString();
+        }
+
         Technology.SizeCorrector getSizeCorrector(Technology tech) {
             Technology.SizeCorrector corrector = sizeCorrectors.get(tech);
             if (corrector == null) {
@@ -143,6 +202,9 @@ public class JELIB extends LibraryFiles
     private PrimitiveNode curPrim = null;
     private ArrayList<Cell[]> groupLines;
 
+	/** the thread pool that parses cells ahead of their instantiation, or null */	private ExecutorService parsePool;
+	/** the cells to parse next, in the order they will be instantiated */		private LinkedList<CellContents> parseQueue;
+
 //	/** The number of lines that have been "processed" so far. */	private int numProcessed;
 //	/** The number of lines that must be "processed". */			private int numToProcess;
 
@@ -202,6 +264,7 @@ public class JELIB extends LibraryFiles
 		try
 		{
 			if (readTheLibrary()) return true;
+			startParsingCells(getInstantiationOrder());
 			nodeProtoCount = allCells.size();
 			nodeProtoList = new Cell[nodeProtoCount];
 			cellLambda = new double[nodeProtoCount];
@@ -216,6 +279,164 @@ public class JELIB extends LibraryFiles
 		}
 	}
 
+	/**
+	 * Method to return the contents of the cells of the library in the order they will be instantiated:
+	 * the cells below a cell come before it.
+	 * When cell contents are loaded lazily, these are only the current cell and the cells below it.
+	 * Only the instance lines of these cells are parsed here; their fields are kept for the full parse.
+	 * @return the contents of the cells in the order they will be instantiated.
+	 */
+	private List<CellContents> getInstantiationOrder()
+	{
+		List<CellContents> order = new ArrayList<CellContents>();
+		HashSet<CellContents> visited = new HashSet<CellContents>();
+		if (IOTool.isLazyCellLoading())
+		{
+			Cell curCell = lib.getCurCell();
+			CellContents curCC = curCell != null ? allCells.get(curCell) : null;
+			if (curCC != null) addInstantiationOrder(curCC, visited, order);
+		} else
+		{
+			for (CellContents cc : allCells.values())
+				addInstantiationOrder(cc, visited, order);
+		}
+		return order;
+	}
+
+	/**
+	 * Method to add a cell to the instantiation order after the cells below it.
+	 * @param cc the contents of the cell.
+	 * @param visited the cells that are already ordered or being ordered.
+	 * @param order the contents of the cells in the order they will be instantiated.
+	 */
+	private void addInstantiationOrder(CellContents cc, HashSet<CellContents> visited, List<CellContents> order)
+	{
+		if (!visited.add(cc)) return;
+		if (cc.filledIn || cc.cellStrings == null || cc.cellStrings.isEmpty()) return;
+		cc.instancePieces = new HashMap<Integer,List<String>>();
+		for (int line = 0; line < cc.cellStrings.size(); line++)
+		{
+			String cellString = cc.cellStrings.get(line);
+			if (cellString.charAt(0) != 'I') continue;
+			List<String> pieces = parseLine(cellString);
+			cc.instancePieces.put(new Integer(line), pieces);
+			if (pieces.isEmpty()) continue;
+			String protoName = unQuote(cc.revision, pieces.get(0));
+			int colonPos = protoName.indexOf(':');
+			if (colonPos >= 0)
+			{
+				if (!protoName.substring(0, colonPos).equalsIgnoreCase(curLibName)) continue;
+				protoName = protoName.substring(colonPos+1);
+			}
+			Cell subCell = lib.findNodeProto(protoName);
+			CellContents subCC = subCell != null ? allCells.get(subCell) : null;
+			if (subCC != null) addInstantiationOrder(subCC, visited, order);
+		}
+		order.add(cc);
+	}
+
+	/**
+	 * Method to start breaking the lines of cells into fields on a thread pool.
+	 * The cells themselves are still created one at a time and in dependency order
+	 * by realizeCellsRecursively.
+	 * Only a few cells are parsed ahead of the one being instantiated:
+	 * each one that is instantiated lets the next one in the queue be parsed,
+	 * so the fields of all cells are never alive at once.
+	 * Cells that are not parsed here are parsed line by line when they are instantiated.
+	 * @param cells the contents of the cells in the order they will be instantiated.
+	 */
+	private void startParsingCells(List<CellContents> cells)
+	{
+		if (cells.size() <= 1) return;
+		int numThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), cells.size()));
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads, numThreads, 1, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>());
+		pool.allowCoreThreadTimeOut(true);
+		parsePool = pool;
+		parseQueue = new LinkedList<CellContents>(cells);
+		for (int i = 0; i < numThreads*2; i++) parseNextCell();
+	}
+
+	/**
+	 * Method to start parsing the next cell in the queue on the thread pool.
+	 * The raw lines of the cell are dropped as they are parsed.
+	 */
+	private void parseNextCell()
+	{
+		if (parseQueue == null) return;
+		synchronized (parseQueue)
+		{
+			if (parseQueue.isEmpty())
+			{
+				parsePool.shutdown();
+				return;
+			}
+			final CellContents cc = parseQueue.removeFirst();
+			final List<String> cellStrings = cc.cellStrings;
+			final HashMap<Integer,List<String>> instancePieces = cc.instancePieces;
+			final char[] lineKinds = cc.lineKinds = new char[cellStrings.size()];
+			cc.parsing = parsePool.submit(new Callable<List<List<String>>>() {
+				public List<List<String>> call()
+				{
+					List<List<String>> pieces = new ArrayList<List<String>>(cellStrings.size());
+					for (int line = 0; line < lineKinds.length; line++)
+					{
+						String cellString = cellStrings.set(line, null);
+						lineKinds[line] = cellString.charAt(0);
+						List<String> linePieces = lineKinds[line] == 'I' ? instancePieces.get(new Integer(line)) : null;
+						pieces.add(linePieces != null ? linePieces : parseLine(cellString));
+					}
+					return pieces;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Method to wait for the fields of a cell that is parsed on the thread pool.
+	 * A cell that is still in the queue is taken out of it and parsed line by line.
+	 * @param cc the contents of the cell.
+	 */
+	private void finishParsing(CellContents cc)
+	{
+		if (parseQueue == null) return;
+		Future<List<List<String>>> parsing;
+		synchronized (parseQueue)
+		{
+			parsing = cc.parsing;
+			if (parsing == null)
+			{
+				parseQueue.remove(cc);
+				return;
+			}
+		}
+		if (cc.cellPieces != null) return;
+		boolean interrupted = false;
+		try
+		{
+			for(;;)
+			{
+				try
+				{
+					cc.cellPieces = parsing.get();
+					break;
+				} catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) throw (Error)cause;
+			throw (RuntimeException)cause;
+		} finally
+		{
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+		cc.cellStrings = null;
+		cc.instancePieces = null;
+	}
 	/**
 	 * Method to read the .elib file.
 	 * Returns true on error.
@@ -773,14 +994,99 @@ public class JELIB extends LibraryFiles
         cell.loadExpandStatus();
 	}
 
+	/**
+	 * Method to leave the contents of a Cell in their file form until they are needed.
+	 * The exports, and the nodes they are on, are placed now, so that the ports of the Cell
+	 * are known while the rest of its contents is deferred.
+	 */
+	@Override
+	boolean deferCellContents(Cell cell, HashSet<Cell> recursiveSetupFlag)
+	{
+		CellContents cc = allCells.get(cell);
+		if (cc == null || cc.filledIn || cc.cellStrings == null) return false;
+		instantiateExports(cell, cc, recursiveSetupFlag);
+		cell.lowLevelDeferContents(new DeferredContents(cc));
+		return true;
+	}
+
+	/**
+	 * Method to place the exports of a Cell whose other contents are deferred.
+	 * Only the nodes that carry exports are placed with them.
+	 * @param cell the Cell to fill.
+	 * @param cc the contents of that cell (the strings from the file).
+	 */
+	void instantiateExports(Cell cell, CellContents cc, HashSet<Cell> recursiveSetupFlag)
+	{
+		finishParsing(cc);
+		HashSet<String> exportNodes = new HashSet<String>();
+		for(int line=0; line<cc.getNumLines(); line++)
+		{
+			if (cc.getLineKind(line) != 'E') continue;
+			List<String> pieces = cc.getPieces(line);
+			int nodeField = cc.revision >= 2 ? 3 : 2;
+			if (pieces.size() <= nodeField) continue;
+			exportNodes.add(cc.revision >= 1 ? pieces.get(nodeField) : unQuote(cc.revision, pieces.get(nodeField)));
+		}
+		placeCellContent(cell, cc, recursiveSetupFlag, exportNodes);
+	}
+
+	/**
+	 * Method to instantiate the contents of a Cell that were deferred when the library was read.
+	 * @param cell the Cell to instantiate.
+	 * @param cc the contents of that cell (the strings from the file).
+	 */
+	void instantiateDeferredCell(Cell cell, CellContents cc)
+	{
+		instantiateCellContent(cell, cc, new HashSet<Cell>());
+		cell.loadExpandStatus();
+	}
+
+	/**
+	 * Class to instantiate the contents of a Cell when they are first needed.
+	 * The lines of the cell are released once they are instantiated.
+	 */
+	private class DeferredContents implements Cell.ContentsLoader
+	{
+		private final CellContents cc;
+
+		DeferredContents(CellContents cc) { this.cc = cc; }
+
+		public void loadContents(Cell cell) { instantiateDeferredCell(cell, cc); }
+	}
+
 	/**
 	 * Method called after all libraries have been read to instantiate a single Cell.
 	 * @param cell the Cell to instantiate.
 	 * @param cc the contents of that cell (the strings from the file).
 	 */
-	private void instantiateCellContent(Cell cell, CellContents cc, HashSet<Cell> recursiveSetupFlag)
+	void instantiateCellContent(Cell cell, CellContents cc, HashSet<Cell> recursiveSetupFlag)
+	{
+		finishParsing(cc);
+		placeCellContent(cell, cc, recursiveSetupFlag, null);
+		cc.filledIn = true;
+		cc.cellStrings = null;
+		cc.cellPieces = null;
+		cc.instancePieces = null;
+
+		// the fields of this cell are dropped, so the next cell may be parsed
+		if (cc.parsing != null)
+		{
+			cc.parsing = null;
+			parseNextCell();
+		}
+	}
+
+	/**
+	 * Method to place the objects of a Cell.
+	 * Nodes and exports that were placed when the Cell was deferred are not placed again.
+	 * @param cell the Cell to fill.
+	 * @param cc the contents of that cell (the strings from the file).
+	 * @param exportNodes disk names of the nodes to place with the exports,
+	 * or null to place all contents of the cell.
+	 */
+	private void placeCellContent(Cell cell, CellContents cc, HashSet<Cell> recursiveSetupFlag, Set<String> exportNodes)
 	{
-		int numStrings = cc.cellStrings.size();
+		int numStrings = cc.getNumLines();
 
 		// map disk node names (duplicate node names written "sig"1 and "sig"2)
 		HashMap<String,NodeInst> diskName = new HashMap<String,NodeInst>();
@@ -788,21 +1094,20 @@ public class JELIB extends LibraryFiles
 		// place all nodes
 		for(int line=0; line<numStrings; line++)
 		{
-			String cellString = cc.cellStrings.get(line);
-			char firstChar = cellString.charAt(0);
+			char firstChar = cc.getLineKind(line);
 			if (firstChar != 'N' && firstChar != 'I') continue;
 //			numProcessed++;
 //			if ((numProcessed%100) == 0) progress.setProgress(numProcessed * 100 / numToProcess);
 
 			// parse the node line
-			List<String> pieces = parseLine(cellString);
+			List<String> pieces = cc.getPieces(line);
 			int numPieces = cc.revision < 1 ? 10 : firstChar == 'N' ? 9 : 8;
 			if (pieces.size() < numPieces)
 			{
 				String lineNumber = "";
 				if (lineReader != null) lineNumber = ", line " + lineReader.getLineNumber();
 				Input.errorLogger.logError(cc.fileName + lineNumber +
-					", Node instance needs " + numPieces + " fields: " + cellString, cell, -1);
+					", Node instance needs " + numPieces + " fields: " + cc.getLine(line), cell, -1);
 				continue;
 			}
 			String protoName = unQuote(cc.revision, pieces.get(0));
@@ -818,6 +1123,17 @@ public class JELIB extends LibraryFiles
 					if (cc.revision >= 1) nodeName = unQuote(cc.revision, nodeName);
 				}
 			}
+			if (exportNodes != null && !exportNodes.contains(diskNodeName)) continue;
+			if (exportNodes == null && cc.placedNodes != null)
+			{
+				Integer nodeId = cc.placedNodes.get(diskNodeName);
+				NodeInst placed = nodeId != null ? cell.getNodeById(nodeId.intValue()) : null;
+				if (placed != null)
+				{
+					diskName.put(diskNodeName, placed);
+					continue;
+				}
+			}
 			String nameTextDescriptorInfo = pieces.get(2);
 			double x = TextUtils.atof(pieces.get(3));
 			double y = TextUtils.atof(pieces.get(4));
@@ -857,7 +1173,9 @@ public class JELIB extends LibraryFiles
 			{
 				Cell subCell = (Cell)np;
 				// subcell: make sure that cell is setup
-				if (!recursiveSetupFlag.contains(subCell))
+				if (subCell.isContentsDeferred())
+					subCell.loadDeferredContents();
+				else if (!recursiveSetupFlag.contains(subCell))
 				{
 					LibraryFiles reader = this;
 					if (subCell.getLibrary() != cell.getLibrary())
@@ -1017,6 +1335,11 @@ public class JELIB extends LibraryFiles
 
 			// insert into map of disk names
 			diskName.put(diskNodeName, ni);
+			if (exportNodes != null)
+			{
+				if (cc.placedNodes == null) cc.placedNodes = new HashMap<String,Integer>();
+				cc.placedNodes.put(diskNodeName, Integer.valueOf(ni.getD().nodeId));
+			}
 
 			// add variables in fields 10 and up
 			Variable[] vars = readVariables(cc.revision, ni, pieces, numPieces, cc.fileName, cc.lineNumber + line);
@@ -1025,15 +1348,14 @@ public class JELIB extends LibraryFiles
 
 		// place all exports
         CellId cellId = cell.getId();
-		for(int line=0; line<numStrings; line++)
+		for(int line=0; line<numStrings && !cc.exportsPlaced; line++)
 		{
-			String cellString = cc.cellStrings.get(line);
-			if (cellString.charAt(0) != 'E') continue;
+			if (cc.getLineKind(line) != 'E') continue;
 //			numProcessed++;
 //			if ((numProcessed%100) == 0) progress.setProgress(numProcessed * 100 / numToProcess);
 
 			// parse the export line
-			List<String> pieces = parseLine(cellString);
+			List<String> pieces = cc.getPieces(line);
             if (cc.revision >= 2 && pieces.size() == 1) {
                 // Unused ExportId
                 String exportName = unQuote(cc.revision, pieces.get(0));
@@ -1044,7 +1366,7 @@ public class JELIB extends LibraryFiles
 			if (pieces.size() < numPieces)
 			{
 				Input.errorLogger.logError(cc.fileName + ", line " + (cc.lineNumber + line) +
-					", Export needs " + numPieces + " fields, has " + pieces.size() + ": " + cellString, cell, -1);
+					", Export needs " + numPieces + " fields, has " + pieces.size() + ": " + cc.getLine(line), cell, -1);
 				continue;
 			}
             int fieldIndex = 0;
@@ -1109,20 +1431,26 @@ public class JELIB extends LibraryFiles
             realizeVariables(pp, vars);
 		}
 
+		if (exportNodes != null)
+		{
+			// the rest of the cell is deferred
+			cc.exportsPlaced = true;
+			return;
+		}
+
 		// next place all arcs
 		for(int line=0; line<numStrings; line++)
 		{
-			String cellString = cc.cellStrings.get(line);
-			if (cellString.charAt(0) != 'A') continue;
+			if (cc.getLineKind(line) != 'A') continue;
 //			numProcessed++;
 //			if ((numProcessed%100) == 0) progress.setProgress(numProcessed * 100 / numToProcess);
 
 			// parse the arc line
-			List<String> pieces = parseLine(cellString);
+			List<String> pieces = cc.getPieces(line);
 			if (pieces.size() < 13)
 			{
 				Input.errorLogger.logError(cc.fileName + ", line " + (cc.lineNumber + line) +
-					", Arc instance needs 13 fields: " + cellString, cell, -1);
+					", Arc instance needs 13 fields: " + cc.getLine(line), cell, -1);
 				continue;
 			}
 			String protoName = unQuote(cc.revision, pieces.get(0));
@@ -1254,8 +1582,6 @@ public class JELIB extends LibraryFiles
 			Variable[] vars = readVariables(cc.revision, ai, pieces, 13, cc.fileName, cc.lineNumber + line);
             realizeVariables(ai, vars);
 		}
-		cc.filledIn = true;
-		cc.cellStrings = null;
 	}
 
 	/**
@@ -55,6 +55,7 @@ import com.sun.electric.tool.cvspm.CVSLibrary;
 import com.sun.electric.tool.cvspm.Update;
 import com.sun.electric.tool.io.ELIBConstants;
 import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.IOTool;
 import com.sun.electric.tool.io.output.Verilog;
 import com.sun.electric.tool.io.output.CellModelPrefs;
 import com.sun.electric.tool.user.ErrorLogger;
@@ -281,6 +282,10 @@ public abstract class LibraryFiles extends Input
         {
             in = new DELIB();
             if (in.openTextInput(fileURL)) return null;
+        } else if (type == FileType.BLIB)
+        {
+            in = new BLIB();
+            if (in.openBinaryInput(fileURL)) return null;
         } else
         {
             System.out.println("Unknown import type: " + type);
@@ -337,6 +342,10 @@ public abstract class LibraryFiles extends Input
         {
             in = new DELIB();
             if (in.openTextInput(fileURL)) return null;
+        } else if (type == FileType.BLIB)
+        {
+            in = new BLIB();
+            if (in.openBinaryInput(fileURL)) return null;
 		} else
 		{
 			System.out.println("Unknown import type: " + type);
@@ -640,6 +649,9 @@ public abstract class LibraryFiles extends Input
         } else if (libName.endsWith(".delib"))
         {
             libName = libName.substring(0, libName.length()-6);
+        } else if (libName.endsWith(".blib"))
+        {
+            libName = libName.substring(0, libName.length()-5);
 		} else if (libName.endsWith(".txt"))
 		{
 			libName = libName.substring(0, libName.length()-4);
@@ -667,6 +679,10 @@ public abstract class LibraryFiles extends Input
         if (externalURL == null && preferredType != FileType.DELIB) {
             externalURL = getLibrary(libName + "." + FileType.DELIB.getExtensions()[0], theFileName, errmsg, true);
         }
+        // try BLIB
+        if (externalURL == null && preferredType != FileType.BLIB) {
+            externalURL = getLibrary(libName + "." + FileType.BLIB.getExtensions()[0], theFileName, errmsg, true);
+        }
         // try txt
         if (externalURL == null && preferredType != FileType.READABLEDUMP) {
             externalURL = getLibrary(libName + "." + FileType.READABLEDUMP.getExtensions()[0], theFileName, errmsg, true);
@@ -869,6 +885,17 @@ public abstract class LibraryFiles extends Input
 			System.out.println("Finished computing scale factors");
 
 		// recursively create the cell contents
+		boolean lazy = IOTool.isLazyCellLoading();
+		if (lazy)
+		{
+			// only the hierarchies of the current cells are created now
+			for(LibraryFiles reader : libsBeingRead)
+			{
+				Cell curCell = reader.lib.getCurCell();
+				if (curCell != null && !markCellForNodes.contains(curCell))
+					reader.realizeCellsRecursively(curCell, markCellForNodes, null, 0);
+			}
+		}
 		for(LibraryFiles reader : libsBeingRead)
 		{
 			for(int cellIndex=0; cellIndex<reader.nodeProtoCount; cellIndex++)
@@ -876,6 +903,7 @@ public abstract class LibraryFiles extends Input
 				Cell cell = reader.nodeProtoList[cellIndex];
 				if (cell == null) continue;
 				if (markCellForNodes.contains(cell)) continue;
+				if (lazy && cell.getLibrary() == reader.lib && reader.deferCellContents(cell, markCellForNodes)) continue;
 				reader.realizeCellsRecursively(cell, markCellForNodes, null, 0);
 			}
 		}
@@ -1348,4 +1376,14 @@ public abstract class LibraryFiles extends Input
 	 * Method to recursively create the contents of each cell in the library.
 	 */
 	abstract void realizeCellsRecursively(Cell cell, HashSet<Cell> recursiveSetupFlag, String scaledCellName, double scale);
+
+	/**
+	 * Method to leave the contents of a Cell in their file form until they are needed.
+	 * The exports of the Cell are created now, so its ports are known while its contents are deferred.
+	 * Readers that cannot instantiate contents after the library input is finished return false.
+	 * @param cell the Cell whose contents are not created yet.
+	 * @param recursiveSetupFlag the cells already created.
+	 * @return true if the contents of the Cell were deferred.
+	 */
+	boolean deferCellContents(Cell cell, HashSet<Cell> recursiveSetupFlag) { return false; }
 }
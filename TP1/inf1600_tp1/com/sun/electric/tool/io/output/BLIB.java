@@ -0,0 +1,352 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: BLIB.java
+ * Input/output tool: binary columnar Library output
+ *
+ * Copyright (c) 2008 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.io.output;
+
+import com.sun.electric.database.CellBackup;
+import com.sun.electric.database.CellId;
+import com.sun.electric.database.ExportId;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableElectricObject;
+import com.sun.electric.database.ImmutableExport;
+import com.sun.electric.database.ImmutableNodeInst;
+import com.sun.electric.database.LibId;
+import com.sun.electric.database.Snapshot;
+import com.sun.electric.database.SnapshotWriter;
+import com.sun.electric.database.prototype.NodeProtoId;
+import com.sun.electric.database.prototype.PortProtoId;
+import com.sun.electric.database.variable.Variable;
+import com.sun.electric.technology.PrimitivePort;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to write a library to disk in binary library format (.blib).
+ * <P>
+ * The file starts with the library header, the cell headers and the cell groups written as JELIB text.
+ * It is followed by an index of the cells and by one binary chunk per cell.
+ * Each chunk is self-contained, so any cell can be read without decoding the others.
+ * Inside a chunk the nodes, arcs and exports are stored column by column through a
+ * SnapshotWriter: coordinates are delta-encoded variable-length integers in grid units,
+ * and prototypes, orientations and text descriptors are written once and then referenced by index.
+ */
+public class BLIB extends JELIB {
+    /** Magic number at the start of a .blib file ("BLIB"). */  public static final int MAGIC = 0x424C4942;
+    /** Version of the .blib format written here. */            public static final int FORMAT_VERSION = 1;
+
+    private List<CellBackup> cellsToWrite = new ArrayList<CellBackup>();
+
+    BLIB() {
+    }
+
+    /**
+     * Method to write a Library in binary library (.blib) format.
+     * @param libId the Library to be written.
+     * @param libFiles new locations of lib files
+     * @param oldRevision ignored, the binary format always uses the current revision.
+     * @return true on error.
+     */
+    @Override
+    protected boolean writeLib(Snapshot snapshot, LibId libId, Map<LibId,URL> libFiles, boolean oldRevision) {
+        // gather the text part of the library in memory
+        StringWriter header = new StringWriter();
+        printWriter = new PrintWriter(header);
+        cellsToWrite.clear();
+        boolean error = super.writeLib(snapshot, libId, libFiles, false);
+        printWriter.close();
+        printWriter = null;
+        if (error) return true;
+
+        try {
+            writeBinary(header.toString());
+        } catch (IOException e) {
+            System.out.println("Error writing " + filePath + ": " + e.getMessage());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to write a cell.
+     * Only the cell header goes to the text part; the contents are saved for a binary chunk.
+     * @param cellBackup the cell to write
+     */
+    @Override
+    void writeCell(CellBackup cellBackup) {
+        writeCellHeader(cellBackup);
+        printWriter.println("X");
+        cellsToWrite.add(cellBackup);
+    }
+
+    /**
+     * Method to write the binary file: the header text, the cell index and the cell chunks.
+     * @param header the text part of the library.
+     */
+    private void writeBinary(String header) throws IOException {
+        byte[][] chunks = new byte[cellsToWrite.size()][];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = encodeCell(cellsToWrite.get(i));
+        byte[] headerBytes = header.getBytes("UTF-8");
+
+        // the index holds absolute offsets, so measure it first (its size doesn't depend on them)
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(indexBytes);
+        writeIndex(indexOut, chunks, 0);
+        indexOut.flush();
+        long dataStart = 4 + 4 + 4 + headerBytes.length + indexBytes.size();
+
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeInt(FORMAT_VERSION);
+        dataOutputStream.writeInt(headerBytes.length);
+        dataOutputStream.write(headerBytes);
+        writeIndex(dataOutputStream, chunks, dataStart);
+        for (int i = 0; i < chunks.length; i++)
+            dataOutputStream.write(chunks[i]);
+    }
+
+    private void writeIndex(DataOutputStream out, byte[][] chunks, long dataStart) throws IOException {
+        out.writeInt(chunks.length);
+        long offset = dataStart;
+        for (int i = 0; i < chunks.length; i++) {
+            out.writeUTF(cellsToWrite.get(i).d.cellId.cellName.toString());
+            out.writeLong(offset);
+            out.writeInt(chunks[i].length);
+            offset += chunks[i].length;
+        }
+    }
+
+    /**
+     * Method to encode the contents of a cell into a binary chunk.
+     * @param cellBackup the cell to encode.
+     * @return the chunk.
+     */
+    private static byte[] encodeCell(CellBackup cellBackup) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CellWriter writer = new CellWriter(new DataOutputStream(bytes));
+
+        // nodes
+        int numNodes = cellBackup.nodes.size();
+        int maxNodeId = -1;
+        for (ImmutableNodeInst n: cellBackup.nodes)
+            maxNodeId = Math.max(maxNodeId, n.nodeId);
+        int[] nodeIndex = new int[maxNodeId + 1];
+        long[] anchorX = new long[numNodes], anchorY = new long[numNodes];
+        long[] sizeX = new long[numNodes], sizeY = new long[numNodes];
+        writer.writeVarLong(numNodes);
+        for (int i = 0; i < numNodes; i++) {
+            ImmutableNodeInst n = cellBackup.nodes.get(i);
+            nodeIndex[n.nodeId] = i;
+            anchorX[i] = n.anchor.getGridX();
+            anchorY[i] = n.anchor.getGridY();
+            sizeX[i] = n.size.getGridX();
+            sizeY[i] = n.size.getGridY();
+            writer.writeNodeProtoId(n.protoId);
+        }
+        for (ImmutableNodeInst n: cellBackup.nodes)
+            writer.writeNameKey(n.name);
+        for (ImmutableNodeInst n: cellBackup.nodes)
+            writer.writeTextDescriptor(n.nameDescriptor);
+        for (ImmutableNodeInst n: cellBackup.nodes)
+            writer.writeOrientation(n.orient);
+        writer.writeCoordColumn(anchorX);
+        writer.writeCoordColumn(anchorY);
+        writer.writeCoordColumn(sizeX);
+        writer.writeCoordColumn(sizeY);
+        for (ImmutableNodeInst n: cellBackup.nodes)
+            writer.writeVarLong(n.flags);
+        for (ImmutableNodeInst n: cellBackup.nodes)
+            writer.writeVarLong(n.techBits);
+        for (ImmutableNodeInst n: cellBackup.nodes)
+            writer.writeTextDescriptor(n.protoDescriptor);
+        for (ImmutableNodeInst n: cellBackup.nodes) {
+            writeVariables(writer, n);
+            ArrayList<PortProtoId> portsWithVariables = new ArrayList<PortProtoId>();
+            if (n.hasPortInstVariables()) {
+                for (Iterator<PortProtoId> it = n.getPortsWithVariables(); it.hasNext(); )
+                    portsWithVariables.add(it.next());
+            }
+            writer.writeVarLong(portsWithVariables.size());
+            for (PortProtoId portId: portsWithVariables) {
+                writer.writePortProtoId(portId);
+                writeVariables(writer, n.getPortInst(portId));
+            }
+        }
+
+        // arcs
+        int numArcs = cellBackup.arcs.size();
+        long[] tailX = new long[numArcs], tailY = new long[numArcs];
+        long[] headX = new long[numArcs], headY = new long[numArcs];
+        writer.writeVarLong(numArcs);
+        for (int i = 0; i < numArcs; i++) {
+            ImmutableArcInst a = cellBackup.arcs.get(i);
+            tailX[i] = a.tailLocation.getGridX();
+            tailY[i] = a.tailLocation.getGridY();
+            headX[i] = a.headLocation.getGridX();
+            headY[i] = a.headLocation.getGridY();
+            writer.writeArcProto(a.protoType);
+        }
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writeNameKey(a.name);
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writeTextDescriptor(a.nameDescriptor);
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writeVarLong(nodeIndex[a.tailNodeId]);
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writePortProtoId(a.tailPortId);
+        writer.writeCoordColumn(tailX);
+        writer.writeCoordColumn(tailY);
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writeVarLong(nodeIndex[a.headNodeId]);
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writePortProtoId(a.headPortId);
+        writer.writeCoordColumn(headX);
+        writer.writeCoordColumn(headY);
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writeVarLong(a.getGridExtendOverMin());
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writeVarLong(a.getAngle());
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writer.writeVarLong(a.flags);
+        for (ImmutableArcInst a: cellBackup.arcs)
+            writeVariables(writer, a);
+
+        // exports
+        writer.writeVarLong(cellBackup.exports.size());
+        for (ImmutableExport e: cellBackup.exports) {
+            writer.writeString(e.exportId.externalId);
+            writer.writeNameKey(e.name);
+            writer.writeTextDescriptor(e.nameDescriptor);
+            writer.writeVarLong(nodeIndex[e.originalNodeId]);
+            writer.writePortProtoId(e.originalPortId);
+            writer.writeVarLong(e.characteristic.getBits());
+            writer.writeBoolean(e.alwaysDrawn);
+            writer.writeBoolean(e.bodyOnly);
+            writeVariables(writer, e);
+        }
+
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeVariables(CellWriter writer, ImmutableElectricObject d) throws IOException {
+        writer.writeVarLong(d.getNumVariables());
+        for (Iterator<Variable> it = d.getVariables(); it.hasNext(); )
+            it.next().write(writer);
+    }
+
+    /**
+     * SnapshotWriter for one cell chunk.
+     * Libraries, cells and ports are written by name instead of by their session indices,
+     * and coordinates are written as zig-zag variable-length integers.
+     */
+    private static class CellWriter extends SnapshotWriter {
+        private HashMap<LibId,Integer> libIds = new HashMap<LibId,Integer>();
+        private HashMap<CellId,Integer> cellIds = new HashMap<CellId,Integer>();
+
+        CellWriter(DataOutputStream out) {
+            super(out);
+        }
+
+        /**
+         * Writes signed long as zig-zag variable-length integer.
+         * @param v long to write.
+         */
+        void writeVarLong(long v) throws IOException {
+            long u = (v << 1) ^ (v >> 63);
+            while ((u & ~0x7FL) != 0) {
+                writeByte((byte)((u & 0x7F) | 0x80));
+                u >>>= 7;
+            }
+            writeByte((byte)u);
+        }
+
+        /**
+         * Writes a column of grid coordinates as differences from the previous value.
+         * @param coords the coordinates.
+         */
+        void writeCoordColumn(long[] coords) throws IOException {
+            long prev = 0;
+            for (int i = 0; i < coords.length; i++) {
+                writeCoord(coords[i] - prev);
+                prev = coords[i];
+            }
+        }
+
+        @Override
+        public void writeLibId(LibId libId) throws IOException {
+            Integer i = libIds.get(libId);
+            if (i != null) {
+                writeInt(i.intValue());
+            } else {
+                i = new Integer(libIds.size());
+                libIds.put(libId, i);
+                writeInt(i.intValue());
+                writeString(libId.libName);
+            }
+        }
+
+        @Override
+        public void writeNodeProtoId(NodeProtoId nodeProtoId) throws IOException {
+            if (!(nodeProtoId instanceof CellId)) {
+                super.writeNodeProtoId(nodeProtoId);
+                return;
+            }
+            CellId cellId = (CellId)nodeProtoId;
+            Integer i = cellIds.get(cellId);
+            if (i != null) {
+                writeInt(i.intValue());
+            } else {
+                i = new Integer(cellIds.size());
+                cellIds.put(cellId, i);
+                writeInt(i.intValue());
+                writeLibId(cellId.libId);
+                writeString(cellId.cellName.toString());
+            }
+        }
+
+        @Override
+        public void writePortProtoId(PortProtoId portProtoId) throws IOException {
+            writeNodeProtoId(portProtoId.getParentId());
+            if (portProtoId instanceof ExportId)
+                writeString(((ExportId)portProtoId).externalId);
+            else
+                writeString(((PrimitivePort)portProtoId).getName());
+        }
+
+        @Override
+        public void writeCoord(long v) throws IOException {
+            writeVarLong(v);
+        }
+    }
+}
@@ -299,12 +299,11 @@ public class JELIB extends Output {
     }
     
     /**
-     * Method to write a cell to the output file
+     * Method to write the header line of a cell (its name, dates, bits and variables).
      * @param cellBackup the cell to write
      */
-    void writeCell(CellBackup cellBackup) {
+    void writeCellHeader(CellBackup cellBackup) {
         ImmutableCell d = cellBackup.d;
-        LibId libId = d.getLibId();
         // write the Cell name
         printWriter.println();
         printWriter.println("# Cell " + d.cellId.cellName);
@@ -326,6 +325,16 @@ public class JELIB extends Output {
         if ((d.flags & Cell.TECEDITCELL) != 0) cellBits.append("T");
         printWriter.print("|" + cellBits.toString());
         printlnVars(d);
+    }
+    
+    /**
+     * Method to write a cell to the output file
+     * @param cellBackup the cell to write
+     */
+    void writeCell(CellBackup cellBackup) {
+        ImmutableCell d = cellBackup.d;
+        LibId libId = d.getLibId();
+        writeCellHeader(cellBackup);
         
         ArrayList<String> nodeNames = new ArrayList<String>();
         // write the nodes in this cell (sorted by node name)
@@ -241,6 +241,10 @@ public class Output
 			Listener listener = it.next();
 			listener.writeLibrary(lib);
 		}
+
+		// cells whose contents were deferred at read are written in full
+		for(Iterator<Cell> it = lib.getCells(); it.hasNext(); )
+			it.next().loadDeferredContents();
         Snapshot snapshot = lib.getDatabase().backup();
         LibId libId = lib.getId();
 
@@ -275,8 +279,9 @@ public class Output
 		if (type == FileType.ELIB) properOutputName += ".elib";
 		if (type == FileType.JELIB) properOutputName += ".jelib";
 		if (type == FileType.DELIB) properOutputName += ".delib";
+		if (type == FileType.BLIB) properOutputName += ".blib";
 		if (type == FileType.READABLEDUMP) properOutputName += ".txt";
-		if (type == FileType.ELIB || type == FileType.JELIB)
+		if (type == FileType.ELIB || type == FileType.JELIB || type == FileType.BLIB)
 		{
 			// backup previous files if requested
 			int backupScheme = IOTool.getBackupRedundancy();
@@ -341,6 +346,16 @@ public class Output
                 }
 				if (elib.writeLib(snapshot, libId)) return true;
 				if (elib.closeBinaryOutputStream()) return true;
+			} else if (type == FileType.BLIB)
+			{
+				BLIB blib = new BLIB();
+				blib.quiet = quiet;
+				if (blib.openBinaryOutputStream(properOutputName)) return true;
+                if (CVS.isEnabled()) {
+                    CVSLibrary.savingLibrary(lib);
+                }
+				if (blib.writeLib(snapshot, libId, null, false)) return true;
+				if (blib.closeBinaryOutputStream()) return true;
 			} else
 			{
 				JELIB jelib = new JELIB();
@@ -615,6 +630,10 @@ public class Output
 
 	protected void setContinuationString(String str) { continuationString = str; }
 
+	int getLineCharCount() { return lineCharCount; }
+
+	void setLineCharCount(int lineCharCount) { this.lineCharCount = lineCharCount; }
+
 	private void writeChunk(String str)
 	{
 		int len = str.length();
@@ -755,7 +774,7 @@ public class Output
          */
         public OutputCellInfo(Cell cell, VarContext context, String filePath, FileType type, List<PolyBase> override)
         {
-            super("Export "+cell+" ("+type+")", IOTool.getIOTool(), Job.Type.EXAMINE, null, null, Priority.USER);
+            super("Export "+cell+" ("+type+")", IOTool.getIOTool(), Job.Type.EXAMINE, null, cell, Priority.USER);
             this.cell = cell;
             this.context = context;
             this.filePath = filePath;
@@ -95,6 +95,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This is the Simulation Interface tool.
@@ -149,6 +153,7 @@ public class Spice extends Topology
     /** map of shortened instance names */                                  private Map<String,Integer> uniqueNames;
 
     private static final boolean useNewParasitics = true;
+    /** fewest networks per thread when merging geometry */ private static final int MINNETSPERTHREAD = 64;
 
 	private static class SpiceNet
 	{
@@ -425,6 +430,28 @@ public class Spice extends Topology
 		}
 	}
 
+    /**
+     * Method to tell how many threads may write cells at once.
+     * Cells are written into buffers of their own, which are copied to the deck in order.
+     */
+    protected int getCellWriterThreads() { return Runtime.getRuntime().availableProcessors(); }
+
+    /**
+     * Method to tell whether a cell may be written while other cells are being written.
+     * Parasitic extraction needs the segmented nets of the subcells, so it waits for them,
+     * and the segmented nets of a cell use its signal map, so it keeps that map.
+     */
+    protected boolean isCellWrittenConcurrently(Cell cell) { return !isUseParasitics(cell); }
+
+    /**
+     * Method to tell whether parasitics are extracted for a cell.
+     */
+    private boolean isUseParasitics(Cell cell)
+    {
+        return useNewParasitics && (!useCDL) &&
+            Simulation.isSpiceUseParasitics() && (cell.getView() == View.LAYOUT);
+    }
+
     /**
      * To write M factor information into given string buffer
      * @param no Nodable representing the node
@@ -525,10 +552,11 @@ public class Spice extends Topology
 
         // create list of segemented networks for parasitic extraction
         boolean verboseSegmentedNames = Simulation.isParasiticsUseVerboseNaming();
-        boolean useParasitics = useNewParasitics && (!useCDL) &&
-                Simulation.isSpiceUseParasitics() && (cell.getView() == View.LAYOUT);
+        boolean useParasitics = isUseParasitics(cell);
         SegmentedNets segmentedNets = new SegmentedNets(cell, verboseSegmentedNames, cni, useParasitics);
-        segmentedParasiticInfo.add(segmentedNets);
+        synchronized (segmentedParasiticInfo) {
+            segmentedParasiticInfo.add(segmentedNets);
+        }
 
         if (useParasitics) {
 
@@ -698,37 +726,15 @@ public class Spice extends Topology
 		}
 
 		// get merged polygons so far
+		List<SpiceNet> geometryNets = new ArrayList<SpiceNet>();
 		for(Iterator<Network> it = netList.getNetworks(); it.hasNext(); )
 		{
 			Network net = it.next();
 			SpiceNet spNet = spiceNetMap.get(net);
-
-            for (Layer layer : spNet.merge.getKeySet())
-			{
-				List<PolyBase> polyList = spNet.merge.getMergedPoints(layer, true);
-				if (polyList == null) continue;
-                if (polyList.size() > 1)
-                    Collections.sort(polyList, GeometryHandler.shapeSort);
-				for(PolyBase poly : polyList)
-				{
-					// compute perimeter and area
-					double perim = poly.getPerimeter();
-					double area = poly.getArea();
-
-					// accumulate this information
-                    double scale = layoutTechnology.getScale(); // scale to convert units to nanometers
-                    if (layer.isDiffusionLayer()) {
-                        spNet.diffArea += area * maskScale * maskScale;
-                        spNet.diffPerim += perim * maskScale;
-                    } else {
-                        area = area * scale * scale / 1000000; // area in square microns
-                        perim = perim * scale / 1000;           // perim in microns
-                        spNet.nonDiffCapacitance += layer.getCapacitance() * area * maskScale * maskScale;
-                        spNet.nonDiffCapacitance += layer.getEdgeCapacitance() * perim * maskScale;
-                    }
-				}
-			}
+			if (spNet.merge.getKeySet().isEmpty()) spNet.merge = null; else
+				geometryNets.add(spNet);
 		}
+		addMergedGeometry(geometryNets);
 
 		// make sure the ground net is number zero
 		Network groundNet = cni.getGroundNet();
@@ -1796,11 +1802,14 @@ public class Spice extends Topology
         int limit = maxNameLength();
         if (limit > 0 && uniqueCellName.length() > limit)
         {
-            Integer i = uniqueNames.get(uniqueCellName.toString());
-            if (i == null) {
-                i = new Integer(uniqueID);
-                uniqueID++;
-                uniqueNames.put(uniqueCellName.toString(), i);
+            Integer i;
+            synchronized (uniqueNames) {
+                i = uniqueNames.get(uniqueCellName.toString());
+                if (i == null) {
+                    i = new Integer(uniqueID);
+                    uniqueID++;
+                    uniqueNames.put(uniqueCellName.toString(), i);
+                }
             }
             uniqueCellName = uniqueCellName.delete(limit-10, uniqueCellName.length());
             uniqueCellName.append("-ID"+i);
@@ -2267,8 +2276,10 @@ public class Spice extends Topology
     }
 
     private SegmentedNets getSegmentedNets(Cell cell) {
-        for (SegmentedNets seg : segmentedParasiticInfo) {
-            if (seg.cell == cell) return seg;
+        synchronized (segmentedParasiticInfo) {
+            for (SegmentedNets seg : segmentedParasiticInfo) {
+                if (seg.cell == cell) return seg;
+            }
         }
         return null;
     }
@@ -2786,8 +2797,7 @@ public class Spice extends Topology
         multiLinePrint(true, "*** Layout tech: "+layoutTechnology.getTechName()+foundry+"\n");
         multiLinePrint(true, "*** UC SPICE *** , MIN_RESIST " + layoutTechnology.getMinResistance() +
 			", MIN_CAPAC " + layoutTechnology.getMinCapacitance() + "FF\n");
-        boolean useParasitics = useNewParasitics && (!useCDL) &&
-                Simulation.isSpiceUseParasitics() && (cell.getView() == View.LAYOUT);
+        boolean useParasitics = isUseParasitics(cell);
         if (useParasitics) {
             for (Layer layer : layoutTechnology.getLayersSortedByHeight()) {
                 if (layer.isPseudoLayer()) continue;
@@ -3059,6 +3069,89 @@ public class Spice extends Topology
 		}
 	}
 
+	/**
+	 * Method to merge the geometry of networks and accumulate their diffusion area and perimeter
+	 * and their capacitance. Every network has its own merge, so large cells are done in parallel,
+	 * unless other cells are being written at the same time.
+	 * The merge of each network is released when done.
+	 * @param spNets the networks with geometry.
+	 */
+	private void addMergedGeometry(List<SpiceNet> spNets)
+	{
+		int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), spNets.size() / MINNETSPERTHREAD);
+		if (numThreads <= 1 || isCellWriterThread())
+		{
+			for(SpiceNet spNet : spNets) addMergedGeometry(spNet);
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try
+		{
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			int chunkSize = (spNets.size() + numThreads - 1) / numThreads;
+			for(int start = 0; start < spNets.size(); start += chunkSize)
+			{
+				final List<SpiceNet> chunk = spNets.subList(start, Math.min(start + chunkSize, spNets.size()));
+				futures.add(pool.submit(new Runnable()
+				{
+					public void run()
+					{
+						for(SpiceNet spNet : chunk) addMergedGeometry(spNet);
+					}
+				}));
+			}
+			for(Future<?> future : futures) future.get();
+		} catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		} finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Method to merge the geometry of one network and accumulate its diffusion area and perimeter
+	 * and its capacitance.
+	 * @param spNet the network.
+	 */
+	private void addMergedGeometry(SpiceNet spNet)
+	{
+		double scale = layoutTechnology.getScale(); // scale to convert units to nanometers
+		for (Layer layer : spNet.merge.getKeySet())
+		{
+			List<PolyBase> polyList = spNet.merge.getMergedPoints(layer, true);
+			if (polyList == null) continue;
+			if (polyList.size() > 1)
+				Collections.sort(polyList, GeometryHandler.shapeSort);
+			for(PolyBase poly : polyList)
+			{
+				// compute perimeter and area
+				double perim = poly.getPerimeter();
+				double area = poly.getArea();
+
+				// accumulate this information
+				if (layer.isDiffusionLayer()) {
+					spNet.diffArea += area * maskScale * maskScale;
+					spNet.diffPerim += perim * maskScale;
+				} else {
+					area = area * scale * scale / 1000000; // area in square microns
+					perim = perim * scale / 1000;           // perim in microns
+					spNet.nonDiffCapacitance += layer.getCapacitance() * area * maskScale * maskScale;
+					spNet.nonDiffCapacitance += layer.getEdgeCapacitance() * perim * maskScale;
+				}
+			}
+		}
+		spNet.merge = null;
+	}
+
 	/******************** TEXT METHODS ********************/
 
 	/**
@@ -3109,7 +3202,7 @@ public class Spice extends Topology
 
     private static final boolean CELLISEMPTYDEBUG = false;
     private HashMap<Cell,Boolean> checkedCells = new HashMap<Cell,Boolean>();
-    private boolean cellIsEmpty(Cell cell)
+    private synchronized boolean cellIsEmpty(Cell cell)
     {
         Boolean b = checkedCells.get(cell);
         if (b != null) return b.booleanValue();
@@ -3201,6 +3294,8 @@ public class Spice extends Topology
 	 */
 	private void multiLinePrint(boolean isComment, String str)
 	{
+		PrintWriter out = getCellPrintWriter();
+
 		// put in line continuations, if over 78 chars long
 		char contChar = '+';
 		if (isComment) contChar = '*';
@@ -3217,7 +3312,7 @@ public class Spice extends Topology
 //			}
 			if (chr == '\n')
 			{
-				printWriter.print(str.substring(lineStart, pt+1));
+				out.print(str.substring(lineStart, pt+1));
 				count = 0;
 				lastSpace = -1;
 				lineStart = pt+1;
@@ -3229,7 +3324,7 @@ public class Spice extends Topology
 				if (count >= spiceMaxLenLine && !insideQuotes && lastSpace > -1)
 				{
 					String partial = str.substring(lineStart, lastSpace+1);
-					printWriter.print(partial + "\n" + contChar);
+					out.print(partial + "\n" + contChar);
 					count = count - partial.length();
 					lineStart = lastSpace+1;
 					lastSpace = -1;
@@ -3239,7 +3334,7 @@ public class Spice extends Topology
 		if (lineStart < str.length())
 		{
 			String partial = str.substring(lineStart);
-			printWriter.print(partial);
+			out.print(partial);
 		}
 	}
 
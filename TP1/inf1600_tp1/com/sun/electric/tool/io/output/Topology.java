@@ -25,6 +25,7 @@
  */
 package com.sun.electric.tool.io.output;
 
+import com.sun.electric.database.CellBackup;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.Export;
 import com.sun.electric.database.hierarchy.HierarchyEnumerator;
@@ -45,12 +46,26 @@ import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.PrimitiveNode;
 import com.sun.electric.tool.generator.sclibrary.SCLibraryGen;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * This is the Simulation Interface tool.
@@ -59,9 +74,21 @@ public abstract class Topology extends Output
 {
 	/** top-level cell being processed */				protected Cell topCell;
 
-	/** HashMap of all CellTopologies */				private HashMap<String,CellNetInfo> cellTopos;
+	/** HashMap of all CellTopologies */				private Map<String,CellNetInfo> cellTopos;
 	/** HashMap of all Cell names */					private HashMap<Cell,String> cellNameMap;
                                                         private HierarchyEnumerator.CellInfo lastInfo;
+	/** cells written by each writer, by CellKey */		private static final Map<Class<?>,Map<CellKey,CachedCell>> cellCaches =
+															new HashMap<Class<?>,Map<CellKey,CachedCell>>();
+	/** cached cells of this writer (null if not cached) */	private Map<CellKey,CachedCell> cellCache;
+	/** cached cells used in this run */					private Map<CellKey,CachedCell> usedCells;
+	/** settings that affect the text of cells */			private String cellCacheSettings;
+	/** cells that each cell depends on */				private Map<Cell,Set<Cell>> cellDependencies;
+	/** number of cells written, and copied from cache */	private int cellsWritten, cellsFromCache;
+	/** threads writing cells (null to write them in order) */	private ExecutorService cellWriters;
+	/** the output file while threads write cells */			private PrintWriter fileWriter;
+	/** text not yet in the file, in the order of the file */	private LinkedList<Future<String>> pendingText;
+	/** text printed by this thread since the last cell */	private StringWriter betweenCells;
+	/** buffer of the cell that a thread is writing */		private final ThreadLocal<PrintWriter> cellPrintWriter = new ThreadLocal<PrintWriter>();
 
 	/** Creates a new instance of Topology */
 	public Topology() 
@@ -88,20 +115,368 @@ public abstract class Topology extends Output
 		topCell = cell;
 
 		// clear the map of CellNetInfo for each processed cell
-		cellTopos = new HashMap<String,CellNetInfo>();
+		cellTopos = new ConcurrentHashMap<String,CellNetInfo>();
 
 		// make a map of cell names to use (unique across libraries)
         cellNameMap = makeCellNameMap(topCell);
 
+		// find the text of cells written by the previous run
+		cellCacheSettings = getCellCacheSettings();
+		cellCache = null;
+		if (cellCacheSettings != null)
+		{
+			cellCacheSettings += " libraryNameAlwaysAdded=" + isLibraryNameAlwaysAddedToCellName();
+			synchronized (cellCaches)
+			{
+				cellCache = cellCaches.get(getClass());
+			}
+			if (cellCache == null) cellCache = new HashMap<CellKey,CachedCell>();
+			usedCells = new HashMap<CellKey,CachedCell>();
+			cellDependencies = new HashMap<Cell,Set<Cell>>();
+		}
+		cellsWritten = cellsFromCache = 0;
+
 		// write out cells
 		start();
         boolean shortPolyResistors = isShortExplicitResistors();
-        HierarchyEnumerator.enumerateCell(cell, context, visitor,
-                isShortResistors(), shortPolyResistors, isShortResistors(), false);
+		int numThreads = getCellWriterThreads();
+		if (numThreads > 1) startCellWriters(numThreads);
+		try
+		{
+	        HierarchyEnumerator.enumerateCell(cell, context, visitor,
+	                isShortResistors(), shortPolyResistors, isShortResistors(), false);
+			if (cellWriters != null)
+			{
+				queueTextBetweenCells();
+				writeFinishedCells(true);
+			}
+		} finally
+		{
+			if (cellWriters != null) stopCellWriters();
+		}
 		done();
+
+		// keep only the cells of this run for the next one
+		if (cellCache != null)
+		{
+			synchronized (cellCaches)
+			{
+				cellCaches.put(getClass(), usedCells);
+			}
+			if (cellsFromCache > 0)
+				System.out.println(cellsFromCache + " of " + cellsWritten + " cells were unchanged and copied from the previous netlist");
+			cellCache = usedCells = null;
+			cellDependencies = null;
+		}
 		return false;
 	}
 
+	/**
+	 * Method to enable the cache of written cells. When enabled, the text written
+	 * for a cell is kept after the run, and copied instead of calling writeCellTopology
+	 * the next time the same cell is written, if the cell, its subcells and the cells
+	 * above it have not changed.
+	 * Only writers whose writeCellTopology has no effects beyond its text should enable it
+	 * (see writeCellTopologyFromCache for the exceptions).
+	 * @return a description of every setting that affects the text of cells,
+	 * or null to write every cell (the default).
+	 */
+	protected String getCellCacheSettings() { return null; }
+
+	/**
+	 * Method to tell whether the text of a cell may be copied from the cache.
+	 * Writers should return false for cells whose text depends on anything
+	 * other than the cells and the settings (such as files on disk).
+	 */
+	protected boolean isCellCacheable(Cell cell) { return true; }
+
+	/**
+	 * Method called instead of writeCellTopology when the text of a cell is copied
+	 * from the cache, so that the writer can remember what it needs about the cell.
+	 */
+	protected void writeCellTopologyFromCache(Cell cell, CellNetInfo cni, VarContext context, Topology.MyCellInfo info) { }
+
+	/**
+	 * Method to tell how many threads may write cells at once.
+	 * With more than one, cells for which isCellWrittenConcurrently is true are written
+	 * by threads, each into a buffer of its own, and the buffers are copied to the file
+	 * in the order of the hierarchy enumeration, so the file is the same as with one thread.
+	 * Such writers must print the text of cells to getCellPrintWriter, and must keep
+	 * nothing from one cell to the next other than what they guard themselves.
+	 * @return the number of threads (1, the default, to write cells one after another).
+	 */
+	protected int getCellWriterThreads() { return 1; }
+
+	/**
+	 * Method to tell whether a cell may be written while other cells are being written.
+	 * Cells for which it is false are written after all cells before them are finished.
+	 * Once a cell for which it is true is written, only getCellSignals, getNetList, getCell
+	 * and getParameterizedName of its CellNetInfo may be used.
+	 * Only used when getCellWriterThreads returns more than one.
+	 */
+	protected boolean isCellWrittenConcurrently(Cell cell) { return true; }
+
+	/**
+	 * Method to return where the text of the cell being written goes:
+	 * the buffer of the cell in a thread that writes cells, otherwise printWriter.
+	 */
+	protected PrintWriter getCellPrintWriter()
+	{
+		PrintWriter out = cellPrintWriter.get();
+		return out != null ? out : printWriter;
+	}
+
+	/**
+	 * Method to tell whether this thread writes a cell while other threads write other cells.
+	 */
+	protected boolean isCellWriterThread() { return cellPrintWriter.get() != null; }
+
+	private void startCellWriters(int numThreads)
+	{
+		cellWriters = Executors.newFixedThreadPool(numThreads);
+		fileWriter = printWriter;
+		pendingText = new LinkedList<Future<String>>();
+		betweenCells = new StringWriter();
+		printWriter = new PrintWriter(betweenCells);
+	}
+
+	private void stopCellWriters()
+	{
+		cellWriters.shutdownNow();
+		cellWriters = null;
+		printWriter = fileWriter;
+		fileWriter = null;
+		pendingText = null;
+		betweenCells = null;
+	}
+
+	/**
+	 * Method to queue the text printed by this thread since the last cell
+	 * (such as included files), so that it stays between the cells around it.
+	 */
+	private void queueTextBetweenCells()
+	{
+		printWriter.flush();
+		if (betweenCells.getBuffer().length() == 0) return;
+		FutureTask<String> text = new FutureTask<String>(new Runnable() { public void run() {} }, betweenCells.toString());
+		text.run();
+		pendingText.add(text);
+		betweenCells = new StringWriter();
+		printWriter = new PrintWriter(betweenCells);
+	}
+
+	/**
+	 * Method to copy the text of finished cells to the file, in order.
+	 * @param wait true to wait until every queued cell is finished.
+	 */
+	private void writeFinishedCells(boolean wait)
+	{
+		try
+		{
+			while (!pendingText.isEmpty() && (wait || pendingText.getFirst().isDone()))
+				fileWriter.print(pendingText.removeFirst().get());
+		} catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Method to write a cell when threads write cells. The cell is written by a thread into
+	 * a buffer of its own, or, if it cannot be written concurrently, by this thread
+	 * once all cells before it are finished. The signal maps of cells written by threads are dropped when done.
+	 */
+	private void writeCellTopologyInThread(final Cell cell, final CellNetInfo cni, final VarContext context,
+		final Topology.MyCellInfo info)
+	{
+		queueTextBetweenCells();
+		if (!isCellWrittenConcurrently(cell))
+		{
+			writeFinishedCells(true);
+			writeCellTopology(cell, cni, context, info);
+			return;
+		}
+		pendingText.add(cellWriters.submit(new Callable<String>()
+		{
+			public String call()
+			{
+				StringWriter text = new StringWriter();
+				PrintWriter out = new PrintWriter(text);
+				cellPrintWriter.set(out);
+				try
+				{
+					writeCellTopology(cell, cni, context, info);
+				} finally
+				{
+					cellPrintWriter.remove();
+				}
+				out.flush();
+				cni.releaseBody();
+				return text.toString();
+			}
+		}));
+		writeFinishedCells(false);
+	}
+
+	/**
+	 * Method to write a cell, or to copy its text from the previous run.
+	 */
+	private void writeCellTopologyCached(Cell cell, CellNetInfo cni, VarContext context, Topology.MyCellInfo info)
+	{
+		cellsWritten++;
+		CellKey key = null;
+		if (cellCache != null && cellWriters == null && isCellCacheable(cell))
+		{
+			try
+			{
+				Set<Cell> dependencies = getCellDependencies(cell);
+				Set<CellBackup> backups = new LinkedHashSet<CellBackup>();
+				String [] cellNames = new String[dependencies.size()];
+				int i = 0;
+				for(Cell dep : dependencies)
+				{
+					backups.add(dep.backup());
+					cellNames[i++] = getUniqueCellName(dep);
+				}
+				for(HierarchyEnumerator.CellInfo up = info.getParentInfo(); up != null; up = up.getParentInfo())
+					backups.add(up.getCell().backup());
+				String name = cni.getParameterizedName();
+				if (cell == topCell) name += " (top)";
+				key = new CellKey(cellCacheSettings, name, getLineCharCount(), cellNames,
+					backups.toArray(new CellBackup[backups.size()]));
+			} catch (IllegalStateException e)
+			{
+				// the database cannot be backed up in this thread: stop caching
+				cellCache = null;
+			}
+		}
+		if (key != null)
+		{
+			CachedCell cached = cellCache.get(key);
+			if (cached != null)
+			{
+				printWriter.print(cached.text);
+				setLineCharCount(cached.lineCharCount);
+				writeCellTopologyFromCache(cell, cni, context, info);
+				usedCells.put(key, cached);
+				cellsFromCache++;
+				return;
+			}
+		}
+		if (key == null)
+		{
+			if (cellWriters != null) writeCellTopologyInThread(cell, cni, context, info); else
+				writeCellTopology(cell, cni, context, info);
+			return;
+		}
+
+		// write the cell into a buffer, and remember the text
+		PrintWriter out = printWriter;
+		StringWriter text = new StringWriter();
+		printWriter = new PrintWriter(text);
+		try
+		{
+			writeCellTopology(cell, cni, context, info);
+		} finally
+		{
+			printWriter.flush();
+			printWriter = out;
+		}
+		CachedCell cached = new CachedCell(text.toString(), getLineCharCount());
+		printWriter.print(cached.text);
+		usedCells.put(key, cached);
+	}
+
+	/**
+	 * Method to return a cell and all cells below it.
+	 */
+	private Set<Cell> getCellDependencies(Cell cell)
+	{
+		Set<Cell> cells = cellDependencies.get(cell);
+		if (cells != null) return cells;
+		cells = new LinkedHashSet<Cell>();
+		cells.add(cell);
+		for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+		{
+			NodeInst ni = it.next();
+			if (!ni.isCellInstance()) continue;
+			Cell subCell = (Cell)ni.getProto();
+			cells.addAll(getCellDependencies(subCell));
+			Cell contents = subCell.contentsView();
+			if (contents != null && contents != subCell && contents != cell)
+				cells.addAll(getCellDependencies(contents));
+		}
+		cellDependencies.put(cell, cells);
+		return cells;
+	}
+
+	/**
+	 * Class to identify the text of a cell: the settings of the writer, the name of the cell,
+	 * the column where the text starts, the names written for the cells that it depends on,
+	 * and the CellBackups of every cell that it depends on.
+	 * The names are part of the key because they are unique across the whole hierarchy,
+	 * so a cell elsewhere in the hierarchy can rename a subcell without changing it.
+	 * CellBackups are immutable and replaced whenever a cell changes, so they are compared by identity.
+	 */
+	private static class CellKey
+	{
+		private final String settings;
+		private final String name;
+		private final int column;
+		private final String [] cellNames;
+		private final CellBackup [] backups;
+		private final int hash;
+
+		CellKey(String settings, String name, int column, String [] cellNames, CellBackup [] backups)
+		{
+			this.settings = settings;
+			this.name = name;
+			this.column = column;
+			this.cellNames = cellNames;
+			this.backups = backups;
+			int h = settings.hashCode() * 31 + name.hashCode();
+			h = h * 31 + column;
+			h = h * 31 + Arrays.hashCode(cellNames);
+			for(int i=0; i<backups.length; i++) h = h * 31 + System.identityHashCode(backups[i]);
+			hash = h;
+		}
+
+		public int hashCode() { return hash; }
+
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof CellKey)) return false;
+			CellKey other = (CellKey)obj;
+			if (hash != other.hash || column != other.column || backups.length != other.backups.length) return false;
+			if (!name.equals(other.name) || !settings.equals(other.settings)) return false;
+			if (!Arrays.equals(cellNames, other.cellNames)) return false;
+			for(int i=0; i<backups.length; i++)
+				if (backups[i] != other.backups[i]) return false;
+			return true;
+		}
+	}
+
+	/**
+	 * Class to hold the text written for a cell.
+	 */
+	private static class CachedCell
+	{
+		/** the text of the cell */							private final String text;
+		/** the column where the text ends */					private final int lineCharCount;
+
+		CachedCell(String text, int lineCharCount)
+		{
+			this.text = text;
+			this.lineCharCount = lineCharCount;
+		}
+	}
+
 
 	/** Abstract method called before hierarchy traversal */
 	protected abstract void start();
@@ -245,7 +620,7 @@ public abstract class Topology extends Output
 				cni = getCellNetInfo(mci.currentInstanceParametizedName);
 */
 			}
-			outGeom.writeCellTopology(cell, cni, info.getContext(), (MyCellInfo)info);
+			outGeom.writeCellTopologyCached(cell, cni, info.getContext(), (MyCellInfo)info);
             lastInfo = info;
 		}
 
@@ -405,6 +780,13 @@ public abstract class Topology extends Output
 		protected Network getGroundNet() { return gndNet; }
 		protected Netlist getNetList() { return netList; }
         protected Cell getCell() { return cell; }
+
+		/** Drops the signal maps, which only the text of the cell itself uses, once that text is written. */
+		private void releaseBody()
+		{
+			cellSignals = null;
+			cellAggretateSignals = null;
+		}
 	}
 
 	private CellNetInfo getNetworkInformation(Cell cell, boolean quiet, String paramName, boolean useExportedName, 
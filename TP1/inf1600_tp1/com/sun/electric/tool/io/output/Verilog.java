@@ -348,6 +348,45 @@ public class Verilog extends Topology
         return false;
     }
 
+    /**
+     * Method to describe the settings that affect the text of modules, so that
+     * unchanged modules can be copied from the previous netlist.
+     */
+    protected String getCellCacheSettings()
+    {
+        return "assign=" + Simulation.getVerilogUseAssign() + " trireg=" + Simulation.getVerilogUseTrireg() +
+            " stopAtStandardCells=" + Simulation.getVerilogStopAtStandardCells();
+    }
+
+    /**
+     * Method to tell whether a module may be copied from the previous netlist.
+     * Instances of cells described by templates, Verilog views or included files
+     * depend on those descriptions, so such modules are always written.
+     */
+    protected boolean isCellCacheable(Cell cell)
+    {
+        for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+        {
+            NodeInst ni = it.next();
+            if (!ni.isCellInstance()) continue;
+            Cell subCell = (Cell)ni.getProto();
+            Cell contents = subCell.contentsView();
+            if (contents != null) subCell = contents;
+            if (subCell.getVar(VERILOG_TEMPLATE_KEY) != null || definedPrimitives.containsKey(subCell) ||
+                CellModelPrefs.verilogModelPrefs.isUseModelFromFile(subCell) ||
+                subCell.otherView(View.VERILOG) != null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method to remember a module that is copied from the previous netlist.
+     */
+    protected void writeCellTopologyFromCache(Cell cell, CellNetInfo cni, VarContext context, Topology.MyCellInfo info)
+    {
+        definedModules.put(cni.getParameterizedName(), "Cell "+cell.libDescribe());
+    }
+
     /**
      * Method to write cellGeom
      */
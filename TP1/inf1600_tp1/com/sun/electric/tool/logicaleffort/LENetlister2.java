@@ -170,6 +170,7 @@ public class LENetlister2 extends LENetlister {
         HierarchyEnumerator.enumerateCell(cell, context, this, true);
 //        HierarchyEnumerator.enumerateCell(cell, context, netlist, this);
         if (aborted) return false;
+        if (DEBUG) System.out.println("Created "+allLENodables.size()+" instances from "+nodablesDefinitions.size()+" definitions");
         return true;
     }
 
@@ -182,7 +183,8 @@ public class LENetlister2 extends LENetlister {
         boolean verbose = false;
         // create a new sizer
         sizer = new LESizer2(algorithm, this, job, errorLogger);
-        boolean success = sizer.optimizeLoops(constants.epsilon, constants.maxIterations, verbose, constants.alpha, constants.keeperRatio);
+        boolean success = sizer.optimizeLoops(constants.epsilon, constants.maxIterations, verbose, constants.alpha, constants.keeperRatio,
+            LETool.getSizingThreads());
         //out.println("---------After optimization:------------");
         //lesizer.printDesign();
         // get rid of the sizer
@@ -270,6 +272,23 @@ public class LENetlister2 extends LENetlister {
         return net;
     }
 
+    /**
+     * Get the global network for a network of the cell being visited.
+     * Global networks are remembered in the cell info by network index,
+     * so each is looked up only once per cell instance, however many pins are on it.
+     */
+    private LENetwork getNetwork(Network jnet, LECellInfo info) {
+        if (info.globalNetworks == null)
+            info.globalNetworks = new LENetwork[info.getNetlist().getNumNetworks()];
+        int netIndex = jnet.getNetIndex();
+        LENetwork net = info.globalNetworks[netIndex];
+        if (net == null) {
+            net = getNetwork(info.getNetID(jnet), info);
+            info.globalNetworks[netIndex] = net;
+        }
+        return net;
+    }
+
     // ======================= Hierarchy Enumerator ==============================
 
     /**
@@ -453,9 +472,7 @@ public class LENetlister2 extends LENetlister {
             LENetwork outputNet = null;
             if (def.isLeGate()) {
                 // get global output network
-                Network outNet = def.getOutputNet();
-                int globalID = info.getNetID(outNet);
-                outputNet = getNetwork(globalID, info);
+                outputNet = getNetwork(def.getOutputNet(), leinfo);
             }
             float localsu = constants.su;
             if (leinfo.getSU() != -1f) localsu = leinfo.getSU();
@@ -466,8 +483,7 @@ public class LENetlister2 extends LENetlister {
             allLENodables.add(uniqueLeno);
             // add pins to global networks
             for (LEPin pin : uniqueLeno.getPins()) {
-                int globalID = info.getNetID(pin.getNetwork());
-                LENetwork net = getNetwork(globalID, info);
+                LENetwork net = getNetwork(pin.getNetwork(), leinfo);
                 net.add(pin);
             }
             //uniqueLeno.print();
@@ -492,6 +508,7 @@ public class LENetlister2 extends LENetlister {
     public static class LECellInfo extends LENetlister.LECellInfo {
 
         /** the cached cell */                      private CachedCell cachedCell;
+        /** global networks, by local network index */ private LENetwork [] globalNetworks;
 
         protected void setCachedCell(CachedCell c) { cachedCell = c; }
         protected CachedCell getCachedCell() { return cachedCell; }
@@ -32,6 +32,7 @@ import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.technologies.Schematics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -55,13 +56,8 @@ public class LENodable {
     }
 
     // --------- Definition fields ----------
-    /** list of pins */                     private List<LEPin> pins; // do not point to networks
-    /** nodable */                          private Nodable no;
-    /** gate type */                        private Type type;
-    /** output Network */                   private Network outputNet;
-    /** mfactor variable */                 private Variable mfactorVar;
-    /** su variable */                      private Variable suVar;
-    /** parallel group # variable */        private Variable parallelGroupVar;
+    /** definition shared by all copies */  private final Definition def;
+    /** list of pins */                     private LEPin [] pins;
 
     // --------- instance fields ------------
     protected VarContext context;
@@ -71,6 +67,39 @@ public class LENodable {
     protected float leX;
     protected int parallelGroup;
 
+    /**
+     * The parts of an LENodable that do not depend on where it is in the hierarchy.
+     * One is made for each Nodable, and is shared by all the unique instances created
+     * from it, which only hold their own sizes and global networks.
+     */
+    private static class Definition {
+        /** list of pins */                     private final List<LEPin.Definition> pins;
+        /** nodable */                          private final Nodable no;
+        /** gate type */                        private final Type type;
+        /** output Network */                   private Network outputNet;
+        /** mfactor variable */                 private final Variable mfactorVar;
+        /** su variable */                      private final Variable suVar;
+        /** parallel group # variable */        private final Variable parallelGroupVar;
+
+        /** null if not yet checked, else if variables do not depend on context */
+                                                private Boolean contextIndependent;
+        /** leX, if context independent */      private float leX;
+        /** mfactor, if context independent */  private float mfactor;
+        /** su, or -1 if not set, if context independent */ private float su;
+        /** parallel group, if context independent */      private int parallelGroup;
+
+        private Definition(Nodable no, Type type, Variable mfactorVar, Variable suVar, Variable parallelGroupVar) {
+            this.no = no;
+            this.type = type;
+            this.pins = new ArrayList<LEPin.Definition>();
+            this.outputNet = null;
+            this.mfactorVar = mfactorVar;
+            this.suVar = suVar;
+            this.parallelGroupVar = parallelGroupVar;
+            this.contextIndependent = null;
+        }
+    }
+
     /**
      * Create a new LEInstance tied to the Nodable.
      * If the type represents a singular instance, i.e. whose properties
@@ -80,24 +109,26 @@ public class LENodable {
      * @param no the Nodable
      */
     public LENodable(Nodable no, Type type, Variable mfactorVar, Variable suVar, Variable parallelGroupVar) {
-        this.no = no;
-        this.type = type;
-        pins = new ArrayList<LEPin>();
-        this.outputNet = null;
-        this.mfactorVar = mfactorVar;
-        this.suVar = suVar;
-        this.parallelGroupVar = parallelGroupVar;
+        this(new Definition(no, type, mfactorVar, suVar, parallelGroupVar));
+    }
+
+    /**
+     * Create a new LEInstance from a shared definition, with pins for all the
+     * ports of the definition.
+     * @param def the definition
+     */
+    private LENodable(Definition def) {
+        this.def = def;
+        pins = new LEPin[def.pins.size()];
+        for (int i = 0; i < pins.length; i++)
+            pins[i] = new LEPin(def.pins.get(i), this);
         this.context = VarContext.globalContext;
         this.mfactor = 1f;
         this.leX = 0f;
     }
 
     protected LENodable copy() {
-        LENodable copy = new LENodable(no, type, mfactorVar, suVar, parallelGroupVar);
-        for (LEPin pin : pins) {
-            copy.addPort(pin.getName(), pin.getDir(), pin.getLE(), pin.getNetwork());
-        }
-        return copy;
+        return new LENodable(def);
     }
 
     /**
@@ -108,35 +139,37 @@ public class LENodable {
      */
     protected void addPort(String name, LEPin.Dir dir, float le, Network jnet) {
         LEPin pin = new LEPin(name, dir, le, jnet, this);
-        pins.add(pin);
+        def.pins.add(pin.getDefinition());
+        pins = Arrays.copyOf(pins, pins.length+1);
+        pins[pins.length-1] = pin;
     }
 
     /** Set the output network */
-    protected void setOutputNet(Network jnet) { outputNet = jnet; }
+    protected void setOutputNet(Network jnet) { def.outputNet = jnet; }
 
     /** Get the output network */
-    protected Network getOutputNet() { return outputNet; }
+    protected Network getOutputNet() { return def.outputNet; }
 
     /** Get the nodable */
-    protected Nodable getNodable() { return no; }
+    protected Nodable getNodable() { return def.no; }
 
     /** Get the type */
-    protected Type getType() { return type; }
+    protected Type getType() { return def.type; }
 
     /** Get the pins */
-    protected List<LEPin> getPins() { return pins; }
+    protected List<LEPin> getPins() { return Arrays.asList(pins); }
 
     float getMfactor() { return mfactor; }
 
     /** Return true if this is a sizeable gate */
     protected boolean isLeGate() {
-        if (type == Type.LEKEEPER || type == Type.LEGATE) return true;
+        if (def.type == Type.LEKEEPER || def.type == Type.LEGATE) return true;
         return false;
     }
 
     /** True if this is a gate */
     protected boolean isGate() {
-        if (type == Type.LEGATE || type == Type.LEKEEPER || type == Type.STATICGATE)
+        if (def.type == Type.LEGATE || def.type == Type.LEKEEPER || def.type == Type.STATICGATE)
             return true;
         return false;
     }
@@ -158,22 +191,66 @@ public class LENodable {
 
     /**
      * Factory method to create a copy of this Nodable with the context-relevant info
-     * evaluated.
+     * evaluated. The copy shares the definition and pin attributes of this Nodable.
+     * If none of the variables depend on the context, they are evaluated only once
+     * for all the copies.
      * @param context the context
      * @param outputNetwork the global network loading the output
      * @param mfactor the parent's mfactor
      * @param su the parent's step-up
      */
     protected LENodable createUniqueInstance(VarContext context, LENetwork outputNetwork, float mfactor, float su, LENetlister.NetlisterConstants constants) {
-        LENodable instance = new LENodable(no, type, mfactorVar, suVar, parallelGroupVar);
-        // copy pins
-        for (LEPin pin : pins) {
-            instance.addPort(pin.getName(), pin.getDir(), pin.getLE(), pin.getNetwork());
+        LENodable instance = new LENodable(def);
+        if (!isContextIndependent(constants)) {
+            instantiate(instance, context, outputNetwork, mfactor, su, constants, false);
+            return instance;
         }
-        instantiate(instance, context, outputNetwork, mfactor, su, constants, false);
+        instance.outputNetwork = outputNetwork;
+        instance.context = context;
+        instance.leX = def.leX;
+        instance.mfactor = mfactor * def.mfactor;
+        instance.su = (def.su == -1f) ? su : def.su;
+        instance.parallelGroup = def.parallelGroup;
         return instance;
     }
 
+    /**
+     * Returns true if the variables of this Nodable are not code, so that they
+     * evaluate the same in every context. The values are evaluated and saved
+     * in the definition the first time this is called.
+     */
+    private boolean isContextIndependent(LENetlister.NetlisterConstants constants) {
+        if (def.contextIndependent == null) {
+            boolean b = isConstant(def.mfactorVar, true) && isConstant(def.suVar, true) &&
+                    isConstant(def.parallelGroupVar, true);
+            if (def.type == Type.WIRE) {
+                Variable capVar = def.no.getVar(LENetlister.ATTR_LEWIRECAP);
+                if (capVar != null) b = b && isConstant(capVar, false);
+                else b = b && isConstant(def.no.getVar(LENetlister.ATTR_L), false) &&
+                        isConstant(def.no.getVar(Schematics.ATTR_WIDTH), false);
+            } else if (def.type == Type.TRANSISTOR) {
+                b = b && isConstant(def.no.getVar(Schematics.ATTR_WIDTH), false);
+            } else if (def.type == Type.CAPACITOR) {
+                b = b && isConstant(def.no.getVar(Schematics.SCHEM_CAPACITANCE), false);
+            }
+            if (b) {
+                LENodable values = new LENodable(def);
+                b = instantiate(values, VarContext.globalContext, null, 1f, -1f, constants, false);
+                def.leX = values.leX;
+                def.mfactor = values.mfactor;
+                def.su = values.su;
+                def.parallelGroup = values.parallelGroup;
+            }
+            def.contextIndependent = Boolean.valueOf(b);
+        }
+        return def.contextIndependent.booleanValue();
+    }
+
+    private static boolean isConstant(Variable var, boolean optional) {
+        if (var == null) return optional;
+        return !var.isCode();
+    }
+
     /**
      * Fill-in the given LENodable with evalutated instance-specific info for the given context.
      * Returns false if there are variables that cannot be evaluated in the given context
@@ -197,21 +274,21 @@ public class LENodable {
         instance.parallelGroup = 0;
 
         // evaluate variables in context, if any
-        if (parallelGroupVar != null) {
-            Object retVal = context.evalVar(parallelGroupVar);
+        if (def.parallelGroupVar != null) {
+            Object retVal = context.evalVar(def.parallelGroupVar);
             if (retVal == null) evalOk = false;
             else instance.parallelGroup = VarContext.objectToInt(retVal, instance.parallelGroup);
         }
-        if (suVar != null) {
-            Object retVal = context.evalVar(suVar);
+        if (def.suVar != null) {
+            Object retVal = context.evalVar(def.suVar);
             if (retVal == null) evalOk = false;
             else {
                 float localsu = VarContext.objectToFloat(retVal, -1f);
                 instance.su = (localsu == -1f) ? instance.su : localsu;
             }
         }
-        if (mfactorVar != null) {
-            Object retVal = context.evalVar(mfactorVar);
+        if (def.mfactorVar != null) {
+            Object retVal = context.evalVar(def.mfactorVar);
             if (retVal == null) evalOk = false;
             else instance.mfactor *= VarContext.objectToFloat(retVal, 1f);
         }
@@ -229,32 +306,32 @@ public class LENodable {
 
         Variable var = null;
         Object retVal = null;
-        if (type == LENodable.Type.WIRE) {
+        if (def.type == LENodable.Type.WIRE) {
             // Note that if inst is an LEWIRE, it will have no 'le' attributes.
             // we therefore assign pins to have default 'le' values of one.
             // This creates an instance which has Type LEWIRE, but has
             // boolean leGate set to false; it will not be sized
             // NEW: If we find ATTR_LEWIRECAP, that is the capacitance to use,
             // and we will not calculate the cap from L and W.
-            var = no.getVar(LENetlister.ATTR_LEWIRECAP);
+            var = def.no.getVar(LENetlister.ATTR_LEWIRECAP);
             float cap = 0;
             if (var != null) {
                 retVal = context.evalVar(var);
                 if (testCachebility && (retVal == null)) return -1f;
                 cap = VarContext.objectToFloat(retVal, 0.0f);
             } else {
-                var = no.getVar(LENetlister.ATTR_L);
+                var = def.no.getVar(LENetlister.ATTR_L);
                 if (var == null) {
-                    System.out.println("Error, no L attribute found on LEWIRE "+no.getName()+" in Cell "+no.getParent());
+                    System.out.println("Error, no L attribute found on LEWIRE "+def.no.getName()+" in Cell "+def.no.getParent());
                     if (testCachebility) return -1f;
                 }
                 retVal = context.evalVar(var);
                 if (testCachebility && (retVal == null)) return -1f;
                 float len = VarContext.objectToFloat(retVal, 0.0f);
 
-                var = no.getVar(Schematics.ATTR_WIDTH);
+                var = def.no.getVar(Schematics.ATTR_WIDTH);
                 if (var == null) {
-                    System.out.println("Warning, no width attribute found on LEWIRE "+no.getName()+" in Cell "+no.getParent());
+                    System.out.println("Warning, no width attribute found on LEWIRE "+def.no.getName()+" in Cell "+def.no.getParent());
                     if (testCachebility) return -1f;
                 }
                 retVal = context.evalVar(var);
@@ -265,12 +342,12 @@ public class LENodable {
             leX = cap*constants.wireRatio;  // equivalent lambda of gate
             leX = leX/9.0f;                         // drive strength X=1 is 9 lambda of gate
         }
-        else if (type == LENodable.Type.TRANSISTOR) {
-            var = no.getVar(Schematics.ATTR_WIDTH);
+        else if (def.type == LENodable.Type.TRANSISTOR) {
+            var = def.no.getVar(Schematics.ATTR_WIDTH);
             if (var == null) {
-                System.out.println("Error: transistor "+no.getName()+" has no width in Cell "+no.getParent());
+                System.out.println("Error: transistor "+def.no.getName()+" has no width in Cell "+def.no.getParent());
                 //ErrorLogger.ErrorLog log = errorLogger.logError("Error: transistor "+no+" has no width in Cell "+info.getCell(), info.getCell(), 0);
-                //log.addGeom(ni.getNodeInst(), true, no.getParent(), context);
+                //log.addGeom(ni.getNodeInst(), true, def.no.getParent(), context);
                 return -1f;
             }
             retVal = context.evalVar(var);
@@ -279,9 +356,9 @@ public class LENodable {
             float width = VarContext.objectToFloat(retVal, -1f);
             if (width == -1f) return -1f;
 
-//            var = no.getVar(Schematics.ATTR_LENGTH);
+//            var = def.no.getVar(Schematics.ATTR_LENGTH);
 //            if (var == null) {
-//                System.out.println("Error: transistor "+no.getName()+" has no length in Cell "+no.getParent());
+//                System.out.println("Error: transistor "+def.no.getName()+" has no length in Cell "+def.no.getParent());
 //                //ErrorLogger.ErrorLog log = errorLogger.logError("Error: transistor "+ni+" has no length in Cell "+info.getCell(), info.getCell(), 0);
 //                //log.addGeom(ni.getNodeInst(), true, info.getCell(), info.getContext());
 //                return -1f;
@@ -292,12 +369,12 @@ public class LENodable {
             // not exactly correct because assumes all cap is area cap, which it isn't
             leX = (float)(width/9.0f);
         }
-        else if (type == Type.CAPACITOR) {
-            var = no.getVar(Schematics.SCHEM_CAPACITANCE);
+        else if (def.type == Type.CAPACITOR) {
+            var = def.no.getVar(Schematics.SCHEM_CAPACITANCE);
             if (var == null) {
-                System.out.println("Error: capacitor "+no.getName()+" has no capacitance in Cell "+no.getParent());
+                System.out.println("Error: capacitor "+def.no.getName()+" has no capacitance in Cell "+def.no.getParent());
                 //ErrorLogger.ErrorLog log = errorLogger.logError("Error: capacitor "+no+" has no capacitance in Cell "+info.getCell(), info.getCell(), 0);
-                //log.addGeom(ni.getNodeInst(), true, no.getParent(), context);
+                //log.addGeom(ni.getNodeInst(), true, def.no.getParent(), context);
                 return -1f;
             }
             retVal = context.evalVar(var);
@@ -311,7 +388,7 @@ public class LENodable {
     // -----------------------------------------------------------------
 
     protected String getName() {
-        if (context == null) return no.getName();
+        if (context == null) return def.no.getName();
         return context.push(getNodable()).getInstPath(".");
     }
 
@@ -44,14 +44,29 @@ import java.util.List;
 public class LEPin {
 
     // attributes
-    /** pin direction */                        private Dir dir;
-    /** logical effort */                       private float le;
-    /** name of pin */                          private String name;
-    /** Jnetwork this pin is attached to */     private Network net;
+    /** attributes shared by all copies */      private final Definition def;
 
     // connectivity
     /** reference to instance pin belongs to */ private LENodable instance;
 
+    /**
+     * The attributes of a pin. These are the same for every unique
+     * instance made from an LENodable definition, so they are shared.
+     */
+    protected static class Definition {
+        /** pin direction */                        private final Dir dir;
+        /** logical effort */                       private final float le;
+        /** name of pin */                          private final String name;
+        /** Jnetwork this pin is attached to */     private final Network net;
+
+        private Definition(String name, Dir dir, float le, Network net) {
+            this.name = name;
+            this.dir = dir;
+            this.le = le;
+            this.net = net;
+        }
+    }
+
     /** Dir is a typesafe enum class that describes the direction of the pin */
     protected static class Dir {
         private final String name;
@@ -76,27 +91,37 @@ public class LEPin {
 	 */
 	protected LEPin(String name, Dir dir, float le, Network net, LENodable instance)
 	{
-		this.name = name;
-		this.dir = dir;
-        this.le = le;
-        this.net = net;
+		this(new Definition(name, dir, le, net), instance);
+	}
+
+	/**
+	 * Create new pin that shares the attributes of another pin.
+	 * @param def the attributes of the pin
+	 * @param instance the instance this belongs to
+	 */
+	protected LEPin(Definition def, LENodable instance)
+	{
+		this.def = def;
         this.instance = instance;
 	}
     
+    /** Return the attributes of the pin, to share with copies of it. */
+    protected Definition getDefinition() { return def; }
+
     /** Return the direction of the pin. */
-    protected Dir getDir() { return dir; }
+    protected Dir getDir() { return def.dir; }
 
     /** Return the name of the pin. */
-    protected String getName() { return name; }
+    protected String getName() { return def.name; }
 
     /** Return the logical effort of the pin. */
-    protected float getLE() { return le; }
+    protected float getLE() { return def.le; }
 
     /** Return the instance that is attached to the pin. */
     protected LENodable getInstance() { return instance; }
 
     /** Return the Network this pin is on */
-    protected Network getNetwork() { return net; }
+    protected Network getNetwork() { return def.net; }
 
     //----------------------------------UTILITY FUNCTIONS---------------------------------
 
@@ -39,6 +39,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * LESizer sizes an LENetlist. The LENetlist is generated by LENetlister from
@@ -84,6 +89,29 @@ public class LESizer2 {
      */
     protected boolean optimizeLoops(float maxDeltaX, int N, boolean verbose,
                                     float alpha, float keeperRatio)
+    {
+        return optimizeLoops(maxDeltaX, N, verbose, alpha, keeperRatio, 1);
+    }
+
+    /**
+     * Optimize using loop algorithm;
+     * @param maxDeltaX maximum tolerance allowed in X
+     * @param N maximum number of loops
+     * @param verbose print out size information for each optimization loop
+     * @param numThreads number of threads to size with
+     * @return true if succeeded, false otherwise
+     *
+     * Optimization will stop when the difference in sizes (X) is
+     * less than maxDeltaX, or when N iterations have occurred.
+     * <p>With one thread each new size is used as soon as it is computed.
+     * With more threads sizing is Jacobi-style: the gates are split among
+     * the threads, every new size is computed from the sizes of the previous
+     * iteration into a second buffer, and all sizes are updated together at
+     * the end of the iteration. This may take a few more iterations but
+     * converges to the same sizes within maxDeltaX.
+     */
+    protected boolean optimizeLoops(float maxDeltaX, int N, boolean verbose,
+                                    float alpha, float keeperRatio, int numThreads)
     {
         // iterate through all the instances, updating sizes
 
@@ -91,207 +119,301 @@ public class LESizer2 {
         float lastLoopDeltaX = currentLoopDeltaX;
         int divergingIters = 0;                     // count number if iterations sizing is diverging
         long startTime;
+        long totalTime = 0;
         int loopcount = 0;
 
-        while ((currentLoopDeltaX > maxDeltaX) && (loopcount < N)) {
-
-            // check for aborted state of job
-            if (((LETool.AnalyzeCell)job).checkAbort(null)) return false;
-
-            currentLoopDeltaX = 0;
-            startTime = System.currentTimeMillis();
-            System.out.print("  Iteration "+loopcount);
-            if (verbose) System.out.println(":");
-
-            // iterate through each instance
-            for (Iterator<LENodable> lit = netlist.getSizeableNodables(); lit.hasNext(); ) {
-                LENodable leno = lit.next();
-                // ignore it if not a sizeable gate
-                if (!leno.isLeGate()) continue;
-                LENetwork outputNet = leno.outputNetwork;
-
-                // find all drivers in same group, of same type (LEGATE or LEKEEPER)
-                List<LENodable> drivers = new ArrayList<LENodable>();
-                List<LENodable> arrayedDrivers = new ArrayList<LENodable>();
-                for (LEPin pin : outputNet.getAllPins()) {
-                    // only interested in drivers
-                    if (pin.getDir() != LEPin.Dir.OUTPUT) continue;
-                    LENodable loopLeno = pin.getInstance();
-                    if (leno.getType() == loopLeno.getType()) {
-                        if (leno.parallelGroup == loopLeno.parallelGroup) {
-                            // add the instance. Note this adds the current instance at some point as well
-                            drivers.add(loopLeno);
-                            // error check
-                            if (leno.parallelGroup > 0 && loopcount == 0 && leno.su != loopLeno.su) {
-                                String msg = "\nError: LEGATE \""+leno.getName()+"\" drives in parallel with \""+loopLeno.getName()+
-                                        "\" but has a different step-up";
-                                System.out.println(msg);
-                                NodeInst ni = leno.getNodable().getNodeInst();
-                                if (ni != null) {
-                                    errorLogger.logError(msg, ni, ni.getParent(), leno.context, 0);
-                                }
-                            }
-                        }
-                    }
-                    if ((loopLeno.getNodable().getNodeInst() == leno.getNodable().getNodeInst()) &&
-                        (loopLeno.context.getInstPath(".").equals(leno.context.getInstPath(".")))) {
-                        // this must be an arrayed driver: not this also adds current instance at some point as well
-                        arrayedDrivers.add(loopLeno);
+        List<LENodable> gates = new ArrayList<LENodable>();
+        for (Iterator<LENodable> lit = netlist.getSizeableNodables(); lit.hasNext(); ) {
+            LENodable leno = lit.next();
+            // ignore it if not a sizeable gate
+            if (leno.isLeGate()) gates.add(leno);
+        }
+        numThreads = Math.max(1, Math.min(numThreads, gates.size()));
+        ExecutorService pool = null;
+        if (numThreads > 1) {
+            pool = Executors.newFixedThreadPool(numThreads);
+            System.out.println("  Sizing "+gates.size()+" gates on "+numThreads+" threads");
+        }
+
+        try {
+            while ((currentLoopDeltaX > maxDeltaX) && (loopcount < N)) {
+
+                // check for aborted state of job
+                if (((LETool.AnalyzeCell)job).checkAbort(null)) return false;
+
+                startTime = System.currentTimeMillis();
+                System.out.print("  Iteration "+loopcount);
+                if (verbose) System.out.println(":");
+
+                if (pool == null)
+                    currentLoopDeltaX = sizeInPlace(gates, loopcount, verbose, alpha);
+                else
+                    currentLoopDeltaX = sizeJacobi(gates, loopcount, verbose, alpha, pool, numThreads);
+                if (Float.isNaN(currentLoopDeltaX)) return false;
+
+                // All done, print some statistics about this iteration
+                long iterTime = System.currentTimeMillis()-startTime;
+                totalTime += iterTime;
+                String elapsed = TextUtils.getElapsedTime(iterTime);
+                System.out.println("  ...done ("+elapsed+"), delta: "+currentLoopDeltaX);
+                if (verbose) System.out.println("-----------------------------------");
+                loopcount++;
+
+                // check to see if we're diverging or not converging
+                if (currentLoopDeltaX >= lastLoopDeltaX) {
+                    if (divergingIters > 2) {
+                        System.out.println("  Sizing diverging, aborting");
+                        return false;
                     }
+                    divergingIters++;
                 }
+                lastLoopDeltaX = currentLoopDeltaX;
 
-                // this will be the new size.
-                float newX = 0;
-
-                // if this is an LEKEEPER, we need to find smallest gate (or group)
-                // that also drives this net, it is assumed that will have to overpower this keeper
-                if (leno.getType() == LENodable.Type.LEKEEPER) {
-                    Map<String,List<LENodable>> drivingGroups = new HashMap<String,List<LENodable>>();
-
-                    float smallestX = 0;
-
-                    // iterate over all drivers on net
-                    for (LEPin pin : outputNet.getAllPins()) {
-                        // only interested in drivers
-                        if (pin.getDir() != LEPin.Dir.OUTPUT) continue;
-                        LENodable loopLeno = pin.getInstance();
-                        if (loopLeno.getType() == LENodable.Type.LEGATE || loopLeno.getType() == LENodable.Type.STATICGATE) {
-                            // organize by groups
-                            int i = loopLeno.parallelGroup;
-                            Integer integer = new Integer(i);
-                            if (i <= 0) {
-                                // this gate drives independently, check size
-                                if (smallestX == 0) smallestX = loopLeno.leX;
-                                if (loopLeno.leX < smallestX) smallestX = loopLeno.leX;
-                            }
-                            // add to group to sum up drive strength later
-                            List<LENodable> groupList = drivingGroups.get(integer.toString());
-                            if (groupList == null) {
-                                groupList = new ArrayList<LENodable>();
-                                drivingGroups.put(integer.toString(), groupList);
-                            }
-                            groupList.add(loopLeno);
-                        }
-                    }
+            } // while (currentLoopDeltaX ... )
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
 
-                    // find smallest total size of groups
-                    Set<String> keys = drivingGroups.keySet();
-                    for (String str : keys) {
-                        List<LENodable> groupList = drivingGroups.get(str);
-                        if (groupList == null) continue;            // skip empty groups
-                        // get size
-                        float sizeX = 0;
-                        for (LENodable loopLeno : groupList) {
-                            sizeX += loopLeno.leX;
-                        }
-                        // check size of group
-                        if (smallestX == 0) smallestX = sizeX;
-                        if (sizeX < smallestX) smallestX = sizeX;
-                    }
+        if (loopcount > 0)
+            System.out.println("  Sizing took "+loopcount+" iterations in "+TextUtils.getElapsedTime(totalTime)+
+                    " ("+TextUtils.getElapsedTime(totalTime/loopcount)+" per iteration)");
+        return true;
+    }
 
-                    // if no drivers found, issue warning
-                    if (!keys.iterator().hasNext() && loopcount == 0) {
-                        String msg = "\nError: LEKEEPER \""+leno.getName()+"\" does not fight against any drivers";
-                        System.out.println(msg);
-                        NodeInst ni = leno.getNodable().getNodeInst();
-                        if (ni != null) {
-                            errorLogger.logError(msg, ni, ni.getParent(), leno.context, 0);
-                        }
-                    }
+    /**
+     * Size every gate, using each new size as soon as it is computed.
+     * @return the largest relative change in size
+     */
+    private float sizeInPlace(List<LENodable> gates, int loopcount, boolean verbose, float alpha) {
+        float currentLoopDeltaX = 0;
+        for (LENodable leno : gates) {
+            float newX = computeNewX(leno, loopcount, alpha);
+            // ignore if no loads
+            if (Float.isNaN(newX)) continue;
+            float deltaX = getDeltaX(leno.leX, newX);
+            currentLoopDeltaX = (deltaX > currentLoopDeltaX) ? deltaX : currentLoopDeltaX;
+            if (verbose) printNewX(leno, newX);
+            leno.leX = newX;
+        }
+        return currentLoopDeltaX;
+    }
 
-                    // For now, split effort equally amongst all drivers
-                    if (leno.parallelGroup <= 0) {
-                        newX = smallestX * netlist.getKeeperRatio() / arrayedDrivers.size();
-                    } else {
-                        newX = smallestX * netlist.getKeeperRatio() / drivers.size();
-                    }
+    /**
+     * Size every gate from the sizes of the previous iteration.
+     * New sizes are computed on numThreads threads into a second buffer
+     * and then copied into the gates.
+     * @return the largest relative change in size, or NaN if interrupted
+     */
+    private float sizeJacobi(final List<LENodable> gates, final int loopcount, boolean verbose,
+                             final float alpha, ExecutorService pool, int numThreads) {
+        final float [] newXs = new float[gates.size()];
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int t = 0; t < numThreads; t++) {
+            final int from = (int)((long)gates.size() * t / numThreads);
+            final int to = (int)((long)gates.size() * (t+1) / numThreads);
+            results.add(pool.submit(new Callable<Object>() {
+                public Object call() {
+                    for (int i = from; i < to; i++)
+                        newXs[i] = computeNewX(gates.get(i), loopcount, alpha);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Object> f : results) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                    if (cause instanceof Error) throw (Error)cause;
+                    throw new RuntimeException(cause);
                 }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Float.NaN;
+        }
+
+        float currentLoopDeltaX = 0;
+        for (int i = 0; i < newXs.length; i++) {
+            float newX = newXs[i];
+            // ignore if no loads
+            if (Float.isNaN(newX)) continue;
+            LENodable leno = gates.get(i);
+            float deltaX = getDeltaX(leno.leX, newX);
+            currentLoopDeltaX = (deltaX > currentLoopDeltaX) ? deltaX : currentLoopDeltaX;
+            if (verbose) printNewX(leno, newX);
+            leno.leX = newX;
+        }
+        return currentLoopDeltaX;
+    }
 
-                // If this is an LEGATE, simply sum all capacitances on the Net
-                if (leno.getType() == LENodable.Type.LEGATE) {
-
-                    // compute total le*X (totalcap)
-                    float totalcap = 0;
-                    int numLoads = 0;
-                    //System.out.println("LENode "+leno.getName()+" drives: ");
-                    //outputNet.print();
-                    for (LEPin pin : outputNet.getAllPins()) {
-                        LENodable loopLeno = pin.getInstance();
-
-                        float load = loopLeno.leX * pin.getLE() * loopLeno.getMfactor();
-                        if (pin.getDir() == LEPin.Dir.OUTPUT) load *= alpha;
-                        totalcap += load;
-                        // check to see if gate is only driving itself
-                        if (loopLeno != leno)
-                            numLoads++;
-                    }
+    /** Relative change in size */
+    private static float getDeltaX(float currentX, float newX) {
+        if (currentX == 0 && newX == 0) {
+            // if before and after are 0, delta is 0
+            return 0f;
+        }
+        // account for divide by 0
+        if (currentX == 0) currentX = 0.001f;
+        return Math.abs( (newX-currentX)/currentX);
+    }
+
+    private void printNewX(LENodable leno, float newX) {
+        out.println("Optimized "+leno.getName()+": size:  "+
+                TextUtils.formatDouble(leno.leX, 3)+
+                "x ==> "+TextUtils.formatDouble(newX, 3)+"x");
+    }
 
-                    // create error if no loads only on first iteration
-                    if (numLoads == 0 && loopcount == 0) {
-                        String msg = "\nError: LEGATE \""+leno.getName()+"\" has no loads: will be ignored";
+    /**
+     * Compute the new size of a gate from the current sizes of the gates on its output network.
+     * Doesn't change any size, so it may be called on several gates at once.
+     * @return the new size, or NaN if the gate has no loads and should be ignored
+     */
+    private float computeNewX(LENodable leno, int loopcount, float alpha) {
+        LENetwork outputNet = leno.outputNetwork;
+
+        // find all drivers in same group, of same type (LEGATE or LEKEEPER)
+        List<LENodable> drivers = new ArrayList<LENodable>();
+        List<LENodable> arrayedDrivers = new ArrayList<LENodable>();
+        for (LEPin pin : outputNet.getAllPins()) {
+            // only interested in drivers
+            if (pin.getDir() != LEPin.Dir.OUTPUT) continue;
+            LENodable loopLeno = pin.getInstance();
+            if (leno.getType() == loopLeno.getType()) {
+                if (leno.parallelGroup == loopLeno.parallelGroup) {
+                    // add the instance. Note this adds the current instance at some point as well
+                    drivers.add(loopLeno);
+                    // error check
+                    if (leno.parallelGroup > 0 && loopcount == 0 && leno.su != loopLeno.su) {
+                        String msg = "\nError: LEGATE \""+leno.getName()+"\" drives in parallel with \""+loopLeno.getName()+
+                                "\" but has a different step-up";
                         System.out.println(msg);
                         NodeInst ni = leno.getNodable().getNodeInst();
                         if (ni != null) {
-                            errorLogger.logError(msg, ni, ni.getParent(), leno.context, 1);
+                            errorLogger.logError(msg, ni, ni.getParent(), leno.context, 0);
                         }
                     }
-                    // ignore if no loads, on all iterations
-                    if (numLoads == 0)
-                        continue;
-
-                    // For now, split effort equally amongst all drivers
-                    // Group 0 drives individually
-                    if (leno.parallelGroup <= 0)
-                        newX = totalcap / leno.su / arrayedDrivers.size();
-                    else {
-                        newX = totalcap / leno.su / drivers.size();
+                }
+            }
+            if ((loopLeno.getNodable().getNodeInst() == leno.getNodable().getNodeInst()) &&
+                (loopLeno.context.getInstPath(".").equals(leno.context.getInstPath(".")))) {
+                // this must be an arrayed driver: not this also adds current instance at some point as well
+                arrayedDrivers.add(loopLeno);
+            }
+        }
+
+        // this will be the new size.
+        float newX = 0;
+
+        // if this is an LEKEEPER, we need to find smallest gate (or group)
+        // that also drives this net, it is assumed that will have to overpower this keeper
+        if (leno.getType() == LENodable.Type.LEKEEPER) {
+            Map<String,List<LENodable>> drivingGroups = new HashMap<String,List<LENodable>>();
+
+            float smallestX = 0;
+
+            // iterate over all drivers on net
+            for (LEPin pin : outputNet.getAllPins()) {
+                // only interested in drivers
+                if (pin.getDir() != LEPin.Dir.OUTPUT) continue;
+                LENodable loopLeno = pin.getInstance();
+                if (loopLeno.getType() == LENodable.Type.LEGATE || loopLeno.getType() == LENodable.Type.STATICGATE) {
+                    // organize by groups
+                    int i = loopLeno.parallelGroup;
+                    Integer integer = new Integer(i);
+                    if (i <= 0) {
+                        // this gate drives independently, check size
+                        if (smallestX == 0) smallestX = loopLeno.leX;
+                        if (loopLeno.leX < smallestX) smallestX = loopLeno.leX;
+                    }
+                    // add to group to sum up drive strength later
+                    List<LENodable> groupList = drivingGroups.get(integer.toString());
+                    if (groupList == null) {
+                        groupList = new ArrayList<LENodable>();
+                        drivingGroups.put(integer.toString(), groupList);
                     }
-                    // also take into account mfactor of driver
-                    newX = newX / (float)leno.getMfactor();
+                    groupList.add(loopLeno);
                 }
+            }
 
-                // determine change in size
-                float currentX = leno.leX;
-                float deltaX;
-                if (currentX == 0 && newX == 0) {
-                    // if before and after are 0, delta is 0
-                    deltaX = 0f;
-                } else {
-                    // account for divide by 0
-                    if (currentX == 0) currentX = 0.001f;
-                    deltaX = Math.abs( (newX-currentX)/currentX);
+            // find smallest total size of groups
+            Set<String> keys = drivingGroups.keySet();
+            for (String str : keys) {
+                List<LENodable> groupList = drivingGroups.get(str);
+                if (groupList == null) continue;            // skip empty groups
+                // get size
+                float sizeX = 0;
+                for (LENodable loopLeno : groupList) {
+                    sizeX += loopLeno.leX;
                 }
-                currentLoopDeltaX = (deltaX > currentLoopDeltaX) ? deltaX : currentLoopDeltaX;
+                // check size of group
+                if (smallestX == 0) smallestX = sizeX;
+                if (sizeX < smallestX) smallestX = sizeX;
+            }
 
-                if (verbose) {
-                    out.println("Optimized "+leno.getName()+": size:  "+
-                            TextUtils.formatDouble(leno.leX, 3)+
-                            "x ==> "+TextUtils.formatDouble(newX, 3)+"x");
+            // if no drivers found, issue warning
+            if (!keys.iterator().hasNext() && loopcount == 0) {
+                String msg = "\nError: LEKEEPER \""+leno.getName()+"\" does not fight against any drivers";
+                System.out.println(msg);
+                NodeInst ni = leno.getNodable().getNodeInst();
+                if (ni != null) {
+                    errorLogger.logError(msg, ni, ni.getParent(), leno.context, 0);
                 }
-                leno.leX = newX;
             }
 
+            // For now, split effort equally amongst all drivers
+            if (leno.parallelGroup <= 0) {
+                newX = smallestX * netlist.getKeeperRatio() / arrayedDrivers.size();
+            } else {
+                newX = smallestX * netlist.getKeeperRatio() / drivers.size();
+            }
+        }
+
+        // If this is an LEGATE, simply sum all capacitances on the Net
+        if (leno.getType() == LENodable.Type.LEGATE) {
+
+            // compute total le*X (totalcap)
+            float totalcap = 0;
+            int numLoads = 0;
+            //System.out.println("LENode "+leno.getName()+" drives: ");
+            //outputNet.print();
+            for (LEPin pin : outputNet.getAllPins()) {
+                LENodable loopLeno = pin.getInstance();
+
+                float load = loopLeno.leX * pin.getLE() * loopLeno.getMfactor();
+                if (pin.getDir() == LEPin.Dir.OUTPUT) load *= alpha;
+                totalcap += load;
+                // check to see if gate is only driving itself
+                if (loopLeno != leno)
+                    numLoads++;
+            }
 
-
-            // All done, print some statistics about this iteration
-            String elapsed = TextUtils.getElapsedTime(System.currentTimeMillis()-startTime);
-            System.out.println("  ...done ("+elapsed+"), delta: "+currentLoopDeltaX);            
-            if (verbose) System.out.println("-----------------------------------");
-            loopcount++;
-
-            // check to see if we're diverging or not converging
-            if (currentLoopDeltaX >= lastLoopDeltaX) {
-                if (divergingIters > 2) {
-                    System.out.println("  Sizing diverging, aborting");
-                    return false;
+            // create error if no loads only on first iteration
+            if (numLoads == 0 && loopcount == 0) {
+                String msg = "\nError: LEGATE \""+leno.getName()+"\" has no loads: will be ignored";
+                System.out.println(msg);
+                NodeInst ni = leno.getNodable().getNodeInst();
+                if (ni != null) {
+                    errorLogger.logError(msg, ni, ni.getParent(), leno.context, 1);
                 }
-                divergingIters++;
             }
-            lastLoopDeltaX = currentLoopDeltaX;
-
-        } // while (currentLoopDeltaX ... )
-
-        return true;
+            // ignore if no loads, on all iterations
+            if (numLoads == 0)
+                return Float.NaN;
+
+            // For now, split effort equally amongst all drivers
+            // Group 0 drives individually
+            if (leno.parallelGroup <= 0)
+                newX = totalcap / leno.su / arrayedDrivers.size();
+            else {
+                newX = totalcap / leno.su / drivers.size();
+            }
+            // also take into account mfactor of driver
+            newX = newX / (float)leno.getMfactor();
+        }
+        return newX;
     }
 
 
@@ -30,6 +30,7 @@ import com.sun.electric.database.hierarchy.*;
 import com.sun.electric.database.network.Netlist;
 import com.sun.electric.database.prototype.NodeProto;
 import com.sun.electric.database.text.Name;
+import com.sun.electric.database.text.Pref;
 import com.sun.electric.database.text.Setting;
 import com.sun.electric.database.text.TextUtils;
 import com.sun.electric.database.topology.NodeInst;
@@ -1211,6 +1212,20 @@ public class LETool extends Tool {
 	 */
 	public static Setting getKeeperRatioSetting() { return tool.cacheKeeperRatio; }
 
+	private static Pref cacheSizingThreads = Pref.makeIntPref("SizingThreads", LETool.tool.prefs, 1);
+	/**
+	 * Method to get the number of threads used to size gates in Logical Effort.
+	 * With more than one thread, all gates are resized together from the sizes
+	 * of the previous iteration. The default is 1.
+	 * @return the number of threads used to size gates in Logical Effort.
+	 */
+	public static int getSizingThreads() { return cacheSizingThreads.getInt(); }
+	/**
+	 * Method to set the number of threads used to size gates in Logical Effort.
+	 * @param n the number of threads used to size gates in Logical Effort.
+	 */
+	public static void setSizingThreads(int n) { cacheSizingThreads.setInt(Math.max(1, n)); }
+
 	private Setting cacheUseLocalSettings;
     private Setting cacheGlobalFanout;
     private Setting cacheConvergenceEpsilon;
@@ -593,7 +593,14 @@ public class AllSchemNamesToLay {
     	}
     	
     	for (NccResult r : results) {
-    		if (r.match())  copySchematicNamesToLayout(r);
+    		if (r.skipped()) {
+    			Cell [] rootCells = r.getRootCells();
+    			prln("  NCC skipped "+rootCells[0].describe(false)+" and "+
+    				 rootCells[1].describe(false)+" because they are unchanged. "+
+    				 "Turn off incremental NCC and run NCC again to copy their names.");
+    		} else if (r.match()) {
+    			copySchematicNamesToLayout(r);
+    		}
     	}
     	prln("Done");
     }
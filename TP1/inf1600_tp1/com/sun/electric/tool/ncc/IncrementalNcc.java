@@ -0,0 +1,187 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: IncrementalNcc.java
+ *
+ * Copyright (c) 2003 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+*/
+package com.sun.electric.tool.ncc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.electric.database.geometry.GenMath;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.text.TextUtils;
+import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
+import com.sun.electric.tool.ncc.netlist.NccNetlist;
+
+/** Incremental NCC remembers which Cell pairs passed. For each pair it keeps
+ * a hash of both NccNetlists, of both Cells' NCC annotations, and of the
+ * options that affect the outcome. The records are saved in a file next to
+ * a library of the pair so that they outlive the current run of Electric.
+ * A pair whose hash hasn't changed since it last passed needn't be compared.
+ * <p>Child results are covered by the netlist hash: a child pair that passed
+ * is a Subcircuit Part of its parent's netlist while a child pair that 
+ * failed is flattened into it. */
+class IncrementalNcc {
+	private static final String FILE_SUFFIX = ".nccpass";
+
+	/** pair key -> hash for each pass record file we've read */
+	private static final Map<File,Map<String,Long>> passedPerFile = 
+		new HashMap<File,Map<String,Long>>();
+	/** files that need to be saved */
+	private static final Set<File> changedFiles = new HashSet<File>();
+
+	private IncrementalNcc() {}
+
+	/** The Cells of a pair are ordered by name so the key, file, and hash
+	 * don't depend on which Cell is the reference. */
+	private static boolean inOrder(Cell c1, Cell c2) {
+		return c1.libDescribe().compareTo(c2.libDescribe())<=0;
+	}
+	private static String getKey(Cell c1, Cell c2) {
+		if (!inOrder(c1, c2)) return getKey(c2, c1);
+		return c1.libDescribe()+"\t"+c2.libDescribe();
+	}
+	private static File getFile(Cell c1, Cell c2) {
+		Cell c = inOrder(c1, c2) ? c1 : c2;
+		URL url = c.getLibrary().getLibFile();
+		if (url==null) return null;
+		File libFile = TextUtils.getFile(url);
+		if (libFile==null || libFile.getParentFile()==null) return null;
+		return new File(libFile.getParentFile(), 
+				        c.getLibrary().getName()+FILE_SUFFIX);
+	}
+	private static Map<String,Long> getPassed(File f) {
+		Map<String,Long> passed = passedPerFile.get(f);
+		if (passed!=null) return passed;
+		passed = new HashMap<String,Long>();
+		passedPerFile.put(f, passed);
+		if (!f.exists()) return passed;
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(f));
+			try {
+				for (String line=in.readLine(); line!=null; line=in.readLine()) {
+					int tab = line.lastIndexOf('\t');
+					if (tab<=0) continue;
+					try {
+						passed.put(line.substring(0, tab), 
+								   Long.valueOf(line.substring(tab+1)));
+					} catch (NumberFormatException e) {}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Can't read NCC pass records from "+f+": "+
+					           e.getMessage());
+		}
+		return passed;
+	}
+	private static long getAnnotationHash(Cell c) {
+		long h = 0;
+		NccCellAnnotations ann = NccCellAnnotations.getAnnotations(c);
+		if (ann==null) return h;
+		for (Iterator<String> it=ann.getAnnotationText(); it.hasNext();) 
+			h = GenMath.mixHash(h, it.next());
+		return h;
+	}
+
+	// ------------------------------ package methods --------------------------
+	/** @return the hash of a pair of netlists and of the options that 
+	 * affect their comparison. Call it before the netlists are merged. */
+	static long getHash(List<NccNetlist> nets, NccOptions options) {
+		NccNetlist n1 = nets.get(0), n2 = nets.get(1);
+		if (!inOrder(n1.getRootCell(), n2.getRootCell())) {
+			n1 = nets.get(1);
+			n2 = nets.get(0);
+		}
+		long h = options.checkSizes ? 1 : 0;
+		if (options.checkSizes) {
+			h = GenMath.mixHash(h, Double.doubleToLongBits(options.absoluteSizeTolerance));
+			h = GenMath.mixHash(h, Double.doubleToLongBits(options.relativeSizeTolerance));
+		}
+		h = GenMath.mixHash(h, options.oneNamePerPort ? 1 : 0);
+		h = GenMath.mixHash(h, n1.getContentHash());
+		h = GenMath.mixHash(h, getAnnotationHash(n1.getRootCell()));
+		h = GenMath.mixHash(h, n2.getContentHash());
+		h = GenMath.mixHash(h, getAnnotationHash(n2.getRootCell()));
+		return h;
+	}
+	/** @return true if the pair passed the last time it was compared and 
+	 * its hash hasn't changed since */
+	static synchronized boolean unchangedSincePass(Cell c1, Cell c2, long hash) {
+		File f = getFile(c1, c2);
+		if (f==null) return false;
+		Long passedHash = getPassed(f).get(getKey(c1, c2));
+		return passedHash!=null && passedHash.longValue()==hash;
+	}
+	/** Remember whether the pair passed */
+	static synchronized void recordResult(Cell c1, Cell c2, long hash, 
+			                              boolean match) {
+		File f = getFile(c1, c2);
+		if (f==null) return;
+		Map<String,Long> passed = getPassed(f);
+		String key = getKey(c1, c2);
+		Long old = passed.get(key);
+		if (match) {
+			if (old!=null && old.longValue()==hash) return;
+			passed.put(key, new Long(hash));
+		} else {
+			if (old==null) return;
+			passed.remove(key);
+		}
+		changedFiles.add(f);
+	}
+	/** Write the pass records that changed. NccBottomUp calls it once at the
+	 * end of each run. Records of comparisons made directly through NccEngine
+	 * are written by the next run. */
+	static synchronized void save() {
+		for (File f : changedFiles) {
+			Map<String,Long> passed = passedPerFile.get(f);
+			List<String> keys = new ArrayList<String>(passed.keySet());
+			Collections.sort(keys);
+			try {
+				PrintWriter out = new PrintWriter(new FileWriter(f));
+				for (String key : keys)  out.println(key+"\t"+passed.get(key));
+				out.close();
+				if (out.checkError()) 
+					System.out.println("Can't write NCC pass records to "+f);
+			} catch (IOException e) {
+				System.out.println("Can't write NCC pass records to "+f+": "+
+						           e.getMessage());
+			}
+		}
+		changedFiles.clear();
+	}
+}
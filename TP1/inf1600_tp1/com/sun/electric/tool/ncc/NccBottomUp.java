@@ -24,11 +24,20 @@
 package com.sun.electric.tool.ncc;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import com.sun.electric.database.CellUsage;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.tool.ncc.basic.CellContext;
@@ -244,9 +253,172 @@ public class NccBottomUp {
 		return results;
 	}
 
+	/** Compare the Cells of one CompareList on a worker thread. Each task
+	 * has its own NccResults, HierarchyInfo view, and copy of the options. */
+	private class CompareListTask implements Callable<CompareListTask> {
+		final int index;
+		final CompareList compareList;
+		final boolean blackBoxAnn;
+		final HierarchyInfo hierInfo;
+		final NccOptions options;
+		final Aborter aborter;
+		final NccResults results = new NccResults();
+		boolean blackBoxErr;
+		CompareListTask(int index, CompareList compareList, boolean blackBoxAnn,
+				        HierarchyInfo hierInfo, NccOptions options, 
+				        Aborter aborter) {
+			this.index = index;
+			this.compareList = compareList;
+			this.blackBoxAnn = blackBoxAnn;
+			this.hierInfo = hierInfo;
+			this.options = options;
+			this.aborter = aborter;
+		}
+		public CompareListTask call() {
+			blackBoxErr = compareCellsInCompareList(results, compareList, hierInfo,
+					                                blackBoxAnn, options, aborter);
+			return this;
+		}
+	}
+
+	/** A CompareList may be compared as soon as the CompareLists holding 
+	 * the Cells it instantiates have been compared. Descend through Cells
+	 * that aren't compared themselves. Only earlier CompareLists can be 
+	 * prerequisites because getCompareLists() orders them bottom up. */
+	private void findPrerequisites(Cell cell, int listNdx, 
+			                       Map<Cell,Integer> cellToList, 
+			                       Set<Cell> visited, Set<Integer> prereqs) {
+		for (Iterator<CellUsage> it=cell.getUsagesIn(); it.hasNext();) {
+			Cell sub = it.next().getProto();
+			if (sub.isIcon()) {
+				sub = sub.contentsView();
+				if (sub==null) continue;
+			}
+			if (!visited.add(sub)) continue;
+			Integer j = cellToList.get(sub);
+			if (j!=null && j.intValue()<listNdx) {
+				// j's prerequisites cover the rest of sub's hierarchy
+				prereqs.add(j);
+				continue;
+			}
+			findPrerequisites(sub, listNdx, cellToList, visited, prereqs);
+		}
+	}
+
+	/** Hierarchical comparison of independent CompareLists on 
+	 * options.numThreads threads. Results are reported in the same
+	 * order as the sequential comparison. */
+	private NccResults processCompareListsInParallel(List<CompareList> compareLists,
+			                                         NccOptions options, 
+			                                         Aborter aborter) {
+		int numLists = compareLists.size();
+		boolean[] blackBoxAnn = new boolean[numLists];
+		boolean[] compared = new boolean[numLists];
+		Map<Cell,Integer> cellToList = new HashMap<Cell,Integer>();
+		for (int i=0; i<numLists; i++) {
+			CompareList compareList = compareLists.get(i);
+			blackBoxAnn[i] = hasBlackBoxAnnotation(compareList);
+			// size checking only works if we compare Cells that are
+			// each instantiated exactly once
+			compared[i] = !options.checkSizes || 
+			              compareList.isSafeToCheckSizes() || blackBoxAnn[i];
+			if (!compared[i]) continue;
+			for (CellContext cc : compareList)  cellToList.put(cc.cell, i);
+		}
+
+		int[] numPending = new int[numLists];
+		List<List<Integer>> dependents = new ArrayList<List<Integer>>();
+		for (int i=0; i<numLists; i++)  dependents.add(new ArrayList<Integer>());
+		for (int i=0; i<numLists; i++) {
+			if (!compared[i]) continue;
+			Set<Integer> prereqs = new HashSet<Integer>();
+			Set<Cell> visited = new HashSet<Cell>();
+			for (CellContext cc : compareLists.get(i)) 
+				findPrerequisites(cc.cell, i, cellToList, visited, prereqs);
+			numPending[i] = prereqs.size();
+			for (Integer j : prereqs)  dependents.get(j).add(i);
+		}
+
+		HierarchyInfo hierInfo = new HierarchyInfo();
+		CompareListTask[] tasks = new CompareListTask[numLists];
+		for (int i=0; i<numLists; i++) {
+			if (!compared[i]) continue;
+			tasks[i] = new CompareListTask(i, compareLists.get(i), blackBoxAnn[i],
+					                       hierInfo.newCompareListInfo(),
+					                       new NccOptions(options), aborter);
+		}
+
+		NccResults[] listResults = new NccResults[numLists];
+		ExecutorService pool = Executors.newFixedThreadPool(options.numThreads);
+		CompletionService<CompareListTask> done = 
+			new ExecutorCompletionService<CompareListTask>(pool);
+		int running = 0;
+		boolean halt = false;
+		try {
+			for (int i=0; i<numLists; i++) {
+				if (compared[i] && numPending[i]==0) {
+					done.submit(tasks[i]);
+					running++;
+				}
+			}
+			while (running>0) {
+				CompareListTask task;
+				try {
+					task = done.take().get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+					if (cause instanceof Error) throw (Error)cause;
+					throw new RuntimeException(cause);
+				}
+				running--;
+				listResults[task.index] = task.results;
+				if (halt) continue;
+
+				if (task.blackBoxErr) {
+					prln(
+						"Halting multiple cell NCC because of failure to build " +
+						"a black box"
+					);
+					halt = true;
+				} else if (aborter.userWantsToAbort()) {
+					halt = true;
+				} else if ((!task.results.exportMatch() || 
+						    !task.results.topologyMatch()) 
+						   && options.haltAfterFirstMismatch) {
+					// Don't stop for size mismatches
+					prln("Halting NCC after finding first mismatch");
+					halt = true;
+				}
+				if (halt) continue;
+
+				for (Integer d : dependents.get(task.index)) {
+					if (--numPending[d]==0) {
+						done.submit(tasks[d]);
+						running++;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdownNow();
+		}
+
+		NccResults results = new NccResults();
+		for (int i=0; i<numLists; i++) {
+			if (listResults[i]==null) continue;
+			for (NccResult r : listResults[i])  results.add(r);
+		}
+		return results;
+	}
+
 	private NccResults compareCells(CellContext cc1, CellContext cc2, 
 								    NccOptions options, Aborter aborter) {
 		List<CompareList> compareLists = CompareLists.getCompareLists(cc1, cc2);
+		if (options.operation==NccOptions.HIER_EACH_CELL && 
+			options.numThreads>1 && compareLists.size()>1)
+			return processCompareListsInParallel(compareLists, options, aborter);
 		return processCompareLists(compareLists, options, aborter);
 	}
 
@@ -254,7 +426,20 @@ public class NccBottomUp {
 	public static NccResults compare(CellContext cc1, CellContext cc2, 
 									 NccOptions options, Aborter aborter) {
 		NccBottomUp bo = new NccBottomUp();
-		return bo.compareCells(cc1, cc2, options, aborter);
+		NccResults results;
+		try {
+			results = bo.compareCells(cc1, cc2, options, aborter);
+		} finally {
+			if (options.incremental) IncrementalNcc.save();
+		}
+		int numSkipped = 0;
+		for (NccResult r : results)  if (r.skipped()) numSkipped++;
+		if (numSkipped>0) 
+			System.out.println(numSkipped+" comparisons were skipped because "+
+				"their Cells are unchanged since they passed. Their results "+
+				"have no net equivalence for copying names or cross-probing. "+
+				"Turn off incremental NCC to get it.");
+		return results;
 	}
 	public static void clearPassedHistory() {passed.clear();}
 }
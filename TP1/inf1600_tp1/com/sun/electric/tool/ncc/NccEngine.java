@@ -114,7 +114,8 @@ public class NccEngine {
 	}
 	
 	private NccResult designsMatch(HierarchyInfo hierInfo, 
-			                       boolean hierInfoOnly) {
+			                       boolean hierInfoOnly,
+			                       boolean unchangedSincePass) {
         boolean noNetlists = globals.cantBuildNetlist();
 		if (globals.getRoot()==null || noNetlists) {
 			globals.status2("empty cell or netlist error");
@@ -139,6 +140,14 @@ public class NccEngine {
 			Date d1 = new Date();
 			globals.status1("  Export name matching took: "+
 			                NccUtils.hourMinSec(d0, d1));
+
+			// Incremental NCC: the SubcircuitInfo is all we need. The result
+			// has no net equivalence because nothing was partitioned.
+			if (expNamesOK && unchangedSincePass) {
+				globals.prln("  Netlists unchanged since they last passed. Skipping comparison.");
+				globals.initLeafLists();
+				return NccResult.newSkippedResult(globals);
+			}
 			
 			if (globals.userWantsToAbort()) return NccResult.newUserAbortResult();
 			
@@ -228,12 +237,23 @@ public class NccEngine {
 			buildNccNetlists(cells, contexts, blackBox, hierInfo);
 		Date after = new Date();
 		globals.status1("  NCC net list construction took "+NccUtils.hourMinSec(before, after)+".");
+		globals.status2("  "+VarContext.getVariableCacheStatistics());
 
 		// null list returned means user requested abort
 		if (nccNetlists==null) return NccResult.newUserAbortResult();
+
+		// hash the netlists before series/parallel merging changes them
+		boolean incremental = options.incremental && !blackBox && cells.size()==2;
+		long hash = incremental ? IncrementalNcc.getHash(nccNetlists, options) : 0;
+		boolean unchanged = incremental && 
+			IncrementalNcc.unchangedSincePass(cells.get(0), cells.get(1), hash);
+
         globals.setInitialNetlists(nccNetlists);
         
-		NccResult result = designsMatch(hierInfo, false);
+		NccResult result = designsMatch(hierInfo, false, unchanged);
+		if (incremental && !result.userAbort()) {
+			IncrementalNcc.recordResult(cells.get(0), cells.get(1), hash, result.match());
+		}
 
 		globals.status2("****************************************"+					  		
 		                "****************************************");
@@ -134,11 +134,13 @@ public class NccJob extends Job {
 		options.absoluteSizeTolerance = NccPreferences.getAbsoluteSizeTolerance();
 
 		options.skipPassed = NccPreferences.getSkipPassed();
+		options.incremental = NccPreferences.getIncremental();
 		options.howMuchStatus = NccPreferences.getHowMuchStatus();
 		options.haltAfterFirstMismatch = NccPreferences.getHaltAfterFirstMismatch();
 		options.maxMismatchedEquivRecsToPrint = NccPreferences.getMaxMismatchedClasses();
 		options.maxMatchedEquivRecsToPrint = NccPreferences.getMaxMatchedClasses();
 		options.maxEquivRecMembersToPrint = NccPreferences.getMaxClassMembers();
+		options.numThreads = NccPreferences.getNumThreads();
 		
 		// for testing old regressions only!
 		//options.oneNamePerPort = false;
@@ -69,4 +69,37 @@ public class NccOptions implements Serializable {
 	
 	/** This is false only for old regressions */
 	public boolean oneNamePerPort = true;
+
+	/** For hierarchical comparisons, how many threads may compare 
+	 * independent Cell pairs at the same time */
+	public int numThreads = 1;
+
+	/** Partition with boxed Integer codes and a HashMap per Circuit rather 
+	 * than with int arrays. Only useful for checking that both agree. */
+	public boolean legacyPartitioning = false;
+
+	/** Skip Cell pairs whose netlists and annotations haven't changed since
+	 * they last passed. Pass records are saved next to the libraries. */
+	public boolean incremental = false;
+
+	public NccOptions() {}
+
+	/** Copy constructor. Comparisons that run concurrently each need their
+	 * own copy because some diagnostics temporarily change howMuchStatus. */
+	public NccOptions(NccOptions o) {
+		operation = o.operation;
+		checkSizes = o.checkSizes;
+		absoluteSizeTolerance = o.absoluteSizeTolerance;
+		relativeSizeTolerance = o.relativeSizeTolerance;
+		skipPassed = o.skipPassed;
+		howMuchStatus = o.howMuchStatus;
+		haltAfterFirstMismatch = o.haltAfterFirstMismatch;
+		maxMismatchedEquivRecsToPrint = o.maxMismatchedEquivRecsToPrint;
+		maxMatchedEquivRecsToPrint = o.maxMatchedEquivRecsToPrint;
+		maxEquivRecMembersToPrint = o.maxEquivRecMembersToPrint;
+		oneNamePerPort = o.oneNamePerPort;
+		numThreads = o.numThreads;
+		legacyPartitioning = o.legacyPartitioning;
+		incremental = o.incremental;
+	}
 }
@@ -77,6 +77,15 @@ public class NccPreferences {
 		skipPassed.setBoolean(on); 
 	}
 	
+	private static Pref incremental = 
+		Pref.makeBooleanPref("Incremental", NccPreferences.tool.prefs, false);
+	public static boolean getIncremental() {
+		return incremental.getBoolean();
+	}
+	public static void setIncremental(boolean on) { 
+		incremental.setBoolean(on);
+	}
+
 	private static Pref maxMatchedClasses =
 		Pref.makeIntPref("MaxMatchedClasses", NccPreferences.tool.prefs, 10);
 	public static int getMaxMatchedClasses() {
@@ -130,4 +139,13 @@ public class NccPreferences {
 	public static void setHowMuchStatus(int i) {
 		howMuchStatus.setInt(boundStatus(i));
 	}
+
+	private static Pref numThreads =
+		Pref.makeIntPref("NumThreads", NccPreferences.tool.prefs, 1);
+	public static int getNumThreads() {
+		return Math.max(numThreads.getInt(), 1);
+	}
+	public static void setNumThreads(int i) {
+		numThreads.setInt(Math.max(i, 1));
+	}
 }
@@ -178,12 +178,12 @@ public class Bipolar extends Part {
 		return s;
 	}
 
-	public Integer computeHashCode() {
+	public int computeHashCode() {
 		int sum=0;
 		for (int i=0; i<pins.length; i++){
 			sum += pins[i].getCode() * type.getPinCoeffs()[i];
 		}
-		return new Integer(sum);
+		return sum;
 	}
 
 }
@@ -159,7 +159,7 @@ public class Mos extends Part {
 		private static void ensureListEntry(int numPins) {
 			while (coeffArrays.size()-1<numPins)  coeffArrays.add(null);
 		}
-		public static int[] getCoeffArray(int numPins) {
+		public static synchronized int[] getCoeffArray(int numPins) {
 			ensureListEntry(numPins);
 			int[] coeffArray = coeffArrays.get(numPins);
 			if (coeffArray==null) {
@@ -407,7 +407,7 @@ public class Mos extends Part {
 		w.setDeleted();
 		return true;
 	}
-	public Integer computeHashCode(){
+	public int computeHashCode(){
 		// the function is symmetric: ABCD = DCBA
 		int sumLo=0, sumHi=0;
 		for (int i=0; i<(pins.length+1)/2; i++){
@@ -415,7 +415,7 @@ public class Mos extends Part {
 			int j = pins.length-1-i;
 			sumHi += pins[j].getCode() * pin_coeffs[j];
 		}
-		return new Integer(sumLo * sumHi);
+		return sumLo * sumHi;
 	}
 
 }
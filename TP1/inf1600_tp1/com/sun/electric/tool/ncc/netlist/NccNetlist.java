@@ -29,6 +29,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import com.sun.electric.database.geometry.GenMath;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.Export;
 import com.sun.electric.database.hierarchy.HierarchyEnumerator;
@@ -122,6 +123,35 @@ public class NccNetlist {
 	public boolean userAbort() {return userAbort;}
 	public Cell getRootCell() {return rootCell;}
 	public VarContext getRootContext() {return rootContext;}
+
+	/** @return a hash of the Part types, sizes, names, and connections, 
+	 * the Wire names, and the Export names of this netlist. 
+	 * Incremental NCC uses it to recognize a netlist that hasn't changed 
+	 * since it last passed. It must be called before series/parallel 
+	 * merging. The hash doesn't depend on the order of Parts, Wires, or 
+	 * Ports. */
+	public long getContentHash() {
+		long sum = GenMath.mixHash(0, cantBuildNetlist() ? 1 : 0);
+		for (Wire w : wires)  sum += GenMath.mixHash(1, w.getName());
+		for (Part p : parts) {
+			long h = GenMath.mixHash(GenMath.mixHash(2, p.typeString()), p.getName());
+			if (p.isMos() || p.isResistor()) {
+				h = GenMath.mixHash(h, Double.doubleToLongBits(p.getWidth()));
+				h = GenMath.mixHash(h, Double.doubleToLongBits(p.getLength()));
+			} else {
+				h = GenMath.mixHash(h, p.valueDescription());
+			}
+			for (int i=0; i<p.pins.length; i++)  h = GenMath.mixHash(h, p.pins[i].getName());
+			sum += h;
+		}
+		for (Port p : ports) {
+			long h = GenMath.mixHash(3, p.getWireName());
+			for (Iterator<String> it=p.getExportNames(); it.hasNext();) 
+				h = GenMath.mixHash(h, it.next());
+			sum += h;
+		}
+		return sum;
+	}
 }
 
 class ExportGlobalConflict extends RuntimeException {
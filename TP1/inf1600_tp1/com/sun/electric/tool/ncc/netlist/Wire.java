@@ -107,13 +107,12 @@ public class Wire extends NetObject implements WireReportable {
 	 */
     public boolean touches(Part p){return parts.contains(p);}
     public boolean touches(Port p) {return port==p;}
-    public Integer computeHashCode(){
+    public int computeHashCode(){
         int sum= 0;
-        for (Iterator<Part> it=getParts(); it.hasNext();) {
-            Part pp= it.next();
-            sum += pp.getHashFor(this);
+        for (int i=0; i<parts.size(); i++) {
+            sum += parts.get(i).getHashFor(this);
         }
-        return new Integer(sum);
+        return sum;
     }
 
     /** count the number of Parts connected to this wire.
@@ -29,6 +29,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.tool.generator.layout.LayoutLib;
@@ -36,12 +37,18 @@ import com.sun.electric.tool.ncc.basic.CellContext;
 import com.sun.electric.tool.ncc.basic.CompareList;
 import com.sun.electric.tool.ncc.basic.CompareLists;
 
-/** Information needed to perform hierarchical netlist comparison */
+/** Information needed to perform hierarchical netlist comparison.
+ * <p>The SubcircuitInfo map and the compareList ID counter may be shared
+ * by several HierarchyInfos so that independent compareLists can be 
+ * compared concurrently. Each thread must use its own HierarchyInfo 
+ * obtained from newCompareListInfo(). */
 public class HierarchyInfo {
 	/** name of the current CompareList (usually CellGroup name) */ 
 	private String subcktName;
 	/** unique int assigned to the current compareList */
 	private int compareListID=0;
+	/** source of unique compareList IDs */
+	private final AtomicInteger lastCompareListID;
 	/** the Cells we've added to the current compareList */
 	private List<Cell> cellsInCompareList = new ArrayList<Cell>();
 	/** flag indicating that we must remove SubcircuitInfo for all Cells in the 
@@ -49,10 +56,25 @@ public class HierarchyInfo {
 	private boolean purgeCurrentCompareList;
 	/** information for all Cells in all the compareLists we've encountered 
 	 * so far */
-	private Map<Cell,SubcircuitInfo> cellToSubcktInfo = new HashMap<Cell,SubcircuitInfo>();
+	private final Map<Cell,SubcircuitInfo> cellToSubcktInfo;
 	private Set<Cell> cellsInSharedCellGroups;
 
+	private HierarchyInfo(Map<Cell,SubcircuitInfo> cellToSubcktInfo,
+			              AtomicInteger lastCompareListID) {
+		this.cellToSubcktInfo = cellToSubcktInfo;
+		this.lastCompareListID = lastCompareListID;
+	}
+
 	// ----------------------------- public methods ---------------------------
+	public HierarchyInfo() {
+		this(new HashMap<Cell,SubcircuitInfo>(), new AtomicInteger());
+	}
+	/** Create a HierarchyInfo that shares SubcircuitInfo with this one but
+	 * that keeps its own current compareList. Use one of these for each 
+	 * compareList compared concurrently. */
+	public HierarchyInfo newCompareListInfo() {
+		return new HierarchyInfo(cellToSubcktInfo, lastCompareListID);
+	}
 	/** You must call this before you begin comparing Cells in a new 
 	 * compareList. Then for each Cell in the compareList you must call 
 	 * addSubcircuitInfo(). However, if a comparison reveals an Export name 
@@ -60,7 +82,7 @@ public class HierarchyInfo {
 	 * doesn't matter what you do for the rest of the compareList. */
 	public void beginNextCompareList(String subcktName) {
 		this.subcktName = subcktName;
-		compareListID++;
+		compareListID = lastCompareListID.incrementAndGet();
 		purgeCurrentCompareList = false;
 		cellsInCompareList.clear();
 		cellsInSharedCellGroups = null;
@@ -105,10 +127,12 @@ public class HierarchyInfo {
 	 * you do. */
 	public void addSubcircuitInfo(Cell c, SubcircuitInfo subcktInfo) {
 		if (purgeCurrentCompareList) return;
-		LayoutLib.error(cellToSubcktInfo.containsKey(c),
-						"SubcircuitInfo already exists for Cell");
+		synchronized (cellToSubcktInfo) {
+			LayoutLib.error(cellToSubcktInfo.containsKey(c),
+							"SubcircuitInfo already exists for Cell");
+			cellToSubcktInfo.put(c, subcktInfo);
+		}
 		cellsInCompareList.add(c);
-		cellToSubcktInfo.put(c, subcktInfo);
 	}
 	/** You must call this method if a Cell comparison reveals an Export name 
 	 * mismatch. In that case we can no longer treat cells in compareList as a 
@@ -117,9 +141,11 @@ public class HierarchyInfo {
 	 * through them when comparing from higher levels in the hierarchy. */
 	public void purgeCurrentCompareList() {
 		purgeCurrentCompareList = true;
-		for (Cell c : cellsInCompareList) {
-			LayoutLib.error(!cellToSubcktInfo.containsKey(c), "Cell not in map?");
-			cellToSubcktInfo.remove(c);
+		synchronized (cellToSubcktInfo) {
+			for (Cell c : cellsInCompareList) {
+				LayoutLib.error(!cellToSubcktInfo.containsKey(c), "Cell not in map?");
+				cellToSubcktInfo.remove(c);
+			}
 		}
 		cellsInCompareList.clear();
 	}
@@ -131,13 +157,17 @@ public class HierarchyInfo {
 	/** should I treat an instance of this cell as a subcircuit primitive 
 	 * in the current comparison? */
 	public boolean treatAsPrimitive(Cell c) {
-		return cellToSubcktInfo.containsKey(c) &&
+		boolean known;
+		synchronized (cellToSubcktInfo) {known = cellToSubcktInfo.containsKey(c);}
+		return known &&
 		       (cellsInSharedCellGroups==null || 
 		       	cellsInSharedCellGroups.contains(c));
 	}
 	/** get me information I need to treat an instance of this Cell as a
 	 * subcircuit primitive */ 
 	public SubcircuitInfo getSubcircuitInfo(Cell c) {
-		return (SubcircuitInfo) cellToSubcktInfo.get(c);
+		synchronized (cellToSubcktInfo) {
+			return (SubcircuitInfo) cellToSubcktInfo.get(c);
+		}
 	}
 }
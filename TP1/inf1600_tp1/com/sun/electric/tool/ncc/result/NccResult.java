@@ -56,6 +56,7 @@ public class NccResult implements Serializable {
 	static final long serialVersionUID = 0;
 
 	private final boolean exportMatch, topologyMatch, sizeMatch, userAbort;
+	private boolean skipped;
 	private Cell[] rootCells;
 	private String[] rootCellNames;
 	private VarContext[] rootContexts; 
@@ -155,6 +156,13 @@ public class NccResult implements Serializable {
 //        return new NccResult(exportNameMatch, topologyMatch, sizeMatch, false, globalData);
 //	}
 
+	/** Result of a comparison that incremental NCC skipped because the Cells 
+	 * are unchanged since they last passed */
+	public static NccResult newSkippedResult(NccGlobalsReportable globalData) {
+		NccResult r = new NccResult(true, true, true, false, globalData);
+		r.skipped = true;
+		return r;
+	}
 	public static NccResult newUserAbortResult() {
 		return new NccResult(false, false, false, true, (NccGlobals)null);
 	}
@@ -183,10 +191,16 @@ public class NccResult implements Serializable {
 	/** User aborted this comparison. No other information is saved. */
 	public boolean userAbort() {return userAbort;}
 	
+	/** Incremental NCC skipped this comparison because the Cells are 
+	 * unchanged since they last passed. The result matches, but its 
+	 * Equivalence is empty because nothing was compared. */
+	public boolean skipped() {return skipped;}
+	
 	/** No problem was found */
 	public boolean match() {return exportMatch && topologyMatch && sizeMatch;}
 	
-	/** return object that maps between Nodes and Networks in the two designs */
+	/** return object that maps between Nodes and Networks in the two designs.
+	 * It is empty if the comparison was skipped. */
 	public Equivalence getEquivalence() {return equivalence;}
 	
 	public String summary(boolean checkSizes) {
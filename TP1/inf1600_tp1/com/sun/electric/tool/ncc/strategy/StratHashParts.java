@@ -54,7 +54,11 @@ public class StratHashParts extends Strategy {
 		return super.doFor(g);
     }
 	
-    public Integer doFor(NetObject n){
+    public Integer doFor(NetObject n){return new Integer(codeFor(n));}
+
+    public boolean partitionsByIntCode() {return true;}
+
+    public int codeFor(NetObject n){
 		error(!(n instanceof Part), "StratHashPartAll expects only Parts");
 		numPartsProcessed++;
 		Part p= (Part)n;
@@ -64,7 +64,11 @@ public class StratHashWires extends Strategy {
 		return out;
     }
 	
-	public Integer doFor(NetObject n){
+	public Integer doFor(NetObject n){return new Integer(codeFor(n));}
+
+	public boolean partitionsByIntCode() {return true;}
+
+	public int codeFor(NetObject n){
 		error(!(n instanceof Wire), "StratHashWires expects wires only");
 		numWiresProcessed++;
 		Wire w= (Wire)n;
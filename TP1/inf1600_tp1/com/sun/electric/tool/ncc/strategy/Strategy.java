@@ -135,6 +135,22 @@ public abstract class Strategy {
 	 * @return an Integer for the choice. */
     public Integer doFor(NetObject n) {return CODE_NO_CHANGE;}
 
+    /** Strategies that don't override doFor(Circuit) and whose codes are 
+     * cheap ints may return true. Then EquivRecord partitions leaf records
+     * by calling codeFor() without boxing codes or building a HashMap for
+     * each Circuit.
+     * @return true if leaf records may be partitioned using codeFor() */
+    public boolean partitionsByIntCode() {return false;}
+
+    /** codeFor(NetObject) is the primitive version of doFor(NetObject).
+     * @param n the NetObject to catagorize
+     * @return an int for the choice. */
+    public int codeFor(NetObject n) {
+    	Integer code = doFor(n);
+    	error(code==null, "null is no longer a legal code");
+    	return code.intValue();
+    }
+
 	//comments on the "code"th offspring of g
 	EquivRecord pickAnOffspring(Integer code, LeafList g, String label) {
 		int value = code.intValue();
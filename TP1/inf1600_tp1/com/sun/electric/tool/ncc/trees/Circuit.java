@@ -23,6 +23,7 @@
  */
 package com.sun.electric.tool.ncc.trees;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -35,8 +36,11 @@ import com.sun.electric.tool.ncc.netlist.Wire;
 import com.sun.electric.tool.ncc.strategy.Strategy;
 
 public class Circuit {
+	private static final NetObject[] NO_NET_OBJS = new NetObject[0];
+
     private EquivRecord myParent;
-    private ArrayList<NetObject> netObjs = new ArrayList<NetObject>();
+    private NetObject[] netObjs = NO_NET_OBJS;
+    private int numNetObjs;
 
     private Circuit(){}
 
@@ -47,27 +51,44 @@ public class Circuit {
 	// ---------------------- public methods ------------------
 	public static Circuit please(List<NetObject> netObjs){
 		Circuit ckt = new Circuit();
-		for (NetObject n : netObjs) {
-			ckt.adopt(n);
+		ckt.netObjs = netObjs.toArray(new NetObject[netObjs.size()]);
+		ckt.numNetObjs = ckt.netObjs.length;
+		for (NetObject n : ckt.netObjs) {
+			n.setParent(ckt);
 		}
 		return ckt;
 	}
+	/** Create a Circuit holding netObjs[from] through netObjs[to-1] */
+	public static Circuit please(NetObject[] netObjs, int from, int to) {
+		Circuit ckt = new Circuit();
+		ckt.netObjs = Arrays.copyOfRange(netObjs, from, to);
+		ckt.numNetObjs = to - from;
+		for (int i=0; i<ckt.numNetObjs; i++)  ckt.netObjs[i].setParent(ckt);
+		return ckt;
+	}
 	/** Remove deleted NetObjects. Minimize storage used. */
 	public void putInFinalForm() {
 		Set<NetObject> goodObjs = new HashSet<NetObject>();
-		for (NetObject n : netObjs) {
+		for (int i=0; i<numNetObjs; i++) {
+			NetObject n = netObjs[i];
 			if (n.isDeleted()) continue;
 			error(goodObjs.contains(n), "duplicate NetObj in Circuit!???");
 			goodObjs.add(n);
 			if (n instanceof Wire)  ((Wire)n).putInFinalForm();
 		}
-		netObjs = new ArrayList<NetObject>();
-		netObjs.addAll(goodObjs);
-		netObjs.trimToSize();
+		netObjs = goodObjs.toArray(new NetObject[goodObjs.size()]);
+		numNetObjs = netObjs.length;
 	}
     
-	public Iterator<NetObject> getNetObjs() {return netObjs.iterator();}
-	public int numNetObjs() {return netObjs.size();}
+	public Iterator<NetObject> getNetObjs() {
+		return Arrays.asList(netObjs).subList(0, numNetObjs).iterator();
+	}
+	public int numNetObjs() {return numNetObjs;}
+	/** @return the NetObject at index i, 0 <= i < numNetObjs() */
+	public NetObject getNetObj(int i) {
+		error(i>=numNetObjs, "NetObject index out of range");
+		return netObjs[i];
+	}
 	public int numUndeletedNetObjs() {
 		int count = 0;
 		for (Iterator<NetObject> it=getNetObjs(); it.hasNext();) {
@@ -77,7 +98,9 @@ public class Circuit {
 		return count;
 	}
     public void adopt(NetObject n) {
-    	netObjs.add(n);
+    	if (numNetObjs==netObjs.length) 
+    		netObjs = Arrays.copyOf(netObjs, Math.max(4, numNetObjs*2));
+    	netObjs[numNetObjs++] = n;
     	n.setParent(this);
     }
     //public void remove(NetObject n) {netObjs.remove(n);}
@@ -103,8 +126,8 @@ public class Circuit {
 	
 	public HashMap<Integer,List<NetObject>> apply(Strategy js){
 		HashMap<Integer,List<NetObject>> codeToNetObjs = new HashMap<Integer,List<NetObject>>();
-		for (Iterator<NetObject> it=getNetObjs(); it.hasNext();) {
-			NetObject no= it.next();
+		for (int i=0; i<numNetObjs; i++) {
+			NetObject no= netObjs[i];
 			Integer code = js.doFor(no);
 			error(code==null, "null is no longer a legal code");
 			ArrayList<NetObject> ns = (ArrayList<NetObject>) codeToNetObjs.get(code);
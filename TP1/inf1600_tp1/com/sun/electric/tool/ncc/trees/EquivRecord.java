@@ -26,6 +26,7 @@
 
 package com.sun.electric.tool.ncc.trees;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -160,13 +161,17 @@ public class EquivRecord implements EquivRecReportable {
 
 	/** Get all the keys of all the maps.
 	 * @param mapPerCkt list of maps
-	 * @return the set of all keys from all the maps */
-	private Set<Integer> getKeysFromAllMaps(ArrayList<HashMap<Integer,List<NetObject>>> mapPerCkt) {
+	 * @return all keys from all the maps in increasing order. The order
+	 * doesn't depend upon HashSet iteration so both ways of partitioning 
+	 * create offspring in the same order. */
+	private List<Integer> getKeysFromAllMaps(ArrayList<HashMap<Integer,List<NetObject>>> mapPerCkt) {
 		Set<Integer> keys = new HashSet<Integer>();
 		for (HashMap<Integer,List<NetObject>> map : mapPerCkt) {
 			keys.addAll(map.keySet());
 		}
-		return keys;    	
+		List<Integer> sortedKeys = new ArrayList<Integer>(keys);
+		Collections.sort(sortedKeys);
+		return sortedKeys;    	
 	}
 
 	/** Create a leaf record for all the Circuits corresponding to a
@@ -196,9 +201,13 @@ public class EquivRecord implements EquivRecReportable {
 	}
 
 	private LeafList applyToLeaf(Strategy js) {
+		if (js.partitionsByIntCode() && 
+			(js.globals==null || !js.globals.getOptions().legacyPartitioning))
+			return applyIntCodesToLeaf(js);
+
 		ArrayList<HashMap<Integer,List<NetObject>>> mapPerCkt = getOneMapPerCircuit(js);
 		
-		Set<Integer> keys = getKeysFromAllMaps(mapPerCkt);
+		List<Integer> keys = getKeysFromAllMaps(mapPerCkt);
 		
 		error(keys.size()==0, "must have at least one key");
 		
@@ -220,6 +229,33 @@ public class EquivRecord implements EquivRecReportable {
 		return el;
 	}
 
+	/** Same as applyToLeaf but codes are never boxed and NetObjects are 
+	 * grouped in arrays rather than in a HashMap for each Circuit. */
+	private LeafList applyIntCodesToLeaf(Strategy js) {
+		IntCodePartition partition = new IntCodePartition(circuits, js);
+		
+		error(partition.numCodes()==0, "must have at least one key");
+		
+		// If everything maps to one hash code then no offspring
+		if (partition.numCodes()==1) return new LeafList();
+		
+		// Change this record from leaf to internal
+		circuits = null;
+		offspring = new RecordList();
+		
+		for (int codeNdx : partition.getCodeIndicesInOrder()) {
+			List<Circuit> ckts = new ArrayList<Circuit>();
+			for (int c=0; c<partition.numCircuits(); c++) 
+				ckts.add(partition.newCircuit(codeNdx, c));
+			addOffspring(EquivRecord.newLeafRecord(partition.getCode(codeNdx), 
+					                               ckts, js.globals));
+		}
+
+		LeafList el = new LeafList();
+		el.addAll(offspring);
+		return el;
+	}
+
 	private LeafList applyToInternal(Strategy js) {
 		LeafList offspring = new LeafList();
 		for (Iterator<EquivRecord> it=getOffspring(); it.hasNext();) {
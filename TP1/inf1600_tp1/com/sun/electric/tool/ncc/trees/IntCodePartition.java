@@ -0,0 +1,124 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: IntCodePartition.java
+ *
+ * Copyright (c) 2003 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.ncc.trees;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sun.electric.tool.ncc.netlist.NetObject;
+import com.sun.electric.tool.ncc.strategy.Strategy;
+
+/** Partition the NetObjects in the Circuits of a leaf EquivRecord by the
+ * int codes a Strategy assigns to them. Distinct codes are found with an
+ * open addressing table keyed by int, and the NetObjects of each 
+ * (code, Circuit) pair are stored contiguously in one array in compressed
+ * sparse row form. Unlike Circuit.apply() this allocates no Integers,
+ * Lists, or HashMaps for each NetObject. */
+class IntCodePartition {
+	private final int numCkts;
+	/** distinct codes in order of first appearance */
+	private int[] codes = new int[8];
+	private int numCodes;
+	/** open addressing hash table holding code index plus one, 0 if empty */
+	private int[] table;
+	/** The NetObjects of Circuit c with code index k are members[i] for 
+	 * start[k*numCkts+c] <= i < start[k*numCkts+c+1] */
+	private int[] start;
+	private NetObject[] members;
+
+	private static int hash(int code) {
+		int h = code * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int indexOf(int code) {
+		int mask = table.length - 1;
+		for (int slot=hash(code)&mask; ; slot=(slot+1)&mask) {
+			int k = table[slot];
+			if (k==0) {
+				if (numCodes==codes.length)  codes = Arrays.copyOf(codes, numCodes*2);
+				codes[numCodes++] = code;
+				table[slot] = numCodes;
+				return numCodes-1;
+			}
+			if (codes[k-1]==code) return k-1;
+		}
+	}
+
+	IntCodePartition(List<Circuit> circuits, Strategy js) {
+		numCkts = circuits.size();
+		int numObjs = 0;
+		for (Circuit ckt : circuits)  numObjs += ckt.numNetObjs();
+
+		// at most numObjs distinct codes so the table stays at most half full
+		table = new int[Integer.highestOneBit(Math.max(2*numObjs-1, 1)) << 1];
+		int[] codeNdxs = new int[numObjs];
+		int n = 0;
+		for (Circuit ckt : circuits) {
+			for (int i=0; i<ckt.numNetObjs(); i++)  
+				codeNdxs[n++] = indexOf(js.codeFor(ckt.getNetObj(i)));
+		}
+		table = null;
+		
+		// If everything maps to one code then there's nothing to lay out
+		if (numCodes<=1) return;
+
+		start = new int[numCodes*numCkts+1];
+		n = 0;
+		for (int c=0; c<numCkts; c++) {
+			int sz = circuits.get(c).numNetObjs();
+			for (int i=0; i<sz; i++)  start[codeNdxs[n++]*numCkts+c+1]++;
+		}
+		for (int i=1; i<start.length; i++)  start[i] += start[i-1];
+
+		int[] next = Arrays.copyOf(start, start.length-1);
+		members = new NetObject[numObjs];
+		n = 0;
+		for (int c=0; c<numCkts; c++) {
+			Circuit ckt = circuits.get(c);
+			for (int i=0; i<ckt.numNetObjs(); i++) 
+				members[next[codeNdxs[n++]*numCkts+c]++] = ckt.getNetObj(i);
+		}
+	}
+
+	int numCodes() {return numCodes;}
+	int numCircuits() {return numCkts;}
+	int getCode(int codeNdx) {return codes[codeNdx];}
+
+	/** @return the code indices in order of increasing code */
+	int[] getCodeIndicesInOrder() {
+		long[] sortKeys = new long[numCodes];
+		for (int k=0; k<numCodes; k++)  sortKeys[k] = ((long)codes[k] << 32) | k;
+		Arrays.sort(sortKeys);
+		int[] order = new int[numCodes];
+		for (int k=0; k<numCodes; k++)  order[k] = (int) sortKeys[k];
+		return order;
+	}
+
+	/** @return a new Circuit holding the NetObjects of Circuit ckt that have
+	 * code index codeNdx. The Circuit may be empty. */
+	Circuit newCircuit(int codeNdx, int ckt) {
+		int i = codeNdx*numCkts + ckt;
+		return Circuit.please(members, start[i], start[i+1]);
+	}
+}
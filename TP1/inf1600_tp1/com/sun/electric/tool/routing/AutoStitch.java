@@ -43,7 +43,7 @@ import com.sun.electric.database.topology.Connection;
 import com.sun.electric.database.topology.Geometric;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.topology.PortInst;
-import com.sun.electric.database.topology.RTBounds;
+import com.sun.electric.database.topology.RTNode;
 import com.sun.electric.database.variable.EditWindow_;
 import com.sun.electric.database.variable.ElectricObject;
 import com.sun.electric.database.variable.UserInterface;
@@ -81,6 +81,7 @@ public class AutoStitch
 	/** list of all routes to be created at end of analysis */		private List<Route> allRoutes;
 	/** list of pins that may be inline pins due to created arcs */	private HashSet<NodeInst> possibleInlinePins;
 	/** set of nodes to check (prevents duplicate checks) */		private HashSet<NodeInst> nodeMark;
+	/** objects near the one being stitched (reused between checks) */	private RTNode.SearchBuffer geomsInArea = new RTNode.SearchBuffer();
 
 	/**
 	 * Method to do auto-stitching.
@@ -586,18 +587,15 @@ public class AutoStitch
 		if (geom instanceof NodeInst) ni = (NodeInst)geom;
 
 		// make a list of other geometrics that touch or overlap this one (copy it because the main list will change)
-		List<Geometric> geomsInArea = new ArrayList<Geometric>();
 		Rectangle2D geomBounds = geom.getBounds();
 		double epsilon = DBMath.getEpsilon();
-		Rectangle2D searchBounds = new Rectangle2D.Double(geomBounds.getMinX()-epsilon, geomBounds.getMinY()-epsilon,
-			geomBounds.getWidth()+epsilon*2, geomBounds.getHeight()+epsilon*2);
-		for(Iterator<RTBounds> it = cell.searchIterator(searchBounds); it.hasNext(); )
-		{
-			Geometric oGeom = (Geometric)it.next();
-			if (oGeom != geom) geomsInArea.add(oGeom);
-		}
-		for(Geometric oGeom : geomsInArea)
+		geomsInArea.clear();
+		cell.search(geomBounds.getMinX()-epsilon, geomBounds.getMinY()-epsilon,
+			geomBounds.getMaxX()+epsilon, geomBounds.getMaxY()+epsilon, true, geomsInArea);
+		for(int i=0; i<geomsInArea.size(); i++)
 		{
+			Geometric oGeom = (Geometric)geomsInArea.get(i);
+			if (oGeom == geom) continue;
 			// find another node in this area
 			if (oGeom instanceof ArcInst)
 			{
@@ -127,6 +127,9 @@ public class SeaOfGates
 	/** destination coordinate for the current Dijkstra path. */				private int destX, destY, destZ;
 	/** the total length of wires routed */										private double totalWireLength;
 	/** true if this is the first failure of a route (for debugging) */			private boolean firstFailure;
+	/** reusable visitor for metal blockage searches. */						private final MetalBlockageFinder metalFinder = new MetalBlockageFinder();
+	/** reusable visitor for via blockage searches. */							private final ViaBlockageFinder viaFinder = new ViaBlockageFinder();
+	/** reusable visitor for jump size searches. */								private final JumpLimiter jumpLimiter = new JumpLimiter();
 
 	/************************************** CONTROL **************************************/
 
@@ -1506,19 +1509,10 @@ public class SeaOfGates
 		if (rtree != null)
 		{
 			// see if there is anything in that area
-			Rectangle2D searchArea = new Rectangle2D.Double(lX, lY, hX-lX, hY-lY);
-			for(RTNode.Search sea = new RTNode.Search(searchArea, rtree, true); sea.hasNext(); )
-			{
-				SOGBound sBound = (SOGBound)sea.next();
-				if (sBound.getNetID() == netID) continue;
-				Rectangle2D bound = sBound.getBounds();
-				if (bound.getMinX() >= hX || bound.getMaxX() <= lX ||
-					bound.getMinY() >= hY || bound.getMaxY() <= lY) continue;
-				if (dx > 0 && bound.getMinX() < hX) hX = bound.getMinX();
-				if (dx < 0 && bound.getMaxX() > lX) lX = bound.getMaxX();
-				if (dy > 0 && bound.getMinY() < hY) hY = bound.getMinY();
-				if (dy < 0 && bound.getMaxY() > lY) lY = bound.getMaxY();
-			}
+			jumpLimiter.init(netID, dx, dy, lX, lY, hX, hY);
+			RTNode.search(rtree, lX, lY, hX, hY, true, jumpLimiter);
+			lX = jumpLimiter.lX;   hX = jumpLimiter.hX;
+			lY = jumpLimiter.lY;   hY = jumpLimiter.hY;
 		}
 		if (dx > 0)
 		{
@@ -1585,15 +1579,17 @@ public class SeaOfGates
 	private static class SOGVia implements RTBounds
 	{
 		private Point2D loc;
+		private Rectangle2D bound;
 		private int netID;
 
 		SOGVia(Point2D loc, int netID)
 		{
 			this.loc = loc;
+			this.bound = new Rectangle2D.Double(loc.getX(), loc.getY(), 0, 0);
 			this.netID = netID;
 		}
 		
-		public Rectangle2D getBounds() { return new Rectangle2D.Double(loc.getX(), loc.getY(), 0, 0); }
+		public Rectangle2D getBounds() { return bound; }
 
 		public int getNetID() { return netID; }
 
@@ -1619,24 +1615,11 @@ public class SeaOfGates
 		// see if there is anything in that area
 		double lX = x - halfWidth, hX = x + halfWidth;
 		double lY = y - halfHeight, hY = y + halfHeight;
-		Rectangle2D searchArea = new Rectangle2D.Double(lX, lY, halfWidth*2, halfHeight*2);
-		for(RTNode.Search sea = new RTNode.Search(searchArea, rtree, true); sea.hasNext(); )
-		{
-			SOGBound sBound = (SOGBound)sea.next();
-			if (sBound.getNetID() == netID) continue;
-			Rectangle2D bound = sBound.getBounds();
-			if (bound.getMaxX() <= lX || bound.getMinX() >= hX ||
-				bound.getMaxY() <= lY || bound.getMinY() >= hY) continue;
-
-			// if this is a polygon, do closer examination
-			if (sBound instanceof SOGPoly)
-			{
-				PolyBase poly = ((SOGPoly)sBound).getPoly();
-				if (!poly.contains(searchArea)) continue;
-			}
-			return sBound;
-		}
-		return null;
+		metalFinder.init(netID, lX, lY, hX, hY);
+		RTNode.search(rtree, lX, lY, hX, hY, true, metalFinder);
+		SOGBound found = metalFinder.found;
+		metalFinder.found = null;
+		return found;
 	}
 
 	/**
@@ -1656,17 +1639,112 @@ public class SeaOfGates
 		if (rtree == null) return null;
 
 		// see if there is anything in that area
-		Rectangle2D searchArea = new Rectangle2D.Double(x-halfWidth, y-halfHeight, halfWidth*2, halfHeight*2);
-		for(RTNode.Search sea = new RTNode.Search(searchArea, rtree, true); sea.hasNext(); )
+		viaFinder.init(netID, x, y);
+		RTNode.search(rtree, x-halfWidth, y-halfHeight, x+halfWidth, y+halfHeight, true, viaFinder);
+		SOGVia found = viaFinder.found;
+		viaFinder.found = null;
+		return found;
+	}
+
+	/**
+	 * R-Tree visitor that finds the first metal blockage on another network.
+	 * One instance is reused for every search so that the router does not allocate while searching.
+	 */
+	private static class MetalBlockageFinder implements RTNode.SearchVisitor
+	{
+		private int netID;
+		private double lX, lY, hX, hY;
+		private final Rectangle2D searchArea = new Rectangle2D.Double();
+		private SOGBound found;
+
+		void init(int netID, double lX, double lY, double hX, double hY)
+		{
+			this.netID = netID;
+			this.lX = lX;   this.lY = lY;
+			this.hX = hX;   this.hY = hY;
+			searchArea.setRect(lX, lY, hX-lX, hY-lY);
+			found = null;
+		}
+
+		public boolean visit(RTBounds geom)
+		{
+			SOGBound sBound = (SOGBound)geom;
+			if (sBound.getNetID() == netID) return true;
+			Rectangle2D bound = sBound.getBounds();
+			if (bound.getMaxX() <= lX || bound.getMinX() >= hX ||
+				bound.getMaxY() <= lY || bound.getMinY() >= hY) return true;
+
+			// if this is a polygon, do closer examination
+			if (sBound instanceof SOGPoly)
+			{
+				PolyBase poly = ((SOGPoly)sBound).getPoly();
+				if (!poly.contains(searchArea)) return true;
+			}
+			found = sBound;
+			return false;
+		}
+	}
+
+	/**
+	 * R-Tree visitor that finds the first via blockage.
+	 * Vias on the same network at the center of the search are ignored.
+	 */
+	private static class ViaBlockageFinder implements RTNode.SearchVisitor
+	{
+		private int netID;
+		private double x, y;
+		private SOGVia found;
+
+		void init(int netID, double x, double y)
+		{
+			this.netID = netID;
+			this.x = x;
+			this.y = y;
+			found = null;
+		}
+
+		public boolean visit(RTBounds geom)
 		{
-			SOGVia sLoc = (SOGVia)sea.next();
+			SOGVia sLoc = (SOGVia)geom;
 			if (sLoc.getNetID() == netID)
 			{
-				if (sLoc.loc.getX() == x && sLoc.loc.getY() == y) continue;
+				if (sLoc.loc.getX() == x && sLoc.loc.getY() == y) return true;
 			}
-			return sLoc;
+			found = sLoc;
+			return false;
+		}
+	}
+
+	/**
+	 * R-Tree visitor that shrinks a jump area so that it stops at the first metal blockage
+	 * on another network in the direction of the jump.
+	 */
+	private static class JumpLimiter implements RTNode.SearchVisitor
+	{
+		private int netID, dx, dy;
+		private double lX, lY, hX, hY;
+
+		void init(int netID, int dx, int dy, double lX, double lY, double hX, double hY)
+		{
+			this.netID = netID;
+			this.dx = dx;   this.dy = dy;
+			this.lX = lX;   this.lY = lY;
+			this.hX = hX;   this.hY = hY;
+		}
+
+		public boolean visit(RTBounds geom)
+		{
+			SOGBound sBound = (SOGBound)geom;
+			if (sBound.getNetID() == netID) return true;
+			Rectangle2D bound = sBound.getBounds();
+			if (bound.getMinX() >= hX || bound.getMaxX() <= lX ||
+				bound.getMinY() >= hY || bound.getMaxY() <= lY) return true;
+			if (dx > 0 && bound.getMinX() < hX) hX = bound.getMinX();
+			if (dx < 0 && bound.getMaxX() > lX) lX = bound.getMaxX();
+			if (dy > 0 && bound.getMinY() < hY) hY = bound.getMinY();
+			if (dy < 0 && bound.getMaxY() > lY) lY = bound.getMaxY();
+			return true;
 		}
-		return null;
 	}
 
 	/**
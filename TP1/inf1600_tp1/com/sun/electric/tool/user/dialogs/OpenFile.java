@@ -206,7 +206,7 @@ public class OpenFile
             if (!dir.exists() || !dir.isDirectory()) dir = new File(User.getWorkingDirectory());
             dialog.setCurrentDirectory(dir);
 			if (type != null) {
-                if (type == FileType.ELIB || type == FileType.JELIB || type == FileType.DELIB ||
+                if (type == FileType.ELIB || type == FileType.JELIB || type == FileType.DELIB || type == FileType.BLIB ||
                     type == FileType.LIBFILE || type == FileType.LIBRARYFORMATS) {
                     LibDirs.LibDirFileSystemView view = LibDirs.newLibDirFileSystemView(dialog.getFileSystemView());
                     dialog.setFileSystemView(view);
@@ -367,6 +367,8 @@ public class OpenFile
 			return com.sun.electric.tool.io.FileType.JELIB;
         else if (libName.endsWith(".delib"))
             return com.sun.electric.tool.io.FileType.DELIB;
+        else if (libName.endsWith(".blib"))
+            return com.sun.electric.tool.io.FileType.BLIB;
 		else if (libName.endsWith(".txt"))
 			return com.sun.electric.tool.io.FileType.READABLEDUMP;
 		return (def);
@@ -830,7 +830,7 @@ public class FileMenu {
         String fileName = null;
         if (!saveAs && lib.isFromDisk())
         {
-        	if (type == FileType.JELIB || type == FileType.DELIB || 
+        	if (type == FileType.JELIB || type == FileType.DELIB || type == FileType.BLIB ||
         		(type == FileType.ELIB && !compatibleWith6))
 	        {
 	            fileName = lib.getLibFile().getPath();
@@ -886,7 +886,27 @@ public class FileMenu {
                  oldJelibDir.getAbsolutePath()}, "Error creating oldJelib directory", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        Output.writePanicSnapshot(EDatabase.clientDatabase().backupUnsafe(), oldJelibDir, true);
+        new SaveOldJelibJob(oldJelibDir);
+    }
+
+    /**
+     * Class to write all libraries in old JELIB format.
+     * It reads only its pinned snapshot, so it runs concurrently with changes of the database.
+     */
+    private static class SaveOldJelibJob extends Job {
+        private File oldJelibDir;
+
+        private SaveOldJelibJob(File oldJelibDir) {
+            super("Save old JELIB", User.getUserTool(), Job.Type.EXAMINE, null, null, Job.Priority.ANALYSIS);
+            this.oldJelibDir = oldJelibDir;
+            startJob();
+        }
+
+        public boolean isSnapshotExamine() { return true; }
+
+        public boolean doIt() throws JobException {
+            return !Output.writePanicSnapshot(getPinnedSnapshot(), oldJelibDir, true);
+        }
     }
 
 //    public static boolean saveLibraryNoJob(String newName, Library lib, FileType type, boolean compatibleWith6)
@@ -1016,7 +1036,7 @@ public class FileMenu {
     }
 
     public static void saveAllLibrariesInFormatCommand() {
-        Object[] formats = {FileType.JELIB, FileType.ELIB, FileType.READABLEDUMP, FileType.DELIB};
+        Object[] formats = {FileType.JELIB, FileType.ELIB, FileType.READABLEDUMP, FileType.DELIB, FileType.BLIB};
         Object format = JOptionPane.showInputDialog(TopLevel.getCurrentJFrame(),
                 "Output file format for all libraries:", "Save All Libraries In Format...",
                 JOptionPane.PLAIN_MESSAGE,
@@ -245,6 +245,11 @@ public class HighlightEquivalent {
 		}
 		CellContext cc = NccUtils.getCellContext(wnd);
 		NccResult r = results.getResultFromRootCells();
+		if (r.skipped()) {
+			prln("NCC skipped this comparison because the Cells are unchanged. "+
+				 "Turn off incremental NCC and run NCC again.");
+			return;
+		}
 		Equivalence e = r.getEquivalence();
 		List<Geometric> geoms = wnd.getHighlightedEObjs(true, false);
 		if (geoms.size()>0) {
@@ -1097,6 +1097,9 @@ public class EditWindow extends JPanel
 
 		if (cell != null && User.isCheckCellDates()) cell.checkCellDates();
 
+		// instantiate the contents of the cell if they were deferred when its library was read
+		if (cell != null && cell.hasDeferredHierarchy()) new LoadCellContentsJob(this, cell, fillTheScreen);
+
 		// clear list of cross-probed levels for this EditWindow
 		clearCrossProbeLevels();
 
@@ -2479,6 +2482,37 @@ public class EditWindow extends JPanel
 		new ReplaceAllTextJob(this, replace);
 	}
 
+	/**
+	 * Class to instantiate the deferred contents of a displayed cell and of the cells below it in a new thread.
+	 * Jobs that examine the displayed cell (NCC of the cells in two windows, for example) then see them loaded.
+	 */
+	private static class LoadCellContentsJob extends Job
+	{
+		private Cell cell;
+		private boolean fillTheScreen;
+		private transient EditWindow wnd;
+
+		private LoadCellContentsJob(EditWindow wnd, Cell cell, boolean fillTheScreen)
+		{
+			super("Load contents of " + cell, User.getUserTool(), Job.Type.CHANGE, null, null, Job.Priority.USER);
+			this.wnd = wnd;
+			this.cell = cell;
+			this.fillTheScreen = fillTheScreen;
+			startJob();
+		}
+
+		public boolean doIt() throws JobException
+		{
+			cell.loadDeferredHierarchy();
+			return true;
+		}
+
+		public void terminateOK()
+		{
+			if (fillTheScreen && wnd.getCell() == cell) wnd.fillScreen();
+		}
+	}
+
     /**
 	 * Class to change text in a new thread.
 	 */
@@ -0,0 +1,258 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ManhattanRegionTest.java
+ *
+ * Copyright (c) 2006 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.AbstractUserInterface;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.Tool;
+
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.lang.reflect.Constructor;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the scanline merge of Manhattan geometry.
+ * The results are compared with java.awt.geom.Area, which PolyMerge used before.
+ */
+public class ManhattanRegionTest {
+
+	/** size of the grid that random rectangles are on */	private static final int GRID = 40;
+
+	@Before public void setUp() throws Exception {
+		// the database is set up once for all test classes run together
+		if (Job.getUserInterface() == null) {
+			// batch user interface of Main
+			Constructor<?> uiConstructor = Class.forName("com.sun.electric.Main$UserInterfaceDummy").getDeclaredConstructor();
+			uiConstructor.setAccessible(true);
+			Job.setThreadMode(Job.Mode.BATCH, (AbstractUserInterface)uiConstructor.newInstance());
+
+			EDatabase database = EDatabase.serverDatabase();
+			database.lock(true);
+			database.lowLevelBeginChanging(null);
+			Tool.initAllTools();
+			Technology.initAllTechnologies();
+		}
+	}
+
+	/**
+	 * Test the union of random rectangles.
+	 */
+	@Test public void testUnion() {
+		Random random = new Random(1);
+		for (int test = 0; test < 50; test++) {
+			Area expected = new Area();
+			ManhattanRegion region = ManhattanRegion.EMPTY;
+			for (int i = 0; i < 20; i++) {
+				Rectangle2D rect = randomRectangle(random);
+				expected.add(new Area(rect));
+				region = region.union(ManhattanRegion.fromShape(rect));
+			}
+			assertSameGeometry(expected, region);
+		}
+	}
+
+	/**
+	 * Test the intersection and difference of unions of random rectangles.
+	 */
+	@Test public void testIntersectAndSubtract() {
+		Random random = new Random(2);
+		for (int test = 0; test < 50; test++) {
+			Area areaA = randomArea(random, 10);
+			Area areaB = randomArea(random, 10);
+			ManhattanRegion regionA = ManhattanRegion.fromShape(areaA);
+			ManhattanRegion regionB = ManhattanRegion.fromShape(areaB);
+
+			Area intersection = (Area)areaA.clone();
+			intersection.intersect(areaB);
+			assertSameGeometry(intersection, regionA.intersect(regionB));
+
+			Area difference = (Area)areaA.clone();
+			difference.subtract(areaB);
+			assertSameGeometry(difference, regionA.subtract(regionB));
+		}
+	}
+
+	/**
+	 * Test regions with holes, which are converted to Areas and back.
+	 */
+	@Test public void testHoles() {
+		Area frame = new Area(new Rectangle2D.Double(0, 0, 30, 30));
+		frame.subtract(new Area(new Rectangle2D.Double(5, 5, 8, 8)));
+		frame.subtract(new Area(new Rectangle2D.Double(17, 5, 8, 20)));
+		frame.subtract(new Area(new Rectangle2D.Double(5, 17, 8, 8)));
+		frame.add(new Area(new Rectangle2D.Double(19, 10, 4, 4)));
+		ManhattanRegion region = ManhattanRegion.fromShape(frame);
+		assertSameGeometry(frame, region);
+		assertEquals(30*30 - 3*8*8 - 8*12 + 4*4, region.getArea(), 0);
+
+		// the outline of the region has the same holes
+		assertSameGeometry(frame, ManhattanRegion.fromShape(region.getOutline()));
+
+		Random random = new Random(3);
+		for (int test = 0; test < 50; test++) {
+			Area area = new Area(new Rectangle2D.Double(0, 0, GRID, GRID));
+			area.subtract(randomArea(random, 8));
+			assertSameGeometry(area, ManhattanRegion.fromShape(area));
+		}
+	}
+
+	/**
+	 * Test that geometry which is not Manhattan is refused.
+	 */
+	@Test public void testNotManhattan() {
+		PolyBase triangle = new PolyBase(new Point2D[] {
+			new Point2D.Double(0, 0), new Point2D.Double(10, 0), new Point2D.Double(0, 10)});
+		assertNull(ManhattanRegion.fromShape(triangle));
+	}
+
+	/**
+	 * Test that PolyMerge gives the same layers with and without the scanline merge,
+	 * when adding, intersecting and subtracting them.
+	 */
+	@Test public void testPolyMerge() {
+		Technology tech = Technology.findTechnology("mocmos");
+		Layer layerA = tech.findLayer("Metal-1");
+		Layer layerB = tech.findLayer("Metal-2");
+		Layer layerC = tech.findLayer("Metal-3");
+		Random random = new Random(4);
+		for (int test = 0; test < 30; test++) {
+			PolyMerge [] merges = new PolyMerge[] { new PolyMerge(false), new PolyMerge(true) };
+			for (int i = 0; i < 15; i++) {
+				Rectangle2D rectA = randomRectangle(random);
+				Rectangle2D rectB = randomRectangle(random);
+				for (PolyMerge merge : merges) {
+					merge.addRectangle(layerA, rectA);
+					merge.addRectangle(layerB, rectB);
+				}
+			}
+			Rectangle2D hole = randomRectangle(random);
+			for (PolyMerge merge : merges) {
+				merge.subtract(layerA, new PolyBase(hole));
+				merge.intersectLayers(layerA, layerB, layerC);
+				merge.subtractLayers(layerA, layerB, layerB);
+			}
+			for (Layer layer : new Layer[] { layerA, layerB, layerC }) {
+				assertEquals(merges[0].getAreaOfLayer(layer), merges[1].getAreaOfLayer(layer), 0);
+				for (int x = 0; x < GRID; x++) {
+					for (int y = 0; y < GRID; y++) {
+						Point2D pt = new Point2D.Double(x + 0.5, y + 0.5);
+						assertEquals(merges[0].contains(layer, pt), merges[1].contains(layer, pt));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that an inset region is the region minus strips along the inside of its outline.
+	 * The strips of neighboring edges do not cover the inside corner between them, so
+	 * a square of the inset amount stays at each inside corner.
+	 */
+	@Test public void testInset() {
+		Area area = new Area(new Rectangle2D.Double(0, 0, 20, 10));
+		area.add(new Area(new Rectangle2D.Double(0, 0, 6, 20)));
+		area.subtract(new Area(new Rectangle2D.Double(10, 3, 4, 4)));
+		ManhattanRegion region = ManhattanRegion.fromShape(area);
+
+		Area expected = new Area(new Rectangle2D.Double(1, 1, 18, 8));
+		expected.add(new Area(new Rectangle2D.Double(1, 1, 4, 18)));
+		expected.add(new Area(new Rectangle2D.Double(5, 9, 1, 1)));
+		expected.subtract(new Area(new Rectangle2D.Double(10, 2, 4, 6)));
+		expected.subtract(new Area(new Rectangle2D.Double(9, 3, 6, 4)));
+		assertSameGeometry(expected, region.inset(1));
+
+		// insetting by nothing leaves the region alone, insetting too much empties it
+		assertSame(region, region.inset(0));
+		assertTrue(region.inset(10).isEmpty());
+
+		// random regions, checked on the unit squares of the grid
+		Random random = new Random(5);
+		for (int test = 0; test < 50; test++) {
+			boolean [][] inside = new boolean[GRID][GRID];
+			Area randomArea = randomArea(random, 8);
+			for (int x = 0; x < GRID; x++)
+				for (int y = 0; y < GRID; y++)
+					inside[x][y] = randomArea.contains(x + 0.5, y + 0.5);
+			int amount = 1 + random.nextInt(3);
+			Area inset = ManhattanRegion.fromShape(randomArea).inset(amount).toArea();
+			for (int x = 0; x < GRID; x++)
+				for (int y = 0; y < GRID; y++)
+					assertEquals(inside[x][y] && !inEdgeStrip(inside, x, y, amount), inset.contains(x + 0.5, y + 0.5));
+		}
+	}
+
+	/**
+	 * Tells whether a unit square of the grid is within a given distance of an edge of the outline,
+	 * on the inside and beside the edge.
+	 */
+	private static boolean inEdgeStrip(boolean [][] inside, int x, int y, int amount) {
+		for (int d = 0; d < amount; d++) {
+			if (isEdge(inside, x, y-d, x, y-d-1) || isEdge(inside, x, y+d, x, y+d+1) ||
+				isEdge(inside, x-d, y, x-d-1, y) || isEdge(inside, x+d, y, x+d+1, y)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the first unit square is inside and the second one, next to it, is outside.
+	 */
+	private static boolean isEdge(boolean [][] inside, int inX, int inY, int outX, int outY) {
+		if (inX < 0 || inY < 0 || inX >= GRID || inY >= GRID || !inside[inX][inY]) return false;
+		return outX < 0 || outY < 0 || outX >= GRID || outY >= GRID || !inside[outX][outY];
+	}
+
+	private static Rectangle2D randomRectangle(Random random) {
+		int x = random.nextInt(GRID - 1);
+		int y = random.nextInt(GRID - 1);
+		int w = 1 + random.nextInt(GRID - x - 1);
+		int h = 1 + random.nextInt(GRID - y - 1);
+		return new Rectangle2D.Double(x, y, Math.min(w, 15), Math.min(h, 15));
+	}
+
+	private static Area randomArea(Random random, int numRectangles) {
+		Area area = new Area();
+		for (int i = 0; i < numRectangles; i++) area.add(new Area(randomRectangle(random)));
+		return area;
+	}
+
+	/**
+	 * Asserts that a region covers exactly the same points as an Area.
+	 */
+	private static void assertSameGeometry(Area expected, ManhattanRegion region) {
+		assertNotNull(region);
+		Area actual = region.toArea();
+		actual.exclusiveOr(expected);
+		assertTrue(actual.isEmpty());
+		assertEquals(expected.isEmpty(), region.isEmpty());
+	}
+}
@@ -0,0 +1,247 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: HierarchyEnumeratorTest.java
+ *
+ * Copyright (c) 2006 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.hierarchy;
+
+import com.sun.electric.database.network.Network;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.AbstractUserInterface;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.Tool;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of HierarchyEnumerator.
+ */
+public class HierarchyEnumeratorTest {
+
+	private static int libCount;
+
+	@Before public void setUp() throws Exception {
+		// the database is set up once for all test classes run together
+		if (Job.getUserInterface() == null) {
+			// batch user interface of Main
+			Constructor<?> uiConstructor = Class.forName("com.sun.electric.Main$UserInterfaceDummy").getDeclaredConstructor();
+			uiConstructor.setAccessible(true);
+			Job.setThreadMode(Job.Mode.BATCH, (AbstractUserInterface)uiConstructor.newInstance());
+
+			EDatabase database = EDatabase.serverDatabase();
+			database.lock(true);
+			database.lowLevelBeginChanging(null);
+			Tool.initAllTools();
+			Technology.initAllTechnologies();
+		}
+	}
+
+	/**
+	 * Test that a MemoizingVisitor finds the same primitives as a Visitor which
+	 * descends into every instance, and that each Cell is summarized once.
+	 */
+	@Test public void testMemoizingVisitor() {
+		Library lib = Library.newInstance("hierarchyEnumeratorTest" + (libCount++), null);
+		Technology tech = Technology.findTechnology("mocmos");
+		PrimitiveNode metal1 = tech.findNodeProto("Metal-1-Node");
+
+		Cell leaf = Cell.makeInstance(lib, "leaf{lay}");
+		leaf.setTechnology(tech);
+		for (int i = 0; i < 3; i++)
+			NodeInst.makeInstance(metal1, new Point2D.Double(i * 10, 0), 3, 3, leaf);
+
+		Cell mid = Cell.makeInstance(lib, "mid{lay}");
+		mid.setTechnology(tech);
+		for (int i = 0; i < 5; i++)
+			NodeInst.makeInstance(leaf, new Point2D.Double(0, i * 10), leaf.getDefWidth(), leaf.getDefHeight(), mid);
+		NodeInst.makeInstance(metal1, new Point2D.Double(0, -10), 3, 3, mid);
+
+		Cell top = Cell.makeInstance(lib, "top{lay}");
+		top.setTechnology(tech);
+		for (int i = 0; i < 4; i++)
+			NodeInst.makeInstance(mid, new Point2D.Double(i * 100, 0), mid.getDefWidth(), mid.getDefHeight(), top);
+		for (int i = 0; i < 2; i++)
+			NodeInst.makeInstance(leaf, new Point2D.Double(i * 100, -100), leaf.getDefWidth(), leaf.getDefHeight(), top);
+
+		PrimitiveCounter flat = new PrimitiveCounter();
+		HierarchyEnumerator.enumerateCell(top, VarContext.globalContext, flat);
+		int leafCount = countPrimitives(leaf), midCount = countPrimitives(mid), topCount = countPrimitives(top);
+		assertEquals(4 * (5 * leafCount + midCount) + 2 * leafCount + topCount, flat.count);
+
+		int[] summaryVisitors = new int[1];
+		MemoizingPrimitiveCounter memoizing = new MemoizingPrimitiveCounter(summaryVisitors);
+		HierarchyEnumerator.enumerateCell(top, VarContext.globalContext, memoizing);
+		assertEquals(flat.count, memoizing.count);
+		assertEquals(2, summaryVisitors[0]);
+	}
+
+	/**
+	 * Test that a FlatNetlist has the instances, net ids and net names
+	 * that HierarchyEnumerator gives when it descends into every instance.
+	 */
+	@Test public void testFlattenCell() {
+		Library lib = Library.newInstance("hierarchyEnumeratorTest" + (libCount++), null);
+		Technology tech = Technology.findTechnology("mocmos");
+		PrimitiveNode pin = tech.findNodeProto("Metal-1-Pin");
+		ArcProto metal1 = tech.findArcProto("Metal-1");
+
+		// leaf with two exports, a wire between them and a net of its own
+		Cell leaf = Cell.makeInstance(lib, "leaf{lay}");
+		leaf.setTechnology(tech);
+		NodeInst a = NodeInst.makeInstance(pin, new Point2D.Double(0, 0), 1, 1, leaf);
+		NodeInst b = NodeInst.makeInstance(pin, new Point2D.Double(10, 0), 1, 1, leaf);
+		NodeInst c = NodeInst.makeInstance(pin, new Point2D.Double(10, 10), 1, 1, leaf);
+		NodeInst d = NodeInst.makeInstance(pin, new Point2D.Double(0, 10), 1, 1, leaf);
+		ArcInst.makeInstance(metal1, a.getOnlyPortInst(), b.getOnlyPortInst());
+		ArcInst.makeInstance(metal1, c.getOnlyPortInst(), d.getOnlyPortInst());
+		Export leafIn = Export.newInstance(leaf, a.getOnlyPortInst(), "in");
+		Export leafOut = Export.newInstance(leaf, c.getOnlyPortInst(), "out");
+
+		// mid with a chain of leaves, its ends exported
+		Cell mid = Cell.makeInstance(lib, "mid{lay}");
+		mid.setTechnology(tech);
+		NodeInst last = null;
+		for (int i = 0; i < 3; i++) {
+			NodeInst ni = NodeInst.makeInstance(leaf, new Point2D.Double(i * 100, 0), leaf.getDefWidth(), leaf.getDefHeight(), mid);
+			if (last == null) Export.newInstance(mid, ni.findPortInstFromProto(leafIn), "in"); else
+				ArcInst.makeInstance(metal1, last.findPortInstFromProto(leafOut), ni.findPortInstFromProto(leafIn));
+			last = ni;
+		}
+		Export midOut = Export.newInstance(mid, last.findPortInstFromProto(leafOut), "out");
+
+		// top with mids whose outputs are tied, and a leaf
+		Cell top = Cell.makeInstance(lib, "top{lay}");
+		top.setTechnology(tech);
+		NodeInst firstMid = null;
+		for (int i = 0; i < 3; i++) {
+			NodeInst ni = NodeInst.makeInstance(mid, new Point2D.Double(0, i * 1000), mid.getDefWidth(), mid.getDefHeight(), top);
+			if (firstMid == null) firstMid = ni; else
+				ArcInst.makeInstance(metal1, firstMid.findPortInstFromProto(midOut), ni.findPortInstFromProto(midOut));
+		}
+		NodeInst.makeInstance(leaf, new Point2D.Double(5000, 0), leaf.getDefWidth(), leaf.getDefHeight(), top);
+
+		// record what HierarchyEnumerator finds in every instance, by the path to it
+		final HashMap<String,HierarchyEnumerator.CellInfo> infos = new HashMap<String,HierarchyEnumerator.CellInfo>();
+		final HashMap<String,Integer> netIDs = new HashMap<String,Integer>();
+		final HashMap<String,String> netNames = new HashMap<String,String>();
+		final int[] numNets = new int[1];
+		HierarchyEnumerator.enumerateCell(top, VarContext.globalContext, new HierarchyEnumerator.Visitor() {
+			public boolean enterCell(HierarchyEnumerator.CellInfo info) {
+				String path = info.getContext().getInstPath("/");
+				infos.put(path, info);
+				for (Iterator<Network> it = info.getNetlist().getNetworks(); it.hasNext(); ) {
+					Network net = it.next();
+					int netID = info.getNetID(net);
+					netIDs.put(path + ":" + net.getNetIndex(), new Integer(netID));
+					netNames.put(path + ":" + net.getNetIndex(), info.getUniqueNetName(net, "/"));
+					numNets[0] = Math.max(numNets[0], netID + 1);
+				}
+				return true;
+			}
+			public void exitCell(HierarchyEnumerator.CellInfo info) {}
+			public boolean visitNodeInst(Nodable ni, HierarchyEnumerator.CellInfo info) { return true; }
+		}, true);
+
+		FlatNetlist flat = HierarchyEnumerator.flattenCell(top, null, true, true, true);
+		assertSame(top, flat.getRoot());
+		assertEquals(1 + 3 * (1 + 3) + 1, flat.getNumInstances());
+		assertEquals(infos.size(), flat.getNumInstances());
+		assertEquals(3, flat.getNumCells());
+		assertEquals(numNets[0], flat.getNumNets());
+		assertEquals(-1, flat.getParent(0));
+		assertNull(flat.getNodable(0));
+		for (int inst = 0; inst < flat.getNumInstances(); inst++) {
+			String path = flat.getContext(inst).getInstPath("/");
+			HierarchyEnumerator.CellInfo info = infos.get(path);
+			assertNotNull(info);
+			assertSame(info.getCell(), flat.getCell(inst));
+			if (inst > 0) assertSame(info.getParentInst(), flat.getNodable(inst));
+			for (Iterator<Network> it = flat.getNetlist(inst).getNetworks(); it.hasNext(); ) {
+				Network net = it.next();
+				int netID = flat.getNetID(inst, net);
+				assertEquals(netIDs.get(path + ":" + net.getNetIndex()), new Integer(netID));
+				assertEquals(netNames.get(path + ":" + net.getNetIndex()), flat.getUniqueNetName(netID, "/"));
+			}
+		}
+	}
+
+	private static int countPrimitives(Cell cell) {
+		int count = 0;
+		for (int i = 0; i < cell.getNumNodes(); i++)
+			if (!cell.getNode(i).isCellInstance()) count++;
+		return count;
+	}
+
+	/**
+	 * Visitor which counts primitive nodes in every instance.
+	 */
+	private static class PrimitiveCounter extends HierarchyEnumerator.Visitor {
+		int count;
+
+		public boolean enterCell(HierarchyEnumerator.CellInfo info) { return true; }
+		public void exitCell(HierarchyEnumerator.CellInfo info) {}
+		public boolean visitNodeInst(Nodable ni, HierarchyEnumerator.CellInfo info) {
+			if (!ni.isCellInstance()) count++;
+			return true;
+		}
+	}
+
+	/**
+	 * Visitor which counts primitive nodes with a summary of each Cell.
+	 */
+	private static class MemoizingPrimitiveCounter extends HierarchyEnumerator.MemoizingVisitor<Integer> {
+		private final int[] summaryVisitors;
+		int count;
+
+		MemoizingPrimitiveCounter(int[] summaryVisitors) { this.summaryVisitors = summaryVisitors; }
+
+		public boolean enterCell(HierarchyEnumerator.CellInfo info) { return true; }
+		public void exitCell(HierarchyEnumerator.CellInfo info) {}
+		public boolean visitNodeInst(Nodable ni, HierarchyEnumerator.CellInfo info) {
+			if (!ni.isCellInstance()) count++;
+			return true;
+		}
+
+		public boolean isMemoizable(Cell cell) { return true; }
+		public HierarchyEnumerator.MemoizingVisitor<Integer> newSummaryVisitor() {
+			summaryVisitors[0]++;
+			return new MemoizingPrimitiveCounter(summaryVisitors);
+		}
+		public Integer getSummary() { return new Integer(count); }
+		public void applySummary(Integer summary, Nodable ni, HierarchyEnumerator.CellInfo parentInfo,
+								 AffineTransform xformToRoot) {
+			count += summary.intValue();
+		}
+	}
+}
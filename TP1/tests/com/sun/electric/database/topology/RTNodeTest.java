@@ -0,0 +1,195 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: RTNodeTest.java
+ *
+ * Copyright (c) 2006 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.database.topology;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of RTNode.
+ */
+public class RTNodeTest {
+
+	/**
+	 * Simple RTBounds to put in the trees.
+	 */
+	private static class Bounds implements RTBounds {
+		private final Rectangle2D bounds;
+
+		Bounds(double x, double y, double w, double h) { bounds = new Rectangle2D.Double(x, y, w, h); }
+
+		public Rectangle2D getBounds() { return bounds; }
+	}
+
+	/**
+	 * Test that bulk-loaded trees of many sizes find what a linear scan finds,
+	 * with both the Search iterator and the visitor search.
+	 */
+	@Test public void testBulkLoadSearch() {
+		Random random = new Random(0);
+		int [] sizes = { 0, 1, 7, 8, 9, 33, 64, 65, 500, 5000 };
+		for (int size : sizes) {
+			List<RTBounds> geoms = randomBounds(random, size);
+			RTNode root = RTNode.bulkLoad(null, geoms);
+			assertEquals(size, checkStructure(root, true));
+			checkSearches(random, root, geoms);
+		}
+	}
+
+	/**
+	 * Test that a bulk-loaded tree may be changed with linkGeom and unLinkGeom afterwards.
+	 */
+	@Test public void testBulkLoadThenLink() {
+		Random random = new Random(1);
+		List<RTBounds> geoms = randomBounds(random, 2000);
+		RTNode root = RTNode.bulkLoad(null, geoms);
+
+		// remove every other object and add new ones
+		List<RTBounds> remaining = new ArrayList<RTBounds>();
+		for (int i = 0; i < geoms.size(); i++) {
+			if (i % 2 == 0) root = RTNode.unLinkGeom(null, root, geoms.get(i)); else
+				remaining.add(geoms.get(i));
+		}
+		for (RTBounds geom : randomBounds(random, 500)) {
+			root = RTNode.linkGeom(null, root, geom);
+			remaining.add(geom);
+		}
+		assertEquals(remaining.size(), checkStructure(root, true));
+		checkSearches(random, root, remaining);
+	}
+
+	/**
+	 * Test that a tree built by linkGeom finds the same objects as one built by bulkLoad.
+	 */
+	@Test public void testLinkedAndBulkLoadedAgree() {
+		Random random = new Random(2);
+		List<RTBounds> geoms = randomBounds(random, 3000);
+		RTNode linked = RTNode.makeTopLevel();
+		for (RTBounds geom : geoms) linked = RTNode.linkGeom(null, linked, geom);
+		RTNode packed = RTNode.bulkLoad(null, geoms);
+		for (int i = 0; i < 200; i++) {
+			Rectangle2D area = randomArea(random);
+			assertEquals(iteratorSearch(linked, area, true), iteratorSearch(packed, area, true));
+		}
+	}
+
+	/**
+	 * Test that the visitor search stops when the visitor returns false.
+	 */
+	@Test public void testVisitorStops() {
+		Random random = new Random(3);
+		List<RTBounds> geoms = randomBounds(random, 1000);
+		RTNode root = RTNode.bulkLoad(null, geoms);
+		final int [] count = new int[1];
+		boolean finished = RTNode.search(root, -1000, -1000, 1000, 1000, true, new RTNode.SearchVisitor() {
+			public boolean visit(RTBounds geom) { return ++count[0] < 10; }
+		});
+		assertFalse(finished);
+		assertEquals(10, count[0]);
+	}
+
+	/**
+	 * Checks that all leaves are at the same depth and that every node but the root
+	 * holds from 4 to 8 entries.
+	 * @return the number of objects in the tree.
+	 */
+	private static int checkStructure(RTNode root, boolean isRoot) {
+		int total = root.getTotal();
+		assertTrue(total <= 8);
+		if (!isRoot) assertTrue(total >= 4);
+		if (root.getFlag()) return total;
+		int count = 0;
+		int depth = -1;
+		for (int i = 0; i < total; i++) {
+			RTNode child = (RTNode)root.getChild(i);
+			int childDepth = depth(child);
+			if (depth < 0) depth = childDepth;
+			assertEquals(depth, childDepth);
+			count += checkStructure(child, false);
+		}
+		return count;
+	}
+
+	private static int depth(RTNode node) {
+		return node.getFlag() ? 0 : 1 + depth((RTNode)node.getChild(0));
+	}
+
+	private static void checkSearches(Random random, RTNode root, List<RTBounds> geoms) {
+		RTNode.SearchBuffer buffer = new RTNode.SearchBuffer();
+		for (int i = 0; i < 100; i++) {
+			Rectangle2D area = randomArea(random);
+			for (boolean includeEdges : new boolean[] { true, false }) {
+				Set<RTBounds> expected = new HashSet<RTBounds>();
+				for (RTBounds geom : geoms) {
+					if (touches(geom.getBounds(), area, includeEdges)) expected.add(geom);
+				}
+				assertEquals(expected, iteratorSearch(root, area, includeEdges));
+
+				buffer.clear();
+				assertTrue(RTNode.search(root, area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(),
+					includeEdges, buffer));
+				Set<RTBounds> visited = new HashSet<RTBounds>();
+				for (int j = 0; j < buffer.size(); j++) visited.add(buffer.get(j));
+				assertEquals(expected.size(), buffer.size());
+				assertEquals(expected, visited);
+			}
+		}
+	}
+
+	private static Set<RTBounds> iteratorSearch(RTNode root, Rectangle2D area, boolean includeEdges) {
+		Set<RTBounds> found = new HashSet<RTBounds>();
+		for (RTNode.Search sea = new RTNode.Search(area, root, includeEdges); sea.hasNext(); )
+			assertTrue(found.add(sea.next()));
+		return found;
+	}
+
+	private static boolean touches(Rectangle2D bounds, Rectangle2D area, boolean includeEdges) {
+		if (includeEdges)
+			return bounds.getMaxX() >= area.getMinX() && bounds.getMinX() <= area.getMaxX() &&
+				bounds.getMaxY() >= area.getMinY() && bounds.getMinY() <= area.getMaxY();
+		return bounds.getMaxX() > area.getMinX() && bounds.getMinX() < area.getMaxX() &&
+			bounds.getMaxY() > area.getMinY() && bounds.getMinY() < area.getMaxY();
+	}
+
+	/**
+	 * Makes objects on integer coordinates, so that many of them touch the edges of search areas.
+	 */
+	private static List<RTBounds> randomBounds(Random random, int size) {
+		List<RTBounds> geoms = new ArrayList<RTBounds>();
+		for (int i = 0; i < size; i++)
+			geoms.add(new Bounds(random.nextInt(500), random.nextInt(500), 1 + random.nextInt(8), 1 + random.nextInt(8)));
+		return geoms;
+	}
+
+	private static Rectangle2D randomArea(Random random) {
+		return new Rectangle2D.Double(random.nextInt(500), random.nextInt(500), random.nextInt(60), random.nextInt(60));
+	}
+}
@@ -0,0 +1,125 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: QuickTest.java
+ *
+ * Copyright (c) 2006 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.drc;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.AbstractUserInterface;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.Tool;
+import com.sun.electric.tool.user.ErrorLogger;
+
+import java.awt.geom.Point2D;
+import java.lang.reflect.Constructor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the DRC result cache of Quick DRC.
+ */
+public class QuickTest {
+
+	private static int libCount;
+
+	private boolean oldInMemory;
+	private boolean oldMultipleThreads;
+	private int oldNumberOfThreads;
+
+	@Before public void setUp() throws Exception {
+		// the database is set up once for all test classes run together
+		if (Job.getUserInterface() == null) {
+			// batch user interface of Main
+			Constructor<?> uiConstructor = Class.forName("com.sun.electric.Main$UserInterfaceDummy").getDeclaredConstructor();
+			uiConstructor.setAccessible(true);
+			Job.setThreadMode(Job.Mode.BATCH, (AbstractUserInterface)uiConstructor.newInstance());
+
+			EDatabase database = EDatabase.serverDatabase();
+			database.lock(true);
+			database.lowLevelBeginChanging(null);
+			Tool.initAllTools();
+			Technology.initAllTechnologies();
+		}
+		oldInMemory = DRC.isDatesStoredInMemory();
+		oldMultipleThreads = DRC.isUseMultipleThreads();
+		oldNumberOfThreads = DRC.getNumberOfThreads();
+		DRC.setDatesStoredInMemory(true);
+	}
+
+	@After public void tearDown() {
+		DRC.setDatesStoredInMemory(oldInMemory);
+		DRC.setUseMultipleThreads(oldMultipleThreads);
+		DRC.setNumberOfThreads(oldNumberOfThreads);
+	}
+
+	/**
+	 * Test of checking a cell with a dirty subcell twice on one thread.
+	 */
+	@Test public void testDirtySubCell() {
+		DRC.setUseMultipleThreads(false);
+		checkDirtySubCellTwice();
+	}
+
+	/**
+	 * Test of checking a cell with a dirty subcell twice on several threads.
+	 */
+	@Test public void testDirtySubCellInParallel() {
+		DRC.setUseMultipleThreads(true);
+		DRC.setNumberOfThreads(4);
+		checkDirtySubCellTwice();
+	}
+
+	/**
+	 * The errors of the subcell must be found again by the second check,
+	 * because the parent may not be cached as good while a subcell has errors.
+	 */
+	private void checkDirtySubCellTwice() {
+		Library lib = Library.newInstance("quickTest" + (libCount++), null);
+		Technology tech = Technology.findTechnology("mocmos");
+		PrimitiveNode metal1 = tech.findNodeProto("Metal-1-Node");
+
+		// two metal-1 squares that are too close to each other
+		Cell sub = Cell.makeInstance(lib, "sub{lay}");
+		sub.setTechnology(tech);
+		NodeInst.makeInstance(metal1, new Point2D.Double(0, 0), 3, 3, sub);
+		NodeInst.makeInstance(metal1, new Point2D.Double(4, 0), 3, 3, sub);
+
+		Cell top = Cell.makeInstance(lib, "top{lay}");
+		top.setTechnology(tech);
+		NodeInst.makeInstance(sub, new Point2D.Double(0, 0), sub.getDefWidth(), sub.getDefHeight(), top);
+
+		ErrorLogger first = Quick.checkDesignRules(null, top, null, null, null);
+		assertTrue(first.getNumErrors() > 0);
+		ErrorLogger second = Quick.checkDesignRules(null, top, null, null, null);
+		assertEquals(first.getNumErrors(), second.getNumErrors());
+		for (int i = 0; i < first.getNumLogs(); i++)
+			assertEquals(first.getLog(i).getMessageString(), second.getLog(i).getMessageString());
+	}
+}
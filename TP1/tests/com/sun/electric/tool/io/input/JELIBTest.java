@@ -0,0 +1,158 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JELIBTest.java
+ *
+ * Copyright (c) 2006 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.AbstractUserInterface;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.Tool;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.io.IOTool;
+import com.sun.electric.tool.io.output.Output;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the JELIB library reader.
+ */
+public class JELIBTest {
+
+	private static int libCount;
+
+	@Before public void setUp() throws Exception {
+		// the database is set up once for all test classes run together
+		if (Job.getUserInterface() == null) {
+			// batch user interface of Main
+			Constructor<?> uiConstructor = Class.forName("com.sun.electric.Main$UserInterfaceDummy").getDeclaredConstructor();
+			uiConstructor.setAccessible(true);
+			Job.setThreadMode(Job.Mode.BATCH, (AbstractUserInterface)uiConstructor.newInstance());
+
+			EDatabase database = EDatabase.serverDatabase();
+			database.lock(true);
+			database.lowLevelBeginChanging(null);
+			Tool.initAllTools();
+			Technology.initAllTechnologies();
+		}
+	}
+
+	/**
+	 * Test that a library read with its cells parsed ahead has the contents that were written.
+	 */
+	@Test public void testReadLibrary() throws Exception {
+		checkReadLibrary(false);
+	}
+
+	/**
+	 * Test that a library read lazily has the contents that were written once its cells are loaded.
+	 */
+	@Test public void testReadLibraryLazily() throws Exception {
+		checkReadLibrary(true);
+	}
+
+	private void checkReadLibrary(boolean lazy) throws Exception {
+		Library lib = makeLibrary();
+		File file = File.createTempFile("jelibTest", ".jelib");
+		boolean oldLazy = IOTool.isLazyCellLoading();
+		try {
+			lib.setLibFile(file.toURI().toURL());
+			assertFalse(Output.writeLibrary(lib, FileType.JELIB, false, true, false));
+
+			IOTool.setLazyCellLoading(lazy);
+			Library readLib = LibraryFiles.readLibrary(file.toURI().toURL(), "jelibRead" + (libCount++), FileType.JELIB, false);
+			assertNotNull(readLib);
+			assertEquals(lib.getNumCells(), readLib.getNumCells());
+			for (Iterator<Cell> it = lib.getCells(); it.hasNext(); ) {
+				Cell cell = it.next();
+				Cell readCell = readLib.findNodeProto(cell.noLibDescribe());
+				assertNotNull(readCell);
+				if (readCell.isContentsDeferred()) readCell.loadDeferredContents();
+				assertEquals(cell.getNumNodes(), readCell.getNumNodes());
+				assertEquals(cell.getNumArcs(), readCell.getNumArcs());
+				assertEquals(cell.getNumPorts(), readCell.getNumPorts());
+				for (Iterator<NodeInst> nIt = cell.getNodes(); nIt.hasNext(); ) {
+					NodeInst ni = nIt.next();
+					NodeInst readNi = readCell.findNode(ni.getName());
+					assertNotNull(readNi);
+					assertEquals(ni.getProto().getName(), readNi.getProto().getName());
+					assertEquals(ni.getAnchorCenter(), readNi.getAnchorCenter());
+				}
+			}
+		} finally {
+			IOTool.setLazyCellLoading(oldLazy);
+			file.delete();
+		}
+	}
+
+	/**
+	 * Makes a library of leaf cells with wires, and two levels of cells above them.
+	 */
+	private static Library makeLibrary() {
+		Library lib = Library.newInstance("jelibTest" + (libCount++), null);
+		Technology tech = Technology.findTechnology("mocmos");
+		PrimitiveNode pin = tech.findNodeProto("Metal-1-Pin");
+		ArcProto m1 = tech.findArcProto("Metal-1");
+
+		Cell [] leaves = new Cell[12];
+		for (int i = 0; i < leaves.length; i++) {
+			Cell leaf = Cell.makeInstance(lib, "leaf" + i + "{lay}");
+			leaf.setTechnology(tech);
+			NodeInst last = null;
+			for (int j = 0; j <= i; j++) {
+				NodeInst ni = NodeInst.makeInstance(pin, new Point2D.Double(j * 10, 0), 1, 1, leaf);
+				if (last == null) Export.newInstance(leaf, ni.getOnlyPortInst(), "a"); else
+					ArcInst.makeInstance(m1, last.getOnlyPortInst(), ni.getOnlyPortInst());
+				last = ni;
+			}
+			leaves[i] = leaf;
+		}
+		Cell top = Cell.makeInstance(lib, "top{lay}");
+		top.setTechnology(tech);
+		for (int k = 0; k < 4; k++) {
+			Cell mid = Cell.makeInstance(lib, "mid" + k + "{lay}");
+			mid.setTechnology(tech);
+			for (int i = k; i < leaves.length; i += 2) {
+				Cell leaf = leaves[i];
+				NodeInst.makeInstance(leaf, new Point2D.Double(0, i * 100), leaf.getDefWidth(), leaf.getDefHeight(), mid);
+			}
+			NodeInst.makeInstance(mid, new Point2D.Double(k * 1000, 0), mid.getDefWidth(), mid.getDefHeight(), top);
+		}
+		lib.setCurCell(top);
+		return lib;
+	}
+}
@@ -0,0 +1,167 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SpiceTest.java
+ *
+ * Copyright (c) 2006 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.io.output;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.AbstractUserInterface;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.Tool;
+import com.sun.electric.tool.simulation.Simulation;
+
+import java.awt.geom.Point2D;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the Spice deck writer.
+ */
+public class SpiceTest {
+
+	private static int libCount;
+
+	@Before public void setUp() throws Exception {
+		// the database is set up once for all test classes run together
+		if (Job.getUserInterface() == null) {
+			// batch user interface of Main
+			Constructor<?> uiConstructor = Class.forName("com.sun.electric.Main$UserInterfaceDummy").getDeclaredConstructor();
+			uiConstructor.setAccessible(true);
+			Job.setThreadMode(Job.Mode.BATCH, (AbstractUserInterface)uiConstructor.newInstance());
+
+			EDatabase database = EDatabase.serverDatabase();
+			database.lock(true);
+			database.lowLevelBeginChanging(null);
+			Tool.initAllTools();
+			Technology.initAllTechnologies();
+		}
+	}
+
+	/**
+	 * Test that cells written by several threads give the same deck as cells written by one.
+	 */
+	@Test public void testCellsWrittenInParallel() throws IOException {
+		boolean oldParasitics = Simulation.isSpiceUseParasitics();
+		try {
+			Simulation.setSpiceUseParasitics(false);
+			checkCellsWrittenInParallel();
+		} finally {
+			Simulation.setSpiceUseParasitics(oldParasitics);
+		}
+	}
+
+	/**
+	 * Test that cells with parasitics, which wait for the cells before them, give the same deck.
+	 */
+	@Test public void testCellsWithParasiticsWrittenInParallel() throws IOException {
+		boolean oldParasitics = Simulation.isSpiceUseParasitics();
+		try {
+			Simulation.setSpiceUseParasitics(true);
+			checkCellsWrittenInParallel();
+		} finally {
+			Simulation.setSpiceUseParasitics(oldParasitics);
+		}
+	}
+
+	private void checkCellsWrittenInParallel() throws IOException {
+		Library lib = Library.newInstance("spiceTest" + (libCount++), null);
+		Technology tech = Technology.findTechnology("mocmos");
+		PrimitiveNode nTrans = tech.findNodeProto("N-Transistor");
+		PrimitiveNode pTrans = tech.findNodeProto("P-Transistor");
+
+		// leaf cells with different numbers of transistors
+		Cell [] leaves = new Cell[8];
+		for (int i = 0; i < leaves.length; i++) {
+			Cell leaf = Cell.makeInstance(lib, "leaf" + i + "{lay}");
+			leaf.setTechnology(tech);
+			for (int j = 0; j <= i; j++) {
+				NodeInst n = NodeInst.makeInstance(nTrans, new Point2D.Double(j * 20, 0), 15, 22, leaf);
+				NodeInst p = NodeInst.makeInstance(pTrans, new Point2D.Double(j * 20, 40), 15, 22, leaf);
+				if (j == 0) {
+					Export.newInstance(leaf, n.getPortInst(0), "a");
+					Export.newInstance(leaf, p.getPortInst(0), "b");
+				}
+			}
+			leaves[i] = leaf;
+		}
+
+		// two levels of cells above the leaves
+		Cell top = Cell.makeInstance(lib, "top{lay}");
+		top.setTechnology(tech);
+		for (int k = 0; k < 4; k++) {
+			Cell mid = Cell.makeInstance(lib, "mid" + k + "{lay}");
+			mid.setTechnology(tech);
+			for (int i = k; i < leaves.length; i++) {
+				Cell leaf = leaves[i];
+				NodeInst.makeInstance(leaf, new Point2D.Double(0, i * 100), leaf.getDefWidth(), leaf.getDefHeight(), mid);
+			}
+			NodeInst.makeInstance(mid, new Point2D.Double(k * 1000, 0), mid.getDefWidth(), mid.getDefHeight(), top);
+		}
+
+		String serial = writeDeck(top, 1);
+		String parallel = writeDeck(top, 4);
+		assertTrue(serial.indexOf(".SUBCKT leaf7") >= 0);
+		assertTrue(serial.indexOf(".SUBCKT mid3") >= 0);
+		assertEquals(serial, parallel);
+	}
+
+	/**
+	 * Writes the deck of a cell with the given number of cell writer threads,
+	 * and returns it without the line that has the date.
+	 */
+	private static String writeDeck(Cell cell, final int numThreads) throws IOException {
+		File file = File.createTempFile("spiceTest", ".spi");
+		try {
+			Spice out = new Spice() {
+				protected int getCellWriterThreads() { return numThreads; }
+			};
+			assertFalse(out.openTextOutputStream(file.getPath()));
+			assertFalse(out.writeCell(cell, VarContext.globalContext));
+			assertFalse(out.closeTextOutputStream());
+
+			StringBuffer deck = new StringBuffer();
+			BufferedReader in = new BufferedReader(new FileReader(file));
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				if (line.startsWith("*** Written on ")) continue;
+				deck.append(line).append('\n');
+			}
+			in.close();
+			return deck.toString();
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: NccEngineTest.java
+ *
+ * Copyright (c) 2006 Sun Microsystems and Static Free Software
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Electric(tm); see the file COPYING.  If not, write to
+ * the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, Mass 02111-1307, USA.
+ */
+package com.sun.electric.tool.ncc;
+
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Export;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.database.variable.VarContext;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.AbstractUserInterface;
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.Tool;
+import com.sun.electric.tool.ncc.result.NccResult;
+
+import java.awt.geom.Point2D;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of the partitioning of NCC.
+ */
+public class NccEngineTest {
+
+	private static int libCount;
+
+	@Before public void setUp() throws Exception {
+		// the database is set up once for all test classes run together
+		if (Job.getUserInterface() == null) {
+			// batch user interface of Main
+			Constructor<?> uiConstructor = Class.forName("com.sun.electric.Main$UserInterfaceDummy").getDeclaredConstructor();
+			uiConstructor.setAccessible(true);
+			Job.setThreadMode(Job.Mode.BATCH, (AbstractUserInterface)uiConstructor.newInstance());
+
+			EDatabase database = EDatabase.serverDatabase();
+			database.lock(true);
+			database.lowLevelBeginChanging(null);
+			Tool.initAllTools();
+			Technology.initAllTechnologies();
+		}
+	}
+
+	/**
+	 * Test that partitioning by int codes and by Integer codes match the same Cells.
+	 */
+	@Test public void testMatchingCells() {
+		Library lib = Library.newInstance("nccEngineTest" + (libCount++), null);
+		Cell cell1 = makeChains(lib, "a{lay}", false, false);
+		Cell cell2 = makeChains(lib, "b{lay}", true, false);
+		NccResult intResult = compare(cell1, cell2, false);
+		NccResult integerResult = compare(cell1, cell2, true);
+		assertTrue(intResult.match());
+		assertEquals(2+3+4+5, intResult.getCellSummary().numParts[0]);
+		assertSameResult(intResult, integerResult);
+	}
+
+	/**
+	 * Test that partitioning by int codes and by Integer codes find the same mismatch.
+	 */
+	@Test public void testMismatchedCells() {
+		Library lib = Library.newInstance("nccEngineTest" + (libCount++), null);
+		Cell cell1 = makeChains(lib, "a{lay}", false, false);
+		Cell cell2 = makeChains(lib, "b{lay}", true, true);
+		NccResult intResult = compare(cell1, cell2, false);
+		NccResult integerResult = compare(cell1, cell2, true);
+		assertFalse(intResult.topologyMatch());
+		assertSameResult(intResult, integerResult);
+	}
+
+	private static NccResult compare(Cell cell1, Cell cell2, boolean legacyPartitioning) {
+		NccOptions options = new NccOptions();
+		options.howMuchStatus = 0;
+		options.legacyPartitioning = legacyPartitioning;
+		return NccEngine.compare(cell1, VarContext.globalContext, cell2, VarContext.globalContext,
+			null, options, new Aborter(null));
+	}
+
+	private static void assertSameResult(NccResult r0, NccResult r1) {
+		assertEquals(r0.exportMatch(), r1.exportMatch());
+		assertEquals(r0.topologyMatch(), r1.topologyMatch());
+		assertEquals(r0.sizeMatch(), r1.sizeMatch());
+		NccResult.CellSummary s0 = r0.getCellSummary();
+		NccResult.CellSummary s1 = r1.getCellSummary();
+		assertNotNull(s0);
+		assertNotNull(s1);
+		assertTrue(Arrays.equals(s0.numParts, s1.numParts));
+		assertTrue(Arrays.equals(s0.numWires, s1.numWires));
+		assertTrue(Arrays.equals(s0.numPorts, s1.numPorts));
+	}
+
+	/**
+	 * Makes a Cell with chains of transistors in series, whose gates and inner nodes are exported.
+	 * @param reversed true to place the transistors of each chain in the other order.
+	 * @param miswired true to tie two gates of the last chain together.
+	 */
+	private static Cell makeChains(Library lib, String name, boolean reversed, boolean miswired) {
+		Technology tech = Technology.findTechnology("mocmos");
+		PrimitiveNode nTrans = tech.findNodeProto("N-Transistor");
+		ArcProto active = tech.findArcProto("N-Active");
+		ArcProto poly = tech.findArcProto("Polysilicon-1");
+		Cell cell = Cell.makeInstance(lib, name);
+		cell.setTechnology(tech);
+		int numChains = 4;
+		for (int c = 0; c < numChains; c++) {
+			int length = 2 + c;
+			NodeInst [] chain = new NodeInst[length];
+			for (int i = 0; i < length; i++) {
+				int position = reversed ? length - 1 - i : i;
+				chain[i] = NodeInst.makeInstance(nTrans, new Point2D.Double(c * 200, position * 40), 15, 22, cell);
+			}
+			for (int i = 0; i < length; i++) {
+				if (i > 0) {
+					// exporting the nodes between transistors keeps NCC from merging them in series
+					ArcInst.makeInstance(active, chain[i-1].getPortInst(3), chain[i].getPortInst(1));
+					Export.newInstance(cell, chain[i].getPortInst(1), "n" + c + "_" + i);
+				}
+				if (miswired && c == numChains-1 && i == 1)
+					ArcInst.makeInstance(poly, chain[0].getPortInst(2), chain[1].getPortInst(0));
+				else
+					Export.newInstance(cell, chain[i].getPortInst(0), "g" + c + "_" + i);
+			}
+			Export.newInstance(cell, chain[0].getPortInst(1), "top" + c);
+			Export.newInstance(cell, chain[length-1].getPortInst(3), "bottom" + c);
+		}
+		return cell;
+	}
+}